@@ -4,6 +4,7 @@ import org.develnext.jphp.core.tokenizer.token.expr.value.YieldExprToken;
 import php.runtime.Memory;
 import php.runtime.env.Context;
 import php.runtime.env.Environment;
+import php.runtime.monitor.RuntimeMonitor;
 import php.runtime.reflection.*;
 import php.runtime.reflection.helper.ClosureEntity;
 import php.runtime.common.Messages;
@@ -209,6 +210,46 @@ public class JvmCompiler extends AbstractCompiler {
 
     @Override
     public ModuleEntity compile(boolean autoRegister) {
+        if (RuntimeMonitor.enabled) {
+            long time = System.nanoTime();
+            ModuleEntity module = doCompile(autoRegister);
+
+            String source = context.getContentIfLoaded();
+            RuntimeMonitor.moduleCompiled(
+                    module, source == null ? -1 : source.length(), getBytecodeSize(), System.nanoTime() - time
+            );
+            return module;
+        }
+
+        return doCompile(autoRegister);
+    }
+
+    /**
+     * @return size of byte code of the module and its classes, functions and closures
+     */
+    protected int getBytecodeSize() {
+        int size = module.getData() == null ? 0 : module.getData().length;
+
+        for (ClassEntity el : module.getClasses()) {
+            size += el.getData() == null ? 0 : el.getData().length;
+        }
+
+        for (FunctionEntity el : module.getFunctions()) {
+            size += el.getData() == null ? 0 : el.getData().length;
+        }
+
+        for (ClosureEntity el : module.getClosures()) {
+            size += el.getData() == null ? 0 : el.getData().length;
+        }
+
+        for (GeneratorEntity el : module.getGenerators()) {
+            size += el.getData() == null ? 0 : el.getData().length;
+        }
+
+        return size;
+    }
+
+    protected ModuleEntity doCompile(boolean autoRegister) {
         this.classes = new ArrayList<ClassStmtCompiler>();
         module.setInternalName("$php_module_m" + UUID.randomUUID().toString().replace("-", ""));
 
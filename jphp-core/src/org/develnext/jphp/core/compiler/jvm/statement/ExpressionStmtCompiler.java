@@ -2446,6 +2446,18 @@ public class ExpressionStmtCompiler extends StmtCompiler {
         }
     }
 
+    /**
+     * @return false if only labels and line numbers are between the labels, an exception range must not be empty
+     */
+    protected static boolean hasInstructions(LabelNode start, LabelNode end) {
+        for (AbstractInsnNode insn = start.getNext(); insn != null && insn != end; insn = insn.getNext()) {
+            if (insn.getOpcode() >= 0)
+                return true;
+        }
+
+        return false;
+    }
+
     Memory writeUnaryOperator(OperatorExprToken operator, boolean returnValue, boolean writeOpcode){
         if (stackEmpty(true))
             unexpectedToken(operator);
@@ -2555,11 +2567,30 @@ public class ExpressionStmtCompiler extends StmtCompiler {
             writePushEnv();
             writeSysDynamicCall(Environment.class, "__pushSilent", void.class);
 
+            LabelNode start = new LabelNode();
+            LabelNode end = new LabelNode();
+
+            code.add(start);
             writePush(o);
+            code.add(end);
 
             writePushEnv();
             writeSysDynamicCall(Environment.class, "__popSilent", void.class);
 
+            if (hasInstructions(start, end)) {
+                // error flags are restored also if the expression throws an exception
+                LabelNode handler = new LabelNode();
+                LabelNode done = new LabelNode();
+                node.tryCatchBlocks.add(0, new TryCatchBlockNode(start, end, handler, null));
+
+                code.add(new JumpInsnNode(GOTO, done));
+                code.add(handler);
+                writePushEnv();
+                writeSysDynamicCall(Environment.class, "__popSilent", void.class);
+                code.add(new InsnNode(ATHROW));
+                code.add(done);
+            }
+
         } else if (operator instanceof ValueIfElseToken){
             writePush(o);
             ValueIfElseToken valueIfElseToken = (ValueIfElseToken)operator;
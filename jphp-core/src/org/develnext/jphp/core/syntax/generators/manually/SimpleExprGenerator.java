@@ -326,6 +326,14 @@ public class SimpleExprGenerator extends Generator<ExprStmtToken> {
                     nextToken(iterator), iterator, BraceExprToken.Kind.ANY
             );
             result.setValue(value);
+
+            // a generator by reference yields the variable itself
+            if (value != null && value.isSingle() && value.getSingle() instanceof VariableExprToken
+                    && analyzer.getFunction().isReturnReference()) {
+                analyzer.getFunction().variable((VariableExprToken) value.getSingle())
+                        .setReference(true)
+                        .setUnstable(true);
+            }
         }
 
         return result;
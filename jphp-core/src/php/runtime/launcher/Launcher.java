@@ -12,6 +12,9 @@ import php.runtime.lang.IObject;
 import php.runtime.loader.dump.ModuleDumper;
 import php.runtime.memory.StringMemory;
 import org.develnext.jphp.core.opcode.ModuleOpcodePrinter;
+import php.runtime.monitor.MetricsExporter;
+import php.runtime.monitor.RuntimeMetrics;
+import php.runtime.profiler.SamplingProfiler;
 import php.runtime.reflection.ClassEntity;
 import php.runtime.reflection.ModuleEntity;
 import php.runtime.reflection.support.ReflectionUtils;
@@ -192,12 +195,58 @@ public class Launcher {
             compileScope.registerExtension(className);
         }
 
+        if (getConfigValue("env.metrics").toBoolean()) {
+            initMetrics();
+        }
+
         this.environment = getConfigValue("env.concurrent").toBoolean()
                 ? new ConcurrentEnvironment(compileScope, out)
                 : new Environment(compileScope, out);
 
         environment.setErrorFlags(ErrorType.E_ALL.value ^ ErrorType.E_NOTICE.value);
         environment.getDefaultBuffer().setImplicitFlush(true);
+
+        if (getConfigValue("env.profiler").toBoolean()) {
+            SamplingProfiler profiler = SamplingProfiler.getDefault();
+            profiler.setInterval(getConfigValue("env.profiler.interval", "10").toInteger());
+            profiler.addEnvironment(environment);
+            profiler.start();
+        }
+    }
+
+    protected void initMetrics() {
+        RuntimeMetrics.setEnabled(true);
+
+        if (getConfigValue("env.metrics.jmx", Memory.TRUE).toBoolean()) {
+            RuntimeMetrics.registerMBean();
+        }
+
+        String exporter = config.getProperty("env.metrics.exporter");
+        if (exporter != null && !exporter.isEmpty()) {
+            try {
+                RuntimeMetrics.addExporter(
+                        (MetricsExporter) Class.forName(exporter.trim()).newInstance(),
+                        getConfigValue("env.metrics.exportInterval", "60000").toLong()
+                );
+            } catch (Exception e) {
+                throw new LaunchException("Cannot create metrics exporter '" + exporter + "': " + e.getMessage());
+            }
+        }
+    }
+
+    protected void writeProfile() {
+        String file = config.getProperty("env.profiler.output");
+
+        if (file != null && !file.isEmpty()) {
+            SamplingProfiler profiler = SamplingProfiler.getDefault();
+            profiler.stop();
+
+            try {
+                profiler.writeTo(new File(file), config.getProperty("env.profiler.format", "collapsed"));
+            } catch (IOException e) {
+                throw new LaunchException("Cannot write profile to '" + file + "': " + e.getMessage());
+            }
+        }
     }
 
     public void printTrace(String name) {
@@ -259,6 +308,10 @@ public class Launcher {
                     if (StringMemory.valueOf(config.getProperty("env.doFinal", "1")).toBoolean()) {
                         environment.doFinal();
                     }
+
+                    if (getConfigValue("env.profiler").toBoolean()) {
+                        writeProfile();
+                    }
                 }
             } catch (IOException e) {
                 throw new LaunchException("Cannot find '" + file + "' resource for `bootstrap.file` option");
@@ -0,0 +1,31 @@
+package org.develnext.jphp.core.compiler.jvm;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+import php.runtime.env.CompileScope;
+import php.runtime.env.ConcurrentEnvironment;
+import php.runtime.env.Environment;
+
+import java.io.OutputStream;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrentEnvironmentTest extends JvmCompilerCase {
+    @Override
+    protected Environment newEnvironment(CompileScope scope, OutputStream output) {
+        return new ConcurrentEnvironment(scope, output);
+    }
+
+    @Test
+    public void testProfiler() {
+        check("concurrent/profiler_001.php", true);
+    }
+
+    @Test
+    public void testSilent() {
+        check("concurrent/silent_001.php", true);
+    }
+}
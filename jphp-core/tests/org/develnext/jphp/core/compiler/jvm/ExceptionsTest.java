@@ -22,6 +22,8 @@ public class ExceptionsTest extends JvmCompilerCase {
     public void testTrace(){
         Memory memory = includeResource("exceptions/test_trace.php");
         Assert.assertEquals("success", memory.toString());
+
+        check("exceptions/trace_ignore_args.php");
     }
 
     @Test
@@ -8,6 +8,12 @@ import org.junit.runners.JUnit4;
 import org.junit.runners.MethodSorters;
 import php.runtime.exceptions.support.ErrorException;
 import php.runtime.Memory;
+import php.runtime.env.Environment;
+import php.runtime.monitor.RuntimeListener;
+import php.runtime.monitor.RuntimeMonitor;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @RunWith(JUnit4.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -41,4 +47,32 @@ public class IncludeTest extends JvmCompilerCase {
     public void testRequireInvalid(){
         includeResource("include/require_invalid.php");
     }
+
+    @Test
+    public void testMonitor(){
+        final List<String> imports = new ArrayList<String>();
+
+        RuntimeListener listener = new RuntimeListener() {
+            @Override
+            public void onImport(Environment env, String path, String function, boolean cached, boolean found,
+                                 long duration) {
+                imports.add(function + ":" + cached + ":" + found);
+            }
+        };
+
+        RuntimeMonitor.addListener(listener);
+        try {
+            Assert.assertTrue(RuntimeMonitor.enabled);
+
+            Memory memory = includeResource("include/once.php");
+            Assert.assertEquals("success", memory.toString());
+        } finally {
+            RuntimeMonitor.removeListener(listener);
+        }
+
+        Assert.assertFalse(RuntimeMonitor.enabled);
+        Assert.assertEquals(2, imports.size());
+        Assert.assertEquals("include_once:false:true", imports.get(0));
+        Assert.assertEquals("include_once:true:true", imports.get(1));
+    }
 }
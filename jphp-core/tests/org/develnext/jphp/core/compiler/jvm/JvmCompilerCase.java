@@ -28,6 +28,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 abstract public class JvmCompilerCase {
@@ -46,6 +47,10 @@ abstract public class JvmCompilerCase {
         return compileScope;
     }
 
+    protected Environment newEnvironment(CompileScope scope, OutputStream output) {
+        return new Environment(scope, output);
+    }
+
     protected List<Token> getSyntaxTree(Context context){
         Tokenizer tokenizer = null;
         try {
@@ -171,7 +176,7 @@ abstract public class JvmCompilerCase {
     public void check(String name, boolean withErrors, int errorFlags){
         File file;
         ByteArrayOutputStream outputR = new ByteArrayOutputStream();
-        Environment environment = new Environment(newScope(), outputR);
+        Environment environment = newEnvironment(newScope(), outputR);
         //environment.setErrorFlags(ErrorType.E_ALL.value);
 
         Test test = new Test(file = new File(
@@ -0,0 +1,23 @@
+package org.develnext.jphp.core.compiler.jvm.ext.core;
+
+import org.develnext.jphp.core.compiler.jvm.JvmCompilerCase;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SystemTest extends JvmCompilerCase {
+
+    @Test
+    public void testProfiler(){
+        check("ext/core/System_001.php");
+    }
+
+    @Test
+    public void testMetrics(){
+        check("ext/core/System_002.php");
+    }
+}
@@ -25,6 +25,8 @@ public class FlowTest extends JvmCompilerCase {
         check("ext/standard/flow/basic_010.php");
         check("ext/standard/flow/basic_011.php");
         check("ext/standard/flow/basic_012.php");
+        check("ext/standard/flow/basic_013.php");
+        check("ext/standard/flow/lines_001.php");
     }
 
     @Test
@@ -33,6 +35,11 @@ public class FlowTest extends JvmCompilerCase {
         check("ext/standard/flow/sorting_002.php");
     }
 
+    @Test
+    public void testParallel() {
+        check("ext/standard/flow/parallel_001.php");
+    }
+
     @Test
     public void testToArray() {
         check("ext/standard/flow/toarray_001.php");
@@ -0,0 +1,19 @@
+package org.develnext.jphp.core.compiler.jvm.ext.standart;
+
+import org.develnext.jphp.core.compiler.jvm.JvmCompilerCase;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class FormatTest extends JvmCompilerCase {
+
+    @Test
+    public void testBinary() {
+        check("ext/standard/format/binary_001.php");
+        check("ext/standard/format/processor_001.php");
+    }
+}
@@ -22,5 +22,8 @@ public class IOTest extends JvmCompilerCase {
     public void testStream() {
         check("ext/standard/io/stream_001.php");
         check("ext/standard/io/stream_002.php");
+        check("ext/standard/io/stream_003.php");
+        check("ext/standard/io/stream_004.php");
+        check("ext/standard/io/stream_005.php");
     }
 }
@@ -0,0 +1,23 @@
+package org.develnext.jphp.core.compiler.jvm.ext.standart;
+
+import org.develnext.jphp.core.compiler.jvm.JvmCompilerCase;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class NetTest extends JvmCompilerCase {
+
+    @Test
+    public void testSelector() {
+        check("ext/standard/net/selector_001.php");
+    }
+
+    @Test
+    public void testSelectorRegisterAgain() {
+        check("ext/standard/net/selector_002.php");
+    }
+}
@@ -0,0 +1,116 @@
+package php.runtime.env;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+import php.runtime.Memory;
+import php.runtime.ext.core.StringFunctions;
+import php.runtime.ext.support.compile.CompileConstant;
+import php.runtime.ext.support.compile.CompileFunction;
+import php.runtime.ext.support.compile.LazyCompileFunction;
+import php.runtime.loader.RuntimeClassLoader;
+import php.runtime.memory.LongMemory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ScopeSnapshotTest {
+    private ScopeSnapshot restore() throws IOException {
+        ScopeSnapshot snapshot = ScopeSnapshot.capture(getClass().getClassLoader(), "php.runtime.ext.SPLExtension");
+        Assert.assertTrue(snapshot.isRecording());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        snapshot.write(output);
+
+        return ScopeSnapshot.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    private CompileScope newScope(ScopeSnapshot snapshot) {
+        CompileScope scope = new CompileScope(new RuntimeClassLoader(getClass().getClassLoader()), snapshot);
+        scope.registerExtension("php.runtime.ext.SPLExtension");
+        return scope;
+    }
+
+    @Test
+    public void testRestore() throws IOException {
+        ScopeSnapshot snapshot = restore();
+        Assert.assertFalse(snapshot.isRecording());
+        Assert.assertTrue(snapshot.getFunctionContainers().contains("php.runtime.ext.core.StringFunctions"));
+        Assert.assertTrue(snapshot.getConstantContainers().contains("php.runtime.ext.core.MathConstants"));
+
+        CompileScope scanned = newScope(null);
+        CompileScope restored = newScope(snapshot);
+
+        Assert.assertEquals(scanned.compileFunctionMap.keySet(), restored.compileFunctionMap.keySet());
+        Assert.assertEquals(scanned.compileConstantMap.keySet(), restored.compileConstantMap.keySet());
+
+        for (Map.Entry<String, CompileConstant> entry : scanned.compileConstantMap.entrySet()) {
+            Memory value = restored.compileConstantMap.get(entry.getKey()).value;
+
+            Assert.assertEquals(entry.getKey(), entry.getValue().value.getRealType(), value.getRealType());
+            Assert.assertEquals(entry.getKey(), entry.getValue().value.toString(), value.toString());
+        }
+
+        for (Map.Entry<String, CompileFunction> entry : scanned.compileFunctionMap.entrySet()) {
+            CompileFunction function = restored.compileFunctionMap.get(entry.getKey());
+
+            Assert.assertEquals(entry.getKey(), entry.getValue().getMinArgs(), function.getMinArgs());
+            Assert.assertEquals(entry.getKey(), entry.getValue().getMaxArgs(), function.getMaxArgs());
+            Assert.assertEquals(entry.getKey(), entry.getValue().getMethods().size(), function.getMethods().size());
+        }
+    }
+
+    @Test
+    public void testLazyFunctions() throws IOException {
+        CompileScope scope = newScope(restore());
+
+        CompileFunction function = scope.compileFunctionMap.get("chr");
+        Assert.assertTrue(function instanceof LazyCompileFunction);
+        Assert.assertFalse(((LazyCompileFunction) function).isResolved());
+
+        Environment environment = new Environment(scope);
+        CompileFunction.Method method = function.find(1);
+
+        Assert.assertTrue(((LazyCompileFunction) function).isResolved());
+        Assert.assertEquals("A", method.call(environment, LongMemory.valueOf(65)).toString());
+    }
+
+    @Test
+    public void testChangedContainer() throws IOException {
+        ScopeSnapshot snapshot = restore();
+        Assert.assertTrue(snapshot.isUpToDate(StringFunctions.class));
+
+        snapshot = restore();
+        snapshot.fingerprints.put("php.runtime.ext.core.StringFunctions", 1L); // as if the class was rebuilt
+
+        CompileScope scope = newScope(snapshot);
+        Assert.assertFalse(scope.compileFunctionMap.get("chr") instanceof LazyCompileFunction);
+        Assert.assertTrue(scope.compileFunctionMap.get("abs") instanceof LazyCompileFunction);
+        Assert.assertEquals(newScope(null).compileFunctionMap.keySet(), scope.compileFunctionMap.keySet());
+    }
+
+    @Test
+    public void testOutOfDate() throws IOException {
+        ScopeSnapshot snapshot = ScopeSnapshot.capture(getClass().getClassLoader());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        snapshot.write(output);
+
+        byte[] bytes = output.toByteArray();
+        bytes[5] ^= 1; // version
+
+        try {
+            ScopeSnapshot.read(new ByteArrayInputStream(bytes));
+            Assert.fail("Expected an exception");
+        } catch (IOException e) {
+            Assert.assertEquals("Unsupported version of scope snapshot", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package php.runtime.loader;
+
+import org.develnext.jphp.core.compiler.jvm.JvmCompiler;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+import php.runtime.env.Context;
+import php.runtime.env.Environment;
+import php.runtime.loader.dump.ModuleDumper;
+import php.runtime.reflection.ClassEntity;
+import php.runtime.reflection.ModuleEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ModuleArchiveTest {
+    private final Environment environment = new Environment();
+
+    private void add(ModuleArchive.Writer writer, String name, String code) throws IOException {
+        Context context = new Context(code, new File(name));
+        ModuleEntity module = new JvmCompiler(environment, context).compile(false);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ModuleDumper(context, environment, true).save(module, output);
+
+        writer.add(name, module, output.toByteArray());
+    }
+
+    private byte[] build() throws IOException {
+        ModuleArchive.Writer writer = new ModuleArchive.Writer();
+        add(writer, "lib/Foo.php", "<?php namespace lib; class Foo { static function answer() { return 42; } }");
+        add(writer, "lib/funcs.php", "<?php namespace lib; function twice($x) { return $x * 2; } function half($x) { return $x / 2; }");
+        add(writer, "JPHP-INF/.bootstrap.php", "<?php const VERSION = 1; class Bar {}");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(output);
+        return output.toByteArray();
+    }
+
+    @Test
+    public void testIndexes() throws IOException {
+        ModuleArchive archive = new ModuleArchive(ByteBuffer.wrap(build()));
+
+        Assert.assertEquals(3, archive.getModuleCount());
+
+        Assert.assertEquals(0, archive.findClass("LIB\\foo"));
+        Assert.assertEquals(1, archive.findFunction("lib\\twice"));
+        Assert.assertEquals(1, archive.findFunction("lib\\HALF"));
+        Assert.assertEquals(2, archive.findClass("bar"));
+        Assert.assertEquals(2, archive.findConstant("VERSION"));
+        Assert.assertEquals(-1, archive.findConstant("version"));
+        Assert.assertEquals(2, archive.findModule("jphp-inf/.bootstrap"));
+        Assert.assertEquals(-1, archive.findClass("unknown"));
+
+        Assert.assertEquals("lib/funcs.php", archive.getModuleName(1));
+    }
+
+    @Test
+    public void testLazyLoading() throws IOException {
+        StandaloneLoader loader = new StandaloneLoader();
+        loader.addArchive(new ModuleArchive(ByteBuffer.wrap(build())));
+
+        ClassEntity foo = loader.getScope().fetchUserClass("lib\\Foo");
+        Assert.assertNotNull(foo);
+        Assert.assertNotNull(foo.getNativeClass());
+        Assert.assertNull(loader.getScope().findUserModule("JPHP-INF/.bootstrap.php"));
+
+        try {
+            Assert.assertEquals(42, foo.findMethod("answer").invokeStatic(loader.getScopeEnvironment()).toLong());
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+
+        Assert.assertSame(loader.fetchModule("JPHP-INF/.bootstrap"), loader.fetchModule("JPHP-INF/.bootstrap"));
+    }
+
+    @Test
+    public void testMapStoredJarEntry() throws IOException {
+        byte[] bytes = build();
+        File jar = File.createTempFile("archive", ".jar");
+        jar.deleteOnExit();
+
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zip.write("Manifest-Version: 1.0\n".getBytes());
+            zip.closeEntry();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+
+            ZipEntry entry = new ZipEntry(ModuleArchive.ENTRY_NAME);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCrc(crc.getValue());
+
+            zip.putNextEntry(entry);
+            zip.write(bytes);
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+
+        ModuleArchive archive = ModuleArchive.map(jar, ModuleArchive.ENTRY_NAME);
+
+        Assert.assertNotNull(archive);
+        Assert.assertEquals(3, archive.getModuleCount());
+        Assert.assertEquals(0, archive.findClass("lib\\foo"));
+        Assert.assertNull(ModuleArchive.map(jar, "JPHP-INF/unknown"));
+    }
+}
@@ -0,0 +1,212 @@
+package php.runtime.memory.serialization;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+import php.runtime.Memory;
+import php.runtime.common.collections.map.LinkedMap;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.exceptions.support.ErrorException;
+import php.runtime.lang.StdClass;
+import php.runtime.memory.*;
+import php.runtime.memory.output.serialization.BinaryDeserializer;
+import php.runtime.memory.output.serialization.BinarySerializer;
+import php.runtime.memory.output.serialization.Serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BinarySerializerTest {
+
+    private final Environment environment = new Environment();
+
+    private byte[] serialize(Memory value){
+        return BinarySerializer.serialize(environment, TraceInfo.UNKNOWN, value);
+    }
+
+    private Memory copy(Memory value){
+        return new BinaryDeserializer(environment, TraceInfo.UNKNOWN).read(serialize(value));
+    }
+
+    @Test
+    public void testScalar(){
+        Assert.assertEquals(5, serialize(Memory.NULL).length);
+
+        Assert.assertTrue(copy(Memory.NULL).isNull());
+        Assert.assertTrue(copy(Memory.TRUE).identical(Memory.TRUE));
+        Assert.assertTrue(copy(Memory.FALSE).identical(Memory.FALSE));
+
+        for (long value : new long[]{0, 1, -1, 63, -64, 64, 100500, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Assert.assertEquals(value, copy(LongMemory.valueOf(value)).toLong());
+        }
+
+        Assert.assertEquals(6, serialize(LongMemory.valueOf(-64)).length);
+
+        Assert.assertEquals(3.14, copy(DoubleMemory.valueOf(3.14)).toDouble(), 0);
+        Assert.assertTrue(Double.isNaN(copy(DoubleMemory.valueOf(Double.NaN)).toDouble()));
+
+        Assert.assertEquals("foo\0bar", copy(new StringMemory("foo\0bar")).toString());
+        Assert.assertEquals("\u043f\u0440\u0438\u0432\u0435\u0442 \ud83d\ude00", copy(new StringMemory("\u043f\u0440\u0438\u0432\u0435\u0442 \ud83d\ude00")).toString());
+
+        Memory binary = copy(new BinaryMemory(new byte[]{0, (byte) 0xFF, 1}));
+        Assert.assertTrue(binary instanceof BinaryMemory);
+        Assert.assertArrayEquals(new byte[]{0, (byte) 0xFF, 1}, binary.getBinaryBytes());
+    }
+
+    @Test
+    public void testArrays(){
+        ArrayMemory array = new ArrayMemory(new LinkedMap(){{
+            put("x", 100);
+            put("y", "foo");
+        }});
+        array.refOfIndex(10).assign(new ArrayMemory(1, 2, 3));
+
+        Memory result = copy(array);
+        Assert.assertTrue(result.isArray());
+        Assert.assertTrue(result.identical(array));
+    }
+
+    @Test
+    public void testStringTable(){
+        ArrayMemory rows = new ArrayMemory();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new ArrayMemory(new LinkedMap(){{
+                put("identifier", 1);
+                put("description", "some text");
+            }}));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        new Serializer(environment, TraceInfo.UNKNOWN, sb).write(rows);
+
+        byte[] binary = serialize(rows);
+        Assert.assertTrue(binary.length < sb.length() / 5);
+        Assert.assertTrue(copy(rows).identical(rows));
+    }
+
+    @Test
+    public void testObjects(){
+        StdClass stdClass = new StdClass(environment);
+        stdClass.getProperties().refOfIndex("x").assign("foo");
+
+        ArrayMemory array = new ArrayMemory();
+        array.add(new ObjectMemory(stdClass));
+        array.add(new ObjectMemory(stdClass));
+
+        Memory result = copy(array);
+        Memory first = result.valueOfIndex(0);
+
+        Assert.assertTrue(first.isObject());
+
+        StdClass object = first.toObject(StdClass.class);
+        Assert.assertEquals("foo", object.getProperties().valueOfIndex("x").toString());
+        Assert.assertSame(object, result.valueOfIndex(1).toObject(StdClass.class));
+    }
+
+    @Test
+    public void testUnknownClass() throws IOException {
+        StdClass stdClass = new StdClass(environment);
+        stdClass.getProperties().refOfIndex("x").assign(new ArrayMemory(1, 2));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinarySerializer serializer = new BinarySerializer(environment, TraceInfo.UNKNOWN, output);
+        serializer.write(new ObjectMemory(stdClass));
+        serializer.write(new StringMemory("next"));
+
+        Charset charset = Charset.forName("ISO-8859-1");
+        byte[] data = new String(output.toByteArray(), charset).replace("stdClass", "Unknown1").getBytes(charset);
+
+        ByteArrayInputStream input = new ByteArrayInputStream(data);
+        BinaryDeserializer deserializer = new BinaryDeserializer(environment, TraceInfo.UNKNOWN);
+
+        try {
+            deserializer.read(input);
+            Assert.fail("Expected an error");
+        } catch (ErrorException e) {
+            Assert.assertEquals("Class 'Unknown1' not found", e.getMessage());
+        }
+
+        Assert.assertEquals("next", deserializer.read(input).toString());
+    }
+
+    @Test
+    public void testMalformedSize() throws IOException {
+        byte[] data = serialize(new StringMemory("foo"));
+        for (int i = 5; i < 8; i++) {
+            data[i] = (byte) 0xFF; // size of the string is 256M, the buffer must not be allocated for it
+        }
+        data[8] = 0x7F;
+
+        Environment environment = new Environment();
+        environment.setErrorFlags(0);
+
+        BinaryDeserializer deserializer = new BinaryDeserializer(environment, TraceInfo.UNKNOWN);
+        Assert.assertSame(Memory.FALSE, deserializer.read(new ByteArrayInputStream(data)));
+        Assert.assertSame(Memory.FALSE, deserializer.read(data));
+    }
+
+    @Test
+    public void testSharedReferences(){
+        ReferenceMemory value = new ReferenceMemory(LongMemory.valueOf(1));
+
+        ArrayMemory array = new ArrayMemory();
+        array.refOfIndex("p").assignRef(value);
+        array.refOfIndex("q").assignRef(value);
+        array.refOfIndex("r").assign(2);
+
+        ArrayMemory result = copy(array).toValue(ArrayMemory.class);
+        Assert.assertEquals(1, result.valueOfIndex("q").toLong());
+
+        result.refOfIndex("p").assign(100);
+        Assert.assertEquals(100, result.valueOfIndex("q").toLong());
+        Assert.assertEquals(2, result.valueOfIndex("r").toLong());
+    }
+
+    @Test
+    public void testSelfReferences(){
+        ArrayMemory array = new ArrayMemory();
+        array.add(1);
+        array.refOfIndex(1).assignRef(array.refOfIndex(0));
+        array.add(new ArrayMemory(1, 2));
+
+        ArrayMemory result = copy(array).toValue(ArrayMemory.class);
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(1, result.valueOfIndex(1).toLong());
+
+        result.refOfIndex(0).assign(5);
+        Assert.assertEquals(5, result.valueOfIndex(1).toLong());
+
+        // the same array twice is not a reference
+        ArrayMemory inner = new ArrayMemory(1, 2);
+        ArrayMemory twice = new ArrayMemory();
+        twice.add(inner);
+        twice.add(inner);
+
+        result = copy(twice).toValue(ArrayMemory.class);
+        result.refOfIndex(0).refOfIndex(0).assign(10);
+        Assert.assertEquals(1, result.valueOfIndex(1).valueOfIndex(0).toLong());
+    }
+
+    @Test
+    public void testStreams() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinarySerializer serializer = new BinarySerializer(environment, TraceInfo.UNKNOWN, output);
+        serializer.write(new StringMemory("first"));
+        serializer.write(LongMemory.valueOf(2));
+
+        ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+        BinaryDeserializer deserializer = new BinaryDeserializer(environment, TraceInfo.UNKNOWN);
+
+        Assert.assertEquals("first", deserializer.read(input).toString());
+        Assert.assertEquals(2, deserializer.read(input).toLong());
+        Assert.assertEquals(-1, input.read());
+    }
+}
@@ -0,0 +1,15 @@
+--TEST--
+System::startProfiler() in a concurrent environment
+--FILE--
+<?php
+
+use php\lang\System;
+
+var_dump(System::startProfiler());
+var_dump(System::getProfileSamples());
+
+?>
+--EXPECTF--
+Warning: System::startProfiler(): concurrent environment cannot be profiled, call stacks are kept per thread in %s on line %d at pos %d
+bool(false)
+int(0)
@@ -0,0 +1,43 @@
+--TEST--
+Silence operator in a concurrent environment, exceptions inside silenced expressions
+--FILE--
+<?php
+function thrower() {
+    throw new Exception('thrown');
+}
+
+function catcher() {
+    try {
+        thrower();
+    } catch (Exception $e) {
+        // the expression is still silenced after the exception
+    }
+
+    return error_reporting();
+}
+
+$level = error_reporting();
+
+try {
+    @thrower();
+} catch (Exception $e) {
+    echo $e->getMessage(), "\n";
+}
+var_dump(error_reporting() == $level);
+
+var_dump(@catcher());
+var_dump(@catcher() + @catcher());
+var_dump(error_reporting() == $level);
+
+var_dump(@include 'missing_file_of_silent_001.php');
+var_dump(error_reporting() == $level);
+
+?>
+--EXPECT--
+thrown
+bool(true)
+int(0)
+int(0)
+bool(true)
+bool(false)
+bool(true)
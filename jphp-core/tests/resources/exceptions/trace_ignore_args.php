@@ -0,0 +1,38 @@
+--TEST--
+Test exception trace with and without args
+--FILE--
+<?php
+function test($a, $b) {
+    throw new Exception("foobar");
+}
+
+try {
+    test(1, 'x');
+} catch (Exception $e) {
+    $trace = $e->getTrace();
+    var_dump($e->getMessage(), $trace[0]['function'], $trace[0]['args']);
+    echo $e->getTraceAsString(), "\n";
+}
+
+ini_set('zend.exception_ignore_args', '1');
+
+try {
+    test(2, 'y');
+} catch (Exception $e) {
+    $trace = $e->getTrace();
+    var_dump($trace[0]['function'], isset($trace[0]['args']));
+}
+?>
+--EXPECTF--
+string(6) "foobar"
+string(4) "test"
+array(2) {
+  [0]=>
+  int(1)
+  [1]=>
+  string(1) "x"
+}
+#0 test() called at %s
+#1 {main}
+string(4) "test"
+bool(false)
@@ -0,0 +1,45 @@
+--TEST--
+System sampling profiler
+--FILE--
+<?php
+use php\lang\System;
+use php\lib\String;
+
+function busy() {
+    global $counter;
+
+    for ($i = 0; $i < 10000; $i++) {
+        $counter += $i % 7;
+    }
+}
+
+function work($count) {
+    global $counter;
+
+    for ($i = 0; $i < $count; $i++) {
+        busy();
+    }
+    return $counter;
+}
+
+System::resetProfiler();
+System::startProfiler(1);
+work(3000);
+System::stopProfiler();
+
+var_dump(System::getProfileSamples() > 0);
+
+$profile = System::getProfile();
+var_dump(String::startsWith($profile, '{main}'));
+var_dump(String::pos($profile, ';work (') !== false);
+var_dump(String::pos($profile, ';busy ') !== false);
+
+System::resetProfiler();
+var_dump(System::getProfileSamples());
+?>
+--EXPECT--
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+int(0)
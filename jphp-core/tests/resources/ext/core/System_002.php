@@ -0,0 +1,44 @@
+--TEST--
+System metrics
+--FILE--
+<?php
+
+use php\lang\System;
+
+System::enableMetrics();
+System::resetMetrics();
+
+var_dump(System::isMetricsEnabled());
+
+function test($a) { $a[] = 1; return $a; }
+
+$arr = [1, 2, 3];
+for ($i = 0; $i < 10; $i++) {
+    test($arr);
+}
+
+try {
+    throw new Exception('foo');
+} catch (Exception $e) {
+}
+
+$metrics = System::getMetrics();
+
+var_dump($metrics['array.cowCopies'] > 0);
+var_dump($metrics['exceptions.created'] >= 1);
+var_dump($metrics['callCache.hits'] + $metrics['callCache.misses'] > 0);
+var_dump($metrics['scope.classes'] > 0);
+var_dump(isset($metrics['autoload.time.p99']));
+
+System::enableMetrics(false);
+var_dump(System::isMetricsEnabled());
+
+?>
+--EXPECT--
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(false)
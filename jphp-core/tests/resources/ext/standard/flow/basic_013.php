@@ -0,0 +1,70 @@
+--TEST--
+Flow fused stages and sum/avg/min/max
+--FILE--
+<?php
+
+use php\io\MemoryStream;
+use php\lib\String as str;
+use php\util\Flow;
+
+$flow = Flow::of([5, 1, 8, 3, 9, 2])->withKeys()
+    ->map(function ($x, $key) { return $x * 10 + $key; })
+    ->find(function ($x) { return $x > 20; })
+    ->skip(1)
+    ->limit(2);
+
+foreach ($flow as $key => $value) {
+    echo "$key => $value\n";
+}
+
+var_dump(Flow::of(['a' => 1, 'b' => 2, 'c' => 3])->skip(1)->keys()->toArray());
+var_dump(Flow::of(['x' => 1, 'y' => 2])->map(function ($v, $k) { return $k . $v; })->withKeys()->toArray());
+
+$stream = new MemoryStream();
+$stream->write('abcdef');
+$stream->seek(0);
+var_dump(Flow::ofStream($stream)->limit(2)->toArray(), $stream->read(1));
+
+var_dump(Flow::of([1, 2, 3, 4])->sum());
+var_dump(Flow::of([1, 2.5])->sum());
+var_dump(Flow::of([])->sum());
+var_dump(Flow::of([1, 2, 3, 4])->avg());
+var_dump(Flow::of([])->avg());
+var_dump(Flow::of([3, 1, 4, 1, 5])->min());
+var_dump(Flow::of([3, 1, 4, 1, 5])->max());
+var_dump(Flow::of(['aaa', 'b', 'cc'])->max(function ($a, $b) { return str::length($a) - str::length($b); }));
+var_dump(Flow::of([])->max());
+var_dump(Flow::ofRange(1, 100)->find(function ($x) { return $x % 2; })->map(function ($x) { return $x * $x; })->limit(3)->sum());
+?>
+--EXPECT--
+2 => 82
+3 => 33
+array(2) {
+  [0]=>
+  string(1) "b"
+  [1]=>
+  string(1) "c"
+}
+array(2) {
+  ["x"]=>
+  string(2) "x1"
+  ["y"]=>
+  string(2) "y2"
+}
+array(2) {
+  [0]=>
+  string(1) "a"
+  [1]=>
+  string(1) "b"
+}
+string(1) "c"
+int(10)
+float(3.5)
+int(0)
+float(2.5)
+NULL
+int(1)
+int(5)
+string(3) "aaa"
+NULL
+int(35)
@@ -0,0 +1,36 @@
+--TEST--
+Flow::ofLines() - lazy lines of a stream
+--FILE--
+<?php
+
+use php\io\Stream;
+use php\util\Flow;
+
+$stream = Stream::of('php://memory', 'w+');
+$stream->write("one\ntwo\r\n\nfour");
+$stream->seek(0);
+
+foreach (Flow::ofLines($stream) as $i => $line) {
+    var_dump($i, $line);
+}
+
+$stream->seek(0);
+var_dump(Flow::ofLines($stream)->find(function ($line) { return $line != ''; })->toArray());
+?>
+--EXPECT--
+int(0)
+string(3) "one"
+int(1)
+string(3) "two"
+int(2)
+string(0) ""
+int(3)
+string(4) "four"
+array(3) {
+  [0]=>
+  string(3) "one"
+  [1]=>
+  string(3) "two"
+  [2]=>
+  string(4) "four"
+}
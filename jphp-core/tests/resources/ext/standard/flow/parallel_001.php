@@ -0,0 +1,62 @@
+--TEST--
+Flow::parallel() - ordered results of several threads
+--FILE--
+<?php
+
+use php\util\Flow;
+
+$items = [];
+for ($i = 0; $i < 1000; $i++) $items[] = ($i * 7919) % 1000;
+
+$flow = Flow::of($items)->parallel(4);
+
+$odd = $flow->map(function ($x) { return $x * 2 + 1; })->filter(function ($x) { return $x % 3 == 0; });
+var_dump($odd->count());
+var_dump($odd->toArray() === Flow::of($items)->map(function ($x) { return $x * 2 + 1; })->find(function ($x) { return $x % 3 == 0; })->toArray());
+
+var_dump($flow->reduce(function ($r, $x) { return $r + $x; }));
+
+$sorted = $flow->sort();
+var_dump(count($sorted), $sorted[0], $sorted[999], $sorted === Flow::of($items)->sort());
+
+$desc = $flow->sort(function ($a, $b) { return $b - $a; });
+var_dump($desc[0], $desc[999]);
+
+$groups = $flow->group(function ($x) { return $x % 3; });
+$total = 0;
+foreach ($groups as $key => $group) $total += count($group);
+var_dump(count($groups), $total, $groups[1][0]);
+
+var_dump(Flow::of(['a' => 1, 'b' => 2, 'c' => 3])->withKeys()->parallel(2)->map(function ($x, $key) { return $key . $x; })->toArray());
+var_dump(Flow::of([])->parallel()->toArray());
+
+try {
+    $flow->map(function ($x) { if ($x == 500) throw new Exception("fail $x"); return $x; })->toArray();
+} catch (Exception $e) {
+    var_dump($e->getMessage());
+}
+?>
+--EXPECT--
+int(333)
+bool(true)
+int(499500)
+int(1000)
+int(0)
+int(999)
+bool(true)
+int(999)
+int(0)
+int(3)
+int(1000)
+int(919)
+array(3) {
+  ["a"]=>
+  string(2) "a1"
+  ["b"]=>
+  string(2) "b2"
+  ["c"]=>
+  string(2) "c3"
+}
+array(0) {
+}
+string(8) "fail 500"
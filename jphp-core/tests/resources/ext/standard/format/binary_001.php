@@ -0,0 +1,114 @@
+--TEST--
+igbinary_serialize() and igbinary_unserialize()
+--FILE--
+<?php
+class A {
+    public $x = 1;
+    protected $y = 'y';
+    private $z = array(1.5, true, null);
+    public $self;
+}
+
+class B {
+    public $a, $b;
+
+    function __sleep() {
+        return array('a');
+    }
+
+    function __wakeup() {
+        echo "wakeup\n";
+    }
+}
+
+$values = array(
+    null, true, false, 0, -1, 100500, 9223372036854775807, -9223372036854775807, 3.14, -0.5,
+    '', 'foo', "привет \x01", array(), array(1, 2, 3), array('a' => 1, 10 => 'b', 'c' => array('a' => 2))
+);
+
+foreach ($values as $value) {
+    var_dump(igbinary_unserialize(igbinary_serialize($value)) === $value);
+}
+
+$a = new A();
+$a->self = $a;
+
+$copy = igbinary_unserialize(igbinary_serialize($a));
+var_dump(get_class($copy), $copy->x, $copy->self === $copy);
+
+$shared = new stdClass();
+$shared->name = 'shared';
+
+$list = igbinary_unserialize(igbinary_serialize(array($shared, $shared)));
+var_dump($list[0] === $list[1], $list[0]->name);
+
+$b = new B();
+$b->a = 'a';
+$b->b = 'b';
+$b = igbinary_unserialize(igbinary_serialize($b));
+var_dump($b->a, isset($b->b));
+
+$x = 1;
+$refs = array(&$x, &$x);
+$refs = igbinary_unserialize(igbinary_serialize($refs));
+$refs[0] = 2;
+var_dump($refs);
+
+$rows = array();
+for ($i = 0; $i < 100; $i++) {
+    $rows[] = array('id' => $i, 'name' => 'name', 'enabled' => true);
+}
+
+var_dump(igbinary_unserialize(igbinary_serialize($rows)) === $rows);
+
+$a = array(1);
+$a[1] = &$a[0];
+$a = igbinary_unserialize(igbinary_serialize($a));
+$a[0] = 3;
+var_dump($a);
+
+var_dump(igbinary_unserialize('foobar'));
+var_dump(igbinary_unserialize("JBS\x02\x08\x05\x05\x03foo"));
+
+--EXPECTF--
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+bool(true)
+string(1) "A"
+int(1)
+bool(true)
+bool(true)
+string(6) "shared"
+wakeup
+string(1) "a"
+bool(false)
+array(2) {
+  [0]=>
+  int(2)
+  [1]=>
+  int(2)
+}
+bool(true)
+array(2) {
+  [0]=>
+  int(3)
+  [1]=>
+  int(3)
+}
+Warning: unserialize(): Error at offset 0 of binary data in %s on line %d at pos %d
+bool(false)
+Warning: unserialize(): Error at offset %d of binary data in %s on line %d at pos %d
+bool(false)
@@ -0,0 +1,33 @@
+--TEST--
+php\format\BinaryProcessor
+--FILE--
+<?php
+use php\format\BinaryProcessor;
+use php\format\Processor;
+use php\io\MemoryStream;
+
+$processor = new BinaryProcessor();
+var_dump($processor instanceof Processor);
+
+function value() {
+    return array('id' => 1, 'tags' => array('a', 'b'), 'price' => 9.99);
+}
+
+var_dump($processor->parse($processor->format(value())) === value());
+
+$stream = new MemoryStream();
+$processor->formatTo(value(), $stream);
+$processor->formatTo('second', $stream);
+$processor->formatTo(null, $stream);
+$stream->seek(0);
+
+var_dump($processor->parse($stream) === value());
+var_dump($processor->parse($stream));
+var_dump($processor->parse($stream));
+
+--EXPECT--
+bool(true)
+bool(true)
+bool(true)
+string(6) "second"
+NULL
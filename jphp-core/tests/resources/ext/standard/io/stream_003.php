@@ -0,0 +1,71 @@
+--TEST--
+Test php\io\FileStream - buffered mode and readLine()
+--FILE--
+<?php
+
+use php\io\File;
+use php\io\FileStream;
+
+$file = File::createTemp('stream', '.txt');
+$file->deleteOnExit();
+
+$stream = new FileStream($file, 'w+', ['buffered' => true, 'bufferSize' => 4]);
+$stream->write("first\r\n");
+$stream->write("se");
+$stream->write("cond\n\nlast");
+var_dump($stream->getPosition(), $stream->length());
+
+$stream->seek(0);
+var_dump($stream->readLine());
+var_dump($stream->read(3));
+var_dump($stream->readLine());
+var_dump($stream->readLine());
+var_dump($stream->eof());
+var_dump($stream->readLine());
+var_dump($stream->eof());
+var_dump($stream->readLine());
+
+$stream->seek(2);
+var_dump($stream->read(3), $stream->getFilePointer());
+$stream->write('X');
+$stream->seek(0);
+var_dump($stream->readFully());
+var_dump($stream->slice(7, 6));
+$stream->close();
+
+$stream = new FileStream($file);
+while (($line = $stream->readLine()) !== null) {
+    var_dump($line);
+}
+$stream->close();
+
+try {
+    $stream->readLine();
+} catch (\php\io\IOException $e) {
+    var_dump($e->getMessage());
+}
+
+?>
+--EXPECT--
+int(19)
+int(19)
+string(5) "first"
+string(3) "sec"
+string(3) "ond"
+string(0) ""
+bool(false)
+string(4) "last"
+bool(true)
+NULL
+string(3) "rst"
+int(5)
+string(19) "firstX
+second
+
+last"
+string(6) "second"
+string(6) "firstX"
+string(6) "second"
+string(0) ""
+string(4) "last"
+string(13) "Stream Closed"
@@ -0,0 +1,55 @@
+--TEST--
+Test php\io\FileStream - mmap mode
+--FILE--
+<?php
+
+use php\io\File;
+use php\io\FileStream;
+
+$file = File::createTemp('stream', '.txt');
+$file->deleteOnExit();
+
+$stream = new FileStream($file, 'w');
+$stream->write("alpha\nbeta\ngamma");
+$stream->close();
+
+$stream = new FileStream($file, 'r', ['mmap' => true]);
+var_dump($stream->length());
+var_dump($stream->readLine());
+var_dump($stream->read(100));
+var_dump($stream->read(1), $stream->eof());
+
+$stream->seek(6);
+var_dump($stream->readLine(), $stream->getPosition());
+var_dump($stream->slice(11, 3), $stream->getPosition());
+var_dump($stream->readFully());
+
+try {
+    $stream->write('x');
+} catch (\php\io\IOException $e) {
+    var_dump($e->getMessage());
+}
+
+$stream->close();
+
+try {
+    new FileStream($file, 'w', ['mmap' => true]);
+} catch (\php\io\IOException $e) {
+    var_dump($e->getMessage());
+}
+
+?>
+--EXPECT--
+int(16)
+string(5) "alpha"
+string(10) "beta
+gamma"
+NULL
+bool(true)
+string(4) "beta"
+int(11)
+string(3) "gam"
+int(11)
+string(5) "gamma"
+string(36) "Cannot write to a memory-mapped file"
+string(49) "Memory-mapped mode is supported only for 'r' mode"
@@ -0,0 +1,69 @@
+--TEST--
+Test php\io\Stream::pipeTo()
+--FILE--
+<?php
+
+use php\io\File;
+use php\io\FileStream;
+use php\io\MemoryStream;
+
+$file = File::createTemp('stream', '.txt');
+$file->deleteOnExit();
+
+$copy = File::createTemp('stream', '.txt');
+$copy->deleteOnExit();
+
+$stream = new FileStream($file, 'w');
+$stream->write("first\nsecond\nlast\n");
+$stream->close();
+
+$source = new FileStream($file, 'r', ['buffered' => true]);
+var_dump($source->readLine());
+
+$target = new FileStream($copy, 'w', ['buffered' => true]);
+$target->write('copy: ');
+var_dump($source->pipeTo($target), $source->eof(), $target->getPosition());
+$target->write('end');
+$target->close();
+
+try {
+    $source->pipeTo($target);
+} catch (\php\io\IOException $e) {
+    var_dump($e->getMessage());
+}
+$source->close();
+
+var_dump(FileStream::getContents($copy));
+
+$source = new FileStream($file, 'r', ['mmap' => true]);
+$source->seek(6);
+$memory = new MemoryStream();
+var_dump($source->pipeTo($memory));
+$memory->seek(0);
+var_dump($memory->readFully());
+
+$source->seek(13);
+var_dump($source->pipeTo());
+$source->close();
+
+$memory->seek(7);
+var_dump($memory->pipeTo());
+
+?>
+--EXPECT--
+string(5) "first"
+int(12)
+bool(true)
+int(18)
+string(13) "Stream Closed"
+string(21) "copy: second
+last
+end"
+int(12)
+string(12) "second
+last
+"
+last
+int(5)
+last
+int(5)
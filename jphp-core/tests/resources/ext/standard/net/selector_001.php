@@ -0,0 +1,88 @@
+--TEST--
+Test php\net\Selector - echo server and clients over loopback in one thread
+--FILE--
+<?php
+
+use php\lib\String as str;
+use php\net\Selector;
+use php\net\ServerSocketChannel;
+use php\net\SocketChannel;
+
+$selector = new Selector();
+
+$server = new ServerSocketChannel();
+$server->bind('127.0.0.1', 0);
+var_dump($server->isBound(), $server->isBlocking());
+
+$selector->register($server, Selector::OP_ACCEPT, function (ServerSocketChannel $server, $ops, Selector $selector) {
+    while ($client = $server->accept()) {
+        $selector->register($client, Selector::OP_READ, function (SocketChannel $client, $ops) {
+            $data = $client->read();
+
+            if ($data === null) {
+                $client->close();
+            } else {
+                $client->write(str::upper($data));
+            }
+        });
+    }
+});
+
+$replies = [];
+$done = 0;
+$big = str::repeat('x', 200000);
+
+for ($i = 0; $i < 3; $i++) {
+    $client = new SocketChannel();
+    $client->connect('127.0.0.1', $server->getLocalPort());
+
+    $selector->register($client, Selector::OP_CONNECT, function (SocketChannel $client, $ops, Selector $selector) use ($i, $big, &$replies, &$done) {
+        if ($ops & Selector::OP_CONNECT) {
+            $client->finishConnect();
+            $client->write($i == 2 ? $big : "hello $i;");
+            $replies[$i] = '';
+            $selector->interest($client, Selector::OP_READ);
+            return;
+        }
+
+        $replies[$i] .= $client->read();
+
+        if (str::length($replies[$i]) == ($i == 2 ? str::length($big) : 8)) {
+            $client->close();
+
+            if (++$done == 3) {
+                $selector->stop();
+            }
+        }
+    });
+}
+
+var_dump($selector->count());
+
+$selector->run();
+
+var_dump($replies[0], $replies[1], $replies[2] === str::upper($big));
+var_dump($selector->isRunning());
+
+while ($selector->count() > 1) {
+    $selector->select(100);
+}
+var_dump($selector->count(), $selector->select(0));
+
+$server->close();
+$selector->close();
+
+var_dump(Selector::current() === Selector::current());
+
+?>
+--EXPECT--
+bool(true)
+bool(false)
+int(4)
+string(8) "HELLO 0;"
+string(8) "HELLO 1;"
+bool(true)
+bool(false)
+int(1)
+int(0)
+bool(true)
@@ -0,0 +1,59 @@
+--TEST--
+Test php\net\Selector - registration of a channel again in its callback, unsupported operations
+--FILE--
+<?php
+
+use php\net\Selector;
+use php\net\ServerSocketChannel;
+use php\net\SocketChannel;
+
+$selector = new Selector();
+
+$server = new ServerSocketChannel();
+$server->bind('127.0.0.1', 0);
+
+try {
+    $selector->register($server, Selector::OP_READ, function () {});
+} catch (Exception $e) {
+    var_dump($e->getMessage());
+}
+
+$accepted = [];
+$selector->register($server, Selector::OP_ACCEPT, function (ServerSocketChannel $server) use (&$accepted) {
+    while ($client = $server->accept()) {
+        $accepted[] = $client;
+    }
+});
+
+$client = new SocketChannel();
+$client->connect('127.0.0.1', $server->getLocalPort());
+
+$selector->register($client, Selector::OP_CONNECT, function (SocketChannel $client, $ops, Selector $selector) {
+    $client->finishConnect();
+
+    $selector->unregister($client);
+    var_dump($selector->isRegistered($client));
+
+    $selector->register($client, Selector::OP_WRITE, function (SocketChannel $client, $ops, Selector $selector) {
+        var_dump($ops == Selector::OP_WRITE);
+
+        $client->close();
+        $selector->stop();
+    });
+    var_dump($selector->isRegistered($client));
+});
+
+$selector->run();
+
+var_dump($selector->count());
+
+$server->close();
+$selector->close();
+
+?>
+--EXPECT--
+string(40) "Unsupported operations 1 for the channel"
+bool(false)
+bool(true)
+bool(true)
+int(1)
@@ -7,12 +7,14 @@ import php.runtime.env.CompileScope
 import php.runtime.env.Context
 import php.runtime.env.Environment
 import php.runtime.ext.support.Extension
+import php.runtime.loader.ModuleArchive
 import php.runtime.loader.StandaloneLoader
 import php.runtime.loader.dump.ModuleDumper
 import php.runtime.reflection.ModuleEntity
 import php.runtime.reflection.support.Entity
 
 import java.nio.charset.Charset
+import java.util.zip.CRC32
 import java.util.zip.ZipEntry
 import java.util.zip.ZipFile
 import java.util.zip.ZipOutputStream
@@ -127,6 +129,13 @@ class GradlePhpProject extends GradleBaseProject {
 
         classesDump.writeInt(modules.size());
 
+        def archiveFile = new File(tmpBuildDir, '/$php_modules.archive');
+        def archive = config.moduleArchive ? new ModuleArchive.Writer() : null;
+
+        if (archiveFile.exists()) {
+            archiveFile.delete();
+        }
+
         modules.each {
             def moduleDumper = new ModuleDumper(it.context, env, true);
             moduleDumper.includeData = false;
@@ -163,6 +172,25 @@ class GradlePhpProject extends GradleBaseProject {
 
             moduleDumper.save(it, new FileOutputStream(file));
             classFiles.add(file)
+
+            if (archive != null) {
+                def archiveDumper = new ModuleDumper(it.context, env, true);
+
+                def dumpOutput = new ByteArrayOutputStream();
+                archiveDumper.save(it, dumpOutput);
+
+                archive.add(name, it, dumpOutput.toByteArray());
+            }
+        }
+
+        if (archive != null) {
+            def archiveOutput = new FileOutputStream(archiveFile);
+
+            try {
+                archive.write(archiveOutput);
+            } finally {
+                archiveOutput.close();
+            }
         }
 
 
@@ -234,6 +262,25 @@ class GradlePhpProject extends GradleBaseProject {
             }
         jarFile.closeEntry();
 
+        def archiveFile = new File(tmpBuildDir, '/$php_modules.archive');
+
+        if (archiveFile.isFile()) {
+            // stored without compression to be memory-mapped by StandaloneLoader.
+            byte[] archiveBytes = archiveFile.bytes;
+            def crc = new CRC32();
+            crc.update(archiveBytes);
+
+            def archiveEntry = new ZipEntry(ModuleArchive.ENTRY_NAME);
+            archiveEntry.setMethod(ZipEntry.STORED);
+            archiveEntry.setSize(archiveBytes.length);
+            archiveEntry.setCompressedSize(archiveBytes.length);
+            archiveEntry.setCrc(crc.value);
+
+            jarFile.putNextEntry(archiveEntry);
+            jarFile.write(archiveBytes);
+            jarFile.closeEntry();
+        }
+
         jarFile.close();
 
         zipFiles.each {
@@ -344,6 +391,21 @@ class GradlePhpProject extends GradleBaseProject {
             }
         }
 
+        def archiveEntry = zipFile.getEntry(ModuleArchive.ENTRY_NAME);
+
+        if (archiveEntry != null) {
+            // not mapped, the compiled jar of the project is rewritten by build().
+            def stream = zipFile.getInputStream(archiveEntry);
+
+            try {
+                loader.addArchive(ModuleArchive.read(stream));
+            } finally {
+                stream.close();
+            }
+
+            return;
+        }
+
         def classesDumpEntry = zipFile.getEntry("JPHP-INF/classes.dump");
 
         if (classesDumpEntry != null) {
@@ -7,4 +7,10 @@ class PhpGradleExtension {
     ArrayList<String> extensions = ['php', 'phtml', 'php5']
 
     def charset = "UTF-8"
+
+    /**
+     * Pack compiled modules into JPHP-INF/modules.archive, it is memory-mapped
+     * and its modules are loaded lazily at startup.
+     */
+    def moduleArchive = true
 }
@@ -0,0 +1,36 @@
+package org.develnext.jphp.ext.jfr;
+
+import php.runtime.env.CompileScope;
+import php.runtime.ext.support.Extension;
+
+/**
+ * Java Flight Recorder events of the runtime: compilation and loading of modules, includes, autoload,
+ * slow php calls, uncaught exceptions, warnings and output flushes (category "JPHP").
+ *
+ * The threshold of slow calls can be set in millis by the system property jphp.jfr.slowCallThreshold (default 20),
+ * 0 disables timing of calls.
+ */
+public class JfrExtension extends Extension {
+    public final static String SLOW_CALL_THRESHOLD_PROPERTY = "jphp.jfr.slowCallThreshold";
+
+    @Override
+    public Status getStatus() {
+        return Status.EXPERIMENTAL;
+    }
+
+    @Override
+    public void onRegister(CompileScope scope) {
+        long threshold = JfrRuntimeListener.DEFAULT_SLOW_CALL_THRESHOLD;
+
+        String property = System.getProperty(SLOW_CALL_THRESHOLD_PROPERTY);
+        if (property != null) {
+            try {
+                threshold = Long.parseLong(property.trim()) * 1000000L;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + SLOW_CALL_THRESHOLD_PROPERTY + ": " + property);
+            }
+        }
+
+        JfrRuntimeListener.install(threshold);
+    }
+}
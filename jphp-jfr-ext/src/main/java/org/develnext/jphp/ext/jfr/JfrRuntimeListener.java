@@ -0,0 +1,245 @@
+package org.develnext.jphp.ext.jfr;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.develnext.jphp.ext.jfr.event.*;
+import php.runtime.env.CallStackItem;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.env.message.SystemMessage;
+import php.runtime.exceptions.support.PhpException;
+import php.runtime.lang.BaseException;
+import php.runtime.monitor.RuntimeListener;
+import php.runtime.monitor.RuntimeMonitor;
+import php.runtime.reflection.ModuleEntity;
+
+/**
+ * Emits runtime events as JFR events.
+ *
+ * The listener is registered in {@link RuntimeMonitor} only while there is a running recording,
+ * so without recordings the runtime works as without instrumentation.
+ */
+public class JfrRuntimeListener extends RuntimeListener implements FlightRecorderListener {
+    public final static long DEFAULT_SLOW_CALL_THRESHOLD = 20 * 1000000L; // 20 ms
+
+    private static JfrRuntimeListener instance;
+
+    private final long slowCallThreshold;
+
+    private boolean active = false;
+    private long previousSlowCallThreshold;
+    private long appliedSlowCallThreshold = -1;
+
+    public JfrRuntimeListener(long slowCallThreshold) {
+        this.slowCallThreshold = slowCallThreshold;
+    }
+
+    /**
+     * Installs the listener once per process.
+     * @param slowCallThreshold in nanos, 0 - slow calls are not recorded
+     */
+    public static synchronized JfrRuntimeListener install(long slowCallThreshold) {
+        if (instance == null) {
+            instance = new JfrRuntimeListener(slowCallThreshold);
+            FlightRecorder.addListener(instance);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Removes the installed listener and restores the slow call threshold of {@link RuntimeMonitor}.
+     */
+    public static synchronized void uninstall() {
+        if (instance != null) {
+            FlightRecorder.removeListener(instance);
+            instance.deactivate();
+            instance = null;
+        }
+    }
+
+    public long getSlowCallThreshold() {
+        return slowCallThreshold;
+    }
+
+    @Override
+    public void recorderInitialized(FlightRecorder recorder) {
+        update(recorder);
+    }
+
+    @Override
+    public void recordingStateChanged(Recording recording) {
+        update(FlightRecorder.getFlightRecorder());
+    }
+
+    protected synchronized void update(FlightRecorder recorder) {
+        boolean running = false;
+        for (Recording recording : recorder.getRecordings()) {
+            if (recording.getState() == RecordingState.RUNNING) {
+                running = true;
+                break;
+            }
+        }
+
+        if (running) {
+            activate();
+        } else {
+            deactivate();
+        }
+    }
+
+    protected synchronized void activate() {
+        if (active)
+            return;
+
+        active = true;
+        previousSlowCallThreshold = RuntimeMonitor.getSlowCallThreshold();
+        appliedSlowCallThreshold = -1;
+
+        long threshold = previousSlowCallThreshold;
+        if (slowCallThreshold > 0 && (threshold == 0 || threshold > slowCallThreshold)) {
+            RuntimeMonitor.setSlowCallThreshold(slowCallThreshold);
+            appliedSlowCallThreshold = slowCallThreshold;
+        }
+
+        RuntimeMonitor.addListener(this);
+    }
+
+    protected synchronized void deactivate() {
+        if (!active)
+            return;
+
+        active = false;
+        RuntimeMonitor.removeListener(this);
+
+        // restore only if nobody else has changed the threshold meanwhile
+        if (appliedSlowCallThreshold != -1 && RuntimeMonitor.getSlowCallThreshold() == appliedSlowCallThreshold)
+            RuntimeMonitor.setSlowCallThreshold(previousSlowCallThreshold);
+
+        appliedSlowCallThreshold = -1;
+    }
+
+    @Override
+    public void onModuleCompile(ModuleEntity module, int sourceSize, int bytecodeSize, long duration) {
+        ModuleCompileEvent event = new ModuleCompileEvent();
+        if (event.isEnabled()) {
+            event.module = module.getName();
+            event.sourceSize = sourceSize;
+            event.bytecodeSize = bytecodeSize;
+            event.elapsed = duration;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onModuleLoad(ModuleEntity module, int bytecodeSize, long duration) {
+        ModuleLoadEvent event = new ModuleLoadEvent();
+        if (event.isEnabled()) {
+            event.module = module.getName();
+            event.bytecodeSize = bytecodeSize;
+            event.elapsed = duration;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onImport(Environment env, String path, String function, boolean cached, boolean found, long duration) {
+        ImportEvent event = new ImportEvent();
+        if (event.isEnabled()) {
+            event.path = path;
+            event.function = function;
+            event.cached = cached;
+            event.found = found;
+            event.elapsed = duration;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onAutoload(Environment env, String className, boolean loaded, long duration) {
+        AutoloadEvent event = new AutoloadEvent();
+        if (event.isEnabled()) {
+            event.className = className;
+            event.loaded = loaded;
+            event.elapsed = duration;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onSlowCall(Environment env, CallStackItem item, long duration) {
+        if (slowCallThreshold == 0 || duration < slowCallThreshold)
+            return;
+
+        SlowCallEvent event = new SlowCallEvent();
+        if (event.isEnabled()) {
+            event.function = item.clazz == null ? item.function : item.clazz + "::" + item.function;
+
+            TraceInfo trace = item.trace;
+            if (trace != null && trace != TraceInfo.UNKNOWN) {
+                event.file = trace.getFileName();
+                event.line = trace.getStartLine() + 1;
+            }
+
+            event.elapsed = duration;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onUncaughtException(Environment env, Throwable exception) {
+        UncaughtExceptionEvent event = new UncaughtExceptionEvent();
+        if (event.isEnabled()) {
+            TraceInfo trace = null;
+
+            if (exception instanceof BaseException) {
+                BaseException e = (BaseException) exception;
+                event.exceptionClass = e.getReflection().getName();
+                event.message = e.getMessage(env).toString();
+                trace = e.getTrace();
+            } else {
+                event.exceptionClass = exception.getClass().getName();
+                event.message = exception.getMessage();
+
+                if (exception instanceof PhpException)
+                    trace = ((PhpException) exception).getTraceInfo();
+            }
+
+            if (trace != null && trace != TraceInfo.UNKNOWN) {
+                event.file = trace.getFileName();
+                event.line = trace.getStartLine() + 1;
+            }
+
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onMessage(Environment env, SystemMessage message) {
+        ErrorMessageEvent event = new ErrorMessageEvent();
+        if (event.isEnabled()) {
+            event.type = message.getType().getTypeName();
+            event.message = message.getMessage();
+
+            CallStackItem item = message.getTrace();
+            if (item != null && item.trace != null && item.trace != TraceInfo.UNKNOWN) {
+                event.file = item.trace.getFileName();
+                event.line = item.trace.getStartLine() + 1;
+            }
+
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onOutputFlush(Environment env, long bytes, long duration) {
+        OutputFlushEvent event = new OutputFlushEvent();
+        if (event.isEnabled()) {
+            event.bytes = bytes;
+            event.elapsed = duration;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.develnext.jphp.ext.jfr.event;
+
+import jdk.jfr.*;
+
+@Name("jphp.Autoload")
+@Label("Autoload")
+@Description("Autoload of a php class")
+@Category({"JPHP"})
+@StackTrace(false)
+public class AutoloadEvent extends Event {
+    @Label("Class")
+    public String className;
+
+    @Label("Loaded")
+    public boolean loaded;
+
+    @Label("Elapsed")
+    @Timespan
+    public long elapsed;
+}
@@ -0,0 +1,22 @@
+package org.develnext.jphp.ext.jfr.event;
+
+import jdk.jfr.*;
+
+@Name("jphp.ErrorMessage")
+@Label("Error Message")
+@Description("A warning, notice or other not fatal error")
+@Category({"JPHP"})
+@StackTrace(false)
+public class ErrorMessageEvent extends Event {
+    @Label("Type")
+    public String type;
+
+    @Label("Message")
+    public String message;
+
+    @Label("File")
+    public String file;
+
+    @Label("Line")
+    public int line;
+}
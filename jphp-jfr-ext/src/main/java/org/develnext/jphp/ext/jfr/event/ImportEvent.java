@@ -0,0 +1,27 @@
+package org.develnext.jphp.ext.jfr.event;
+
+import jdk.jfr.*;
+
+@Name("jphp.Import")
+@Label("Include")
+@Description("include, include_once, require or require_once of a php file")
+@Category({"JPHP"})
+@StackTrace(false)
+public class ImportEvent extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Function")
+    public String function;
+
+    @Label("Cached")
+    @Description("The module was already in the module cache")
+    public boolean cached;
+
+    @Label("Found")
+    public boolean found;
+
+    @Label("Elapsed")
+    @Timespan
+    public long elapsed;
+}
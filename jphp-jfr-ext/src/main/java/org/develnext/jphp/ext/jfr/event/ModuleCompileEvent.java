@@ -0,0 +1,25 @@
+package org.develnext.jphp.ext.jfr.event;
+
+import jdk.jfr.*;
+
+@Name("jphp.ModuleCompile")
+@Label("Module Compile")
+@Description("A php module is compiled from the source")
+@Category({"JPHP"})
+@StackTrace(false)
+public class ModuleCompileEvent extends Event {
+    @Label("Module")
+    public String module;
+
+    @Label("Source Size")
+    @Description("Length of the source in chars, -1 if unknown")
+    public int sourceSize;
+
+    @Label("Bytecode Size")
+    @DataAmount
+    public int bytecodeSize;
+
+    @Label("Elapsed")
+    @Timespan
+    public long elapsed;
+}
@@ -0,0 +1,21 @@
+package org.develnext.jphp.ext.jfr.event;
+
+import jdk.jfr.*;
+
+@Name("jphp.ModuleLoad")
+@Label("Module Load")
+@Description("A php module is loaded from a dump")
+@Category({"JPHP"})
+@StackTrace(false)
+public class ModuleLoadEvent extends Event {
+    @Label("Module")
+    public String module;
+
+    @Label("Bytecode Size")
+    @DataAmount
+    public int bytecodeSize;
+
+    @Label("Elapsed")
+    @Timespan
+    public long elapsed;
+}
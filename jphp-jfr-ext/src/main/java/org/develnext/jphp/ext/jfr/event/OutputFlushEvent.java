@@ -0,0 +1,18 @@
+package org.develnext.jphp.ext.jfr.event;
+
+import jdk.jfr.*;
+
+@Name("jphp.OutputFlush")
+@Label("Output Flush")
+@Description("Output of an environment is written to the real output")
+@Category({"JPHP"})
+@StackTrace(false)
+public class OutputFlushEvent extends Event {
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Elapsed")
+    @Timespan
+    public long elapsed;
+}
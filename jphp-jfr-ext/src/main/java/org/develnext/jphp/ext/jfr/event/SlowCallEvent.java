@@ -0,0 +1,24 @@
+package org.develnext.jphp.ext.jfr.event;
+
+import jdk.jfr.*;
+
+@Name("jphp.SlowCall")
+@Label("Slow Call")
+@Description("A php function call which took more than the threshold")
+@Category({"JPHP"})
+@StackTrace(false)
+public class SlowCallEvent extends Event {
+    @Label("Function")
+    public String function;
+
+    @Label("File")
+    @Description("File of the call site")
+    public String file;
+
+    @Label("Line")
+    public int line;
+
+    @Label("Elapsed")
+    @Timespan
+    public long elapsed;
+}
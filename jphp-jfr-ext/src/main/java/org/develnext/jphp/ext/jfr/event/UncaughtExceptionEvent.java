@@ -0,0 +1,22 @@
+package org.develnext.jphp.ext.jfr.event;
+
+import jdk.jfr.*;
+
+@Name("jphp.UncaughtException")
+@Label("Uncaught Exception")
+@Description("An exception which is not caught by php code")
+@Category({"JPHP"})
+@StackTrace(false)
+public class UncaughtExceptionEvent extends Event {
+    @Label("Class")
+    public String exceptionClass;
+
+    @Label("Message")
+    public String message;
+
+    @Label("File")
+    public String file;
+
+    @Label("Line")
+    public int line;
+}
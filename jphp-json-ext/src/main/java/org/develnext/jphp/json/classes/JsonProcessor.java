@@ -3,22 +3,27 @@ package org.develnext.jphp.json.classes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.stream.JsonWriter;
-import org.develnext.jphp.json.gson.MemoryDeserializer;
-import org.develnext.jphp.json.gson.MemorySerializer;
+import org.develnext.jphp.json.codec.JsonDecoder;
+import org.develnext.jphp.json.codec.JsonEncoder;
 import php.runtime.Memory;
 import php.runtime.common.HintType;
 import php.runtime.env.Environment;
 import php.runtime.ext.core.classes.format.WrapProcessor;
 import php.runtime.ext.core.classes.stream.Stream;
+import php.runtime.ext.core.classes.stream.WrapIOException;
+import php.runtime.ext.core.classes.util.WrapFlow;
 import php.runtime.invoke.Invoker;
-import php.runtime.memory.*;
-import php.runtime.memory.helper.UndefinedMemory;
+import php.runtime.lang.ForeachIterator;
+import php.runtime.memory.ObjectMemory;
+import php.runtime.memory.StringMemory;
 import php.runtime.reflection.ClassEntity;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
 
 import static php.runtime.annotation.Reflection.*;
 
@@ -28,101 +33,162 @@ public class JsonProcessor extends WrapProcessor {
     public static final int SERIALIZE_PRETTY_PRINT = 1;
     public static final int DESERIALIZE_AS_ARRAYS = 1024;
 
-    protected GsonBuilder builder;
+    protected JsonEncoder encoder;
+    protected JsonDecoder decoder;
+
+    /**
+     * @deprecated used only by {@link #JsonProcessor(Environment, GsonBuilder)}
+     */
+    @Deprecated
     protected Gson gson;
-    protected MemorySerializer memorySerializer;
-    protected MemoryDeserializer memoryDeserializer;
-
-    protected final static List<Class<? extends Memory>> memClasses = new ArrayList<Class<? extends Memory>>() {{
-        add(Memory.class);
-        add(NullMemory.class);
-        add(UndefinedMemory.class);
-        add(ReferenceMemory.class);
-        add(TrueMemory.class);
-        add(FalseMemory.class);
-        add(LongMemory.class);
-        add(DoubleMemory.class);
-        add(ObjectMemory.class);
-        add(ArrayMemory.class);
-        add(BinaryMemory.class);
-        add(CharMemory.class);
-        add(KeyValueMemory.class);
-        add(StringBuilderMemory.class);
-        add(StringMemory.class);
-    }};
 
-    public JsonProcessor(Environment env, GsonBuilder builder) {
+    public JsonProcessor(Environment env, JsonEncoder encoder, JsonDecoder decoder) {
         super(env);
-        this.builder = builder;
+        this.encoder = encoder;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Parses and formats json by a gson instance of the builder, serialize handlers are ignored.
+     *
+     * @deprecated use {@link #JsonProcessor(Environment, JsonEncoder, JsonDecoder)}
+     */
+    @Deprecated
+    public JsonProcessor(Environment env, GsonBuilder builder) {
+        this(env, new JsonEncoder(), new JsonDecoder());
+        this.encoder.setEnv(env);
+        this.decoder.setEnv(env);
         this.gson = builder.create();
     }
 
     public JsonProcessor(Environment env, ClassEntity clazz) {
         super(env, clazz);
-        builder = new GsonBuilder();
-
-        memorySerializer = new MemorySerializer();
-        memorySerializer.setEnv(env);
 
-        memoryDeserializer = new MemoryDeserializer();
-        memoryDeserializer.setEnv(env);
-
-        for (Class<? extends Memory> el : memClasses) {
-            builder.registerTypeAdapter(el, memorySerializer);
-        }
+        encoder = new JsonEncoder();
+        encoder.setEnv(env);
 
-        builder.registerTypeAdapter(Memory.class, memoryDeserializer);
-        builder.disableHtmlEscaping();
-
-        gson = builder.create();
+        decoder = new JsonDecoder();
+        decoder.setEnv(env);
     }
 
     @Signature(@Arg(value = "flags", optional = @Optional("0")))
     public Memory __construct(Environment env, Memory... args) {
         int flags = args[0].toInteger();
         if ((flags & SERIALIZE_PRETTY_PRINT) == SERIALIZE_PRETTY_PRINT) {
-            builder.setPrettyPrinting();
+            encoder.setPrettyPrint(true);
         }
 
         if ((flags & DESERIALIZE_AS_ARRAYS) == DESERIALIZE_AS_ARRAYS) {
-            memoryDeserializer.setAssoc(true);
+            decoder.setAssoc(true);
         }
 
-        if (flags > 0)
-            gson = builder.create();
-
         return Memory.NULL;
     }
 
     @Override
     @Signature
     public Memory parse(Environment env, Memory... args) {
-        Memory r;
+        if (gson != null) {
+            Memory result;
+            if (args[0].instanceOf(Stream.class)) {
+                result = gson.fromJson(new InputStreamReader(Stream.getInputStream(env, args[0])), Memory.class);
+            } else {
+                result = gson.fromJson(args[0].toString(), Memory.class);
+            }
+
+            return result == null ? Memory.NULL : result;
+        }
+
         if (args[0].instanceOf(Stream.class)) {
-            r = gson.fromJson(new InputStreamReader(Stream.getInputStream(env, args[0])), Memory.class);
+            try {
+                return decoder.decode(new InputStreamReader(Stream.getInputStream(env, args[0]), "UTF-8"));
+            } catch (IOException e) {
+                env.exception(WrapIOException.class, e.getMessage());
+                return Memory.NULL;
+            }
         } else {
-            r = gson.fromJson(args[0].toString(), Memory.class);
+            return decoder.decode(args[0].toString());
         }
-
-        if (r == null)
-            return Memory.NULL;
-
-        return r;
     }
 
     @Override
     @Signature
     public Memory format(Environment env, Memory... args) {
-        return StringMemory.valueOf(gson.toJson(args[0]));
+        if (gson != null)
+            return StringMemory.valueOf(gson.toJson(args[0]));
+
+        return StringMemory.valueOf(encoder.encode(args[0]));
     }
 
     @Override
     @Signature
     public Memory formatTo(Environment env, Memory... args) {
-        gson.toJson(args[0], Memory.class, new JsonWriter(new OutputStreamWriter(Stream.getOutputStream(env, args[1]))));
+        try {
+            if (gson != null) {
+                JsonWriter writer = new JsonWriter(new OutputStreamWriter(Stream.getOutputStream(env, args[1]), "UTF-8"));
+                gson.toJson(args[0], Memory.class, writer);
+                writer.flush();
+            } else
+                encoder.encode(args[0], new OutputStreamWriter(Stream.getOutputStream(env, args[1]), "UTF-8"));
+        } catch (IOException e) {
+            env.exception(WrapIOException.class, e.getMessage());
+        }
+
         return Memory.NULL;
     }
 
+    @Signature({
+            @Arg("source"),
+            @Arg(value = "path", optional = @Optional("$"))
+    })
+    public Memory stream(final Environment env, Memory... args) {
+        Reader reader;
+        if (args[0].instanceOf(Stream.class)) {
+            try {
+                reader = new InputStreamReader(Stream.getInputStream(env, args[0]), "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            reader = new StringReader(args[0].toString());
+        }
+
+        final JsonDecoder.Cursor cursor = decoder.stream(reader, args[1].toString());
+
+        return new ObjectMemory(new WrapFlow(env, new ForeachIterator(false, false, false) {
+            @Override
+            protected boolean init() {
+                return true;
+            }
+
+            @Override
+            protected boolean nextValue() {
+                try {
+                    currentValue = cursor.next();
+                } catch (IOException e) {
+                    env.exception(WrapIOException.class, e.getMessage());
+                    return false;
+                }
+
+                if (currentValue == null)
+                    return false;
+
+                currentKey = cursor.getKey();
+                return true;
+            }
+
+            @Override
+            protected boolean prevValue() {
+                return false;
+            }
+
+            @Override
+            public void reset() {
+                // nop, json is read once
+            }
+        }));
+    }
+
     @Signature({
             @Arg("type"),
             @Arg(value = "callback", type = HintType.CALLABLE, optional = @Optional("null"))
@@ -132,10 +198,10 @@ public class JsonProcessor extends WrapProcessor {
         if (type == null)
             throw new IllegalArgumentException("Invalid type - " + args[0]);
 
-        MemorySerializer.Handler handler = null;
+        JsonEncoder.Handler handler = null;
         if (!args[1].isNull()) {
             final Invoker invoker = Invoker.valueOf(env, env.trace(), args[1]);
-            handler = new MemorySerializer.Handler() {
+            handler = new JsonEncoder.Handler() {
                 @Override
                 public Memory call(Environment env, Memory value) {
                     return invoker.callNoThrow(value);
@@ -143,7 +209,7 @@ public class JsonProcessor extends WrapProcessor {
             };
         }
 
-        memorySerializer.setTypeHandler(type, handler);
+        encoder.setTypeHandler(type, handler);
         return null;
     }
 
@@ -156,10 +222,10 @@ public class JsonProcessor extends WrapProcessor {
         if (entity == null)
             throw new IllegalArgumentException("Class not found - " + args[0]);
 
-        MemorySerializer.Handler handler = null;
+        JsonEncoder.Handler handler = null;
         if (!args[1].isNull()) {
             final Invoker invoker = Invoker.valueOf(env, env.trace(), args[1]);
-            handler = new MemorySerializer.Handler() {
+            handler = new JsonEncoder.Handler() {
                 @Override
                 public Memory call(Environment env, Memory value) {
                     return invoker.callNoThrow(value);
@@ -167,7 +233,7 @@ public class JsonProcessor extends WrapProcessor {
             };
         }
 
-        memorySerializer.setClassHandler(entity.getName(), handler);
+        encoder.setClassHandler(entity.getName(), handler);
         return Memory.NULL;
     }
 }
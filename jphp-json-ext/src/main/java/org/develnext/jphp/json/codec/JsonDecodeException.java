@@ -0,0 +1,40 @@
+package org.develnext.jphp.json.codec;
+
+/**
+ * Malformed json, thrown by {@link JsonDecoder}.
+ */
+public class JsonDecodeException extends RuntimeException {
+    protected final int position;
+
+    public JsonDecodeException(String message, int position) {
+        super(message + " at position " + position);
+        this.position = position;
+    }
+
+    /**
+     * @return offset of the char where decoding failed
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    public static class MaxDepthException extends JsonDecodeException {
+        public MaxDepthException(int position) {
+            super("Maximum stack depth exceeded", position);
+        }
+    }
+
+    /**
+     * A container is closed by a bracket of another kind, e.g. <code>[1}</code>.
+     */
+    public static class StateMismatchException extends JsonDecodeException {
+        public StateMismatchException(int position) {
+            super("Mismatched brackets", position);
+        }
+    }
+}
@@ -0,0 +1,714 @@
+package org.develnext.jphp.json.codec;
+
+import php.runtime.Memory;
+import php.runtime.env.Environment;
+import php.runtime.lang.StdClass;
+import php.runtime.memory.ArrayMemory;
+import php.runtime.memory.DoubleMemory;
+import php.runtime.memory.LongMemory;
+import php.runtime.memory.ObjectMemory;
+import php.runtime.memory.StringMemory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads json into Memory values in one pass over chars of a string or a reader,
+ * without intermediate trees.
+ *
+ * Integers are read as int if they fit into long, other numbers as float.
+ * Objects are read as stdClass or as arrays in the assoc mode, keys which start with \0 are skipped.
+ * An empty input is read as null.
+ */
+public class JsonDecoder {
+    public final static int DEFAULT_MAX_DEPTH = 512;
+
+    protected final static int BUFFER_SIZE = 8192;
+
+    protected boolean assoc;
+    protected int maxDepth = DEFAULT_MAX_DEPTH;
+    protected WeakReference<Environment> env;
+
+    public Environment getEnv() {
+        return env == null ? null : env.get();
+    }
+
+    public void setEnv(Environment env) {
+        this.env = env == null ? null : new WeakReference<Environment>(env);
+    }
+
+    public boolean isAssoc() {
+        return assoc;
+    }
+
+    public void setAssoc(boolean assoc) {
+        this.assoc = assoc;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public Memory decode(String json) {
+        try {
+            return new Parser(json.toCharArray(), null).parse();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // never happens without reader
+        }
+    }
+
+    /**
+     * Reads json from the reader by chunks, the reader is not closed.
+     */
+    public Memory decode(Reader reader) throws IOException {
+        return new Parser(new char[BUFFER_SIZE], reader).parse();
+    }
+
+    /**
+     * Returns a cursor over values of the path in a sequence of json documents, e.g. NDJSON.
+     * Only the found values are built, other parts of documents are skipped, so memory is bounded
+     * by the size of one found value.
+     *
+     * @param path $ - each document, $.items[*] - elements of items of each document,
+     *             also .*, [n] and ['name'] segments are supported.
+     */
+    public Cursor stream(Reader reader, String path) {
+        return new Cursor(reader, parsePath(path));
+    }
+
+    protected static Object[] parsePath(String path) {
+        path = path.trim();
+
+        if (!path.startsWith("$"))
+            throw new IllegalArgumentException("Json path must start with $ - " + path);
+
+        List<Object> result = new ArrayList<Object>();
+
+        int i = 1;
+        int length = path.length();
+        while (i < length) {
+            char c = path.charAt(i);
+
+            if (c == '.') {
+                int start = ++i;
+                while (i < length && path.charAt(i) != '.' && path.charAt(i) != '[') {
+                    i++;
+                }
+
+                String name = path.substring(start, i);
+                if (name.isEmpty())
+                    throw new IllegalArgumentException("Empty name in json path - " + path);
+
+                result.add("*".equals(name) ? WILDCARD : name);
+            } else if (c == '[') {
+                int end = path.indexOf(']', i);
+                if (end == -1)
+                    throw new IllegalArgumentException("Unclosed [ in json path - " + path);
+
+                String segment = path.substring(i + 1, end).trim();
+                i = end + 1;
+
+                if ("*".equals(segment)) {
+                    result.add(WILDCARD);
+                } else if (segment.length() >= 2
+                        && (segment.charAt(0) == '\'' || segment.charAt(0) == '"')
+                        && segment.charAt(segment.length() - 1) == segment.charAt(0)) {
+                    result.add(segment.substring(1, segment.length() - 1));
+                } else {
+                    try {
+                        result.add(Long.valueOf(segment));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid index '" + segment + "' in json path - " + path);
+                    }
+                }
+            } else {
+                throw new IllegalArgumentException("Unexpected char '" + c + "' in json path - " + path);
+            }
+        }
+
+        return result.toArray();
+    }
+
+    protected final static Object WILDCARD = new Object();
+
+    protected class Parser {
+        protected final char[] buf;
+        protected final Reader reader;
+
+        protected int pos;
+        protected int limit;
+        protected int offset;
+
+        protected StringBuilder numberBuffer;
+
+        Parser(char[] buf, Reader reader) {
+            this.buf = buf;
+            this.reader = reader;
+            this.limit = reader == null ? buf.length : 0;
+        }
+
+        Memory parse() throws IOException {
+            int c = skipWhitespace();
+            if (c == -1)
+                return Memory.NULL;
+
+            Memory result = readValue(0);
+
+            if (skipWhitespace() != -1)
+                throw error("Unexpected data after json");
+
+            return result;
+        }
+
+        protected boolean fill() throws IOException {
+            if (reader == null)
+                return false;
+
+            int count = reader.read(buf, 0, buf.length);
+            if (count <= 0)
+                return false;
+
+            offset += limit;
+            pos = 0;
+            limit = count;
+            return true;
+        }
+
+        protected int peek() throws IOException {
+            if (pos == limit && !fill())
+                return -1;
+
+            return buf[pos];
+        }
+
+        protected char read() throws IOException {
+            if (pos == limit && !fill())
+                throw error("Unexpected end of json");
+
+            return buf[pos++];
+        }
+
+        protected int skipWhitespace() throws IOException {
+            while (true) {
+                int c = peek();
+
+                switch (c) {
+                    case ' ':
+                    case '\t':
+                    case '\n':
+                    case '\r':
+                        pos++;
+                        break;
+                    default:
+                        return c;
+                }
+            }
+        }
+
+        protected JsonDecodeException error(String message) {
+            return new JsonDecodeException(message, offset + pos);
+        }
+
+        /**
+         * @param c char found instead of a separator
+         * @param close closing bracket of the current container
+         */
+        protected JsonDecodeException separatorError(int c, char close) {
+            if ((c == ']' || c == '}') && c != close)
+                return new JsonDecodeException.StateMismatchException(offset + pos);
+
+            return error("Expected ',' or '" + close + "'");
+        }
+
+        protected Memory readValue(int depth) throws IOException {
+            if (depth > maxDepth)
+                throw new JsonDecodeException.MaxDepthException(offset + pos);
+
+            char c = read();
+
+            switch (c) {
+                case '{':
+                    return readObject(depth);
+                case '[':
+                    return readArray(depth);
+                case '"':
+                    return StringMemory.valueOf(readString());
+                case 't':
+                    readKeyword("rue");
+                    return Memory.TRUE;
+                case 'f':
+                    readKeyword("alse");
+                    return Memory.FALSE;
+                case 'n':
+                    readKeyword("ull");
+                    return Memory.NULL;
+                case '-':
+                case '0': case '1': case '2': case '3': case '4':
+                case '5': case '6': case '7': case '8': case '9':
+                    return readNumber(c);
+                default:
+                    pos--;
+                    throw error("Unexpected char '" + c + "'");
+            }
+        }
+
+        protected void readKeyword(String rest) throws IOException {
+            for (int i = 0; i < rest.length(); i++) {
+                if (read() != rest.charAt(i))
+                    throw error("Invalid literal");
+            }
+        }
+
+        protected Memory readArray(int depth) throws IOException {
+            ArrayMemory array = new ArrayMemory();
+
+            if (skipWhitespace() == ']') {
+                pos++;
+                return array.toConstant();
+            }
+
+            while (true) {
+                skipWhitespace();
+                array.add(readValue(depth + 1));
+
+                int c = skipWhitespace();
+                pos++;
+
+                if (c == ']')
+                    return array.toConstant();
+
+                if (c != ',') {
+                    pos--;
+                    throw separatorError(c, ']');
+                }
+            }
+        }
+
+        protected Memory readObject(int depth) throws IOException {
+            StdClass stdClass = assoc ? null : new StdClass(getEnv() == null ? Environment.current() : getEnv());
+            ArrayMemory array = assoc ? new ArrayMemory() : stdClass.getProperties();
+
+            if (skipWhitespace() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    if (skipWhitespace() != '"')
+                        throw error("Expected name");
+
+                    pos++;
+                    String key = readString();
+
+                    if (skipWhitespace() != ':')
+                        throw error("Expected ':'");
+
+                    pos++;
+                    skipWhitespace();
+                    Memory value = readValue(depth + 1);
+
+                    if (!key.startsWith("\0"))
+                        array.put(key, value);
+
+                    int c = skipWhitespace();
+                    pos++;
+
+                    if (c == '}')
+                        break;
+
+                    if (c != ',') {
+                        pos--;
+                        throw separatorError(c, '}');
+                    }
+                }
+            }
+
+            return assoc ? array.toConstant() : new ObjectMemory(stdClass);
+        }
+
+        /**
+         * Validates and skips a value without building it.
+         */
+        protected void skipValue(int depth) throws IOException {
+            if (depth > maxDepth)
+                throw new JsonDecodeException.MaxDepthException(offset + pos);
+
+            char c = read();
+
+            switch (c) {
+                case '{':
+                    if (skipWhitespace() == '}') {
+                        pos++;
+                        return;
+                    }
+
+                    while (true) {
+                        if (skipWhitespace() != '"')
+                            throw error("Expected name");
+
+                        pos++;
+                        skipString();
+
+                        if (skipWhitespace() != ':')
+                            throw error("Expected ':'");
+
+                        pos++;
+                        skipWhitespace();
+                        skipValue(depth + 1);
+
+                        int next = skipWhitespace();
+                        pos++;
+
+                        if (next == '}')
+                            return;
+
+                        if (next != ',') {
+                            pos--;
+                            throw separatorError(next, '}');
+                        }
+                    }
+                case '[':
+                    if (skipWhitespace() == ']') {
+                        pos++;
+                        return;
+                    }
+
+                    while (true) {
+                        skipWhitespace();
+                        skipValue(depth + 1);
+
+                        int next = skipWhitespace();
+                        pos++;
+
+                        if (next == ']')
+                            return;
+
+                        if (next != ',') {
+                            pos--;
+                            throw separatorError(next, ']');
+                        }
+                    }
+                case '"':
+                    skipString();
+                    return;
+                default:
+                    pos--;
+                    readValue(depth);
+            }
+        }
+
+        protected void skipString() throws IOException {
+            while (true) {
+                while (pos < limit) {
+                    char c = buf[pos++];
+
+                    if (c == '"')
+                        return;
+
+                    if (c == '\\')
+                        readEscape();
+                }
+
+                if (!fill())
+                    throw error("Unterminated string");
+            }
+        }
+
+        /**
+         * Reads chars after the opening quote, strings without escapes are copied from the buffer at once.
+         */
+        protected String readString() throws IOException {
+            StringBuilder sb = null;
+
+            while (true) {
+                int start = pos;
+
+                while (pos < limit) {
+                    char c = buf[pos++];
+
+                    if (c == '"') {
+                        if (sb == null)
+                            return new String(buf, start, pos - start - 1);
+
+                        sb.append(buf, start, pos - start - 1);
+                        return sb.toString();
+                    }
+
+                    if (c == '\\') {
+                        if (sb == null)
+                            sb = new StringBuilder();
+
+                        sb.append(buf, start, pos - start - 1);
+                        sb.append(readEscape());
+                        start = pos;
+                    }
+                }
+
+                if (sb == null)
+                    sb = new StringBuilder();
+
+                sb.append(buf, start, pos - start);
+
+                if (!fill())
+                    throw error("Unterminated string");
+            }
+        }
+
+        protected char readEscape() throws IOException {
+            char c = read();
+
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    return c;
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u': {
+                    int result = 0;
+
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit == -1)
+                            throw error("Invalid unicode escape");
+
+                        result = (result << 4) | digit;
+                    }
+
+                    return (char) result;
+                }
+                default:
+                    throw error("Invalid escape sequence");
+            }
+        }
+
+        protected Memory readNumber(char first) throws IOException {
+            StringBuilder sb = numberBuffer == null ? (numberBuffer = new StringBuilder()) : numberBuffer;
+            sb.setLength(0);
+            sb.append(first);
+
+            boolean negative = first == '-';
+            boolean decimal = false;
+            long value = negative ? 0 : first - '0';
+            int digits = negative ? 0 : 1;
+
+            if (negative) {
+                char c = read();
+                if (c < '0' || c > '9') {
+                    pos--;
+                    throw error("Invalid number");
+                }
+
+                sb.append(c);
+                value = c - '0';
+                digits = 1;
+            }
+
+            if (value != 0) {
+                int c;
+                while ((c = peek()) >= '0' && c <= '9') {
+                    pos++;
+                    sb.append((char) c);
+                    value = value * 10 + (c - '0');
+                    digits++;
+                }
+            }
+
+            if (peek() == '.') {
+                pos++;
+                sb.append('.');
+                decimal = true;
+                readDigits(sb);
+            }
+
+            int c = peek();
+            if (c == 'e' || c == 'E') {
+                pos++;
+                sb.append((char) c);
+                decimal = true;
+
+                c = peek();
+                if (c == '+' || c == '-') {
+                    pos++;
+                    sb.append((char) c);
+                }
+
+                readDigits(sb);
+            }
+
+            if (!decimal) {
+                if (digits <= 18)
+                    return LongMemory.valueOf(negative ? -value : value);
+
+                Memory result = StringMemory.toLong(sb.toString());
+                if (result != null)
+                    return result;
+            }
+
+            return new DoubleMemory(Double.parseDouble(sb.toString()));
+        }
+
+        protected void readDigits(StringBuilder sb) throws IOException {
+            int c = peek();
+            if (c < '0' || c > '9')
+                throw error("Invalid number");
+
+            do {
+                pos++;
+                sb.append((char) c);
+            } while ((c = peek()) >= '0' && c <= '9');
+        }
+    }
+
+    /**
+     * Pull reader of values of a json path, see {@link #stream(Reader, String)}.
+     */
+    public class Cursor extends Parser {
+        protected final Object[] path;
+
+        protected final boolean[] objects;
+        protected final long[] counts;
+        protected int top;
+
+        protected long documents;
+        protected Memory key;
+
+        protected String childName;
+        protected long childIndex;
+
+        Cursor(Reader reader, Object[] path) {
+            super(new char[BUFFER_SIZE], reader);
+            this.path = path;
+            this.objects = new boolean[path.length];
+            this.counts = new long[path.length];
+        }
+
+        /**
+         * @return key of the last value: index of the document for $, otherwise index or name in its container
+         */
+        public Memory getKey() {
+            return key;
+        }
+
+        /**
+         * @return next value or null at the end of input
+         */
+        public Memory next() throws IOException {
+            while (true) {
+                if (top == 0) {
+                    if (skipWhitespace() == -1)
+                        return null;
+
+                    long document = documents++;
+
+                    if (path.length == 0) {
+                        key = LongMemory.valueOf(document);
+                        return readValue(0);
+                    }
+
+                    if (!open(0))
+                        skipValue(0);
+
+                    continue;
+                }
+
+                int depth = top - 1;
+                if (!nextChild(depth)) {
+                    top--;
+                    continue;
+                }
+
+                if (matches(path[depth], depth)) {
+                    if (depth + 1 == path.length) {
+                        key = objects[depth] ? StringMemory.valueOf(childName) : LongMemory.valueOf(childIndex);
+                        return readValue(depth + 1);
+                    }
+
+                    if (open(depth + 1))
+                        continue;
+                }
+
+                skipValue(depth + 1);
+            }
+        }
+
+        protected boolean open(int depth) throws IOException {
+            int c = peek();
+            if (c != '{' && c != '[')
+                return false;
+
+            if (depth > maxDepth)
+                throw new JsonDecodeException.MaxDepthException(offset + pos);
+
+            pos++;
+            objects[depth] = c == '{';
+            counts[depth] = 0;
+            top = depth + 1;
+            return true;
+        }
+
+        /**
+         * Moves to the value of the next child of the container.
+         *
+         * @return false if the container is closed
+         */
+        protected boolean nextChild(int depth) throws IOException {
+            char close = objects[depth] ? '}' : ']';
+            int c = skipWhitespace();
+
+            if (c == close) {
+                pos++;
+                return false;
+            }
+
+            if (counts[depth] > 0) {
+                if (c != ',')
+                    throw separatorError(c, close);
+
+                pos++;
+                c = skipWhitespace();
+            }
+
+            childIndex = counts[depth]++;
+
+            if (objects[depth]) {
+                if (c != '"')
+                    throw error("Expected name");
+
+                pos++;
+                childName = readString();
+
+                if (skipWhitespace() != ':')
+                    throw error("Expected ':'");
+
+                pos++;
+            }
+
+            skipWhitespace();
+            return true;
+        }
+
+        protected boolean matches(Object segment, int depth) {
+            if (segment == WILDCARD)
+                return !objects[depth] || !childName.startsWith("\0");
+
+            if (segment instanceof String)
+                return objects[depth] && segment.equals(childName);
+
+            return !objects[depth] && (Long) segment == childIndex;
+        }
+    }
+}
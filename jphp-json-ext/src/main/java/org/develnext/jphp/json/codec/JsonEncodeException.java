@@ -0,0 +1,21 @@
+package org.develnext.jphp.json.codec;
+
+/**
+ * A value which cannot be written as json, thrown by {@link JsonEncoder}.
+ */
+public class JsonEncodeException extends RuntimeException {
+    public JsonEncodeException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    public static class InfOrNanException extends JsonEncodeException {
+        public InfOrNanException() {
+            super("Inf and NaN cannot be JSON encoded");
+        }
+    }
+}
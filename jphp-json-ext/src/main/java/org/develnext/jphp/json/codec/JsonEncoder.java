@@ -0,0 +1,441 @@
+package org.develnext.jphp.json.codec;
+
+import org.develnext.jphp.json.JsonSerializable;
+import php.runtime.Memory;
+import php.runtime.common.collections.map.HashedMap;
+import php.runtime.env.Environment;
+import php.runtime.lang.ForeachIterator;
+import php.runtime.lang.IObject;
+import php.runtime.memory.ArrayMemory;
+import php.runtime.memory.ObjectMemory;
+import php.runtime.memory.StringMemory;
+import php.runtime.reflection.ClassEntity;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes Memory values as json directly to a StringBuilder or a Writer in one pass.
+ *
+ * The output is compatible with the gson based {@link org.develnext.jphp.json.gson.MemorySerializer}:
+ * null members of objects are omitted, recursive arrays and objects are written as null.
+ * The encoder is immutable during encoding and can be shared by threads, a {@link #freeze() frozen}
+ * encoder cannot be changed at all.
+ */
+public class JsonEncoder {
+    protected final static int FLUSH_SIZE = 8192;
+
+    private final static String[] REPLACEMENT_CHARS;
+    private final static String[] HTML_SAFE_REPLACEMENT_CHARS;
+
+    static {
+        REPLACEMENT_CHARS = new String[128];
+        for (int i = 0; i <= 0x1f; i++) {
+            REPLACEMENT_CHARS[i] = String.format("\\u%04x", i);
+        }
+
+        REPLACEMENT_CHARS['"'] = "\\\"";
+        REPLACEMENT_CHARS['\\'] = "\\\\";
+        REPLACEMENT_CHARS['\t'] = "\\t";
+        REPLACEMENT_CHARS['\b'] = "\\b";
+        REPLACEMENT_CHARS['\n'] = "\\n";
+        REPLACEMENT_CHARS['\r'] = "\\r";
+        REPLACEMENT_CHARS['\f'] = "\\f";
+
+        HTML_SAFE_REPLACEMENT_CHARS = REPLACEMENT_CHARS.clone();
+        HTML_SAFE_REPLACEMENT_CHARS['<'] = "\\u003c";
+        HTML_SAFE_REPLACEMENT_CHARS['>'] = "\\u003e";
+        HTML_SAFE_REPLACEMENT_CHARS['&'] = "\\u0026";
+        HTML_SAFE_REPLACEMENT_CHARS['='] = "\\u003d";
+        HTML_SAFE_REPLACEMENT_CHARS['\''] = "\\u0027";
+    }
+
+    protected boolean prettyPrint;
+    protected boolean htmlSafe;
+    protected boolean forceObject;
+    protected boolean numericCheck;
+    protected boolean partialOutputOnError;
+    protected boolean frozen;
+    protected WeakReference<Environment> env;
+
+    protected Map<Memory.Type, Handler> typeHandlers;
+    protected Map<String, Handler> classHandlers;
+
+    {
+        typeHandlers = new HashedMap<Memory.Type, Handler>(1);
+        classHandlers = new HashedMap<String, Handler>(1);
+    }
+
+    public Environment getEnv() {
+        return env == null ? null : env.get();
+    }
+
+    public void setEnv(Environment env) {
+        checkFrozen();
+        this.env = env == null ? null : new WeakReference<Environment>(env);
+    }
+
+    public boolean isPrettyPrint() {
+        return prettyPrint;
+    }
+
+    public void setPrettyPrint(boolean prettyPrint) {
+        checkFrozen();
+        this.prettyPrint = prettyPrint;
+    }
+
+    public boolean isHtmlSafe() {
+        return htmlSafe;
+    }
+
+    /**
+     * @param htmlSafe escape <, >, &, = and ' as unicode sequences
+     */
+    public void setHtmlSafe(boolean htmlSafe) {
+        checkFrozen();
+        this.htmlSafe = htmlSafe;
+    }
+
+    public boolean isForceObject() {
+        return forceObject;
+    }
+
+    public void setForceObject(boolean forceObject) {
+        checkFrozen();
+        this.forceObject = forceObject;
+    }
+
+    public boolean isNumericCheck() {
+        return numericCheck;
+    }
+
+    public void setNumericCheck(boolean numericCheck) {
+        checkFrozen();
+        this.numericCheck = numericCheck;
+    }
+
+    public boolean isPartialOutputOnError() {
+        return partialOutputOnError;
+    }
+
+    /**
+     * @param partialOutputOnError write 0 instead of INF and NaN values, otherwise {@link JsonEncodeException} is thrown
+     */
+    public void setPartialOutputOnError(boolean partialOutputOnError) {
+        checkFrozen();
+        this.partialOutputOnError = partialOutputOnError;
+    }
+
+    public void setTypeHandler(Memory.Type type, Handler handler) {
+        checkFrozen();
+        if (handler == null) {
+            typeHandlers.remove(type);
+        } else
+            typeHandlers.put(type, handler);
+    }
+
+    public void setClassHandler(String className, Handler handler) {
+        checkFrozen();
+        className = className.toLowerCase();
+
+        if (handler == null)
+            classHandlers.remove(className);
+        else
+            classHandlers.put(className, handler);
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Makes the encoder unmodifiable, all setters throw {@link IllegalStateException} after the call.
+     */
+    public JsonEncoder freeze() {
+        frozen = true;
+        return this;
+    }
+
+    protected void checkFrozen() {
+        if (frozen)
+            throw new IllegalStateException("Json encoder is frozen");
+    }
+
+    public String encode(Memory value) {
+        StringBuilder sb = new StringBuilder();
+        encode(value, sb);
+        return sb.toString();
+    }
+
+    /**
+     * @return false if some values were replaced because of partial output on error
+     */
+    public boolean encode(Memory value, StringBuilder sb) {
+        State state = new State(sb, null);
+        try {
+            write(state, value, 0, true);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // never happens without writer
+        }
+
+        return !state.partial;
+    }
+
+    /**
+     * Writes json to the writer by chunks, the writer is flushed but not closed.
+     */
+    public void encode(Memory value, Writer writer) throws IOException {
+        State state = new State(new StringBuilder(), writer);
+        write(state, value, 0, true);
+
+        state.flush();
+        writer.flush();
+    }
+
+    /**
+     * @return false if null was written
+     */
+    protected boolean write(State state, Memory value, int level, boolean useHandlers) throws IOException {
+        if (useHandlers && !typeHandlers.isEmpty()) {
+            Handler handler = typeHandlers.get(value.getRealType());
+            if (handler != null) {
+                return write(state, handler.call(getEnv(), value), level, false);
+            }
+        }
+
+        StringBuilder sb = state.sb;
+
+        switch (value.getRealType()) {
+            case BOOL:
+                sb.append(value.toBoolean() ? "true" : "false");
+                return true;
+            case INT:
+                sb.append(value.toLong());
+                return true;
+            case DOUBLE: {
+                double number = value.toDouble();
+
+                if (Double.isNaN(number) || Double.isInfinite(number)) {
+                    if (!partialOutputOnError)
+                        throw new JsonEncodeException.InfOrNanException();
+
+                    state.partial = true;
+                    sb.append('0');
+                } else
+                    sb.append(Double.toString(number));
+
+                return true;
+            }
+            case STRING: {
+                String string = value.toString();
+
+                if (numericCheck) {
+                    Memory number = StringMemory.toLong(string);
+                    if (number != null) {
+                        sb.append(number.toLong());
+                        return true;
+                    }
+                }
+
+                writeString(sb, string);
+                return true;
+            }
+            case ARRAY: {
+                ArrayMemory array = value.toValue(ArrayMemory.class);
+                if (!state.used.add(array))
+                    break;
+
+                if (!forceObject && array.isList()) {
+                    writeList(state, array, level, useHandlers);
+                } else {
+                    writeObject(state, array.foreachIterator(false, false), level, useHandlers);
+                }
+
+                state.used.remove(array);
+                return true;
+            }
+            case OBJECT: {
+                IObject object = value.toValue(ObjectMemory.class).value;
+                if (!state.used.add(object))
+                    break;
+
+                try {
+                    if (useHandlers && !classHandlers.isEmpty()) {
+                        Handler handler = findClassHandler(object.getReflection());
+                        if (handler != null) {
+                            return write(state, handler.call(getEnv(), value), level, false);
+                        }
+                    }
+
+                    if (object instanceof JsonSerializable) {
+                        Environment env = this.getEnv() == null ? Environment.current() : this.getEnv();
+
+                        env.pushCall(object, "jsonSerialize");
+                        Memory result;
+                        try {
+                            result = ((JsonSerializable) object).jsonSerialize(env);
+                        } finally {
+                            env.popCall();
+                        }
+
+                        return write(state, result, level, useHandlers);
+                    }
+
+                    writeObject(state, object.getProperties().foreachIterator(false, false), level, useHandlers);
+                    return true;
+                } finally {
+                    state.used.remove(object);
+                }
+            }
+        }
+
+        sb.append("null");
+        return false;
+    }
+
+    protected Handler findClassHandler(ClassEntity entity) {
+        while (entity != null) {
+            Handler handler = classHandlers.get(entity.getLowerName());
+            if (handler != null)
+                return handler;
+
+            entity = entity.getParent();
+        }
+
+        return null;
+    }
+
+    protected void writeList(State state, ArrayMemory array, int level, boolean useHandlers) throws IOException {
+        StringBuilder sb = state.sb;
+        sb.append('[');
+
+        boolean empty = true;
+        ForeachIterator iterator = array.foreachIterator(false, false);
+        while (iterator.next()) {
+            if (!empty)
+                sb.append(',');
+
+            newLine(sb, level + 1);
+            write(state, iterator.getValue(), level + 1, useHandlers);
+            empty = false;
+
+            state.flushIfNeeded();
+        }
+
+        if (!empty)
+            newLine(sb, level);
+
+        sb.append(']');
+    }
+
+    protected void writeObject(State state, ForeachIterator iterator, int level, boolean useHandlers) throws IOException {
+        StringBuilder sb = state.sb;
+        sb.append('{');
+
+        boolean empty = true;
+        while (iterator.next()) {
+            String key = iterator.getKey().toString();
+            if (key.startsWith("\0"))
+                continue;
+
+            int mark = sb.length();
+
+            if (!empty)
+                sb.append(',');
+
+            newLine(sb, level + 1);
+            writeString(sb, key);
+            sb.append(prettyPrint ? ": " : ":");
+
+            if (write(state, iterator.getValue(), level + 1, useHandlers)) {
+                empty = false;
+                state.flushIfNeeded();
+            } else {
+                sb.setLength(mark); // null members are omitted
+            }
+        }
+
+        if (!empty)
+            newLine(sb, level);
+
+        sb.append('}');
+    }
+
+    protected void newLine(StringBuilder sb, int level) {
+        if (prettyPrint) {
+            sb.append('\n');
+            for (int i = 0; i < level; i++) {
+                sb.append("  ");
+            }
+        }
+    }
+
+    protected void writeString(StringBuilder sb, String value) {
+        String[] replacements = htmlSafe ? HTML_SAFE_REPLACEMENT_CHARS : REPLACEMENT_CHARS;
+
+        sb.append('"');
+
+        int last = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+
+            if (c < 128) {
+                replacement = replacements[c];
+                if (replacement == null)
+                    continue;
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+
+            if (last < i)
+                sb.append(value, last, i);
+
+            sb.append(replacement);
+            last = i + 1;
+        }
+
+        if (last < length)
+            sb.append(value, last, length);
+
+        sb.append('"');
+    }
+
+    public interface Handler {
+        Memory call(Environment env, Memory value);
+    }
+
+    protected static class State {
+        protected final StringBuilder sb;
+        protected final Writer writer;
+        protected final Set<Object> used = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        protected boolean partial;
+
+        State(StringBuilder sb, Writer writer) {
+            this.sb = sb;
+            this.writer = writer;
+        }
+
+        void flushIfNeeded() throws IOException {
+            if (writer != null && sb.length() >= FLUSH_SIZE)
+                flush();
+        }
+
+        void flush() throws IOException {
+            if (writer != null) {
+                writer.append(sb);
+                sb.setLength(0);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 <?php
 namespace php\format;
 use php\io\Stream;
+use php\util\Flow;
 
 /**
  * Class JsonProcessor
@@ -22,6 +23,16 @@ class JsonProcessor extends Processor {
      */
     public function parse($json) { return []; }
 
+    /**
+     * Lazily reads values of the json path from a sequence of json documents (e.g. NDJSON),
+     * only found values are kept in memory.
+     *
+     * @param string|Stream $source
+     * @param string $path $ - each document, $.items[*], $.items[*].id, $[0], $['name'], $.*
+     * @return Flow
+     */
+    public function stream($source, $path = '$') { return new Flow([]); }
+
     /**
      * @param mixed $value
      * @return string
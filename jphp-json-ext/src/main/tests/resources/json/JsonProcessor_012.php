@@ -0,0 +1,43 @@
+--TEST--
+JsonProcessor test #12: Nested values and escapes
+--FILE--
+<?php
+
+use php\format\JsonProcessor;
+
+$json = new JsonProcessor(JsonProcessor::SERIALIZE_PRETTY_PRINT);
+echo $json->format(['x' => [1, 2], 'y' => [], 'z' => ['a' => null, 'b' => "q\"\\\n\t</"]]), "\n";
+
+$json = new JsonProcessor(JsonProcessor::DESERIALIZE_AS_ARRAYS);
+var_dump($json->parse(' {"a": [1, -2, 1.5e2, 9223372036854775808], "b": "A\n\/", "\u0000c": 1} '));
+var_dump($json->parse(''));
+
+?>
+--EXPECT--
+{
+  "x": [
+    1,
+    2
+  ],
+  "y": [],
+  "z": {
+    "b": "q\"\\\n\t</"
+  }
+}
+array(2) {
+  ["a"]=>
+  array(4) {
+    [0]=>
+    int(1)
+    [1]=>
+    int(-2)
+    [2]=>
+    float(150)
+    [3]=>
+    float(9.2233720368548E+18)
+  }
+  ["b"]=>
+  string(3) "A
+/"
+}
+NULL
@@ -0,0 +1,49 @@
+--TEST--
+JsonProcessor test #13: Stream
+--FILE--
+<?php
+
+use php\format\JsonProcessor;
+use php\io\MemoryStream;
+
+$json = new JsonProcessor(JsonProcessor::DESERIALIZE_AS_ARRAYS);
+
+$doc = '{"total": 3, "items": [{"id": 1, "tags": ["a"]}, {"id": 2}, {"id": 3}], "skip": {"items": [4]}}';
+
+foreach ($json->stream($doc, '$.items[*]') as $i => $item) {
+    echo $i, ": ", $item['id'], "\n";
+}
+
+echo $json->stream($doc, '$.items[*].id')->toString(','), "\n";
+echo $json->stream($doc, "\$['items'][1].id")->toString(','), "\n";
+echo $json->stream($doc, '$.*')->withKeys()->keys()->toString(','), "\n";
+
+$stream = new MemoryStream();
+$stream->write("{\"id\": 1, \"name\": \"foo\"}\n\n{\"id\": 2, \"name\": \"bar\"}\n{\"id\": 3}\n");
+$stream->seek(0);
+
+foreach ($json->stream($stream) as $i => $line) {
+    echo $i, ": ", $line['id'], "\n";
+}
+
+$json = new JsonProcessor();
+var_dump($json->stream('[1, {"x": 2}]', '$[1]')->toArray());
+
+?>
+--EXPECTF--
+0: 1
+1: 2
+2: 3
+1,2,3
+2
+total,items,skip
+0: 1
+1: 2
+2: 3
+array(1) {
+  [0]=>
+  object(stdClass)#%d (1) {
+    ["x"]=>
+    int(2)
+  }
+}
@@ -0,0 +1,36 @@
+<?php
+namespace php\format;
+use php\io\Stream;
+
+/**
+ * Compact binary serialization, the same format as igbinary_serialize(),
+ * repeated strings are written once, shared objects and references are kept.
+ *
+ * Class BinaryProcessor
+ * @package php\format
+ */
+class BinaryProcessor extends Processor {
+
+    public function __construct() { }
+
+    /**
+     * @param string|Stream $value
+     * @return mixed false with a warning if the data is malformed
+     */
+    public function parse($value) { }
+
+    /**
+     * @param mixed $value
+     * @return string binary string
+     */
+    public function format($value) { return ''; }
+
+    /**
+     * Writes the value to the stream, several values can be written to one stream
+     * and then read by parse() one by one.
+     *
+     * @param mixed $value
+     * @param Stream $output
+     */
+    public function formatTo($value, Stream $output) { }
+}
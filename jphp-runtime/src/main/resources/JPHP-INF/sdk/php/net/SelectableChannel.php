@@ -0,0 +1,33 @@
+<?php
+namespace php\net;
+
+use php\io\IOException;
+
+/**
+ * Base class of non-blocking channels for Selector.
+ *
+ * Class SelectableChannel
+ * @package php\net
+ */
+abstract class SelectableChannel {
+    /**
+     * @param bool $value
+     * @throws IOException
+     */
+    public function setBlocking($value) { }
+
+    /**
+     * @return bool
+     */
+    public function isBlocking() { }
+
+    /**
+     * @return bool
+     */
+    public function isOpen() { }
+
+    /**
+     * @throws IOException
+     */
+    public function close() { }
+}
@@ -0,0 +1,97 @@
+<?php
+namespace php\net;
+
+use php\io\IOException;
+
+/**
+ * Event loop of non-blocking channels, one thread serves any count of connections.
+ *
+ * Class Selector
+ * @package php\net
+ */
+class Selector {
+    const OP_READ = 1;
+    const OP_WRITE = 4;
+    const OP_CONNECT = 8;
+    const OP_ACCEPT = 16;
+
+    /**
+     * @throws IOException
+     */
+    public function __construct() { }
+
+    /**
+     * Registers the channel or replaces its registration.
+     *
+     * @param SelectableChannel $channel
+     * @param int $ops OP_* flags
+     * @param callable $callback (SelectableChannel $channel, int $readyOps, Selector $selector)
+     * @throws IOException
+     */
+    public function register(SelectableChannel $channel, $ops, callable $callback) { }
+
+    /**
+     * @param SelectableChannel $channel
+     * @param int $ops
+     * @return bool false if the channel is not registered
+     */
+    public function interest(SelectableChannel $channel, $ops) { }
+
+    /**
+     * @param SelectableChannel $channel
+     * @return bool
+     */
+    public function unregister(SelectableChannel $channel) { }
+
+    /**
+     * @param SelectableChannel $channel
+     * @return bool
+     */
+    public function isRegistered(SelectableChannel $channel) { }
+
+    /**
+     * @return int count of registered open channels
+     */
+    public function count() { }
+
+    /**
+     * Waits for ready channels and calls their callbacks.
+     *
+     * @param int $timeout in millis, -1 waits until a channel is ready, 0 does not wait
+     * @return int count of called callbacks
+     * @throws IOException
+     */
+    public function select($timeout = -1) { }
+
+    /**
+     * Runs the loop until stop() is called or all channels are closed or unregistered.
+     * @throws IOException
+     */
+    public function run() { }
+
+    /**
+     * Stops run(), can be called from a callback or from another thread.
+     */
+    public function stop() { }
+
+    /**
+     * @return bool
+     */
+    public function isRunning() { }
+
+    /**
+     * Wakes up the waiting select().
+     */
+    public function wakeup() { }
+
+    /**
+     * @throws IOException
+     */
+    public function close() { }
+
+    /**
+     * @return Selector the event loop of the current environment
+     * @throws IOException
+     */
+    public static function current() { }
+}
@@ -0,0 +1,53 @@
+<?php
+namespace php\net;
+
+use php\io\IOException;
+
+/**
+ * Non-blocking server socket, see Selector.
+ *
+ * Class ServerSocketChannel
+ * @package php\net
+ */
+class ServerSocketChannel extends SelectableChannel {
+    /**
+     * @throws IOException
+     */
+    public function __construct() { }
+
+    /**
+     * @param string $hostname
+     * @param int $port 0 for any free port
+     * @param int $backLog
+     * @throws IOException
+     */
+    public function bind($hostname, $port, $backLog = 50) { }
+
+    /**
+     * @return SocketChannel|null null if there is no pending connection
+     * @throws IOException
+     */
+    public function accept() { }
+
+    /**
+     * @return int
+     */
+    public function getLocalPort() { }
+
+    /**
+     * @return bool
+     */
+    public function isBound() { }
+
+    /**
+     * @param bool $on
+     * @throws SocketException
+     */
+    public function setReuseAddress($on) { }
+
+    /**
+     * @param int $size
+     * @throws SocketException
+     */
+    public function setReceiveBufferSize($size) { }
+}
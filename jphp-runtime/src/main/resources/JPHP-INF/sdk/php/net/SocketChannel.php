@@ -0,0 +1,95 @@
+<?php
+namespace php\net;
+
+use php\io\IOException;
+
+/**
+ * Non-blocking socket, read() and write() never wait.
+ * Bytes which cannot be written at once are pending, they are written by flush()
+ * or by the selector when the socket becomes writable.
+ *
+ * Class SocketChannel
+ * @package php\net
+ */
+class SocketChannel extends SelectableChannel {
+    /**
+     * @throws IOException
+     */
+    public function __construct() { }
+
+    /**
+     * @param string $hostname
+     * @param int $port
+     * @return bool true if the connection is established, otherwise call finishConnect() when it is ready
+     * @throws IOException
+     */
+    public function connect($hostname, $port) { }
+
+    /**
+     * @return bool
+     * @throws IOException
+     */
+    public function finishConnect() { }
+
+    /**
+     * @return bool
+     */
+    public function isConnected() { }
+
+    /**
+     * @return bool
+     */
+    public function isConnectionPending() { }
+
+    /**
+     * @param int $length
+     * @return string|null available bytes (empty string if there are none), null at the end of stream
+     * @throws IOException
+     */
+    public function read($length = 8192) { }
+
+    /**
+     * @param string $value
+     * @return int count of bytes written at once, the rest is pending
+     * @throws IOException
+     */
+    public function write($value) { }
+
+    /**
+     * Writes pending bytes.
+     * @return bool true if all bytes are written
+     * @throws IOException
+     */
+    public function flush() { }
+
+    /**
+     * @return int
+     */
+    public function getPendingSize() { }
+
+    /**
+     * @return int
+     */
+    public function getLocalPort() { }
+
+    /**
+     * @return int remote port
+     */
+    public function getPort() { }
+
+    /**
+     * @throws IOException
+     */
+    public function shutdownInput() { }
+
+    /**
+     * @throws IOException
+     */
+    public function shutdownOutput() { }
+
+    /**
+     * @param bool $on
+     * @throws SocketException
+     */
+    public function setTcpNoDelay($on) { }
+}
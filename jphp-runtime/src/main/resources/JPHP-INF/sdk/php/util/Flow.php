@@ -161,6 +161,16 @@ class Flow implements Iterator {
      */
     public function toArray() { return []; }
 
+    /**
+     * Takes elements for processing by several threads, see ``ParallelFlow``
+     *
+     * .. note:: use the ``withKeys()`` method to save keys
+     *
+     * @param int $threads count of threads, 0 - count of processors
+     * @return ParallelFlow
+     */
+    public function parallel($threads = 0) { return new ParallelFlow(); }
+
     /**
      * Join elements to a string similar to ``implode()`` in PHP
      *
@@ -174,6 +184,36 @@ class Flow implements Iterator {
      */
     public function count() { return 0; }
 
+    /**
+     * Sum of elements
+     *
+     * @return int|float
+     */
+    public function sum() { return 0; }
+
+    /**
+     * Average of elements, NULL if the flow is empty
+     *
+     * @return float|null
+     */
+    public function avg() { return 0.0; }
+
+    /**
+     * The first min element, NULL if the flow is empty
+     *
+     * @param callable $comparator ($value1, $value2) -> int
+     * @return mixed
+     */
+    public function min(callable $comparator = null) { }
+
+    /**
+     * The first max element, NULL if the flow is empty
+     *
+     * @param callable $comparator ($value1, $value2) -> int
+     * @return mixed
+     */
+    public function max(callable $comparator = null) { }
+
     /**
      * @return mixed
      */
@@ -239,4 +279,12 @@ class Flow implements Iterator {
      * @return Flow
      */
     public static function ofStream(Stream $stream, $chunkSize = 1) { return new Flow([]); }
+
+    /**
+     * Creates a new lazy flow of lines of the Stream object, lines are read on demand and without line breaks
+     *
+     * @param Stream $stream stream object
+     * @return Flow
+     */
+    public static function ofLines(Stream $stream) { return new Flow([]); }
 }
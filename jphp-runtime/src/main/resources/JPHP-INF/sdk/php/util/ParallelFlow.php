@@ -0,0 +1,74 @@
+<?php
+namespace php\util;
+
+/**
+ * Elements of a flow processed by several threads, ``map()`` and ``filter()`` are lazy
+ * and the other methods run them. Callbacks are called in separate threads, the order of results
+ * is the same as in ``Flow``.
+ *
+ * Class ParallelFlow, Immutable
+ * @package php\util
+ */
+class ParallelFlow {
+
+    private function __construct() { }
+
+    /**
+     * Enables to save keys
+     * @return ParallelFlow
+     */
+    public function withKeys() { return $this; }
+
+    /**
+     * @return int
+     */
+    public function getThreads() { return 0; }
+
+    /**
+     * @param callable $callback ($value, $key) -> mixed
+     * @return ParallelFlow
+     */
+    public function map(callable $callback) { return $this; }
+
+    /**
+     * @param callable $callback ($value, $key) -> bool
+     * @return ParallelFlow
+     */
+    public function filter(callable $callback) { return $this; }
+
+    /**
+     * @return int
+     */
+    public function count() { return 0; }
+
+    /**
+     * @return array
+     */
+    public function toArray() { return []; }
+
+    /**
+     * Parts of elements are reduced in threads and then their results are reduced by the same callback,
+     * so the callback must be associative (sum, min, max, etc.)
+     *
+     * @param callable $callback ($result, $value, $key) -> mixed
+     * @return mixed
+     */
+    public function reduce(callable $callback) { }
+
+    /**
+     * Groups values by keys which are returned by the callback,
+     * groups are in the order of their first elements.
+     *
+     * @param callable $callback ($value, $key) -> mixed
+     * @return array [groupKey => [values]]
+     */
+    public function group(callable $callback) { return []; }
+
+    /**
+     * Stable sort, parts of elements are sorted and merged in threads.
+     *
+     * @param callable $comparator ($value1, $value2) -> int
+     * @return array
+     */
+    public function sort(callable $comparator = null) { return []; }
+}
@@ -24,6 +24,11 @@ public class CallStackItem {
 
     public int flags;
 
+    /**
+     * Start of the call in nanos, only when calls are timed by {@link php.runtime.monitor.RuntimeMonitor}.
+     */
+    public long startTime;
+
     public CallStackItem(TraceInfo trace) {
         this.trace = trace;
     }
@@ -63,6 +68,7 @@ public class CallStackItem {
         this.object = null;
         this.args = null;
         this.flags = 0;
+        this.startTime = 0;
     }
 
     @Override
@@ -131,6 +137,15 @@ public class CallStackItem {
 
     public String toString(boolean withArgs) {
         StringBuilder sb = new StringBuilder();
+        appendFrame(sb, trace, object, args, function, clazz, withArgs);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a frame in the format of getTraceAsString() without a CallStackItem object.
+     */
+    public static void appendFrame(StringBuilder sb, TraceInfo trace, IObject object, Memory[] args,
+                                   String function, String clazz, boolean withArgs) {
         if (object instanceof Closure)
             sb.append("{closure}");
         else if (clazz != null){
@@ -169,7 +184,5 @@ public class CallStackItem {
             sb.append(trace.getStartLine() + 1);
             sb.append("]");
         }
-
-        return sb.toString();
     }
 }
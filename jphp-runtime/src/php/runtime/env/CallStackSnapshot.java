@@ -0,0 +1,131 @@
+package php.runtime.env;
+
+import php.runtime.Memory;
+import php.runtime.lang.IObject;
+import php.runtime.memory.ArrayMemory;
+
+/**
+ * Frozen compact copy of a call stack: one flat array of references (trace, function, class, object, args)
+ * per frame, without CallStackItem objects and without copying of arguments.
+ * Call stack items and backtrace arrays are materialized only on demand.
+ */
+public class CallStackSnapshot {
+    public final static CallStackSnapshot EMPTY = new CallStackSnapshot(new Object[0], 0, false);
+
+    protected final static int STRIDE = 5;
+
+    private final Object[] frames;
+    private final int size;
+    private final boolean ignoreArgs;
+
+    protected CallStackSnapshot(Object[] frames, int size, boolean ignoreArgs) {
+        this.frames = frames;
+        this.size = size;
+        this.ignoreArgs = ignoreArgs;
+    }
+
+    /**
+     * @param ignoreArgs if true, arguments of the calls are not stored
+     */
+    public static CallStackSnapshot of(CallStackItem[] callStack, int top, boolean ignoreArgs) {
+        if (top <= 0)
+            return EMPTY;
+
+        Object[] frames = new Object[top * STRIDE];
+        int j = 0;
+        for (int i = 0; i < top; i++) {
+            CallStackItem item = callStack[i];
+
+            frames[j++] = item.trace;
+            frames[j++] = item.function;
+            frames[j++] = item.clazz;
+            frames[j++] = item.object;
+            frames[j++] = ignoreArgs ? null : item.args;
+        }
+
+        return new CallStackSnapshot(frames, top, ignoreArgs);
+    }
+
+    public boolean isIgnoreArgs() {
+        return ignoreArgs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TraceInfo getTrace(int index) {
+        return (TraceInfo) frames[index * STRIDE];
+    }
+
+    public String getFunction(int index) {
+        return (String) frames[index * STRIDE + 1];
+    }
+
+    public String getClazz(int index) {
+        return (String) frames[index * STRIDE + 2];
+    }
+
+    public IObject getObject(int index) {
+        return (IObject) frames[index * STRIDE + 3];
+    }
+
+    public Memory[] getArgs(int index) {
+        return (Memory[]) frames[index * STRIDE + 4];
+    }
+
+    public CallStackItem getItem(int index) {
+        return new CallStackItem(getTrace(index), getObject(index), getArgs(index),
+                getFunction(index), getClazz(index), null);
+    }
+
+    public CallStackItem[] toItems() {
+        CallStackItem[] result = new CallStackItem[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = getItem(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Builds the php backtrace array, the same as debug_backtrace() returns.
+     */
+    public ArrayMemory toArray(boolean provideObject, boolean ignoreArgs) {
+        ArrayMemory result = new ArrayMemory();
+        for (int i = 0; i < size; i++) {
+            result.add(getItem(i).toArray(provideObject, ignoreArgs || this.ignoreArgs));
+        }
+
+        return result;
+    }
+
+    public ArrayMemory toArray() {
+        return toArray(true, false);
+    }
+
+    /**
+     * Formats frames as {@link CallStackItem#toString(CallStackItem[], boolean)} does, without materializing items.
+     */
+    public String toString(boolean withArgs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i != 0)
+                sb.append("\n");
+
+            sb.append("#").append(i).append(" ");
+            CallStackItem.appendFrame(sb, getTrace(i), getObject(i), getArgs(i), getFunction(i), getClazz(i), withArgs);
+        }
+
+        if (size != 0)
+            sb.append("\n");
+
+        sb.append("#").append(size).append(" {main}");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toString(false);
+    }
+}
@@ -25,6 +25,8 @@ import php.runtime.loader.RuntimeClassLoader;
 import php.runtime.reflection.*;
 import php.runtime.reflection.support.ReflectionUtils;
 import php.runtime.util.JVMStackTracer;
+import php.runtime.util.FormatCache;
+import php.runtime.util.PatternCache;
 import php.runtime.wrap.ClassWrapper;
 
 import java.lang.reflect.Constructor;
@@ -66,6 +68,10 @@ public class CompileScope {
     protected List<EntityFetchHandler> functionEntityFetchHandler;
     protected List<EntityFetchHandler> constantEntityFetchHandler;
 
+    protected final PatternCache patternCache;
+    protected final FormatCache formatCache;
+    protected final ScopeSnapshot snapshot;
+
     public Map<String, Memory> configuration;
 
     // flags
@@ -119,6 +125,10 @@ public class CompileScope {
         constantEntityFetchHandler = new ArrayList<EntityFetchHandler>(parent.constantEntityFetchHandler);
 
         extensions.putAll(parent.extensions);
+
+        patternCache = parent.patternCache;
+        formatCache = parent.formatCache;
+        snapshot = parent.snapshot;
     }
 
     public CompileScope() {
@@ -126,8 +136,16 @@ public class CompileScope {
     }
 
     public CompileScope(RuntimeClassLoader classLoader) {
+        this(classLoader, ScopeSnapshot.getDefault());
+    }
+
+    /**
+     * @param snapshot functions and constants of extensions, a recording snapshot or null to scan extensions
+     */
+    public CompileScope(RuntimeClassLoader classLoader, ScopeSnapshot snapshot) {
         id = scopeCount.getAndIncrement();
         this.classLoader = classLoader;
+        this.snapshot = snapshot;
 
         moduleMap = new ConcurrentHashMap<String, ModuleEntity>();
         moduleIndexMap = new ConcurrentHashMap<String, ModuleEntity>();
@@ -148,6 +166,8 @@ public class CompileScope {
         functionEntityFetchHandler = new ArrayList<EntityFetchHandler>();
 
         superGlobals = new HashSet<String>();
+        patternCache = new PatternCache();
+        formatCache = new FormatCache();
 
         superGlobals.add("GLOBALS");
         superGlobals.add("_ENV");
@@ -226,6 +246,27 @@ public class CompileScope {
         this.classLoader = new RuntimeClassLoader(classLoader);
     }
 
+    /**
+     * Compiled regex patterns shared by all environments of the scope.
+     */
+    public PatternCache getPatternCache() {
+        return patternCache;
+    }
+
+    /**
+     * Parsed sprintf and sscanf formats shared by all environments of the scope.
+     */
+    public FormatCache getFormatCache() {
+        return formatCache;
+    }
+
+    /**
+     * Snapshot of extensions used instead of scanning them on registration, may be null.
+     */
+    public ScopeSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     public LangMode getLangMode() {
         return langMode;
     }
@@ -322,6 +363,7 @@ public class CompileScope {
                 );
         }
 
+        extension.setSnapshot(snapshot);
         extension.onRegister(this);
         compileConstantMap.putAll(extension.getConstants());
         compileFunctionMap.putAll(extension.getFunctions());
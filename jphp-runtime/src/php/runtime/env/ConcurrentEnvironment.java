@@ -3,11 +3,13 @@ package php.runtime.env;
 import php.runtime.Memory;
 import php.runtime.exceptions.support.ErrorType;
 import php.runtime.lang.IObject;
+import php.runtime.monitor.RuntimeMonitor;
 import php.runtime.output.OutputBuffer;
 import php.runtime.reflection.ClassEntity;
 import php.runtime.reflection.ModuleEntity;
 
 import java.io.OutputStream;
+import java.nio.charset.CharsetEncoder;
 import java.util.Locale;
 import java.util.Set;
 import java.util.Stack;
@@ -55,6 +57,13 @@ public class ConcurrentEnvironment extends Environment {
         }
     };
 
+    private ThreadLocal<CharsetEncoder> defaultCharsetEncoder = new ThreadLocal<CharsetEncoder>(){
+        @Override
+        protected CharsetEncoder initialValue() {
+            return newDefaultCharsetEncoder();
+        }
+    };
+
     public ConcurrentEnvironment(Environment parent) {
         super(parent);
     }
@@ -88,6 +97,14 @@ public class ConcurrentEnvironment extends Environment {
         return outputBuffers.get();
     }
 
+    @Override
+    public CharsetEncoder getDefaultCharsetEncoder() {
+        if (defaultCharsetEncoder == null) // called from the super constructor
+            return newDefaultCharsetEncoder();
+
+        return defaultCharsetEncoder.get();
+    }
+
     public void pushCall(TraceInfo trace, IObject self, Memory[] args, String function, String clazz, String staticClazz){
         CallStackItem[] cs = callStack.get();
         int top = callStackTop.get();
@@ -102,6 +119,9 @@ public class ConcurrentEnvironment extends Environment {
         else
             cs[top++] = new CallStackItem(trace, self, args, function, clazz, staticClazz);
 
+        if (RuntimeMonitor.callTiming)
+            cs[top - 1].startTime = System.nanoTime();
+
         maxCallStackTop.set(top);
         callStackTop.set(top);
     }
@@ -109,7 +129,11 @@ public class ConcurrentEnvironment extends Environment {
 
     public void popCall(){
         int top = callStackTop.get();
-        callStack.get()[--top].clear(); // clear for GC
+        CallStackItem item = callStack.get()[--top];
+        if (item.startTime != 0)
+            RuntimeMonitor.callFinished(this, item);
+
+        item.clear(); // clear for GC
         callStackTop.set(top);
     }
 
@@ -131,6 +155,16 @@ public class ConcurrentEnvironment extends Environment {
         return callStackTop.get();
     }
 
+    @Override
+    public CallStackItem[] getCallStackUnsafe() {
+        return callStack.get();
+    }
+
+    @Override
+    public CallStackSnapshot captureCallStack() {
+        return CallStackSnapshot.of(callStack.get(), callStackTop.get(), isExceptionIgnoreArgs());
+    }
+
     public CallStackItem[] getCallStackSnapshot(){
         int top = callStackTop.get();
         CallStackItem[] result = new CallStackItem[top];
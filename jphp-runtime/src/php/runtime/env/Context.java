@@ -104,6 +104,13 @@ public class Context {
         return content;
     }
 
+    /**
+     * @return content if it is already read, without reading of the source
+     */
+    public String getContentIfLoaded() {
+        return content;
+    }
+
     public InputStream getInputStream(Charset charset) throws IOException {
         if (inputStream != null)
             return inputStream;
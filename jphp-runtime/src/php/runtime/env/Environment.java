@@ -22,19 +22,26 @@ import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.ObjectMemory;
 import php.runtime.memory.ReferenceMemory;
 import php.runtime.memory.StringMemory;
+import php.runtime.monitor.RuntimeMetrics;
+import php.runtime.monitor.RuntimeMonitor;
+import php.runtime.output.ByteChunkBuffer;
 import php.runtime.output.OutputBuffer;
 import php.runtime.reflection.*;
 import php.runtime.reflection.support.ReflectionUtils;
 import php.runtime.util.JVMStackTracer;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -68,12 +75,19 @@ public class Environment {
 
     private OutputBuffer defaultBuffer;
     private Stack<OutputBuffer> outputBuffers;
+    private final ByteChunkBuffer.Pool outputChunkPool = new ByteChunkBuffer.Pool();
+
+    private boolean exceptionIgnoreArgs = false;
 
     private List<ShutdownHandler> shutdownFunctions = new LinkedList<ShutdownHandler>();
+    private final List<Runnable> finalizers = new ArrayList<Runnable>();
+    private boolean finalDone = false;
 
     // charset, locale
     private Locale locale = Locale.getDefault();
     private Charset defaultCharset = Charset.forName("UTF-8");
+    private CharsetEncoder defaultCharsetEncoder;
+    private Boolean asciiCompatibleCharset;
 
     // vars
     protected final ArrayMemory globals;
@@ -158,6 +172,7 @@ public class Environment {
         this(parent.scope, parent.defaultBuffer.getOutput());
 
         configuration.putAll(parent.configuration);
+        exceptionIgnoreArgs = parent.exceptionIgnoreArgs;
         //constants.putAll(parent.constants);
 
         classMap.putAll(parent.classMap);
@@ -178,6 +193,9 @@ public class Environment {
     public Environment(CompileScope scope, OutputStream output) {
         Environment.addThreadSupport();
 
+        if (RuntimeMetrics.enabled)
+            RuntimeMetrics.ENVIRONMENTS_CREATED.inc();
+
         this.scope = scope;
 
         synchronized (freeIds) {
@@ -224,6 +242,8 @@ public class Environment {
             }
         });
 
+        this.exceptionIgnoreArgs = getConfigValue("zend.exception_ignore_args", Memory.FALSE).toBoolean();
+
         this.globals.put("GLOBALS", this.globals);
         this.constants = new HashMap<String, ConstantEntity>();
 
@@ -263,8 +283,36 @@ public class Environment {
         }
 
         finalizeObjects();
+        runFinalizers();
         flushAll();
         lastMessage = null;
+
+        if (RuntimeMetrics.enabled && !finalDone)
+            RuntimeMetrics.ENVIRONMENTS_DESTROYED.inc();
+
+        finalDone = true;
+    }
+
+    /**
+     * Registers a native callback which is called by {@link #doFinal()} after shutdown functions and destructors,
+     * e.g. to release resources (connections, locks) held by the environment.
+     */
+    public void registerFinalizer(Runnable finalizer) {
+        synchronized (finalizers) {
+            finalizers.add(finalizer);
+        }
+    }
+
+    protected void runFinalizers() {
+        Runnable[] list;
+        synchronized (finalizers) {
+            list = finalizers.toArray(new Runnable[finalizers.size()]);
+            finalizers.clear();
+        }
+
+        for (Runnable finalizer : list) {
+            finalizer.run();
+        }
     }
 
     @Override
@@ -318,6 +366,9 @@ public class Environment {
             callStack = newCallStack;
         }
 
+        if (RuntimeMonitor.callTiming)
+            stackItem.startTime = System.nanoTime();
+
         callStack[callStackTop++] = stackItem;
         maxCallStackTop = callStackTop;
     }
@@ -334,6 +385,9 @@ public class Environment {
         else
             callStack[callStackTop++] = new CallStackItem(trace, self, args, function, clazz, staticClazz);
 
+        if (RuntimeMonitor.callTiming)
+            callStack[callStackTop - 1].startTime = System.nanoTime();
+
         maxCallStackTop = callStackTop;
     }
 
@@ -347,7 +401,11 @@ public class Environment {
 
     public void popCall(){
         try {
-            callStack[--callStackTop].clear(); // clear for GC
+            CallStackItem item = callStack[--callStackTop];
+            if (item.startTime != 0)
+                RuntimeMonitor.callFinished(this, item);
+
+            item.clear(); // clear for GC
         } catch (ArrayIndexOutOfBoundsException e) {
             throw new IllegalThreadStateException();
         }
@@ -375,6 +433,32 @@ public class Environment {
         return callStackTop;
     }
 
+    /**
+     * Returns the internal call stack array without copying, {@link #getCallStackTop()} is its actual size.
+     * Used by samplers from other threads, items can be changed by the owner thread during reading.
+     */
+    public CallStackItem[] getCallStackUnsafe(){
+        return callStack;
+    }
+
+    /**
+     * Captures the current call stack for exceptions, see {@link CallStackSnapshot}.
+     */
+    public CallStackSnapshot captureCallStack(){
+        if (callStackTop < 0)
+            throw new IllegalThreadStateException();
+
+        return CallStackSnapshot.of(callStack, callStackTop, exceptionIgnoreArgs);
+    }
+
+    public boolean isExceptionIgnoreArgs() {
+        return exceptionIgnoreArgs;
+    }
+
+    public void setExceptionIgnoreArgs(boolean exceptionIgnoreArgs) {
+        this.exceptionIgnoreArgs = exceptionIgnoreArgs;
+    }
+
     public CallStackItem[] getCallStackSnapshot(){
         if (callStackTop < 0)
             throw new IllegalThreadStateException();
@@ -451,6 +535,33 @@ public class Environment {
         return defaultCharset;
     }
 
+    /**
+     * Cached encoder of the default charset, it is not thread-safe.
+     */
+    public CharsetEncoder getDefaultCharsetEncoder() {
+        if (defaultCharsetEncoder == null)
+            defaultCharsetEncoder = newDefaultCharsetEncoder();
+
+        return defaultCharsetEncoder;
+    }
+
+    protected CharsetEncoder newDefaultCharsetEncoder() {
+        return defaultCharset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public boolean isAsciiCompatibleCharset() {
+        if (asciiCompatibleCharset == null)
+            asciiCompatibleCharset = ByteChunkBuffer.isAsciiCompatible(defaultCharset);
+
+        return asciiCompatibleCharset;
+    }
+
+    public ByteChunkBuffer.Pool getOutputChunkPool() {
+        return outputChunkPool;
+    }
+
     public Set<String> getIncludePaths() {
         return includePaths;
     }
@@ -486,6 +597,20 @@ public class Environment {
     private final Set<String> autoloadLocks = new HashSet<String>();
 
     public ClassEntity autoloadCall(String name, String lowerName) {
+        if (RuntimeMonitor.enabled) {
+            long time = System.nanoTime();
+            ClassEntity result = null;
+            try {
+                return result = doAutoloadCall(name, lowerName);
+            } finally {
+                RuntimeMonitor.autoloaded(this, name, result != null, System.nanoTime() - time);
+            }
+        }
+
+        return doAutoloadCall(name, lowerName);
+    }
+
+    protected ClassEntity doAutoloadCall(String name, String lowerName) {
         synchronized (autoloadLocks) {
             // detect recursion in autoload
             if (StringUtils.isValidClassName(name) && autoloadLocks.add(lowerName)) {
@@ -801,6 +926,10 @@ public class Environment {
     }
 
     public boolean catchUncaught(Exception e){
+        if (RuntimeMonitor.enabled && !(e instanceof UncaughtException || e instanceof DieException
+                || e instanceof FinallyException))
+            RuntimeMonitor.uncaughtException(this, e);
+
         if (e instanceof UncaughtException)
             return catchUncaught((UncaughtException)e);
         else if (e instanceof DieException){
@@ -846,6 +975,9 @@ public class Environment {
     }
 
     public boolean catchUncaught(UncaughtException e){
+        if (RuntimeMonitor.enabled && !(e.getException() instanceof FinallyException))
+            RuntimeMonitor.uncaughtException(this, e.getException());
+
         if (exceptionHandler != null){
             try {
                 if (!(e.getException() instanceof FinallyException)) {
@@ -890,6 +1022,10 @@ public class Environment {
 
     public void triggerMessage(SystemMessage message){
         lastMessage = message;
+
+        if (RuntimeMonitor.enabled)
+            RuntimeMonitor.message(this, message);
+
         if (errorHandler != null){
             if (errorHandler.onError(this, message))
                 return;
@@ -905,11 +1041,10 @@ public class Environment {
     }
 
     public void exception(String message, Object... args){
-        exception(trace(), message);
+        exception(trace(), message, args);
     }
 
     public void exception(TraceInfo trace, BaseException e, String message, Object... args){
-        __clearSilent();
         if (args == null || args.length == 0)
             e.__construct(this, new StringMemory(
                     message
@@ -1005,6 +1140,27 @@ public class Environment {
             }
     }
 
+    /**
+     * Echoes a region of the file, see {@link OutputBuffer#write(FileChannel, long, long)}.
+     *
+     * @return count of written bytes
+     */
+    public long echo(FileChannel channel, long position, long count) throws IOException {
+        OutputBuffer buffer = peekOutputBuffer();
+        if (buffer != null)
+            try {
+                return buffer.write(channel, position, count);
+            } catch (RuntimeException e){
+                throw e;
+            } catch (IOException e){
+                throw e;
+            } catch (Throwable throwable) {
+                throw new RuntimeException(throwable);
+            }
+
+        return 0;
+    }
+
     public void echo(Memory value){
         OutputBuffer buffer = peekOutputBuffer();
         if (buffer != null)
@@ -1107,11 +1263,22 @@ public class Environment {
     private Memory __import(String path, ArrayMemory locals, TraceInfo trace, String funcName, boolean once, Callback<Void, Void> callback)
             throws Throwable {
         synchronized (moduleManager) {
-            if (once && moduleManager.hasModule(path)) {
+            boolean cached = moduleManager.hasModule(path);
+
+            if (once && cached) {
+                if (RuntimeMonitor.enabled)
+                    RuntimeMonitor.imported(this, path, funcName, true, true, 0);
+
                 return Memory.TRUE;
             }
 
-            ModuleEntity module = moduleManager.fetchCachedModule(path);
+            ModuleEntity module;
+            if (RuntimeMonitor.enabled) {
+                long time = System.nanoTime();
+                module = moduleManager.fetchCachedModule(path);
+                RuntimeMonitor.imported(this, path, funcName, cached, module != null, System.nanoTime() - time);
+            } else
+                module = moduleManager.fetchCachedModule(path);
 
             if (module == null) {
                 callback.call(null);
@@ -1266,7 +1433,6 @@ public class Environment {
     }
 
     public void __throwException(BaseException e){
-        __clearSilent();
         e.setTraceInfo(this, trace());
         throw e;
     }
@@ -1275,7 +1441,6 @@ public class Environment {
         if (exception.isObject() ) {
             IObject object;
             if ((object = exception.toValue(ObjectMemory.class).value) instanceof BaseException){
-                __clearSilent();
                 BaseException e = (BaseException)object;
                 e.setTraceInfo(this, trace);
                 throw e;
@@ -1583,6 +1748,12 @@ public class Environment {
                 }
             }
         });
+        configurationHandler.put("zend.exception_ignore_args", new ConfigChangeHandler() {
+            @Override
+            public void onChange(Environment env, Memory value) {
+                env.setExceptionIgnoreArgs(value != null && value.toBoolean());
+            }
+        });
     }
 
 
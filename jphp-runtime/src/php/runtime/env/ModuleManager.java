@@ -2,6 +2,7 @@ package php.runtime.env;
 
 import php.runtime.ext.core.classes.stream.Stream;
 import php.runtime.ext.core.classes.stream.WrapIOException;
+import php.runtime.monitor.RuntimeMetrics;
 import php.runtime.reflection.ModuleEntity;
 
 import java.util.Collection;
@@ -34,6 +35,9 @@ public class ModuleManager {
 
             modules.put(path, moduleEntity);
 
+            if (RuntimeMetrics.enabled)
+                RuntimeMetrics.MODULES_CACHED.inc();
+
             return moduleEntity;
         }
     }
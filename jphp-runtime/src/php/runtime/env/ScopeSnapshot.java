@@ -0,0 +1,566 @@
+package php.runtime.env;
+
+import php.runtime.Information;
+import php.runtime.Memory;
+import php.runtime.ext.support.Extension;
+import php.runtime.ext.support.compile.*;
+import php.runtime.loader.RuntimeClassLoader;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * Functions and constants of extension containers captured at build time, a scope restores
+ * them without scanning of fields, methods and annotations. Methods of a function are looked up
+ * by {@link LazyCompileFunction} only when the function is used.
+ *
+ * Layout (big endian):
+ * <pre>
+ *   header:    stamp, version, core version
+ *   functions: (container, fingerprint, count, (name, count, (class, method, immutable, param types) per method) per function)
+ *   constants: (container, fingerprint, count, (name, type, value) per constant)
+ * </pre>
+ *
+ * The fingerprint of a container is the checksum of its class file, a container changed after
+ * the snapshot was captured is scanned again.
+ *
+ * A snapshot created by the public constructor is recording, extensions registered with it
+ * are scanned as usual and their containers are added to the snapshot.
+ */
+public class ScopeSnapshot {
+    public final static String ENTRY_NAME = "JPHP-INF/scope.snapshot";
+    public final static String CLASS_LIST_NAME = "jphp.classlist";
+    public final static String RECIPE_NAME = "jphp-cds.txt";
+
+    /**
+     * System property: path to a snapshot file or "false" to disable the snapshot from the class path.
+     */
+    public final static String PROPERTY = "jphp.scope.snapshot";
+
+    public final static int SNAPSHOT_STAMP = 0x4A505353; // JPSS
+    public final static int SNAPSHOT_VERSION = 20150316;
+
+    protected final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ScopeSnapshot defaultSnapshot;
+    private static boolean defaultLoaded = false;
+
+    protected final boolean recording;
+    protected final Map<String, FunctionRecord[]> functions = new LinkedHashMap<String, FunctionRecord[]>();
+    protected final Map<String, CompileConstant[]> constants = new LinkedHashMap<String, CompileConstant[]>();
+    protected final Map<String, Long> fingerprints = new HashMap<String, Long>();
+    protected final Map<String, Boolean> upToDate = new HashMap<String, Boolean>();
+
+    public ScopeSnapshot() {
+        this(true);
+    }
+
+    protected ScopeSnapshot(boolean recording) {
+        this.recording = recording;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public Set<String> getFunctionContainers() {
+        return functions.keySet();
+    }
+
+    public Set<String> getConstantContainers() {
+        return constants.keySet();
+    }
+
+    /**
+     * @return functions of the container or null if the container is not in the snapshot
+     */
+    public Collection<CompileFunction> getFunctions(FunctionsContainer container) {
+        if (recording) {
+            return null;
+        }
+
+        FunctionRecord[] records = functions.get(container.getClass().getName());
+
+        if (records == null || !isUpToDate(container.getClass())) {
+            return null;
+        }
+
+        ClassLoader classLoader = container.getClass().getClassLoader();
+        List<CompileFunction> result = new ArrayList<CompileFunction>(records.length);
+
+        for (FunctionRecord record : records) {
+            result.add(new LazyCompileFunction(record.name, classLoader, record.signatures));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return constants of the container or null if the container is not in the snapshot
+     */
+    public Collection<CompileConstant> getConstants(ConstantsContainer container) {
+        if (recording) {
+            return null;
+        }
+
+        CompileConstant[] records = constants.get(container.getClass().getName());
+
+        if (records == null || !isUpToDate(container.getClass())) {
+            return null;
+        }
+
+        List<CompileConstant> result = new ArrayList<CompileConstant>(records.length);
+
+        for (CompileConstant record : records) {
+            result.add(new CompileConstant(record.name, toObject(record.value)));
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds functions of the container if the snapshot is recording.
+     */
+    public void putFunctions(FunctionsContainer container, Collection<CompileFunction> functions) {
+        if (!recording) {
+            return;
+        }
+
+        FunctionRecord[] records = new FunctionRecord[functions.size()];
+        int i = 0;
+
+        for (CompileFunction function : functions) {
+            if (function.getClass() != CompileFunction.class) {
+                return;
+            }
+
+            List<CompileFunction.Method> methods = function.getMethods();
+            LazyCompileFunction.Signature[] signatures = new LazyCompileFunction.Signature[methods.size()];
+
+            for (int j = 0; j < signatures.length; j++) {
+                signatures[j] = new LazyCompileFunction.Signature(methods.get(j));
+            }
+
+            records[i++] = new FunctionRecord(function.name, signatures);
+        }
+
+        this.functions.put(container.getClass().getName(), records);
+        this.fingerprints.put(container.getClass().getName(), fingerprint(container.getClass()));
+    }
+
+    /**
+     * Adds constants of the container if the snapshot is recording and all values are scalar.
+     */
+    public void putConstants(ConstantsContainer container, Collection<CompileConstant> constants) {
+        if (!recording) {
+            return;
+        }
+
+        for (CompileConstant constant : constants) {
+            if (toObject(constant.value) == null && !constant.value.isNull()) {
+                return;
+            }
+        }
+
+        this.constants.put(container.getClass().getName(), constants.toArray(new CompileConstant[constants.size()]));
+        this.fingerprints.put(container.getClass().getName(), fingerprint(container.getClass()));
+    }
+
+    /**
+     * @return false if the class file of the container differs from the one the snapshot was captured with
+     */
+    protected synchronized boolean isUpToDate(Class<?> container) {
+        Boolean result = upToDate.get(container.getName());
+
+        if (result == null) {
+            Long fingerprint = fingerprints.get(container.getName());
+            result = fingerprint != null && fingerprint != -1 && fingerprint == fingerprint(container);
+            upToDate.put(container.getName(), result);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return CRC32 of the class file, it is taken from the jar entry without reading of the class, -1 if unknown
+     */
+    protected static long fingerprint(Class<?> clazz) {
+        ClassLoader classLoader = clazz.getClassLoader();
+        String name = clazz.getName().replace('.', '/') + ".class";
+        URL url = classLoader == null ? ClassLoader.getSystemResource(name) : classLoader.getResource(name);
+
+        if (url == null) {
+            return -1;
+        }
+
+        try {
+            URLConnection connection = url.openConnection();
+
+            if (connection instanceof JarURLConnection) {
+                JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+
+                if (entry != null && entry.getCrc() != -1) {
+                    return entry.getCrc();
+                }
+            }
+
+            InputStream input = connection.getInputStream();
+            try {
+                CRC32 crc = new CRC32();
+                byte[] buffer = new byte[8192];
+                int count;
+
+                while ((count = input.read(buffer)) != -1) {
+                    crc.update(buffer, 0, count);
+                }
+
+                return crc.getValue();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    protected long getFingerprint(String container) {
+        Long fingerprint = fingerprints.get(container);
+        return fingerprint == null ? -1 : fingerprint;
+    }
+
+    protected static Object toObject(Memory value) {
+        switch (value.getRealType()) {
+            case BOOL: return value.toBoolean();
+            case INT: return value.toLong();
+            case DOUBLE: return value.toDouble();
+            case STRING: return value.toString();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return names of classes which the snapshot refers to
+     */
+    public Set<String> getClassNames() {
+        Set<String> result = new LinkedHashSet<String>();
+        result.addAll(constants.keySet());
+        result.addAll(functions.keySet());
+
+        for (FunctionRecord[] records : functions.values()) {
+            for (FunctionRecord record : records) {
+                for (LazyCompileFunction.Signature signature : record.signatures) {
+                    result.add(signature.className);
+
+                    for (String type : signature.parameterTypes) {
+                        if (type.indexOf('.') > -1 && !type.startsWith("[")) {
+                            result.add(type);
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    protected static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    protected static String readString(DataInput input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    public void write(OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+
+        data.writeInt(SNAPSHOT_STAMP);
+        data.writeInt(SNAPSHOT_VERSION);
+        data.writeUTF(Information.CORE_VERSION);
+
+        data.writeInt(functions.size());
+        for (Map.Entry<String, FunctionRecord[]> entry : functions.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeLong(getFingerprint(entry.getKey()));
+            data.writeInt(entry.getValue().length);
+
+            for (FunctionRecord record : entry.getValue()) {
+                data.writeUTF(record.name);
+                data.writeInt(record.signatures.length);
+
+                for (LazyCompileFunction.Signature signature : record.signatures) {
+                    data.writeUTF(signature.className);
+                    data.writeUTF(signature.name);
+                    data.writeBoolean(signature.immutable);
+                    data.writeInt(signature.parameterTypes.length);
+
+                    for (String type : signature.parameterTypes) {
+                        data.writeUTF(type);
+                    }
+                }
+            }
+        }
+
+        data.writeInt(constants.size());
+        for (Map.Entry<String, CompileConstant[]> entry : constants.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeLong(getFingerprint(entry.getKey()));
+            data.writeInt(entry.getValue().length);
+
+            for (CompileConstant constant : entry.getValue()) {
+                Memory value = constant.value;
+
+                data.writeUTF(constant.name);
+                data.writeByte(value.getRealType().ordinal());
+
+                switch (value.getRealType()) {
+                    case BOOL: data.writeBoolean(value.toBoolean()); break;
+                    case INT: data.writeLong(value.toLong()); break;
+                    case DOUBLE: data.writeDouble(value.toDouble()); break;
+                    case STRING: writeString(data, value.toString()); break;
+                }
+            }
+        }
+
+        data.flush();
+    }
+
+    public static ScopeSnapshot read(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+
+        if (data.readInt() != SNAPSHOT_STAMP) {
+            throw new IOException("Invalid scope snapshot");
+        }
+
+        if (data.readInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported version of scope snapshot");
+        }
+
+        String coreVersion = data.readUTF();
+        if (!Information.CORE_VERSION.equals(coreVersion)) {
+            throw new IOException("Scope snapshot of another core version - " + coreVersion);
+        }
+
+        ScopeSnapshot snapshot = new ScopeSnapshot(false);
+
+        int count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            String container = data.readUTF();
+            snapshot.fingerprints.put(container, data.readLong());
+            FunctionRecord[] records = new FunctionRecord[data.readInt()];
+
+            for (int j = 0; j < records.length; j++) {
+                String name = data.readUTF();
+                LazyCompileFunction.Signature[] signatures = new LazyCompileFunction.Signature[data.readInt()];
+
+                for (int k = 0; k < signatures.length; k++) {
+                    String className = data.readUTF();
+                    String methodName = data.readUTF();
+                    boolean immutable = data.readBoolean();
+                    String[] types = new String[data.readInt()];
+
+                    for (int t = 0; t < types.length; t++) {
+                        types[t] = data.readUTF();
+                    }
+
+                    signatures[k] = new LazyCompileFunction.Signature(className, methodName, types, immutable);
+                }
+
+                records[j] = new FunctionRecord(name, signatures);
+            }
+
+            snapshot.functions.put(container, records);
+        }
+
+        Memory.Type[] types = Memory.Type.values();
+
+        count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            String container = data.readUTF();
+            snapshot.fingerprints.put(container, data.readLong());
+            CompileConstant[] records = new CompileConstant[data.readInt()];
+
+            for (int j = 0; j < records.length; j++) {
+                String name = data.readUTF();
+                Object value;
+
+                switch (types[data.readByte()]) {
+                    case BOOL: value = data.readBoolean(); break;
+                    case INT: value = data.readLong(); break;
+                    case DOUBLE: value = data.readDouble(); break;
+                    case STRING: value = readString(data); break;
+                    default:
+                        value = null;
+                }
+
+                records[j] = new CompileConstant(name, value);
+            }
+
+            snapshot.constants.put(container, records);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Returns the snapshot from the file of {@link #PROPERTY} or from {@link #ENTRY_NAME} of the class path,
+     * null if there is no snapshot or it cannot be read.
+     */
+    public static synchronized ScopeSnapshot getDefault() {
+        if (defaultLoaded) {
+            return defaultSnapshot;
+        }
+
+        defaultLoaded = true;
+
+        String property = System.getProperty(PROPERTY);
+        if ("false".equalsIgnoreCase(property)) {
+            return null;
+        }
+
+        InputStream input = null;
+        try {
+            if (property != null && !property.isEmpty()) {
+                input = new FileInputStream(property);
+            } else {
+                ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                if (classLoader == null) {
+                    classLoader = ScopeSnapshot.class.getClassLoader();
+                }
+
+                input = classLoader.getResourceAsStream(ENTRY_NAME);
+            }
+
+            if (input != null) {
+                defaultSnapshot = read(input);
+            }
+        } catch (IOException e) {
+            defaultSnapshot = null;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    // nop.
+                }
+            }
+        }
+
+        return defaultSnapshot;
+    }
+
+    /**
+     * Registers the core and the extensions in a new scope and returns the recorded snapshot.
+     */
+    public static ScopeSnapshot capture(ClassLoader classLoader, String... extensions) {
+        return capture(classLoader, extensions, null);
+    }
+
+    protected static ScopeSnapshot capture(ClassLoader classLoader, String[] extensions, Set<String> classNames) {
+        ScopeSnapshot snapshot = new ScopeSnapshot();
+        CompileScope scope = new CompileScope(new RuntimeClassLoader(classLoader), snapshot);
+
+        for (String extension : extensions) {
+            scope.registerExtension(extension);
+        }
+
+        if (classNames != null) {
+            for (String name : scope.getExtensions()) {
+                Extension extension = scope.getExtension(name);
+                classNames.add(extension.getClass().getName());
+
+                for (Class<?> clazz : extension.getClasses().values()) {
+                    classNames.add(clazz.getName());
+                }
+            }
+
+            classNames.addAll(snapshot.getClassNames());
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Build-time step: writes the snapshot, a class list and a recipe of an AppCDS archive for the classes.
+     *
+     * <pre>
+     *   java php.runtime.env.ScopeSnapshot &lt;output dir&gt; [extension class...]
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ScopeSnapshot <output dir> [extension class...]");
+            System.exit(1);
+        }
+
+        File dir = new File(args[0]);
+        String[] extensions = Arrays.copyOfRange(args, 1, args.length);
+
+        Set<String> classNames = new LinkedHashSet<String>();
+        ScopeSnapshot snapshot = capture(Thread.currentThread().getContextClassLoader(), extensions, classNames);
+
+        File file = new File(dir, ENTRY_NAME);
+        if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Cannot create directory " + file.getParentFile());
+        }
+
+        OutputStream output = new FileOutputStream(file);
+        try {
+            snapshot.write(output);
+        } finally {
+            output.close();
+        }
+
+        PrintWriter classList = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(dir, CLASS_LIST_NAME)), UTF_8));
+        try {
+            for (String name : classNames) {
+                classList.println(name.replace('.', '/'));
+            }
+        } finally {
+            classList.close();
+        }
+
+        String classPath = System.getProperty("java.class.path");
+        PrintWriter recipe = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(dir, RECIPE_NAME)), UTF_8));
+        try {
+            recipe.println("# AppCDS archive of the jphp core and extensions, the class path must consist of jar files");
+            recipe.println("# and be the same when the archive is created and used.");
+            recipe.println();
+            recipe.println("# 1. dump classes of " + CLASS_LIST_NAME + " (JDK 10+):");
+            recipe.println("java -Xshare:dump -XX:SharedClassListFile=" + CLASS_LIST_NAME
+                    + " -XX:SharedArchiveFile=jphp.jsa -cp " + classPath);
+            recipe.println();
+            recipe.println("# or dump all classes loaded by a run of the application (JDK 13+):");
+            recipe.println("java -XX:ArchiveClassesAtExit=jphp.jsa -cp " + classPath + " php.runtime.launcher.Launcher");
+            recipe.println();
+            recipe.println("# 2. run with the archive and the snapshot in " + ENTRY_NAME + " of the class path:");
+            recipe.println("java -XX:SharedArchiveFile=jphp.jsa -cp " + classPath + " php.runtime.launcher.Launcher");
+        } finally {
+            recipe.close();
+        }
+
+        System.out.println("Scope snapshot: " + snapshot.functions.size() + " function and "
+                + snapshot.constants.size() + " constant containers, " + classNames.size() + " classes -> " + dir);
+    }
+
+    protected static class FunctionRecord {
+        protected final String name;
+        protected final LazyCompileFunction.Signature[] signatures;
+
+        protected FunctionRecord(String name, LazyCompileFunction.Signature[] signatures) {
+            this.name = name;
+            this.signatures = signatures;
+        }
+    }
+}
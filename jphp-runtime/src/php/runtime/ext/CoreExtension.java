@@ -5,17 +5,17 @@ import php.runtime.env.Environment;
 import php.runtime.exceptions.support.ErrorType;
 import php.runtime.ext.core.*;
 import php.runtime.ext.core.classes.*;
+import php.runtime.ext.core.classes.format.WrapBinaryProcessor;
 import php.runtime.ext.core.classes.format.WrapProcessor;
 import php.runtime.ext.core.classes.lib.*;
-import php.runtime.ext.core.classes.net.WrapServerSocket;
-import php.runtime.ext.core.classes.net.WrapSocket;
-import php.runtime.ext.core.classes.net.WrapSocketException;
+import php.runtime.ext.core.classes.net.*;
 import php.runtime.ext.core.classes.stream.*;
 import php.runtime.ext.core.classes.time.WrapTime;
 import php.runtime.ext.core.classes.time.WrapTimeFormat;
 import php.runtime.ext.core.classes.time.WrapTimeZone;
 import php.runtime.ext.core.classes.util.WrapFlow;
 import php.runtime.ext.core.classes.util.WrapLocale;
+import php.runtime.ext.core.classes.util.WrapParallelFlow;
 import php.runtime.ext.core.classes.util.WrapRegex;
 import php.runtime.ext.core.classes.util.WrapScanner;
 import php.runtime.ext.core.reflection.*;
@@ -87,6 +87,7 @@ public class CoreExtension extends Extension {
         registerClass(scope, WrapLocale.class);
         registerClass(scope, WrapScanner.class);
         registerClass(scope, WrapFlow.class);
+        registerClass(scope, WrapParallelFlow.class);
         registerClass(scope, WrapRegex.class);
         registerJavaExceptionForContext(scope, WrapRegex.RegexException.class, WrapRegex.class);
 
@@ -125,6 +126,10 @@ public class CoreExtension extends Extension {
         // net
         registerClass(scope, WrapSocket.class);
         registerClass(scope, WrapServerSocket.class);
+        registerClass(scope, WrapSelectableChannel.class);
+        registerClass(scope, WrapSocketChannel.class);
+        registerClass(scope, WrapServerSocketChannel.class);
+        registerClass(scope, WrapSelector.class);
         registerJavaException(scope, WrapSocketException.class, SocketException.class);
 
         registerClass(scope, WrapExecutorService.class);
@@ -132,6 +137,7 @@ public class CoreExtension extends Extension {
         registerJavaException(scope, WrapJavaExceptions.TimeoutException.class, TimeoutException.class);
 
         registerClass(scope, WrapProcessor.class);
+        registerClass(scope, WrapBinaryProcessor.class);
         registerClass(scope, WrapProcess.class);
     }
 
@@ -1,11 +1,19 @@
 package php.runtime.ext.core.classes;
 
 import php.runtime.Memory;
+import php.runtime.common.HintType;
+import php.runtime.env.ConcurrentEnvironment;
 import php.runtime.env.Environment;
 import php.runtime.lang.BaseObject;
+import php.runtime.memory.ArrayMemory;
+import php.runtime.memory.LongMemory;
 import php.runtime.memory.StringMemory;
+import php.runtime.monitor.RuntimeMetrics;
+import php.runtime.profiler.SamplingProfiler;
 import php.runtime.reflection.ClassEntity;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 
 import static php.runtime.annotation.Reflection.*;
@@ -45,4 +53,76 @@ final public class WrapSystem extends BaseObject {
         System.gc();
         return Memory.NULL;
     }
+
+    @Signature(@Arg(value = "interval", optional = @Optional(value = "10", type = HintType.INT)))
+    public static Memory startProfiler(Environment env, Memory... args) {
+        if (env instanceof ConcurrentEnvironment) {
+            env.warning("System::startProfiler(): concurrent environment cannot be profiled, call stacks are kept per thread");
+            return Memory.FALSE;
+        }
+
+        SamplingProfiler profiler = SamplingProfiler.getDefault();
+        profiler.setInterval(args[0].toInteger());
+        profiler.addEnvironment(env);
+        profiler.start();
+        return Memory.TRUE;
+    }
+
+    @Signature
+    public static Memory stopProfiler(Environment env, Memory... args) {
+        SamplingProfiler.getDefault().stop();
+        return Memory.NULL;
+    }
+
+    @Signature
+    public static Memory resetProfiler(Environment env, Memory... args) {
+        SamplingProfiler.getDefault().reset();
+        return Memory.NULL;
+    }
+
+    @Signature
+    public static Memory getProfileSamples(Environment env, Memory... args) {
+        return LongMemory.valueOf(SamplingProfiler.getDefault().getSamples());
+    }
+
+    @Signature
+    public static Memory getProfile(Environment env, Memory... args) {
+        return StringMemory.valueOf(SamplingProfiler.getDefault().toCollapsedString());
+    }
+
+    @Signature({
+            @Arg("file"),
+            @Arg(value = "format", optional = @Optional("collapsed"))
+    })
+    public static Memory writeProfile(Environment env, Memory... args) throws IOException {
+        SamplingProfiler.getDefault().writeTo(new File(args[0].toString()), args[1].toString());
+        return Memory.NULL;
+    }
+
+    @Signature(@Arg(value = "value", optional = @Optional(value = "true", type = HintType.BOOLEAN)))
+    public static Memory enableMetrics(Environment env, Memory... args) {
+        RuntimeMetrics.setEnabled(args[0].toBoolean());
+        return Memory.NULL;
+    }
+
+    @Signature
+    public static Memory isMetricsEnabled(Environment env, Memory... args) {
+        return RuntimeMetrics.isEnabled() ? Memory.TRUE : Memory.FALSE;
+    }
+
+    @Signature
+    public static Memory getMetrics(Environment env, Memory... args) {
+        ArrayMemory result = new ArrayMemory();
+        for (Map.Entry<String, Long> entry : RuntimeMetrics.snapshot(env.getScope()).entrySet()) {
+            result.put(entry.getKey(), LongMemory.valueOf(entry.getValue()));
+        }
+
+        return result.toConstant();
+    }
+
+    @Signature
+    public static Memory resetMetrics(Environment env, Memory... args) {
+        RuntimeMetrics.reset();
+        return Memory.NULL;
+    }
 }
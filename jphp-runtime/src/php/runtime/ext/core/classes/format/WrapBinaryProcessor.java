@@ -0,0 +1,68 @@
+package php.runtime.ext.core.classes.format;
+
+import php.runtime.Memory;
+import php.runtime.env.Environment;
+import php.runtime.ext.core.classes.stream.Stream;
+import php.runtime.ext.core.classes.stream.WrapIOException;
+import php.runtime.memory.BinaryMemory;
+import php.runtime.memory.output.serialization.BinaryDeserializer;
+import php.runtime.memory.output.serialization.BinarySerializer;
+import php.runtime.reflection.ClassEntity;
+
+import java.io.IOException;
+
+import static php.runtime.annotation.Reflection.*;
+
+/**
+ * Compact binary serialization, the same format as igbinary_serialize().
+ */
+@Name("php\\format\\BinaryProcessor")
+public class WrapBinaryProcessor extends WrapProcessor {
+    public WrapBinaryProcessor(Environment env) {
+        super(env);
+    }
+
+    public WrapBinaryProcessor(Environment env, ClassEntity clazz) {
+        super(env, clazz);
+    }
+
+    @Signature
+    public Memory __construct(Environment env, Memory... args) {
+        return Memory.NULL;
+    }
+
+    @Override
+    @Signature
+    public Memory parse(Environment env, Memory... args) {
+        BinaryDeserializer deserializer = new BinaryDeserializer(env, env.trace());
+
+        if (args[0].instanceOf(Stream.class)) {
+            try {
+                return deserializer.read(Stream.getInputStream(env, args[0]));
+            } catch (IOException e) {
+                env.exception(WrapIOException.class, e.getMessage());
+                return Memory.NULL;
+            }
+        } else {
+            return deserializer.read(args[0].getBinaryBytes());
+        }
+    }
+
+    @Override
+    @Signature
+    public Memory format(Environment env, Memory... args) {
+        return new BinaryMemory(BinarySerializer.serialize(env, env.trace(), args[0]));
+    }
+
+    @Override
+    @Signature
+    public Memory formatTo(Environment env, Memory... args) {
+        try {
+            new BinarySerializer(env, env.trace(), Stream.getOutputStream(env, args[1])).write(args[0]);
+        } catch (IOException e) {
+            env.exception(WrapIOException.class, e.getMessage());
+        }
+
+        return Memory.NULL;
+    }
+}
@@ -0,0 +1,53 @@
+package php.runtime.ext.core.classes.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Free list of direct buffers for socket channels, shared by all environments.
+ *
+ * Channels read and write direct buffers without an intermediate copy, but they are expensive to allocate,
+ * so buffers are taken for one operation or for pending output and given back.
+ */
+public class DirectBufferPool {
+    public final static int BUFFER_SIZE = 16 * 1024;
+    public final static int DEFAULT_MAX_FREE = 256;
+
+    private final static DirectBufferPool DEFAULT = new DirectBufferPool(BUFFER_SIZE, DEFAULT_MAX_FREE);
+
+    protected final int bufferSize;
+    protected final int maxFree;
+    protected final ArrayDeque<ByteBuffer> free = new ArrayDeque<ByteBuffer>();
+
+    public DirectBufferPool(int bufferSize, int maxFree) {
+        this.bufferSize = bufferSize;
+        this.maxFree = maxFree;
+    }
+
+    public static DirectBufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return a cleared buffer
+     */
+    public synchronized ByteBuffer acquire() {
+        ByteBuffer buffer = free.pollLast();
+        return buffer == null ? ByteBuffer.allocateDirect(bufferSize) : buffer;
+    }
+
+    public synchronized void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && free.size() < maxFree) {
+            buffer.clear();
+            free.addLast(buffer);
+        }
+    }
+
+    public synchronized int getFreeCount() {
+        return free.size();
+    }
+}
@@ -0,0 +1,65 @@
+package php.runtime.ext.core.classes.net;
+
+import php.runtime.Memory;
+import php.runtime.env.Environment;
+import php.runtime.lang.BaseObject;
+import php.runtime.reflection.ClassEntity;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+
+import static php.runtime.annotation.Reflection.*;
+
+/**
+ * Base class of channels for {@link WrapSelector}, channels are created in the non-blocking mode.
+ */
+@Name("php\\net\\SelectableChannel")
+abstract public class WrapSelectableChannel extends BaseObject {
+    public WrapSelectableChannel(Environment env) {
+        super(env);
+    }
+
+    public WrapSelectableChannel(Environment env, ClassEntity clazz) {
+        super(env, clazz);
+    }
+
+    abstract public SelectableChannel getChannel();
+
+    /**
+     * @return operations for the selector by operations of the callback
+     */
+    protected int interestOps(int ops) {
+        return ops;
+    }
+
+    /**
+     * Called by the selector before the callback.
+     *
+     * @return ready operations for the callback
+     */
+    protected int onReady(int readyOps) throws IOException {
+        return readyOps;
+    }
+
+    @Signature(@Arg("value"))
+    public Memory setBlocking(Environment env, Memory... args) throws IOException {
+        getChannel().configureBlocking(args[0].toBoolean());
+        return Memory.NULL;
+    }
+
+    @Signature
+    public Memory isBlocking(Environment env, Memory... args) {
+        return getChannel().isBlocking() ? Memory.TRUE : Memory.FALSE;
+    }
+
+    @Signature
+    public Memory isOpen(Environment env, Memory... args) {
+        return getChannel().isOpen() ? Memory.TRUE : Memory.FALSE;
+    }
+
+    @Signature
+    public Memory close(Environment env, Memory... args) throws IOException {
+        getChannel().close();
+        return Memory.NULL;
+    }
+}
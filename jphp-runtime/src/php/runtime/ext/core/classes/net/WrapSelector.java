@@ -0,0 +1,350 @@
+package php.runtime.ext.core.classes.net;
+
+import php.runtime.Memory;
+import php.runtime.common.HintType;
+import php.runtime.env.Environment;
+import php.runtime.invoke.Invoker;
+import php.runtime.lang.BaseObject;
+import php.runtime.memory.LongMemory;
+import php.runtime.memory.ObjectMemory;
+import php.runtime.reflection.ClassEntity;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static php.runtime.annotation.Reflection.*;
+
+/**
+ * Event loop of non-blocking channels, one thread serves any count of connections.
+ *
+ * Callbacks are called as callback($channel, $readyOps, $selector) when the channel is ready
+ * for operations of the registration.
+ */
+@Name("php\\net\\Selector")
+public class WrapSelector extends BaseObject {
+    public static final int OP_READ = SelectionKey.OP_READ;
+    public static final int OP_WRITE = SelectionKey.OP_WRITE;
+    public static final int OP_CONNECT = SelectionKey.OP_CONNECT;
+    public static final int OP_ACCEPT = SelectionKey.OP_ACCEPT;
+
+    protected Selector selector;
+    protected boolean running;
+    protected boolean selecting;
+
+    /**
+     * Channels registered again while selected keys are processed, their cancelled keys are not dropped yet.
+     */
+    protected final Map<SelectableChannel, Registration> pendingRegistrations
+            = new LinkedHashMap<SelectableChannel, Registration>();
+
+    public WrapSelector(Environment env, Selector selector) {
+        super(env);
+        this.selector = selector;
+    }
+
+    public WrapSelector(Environment env, ClassEntity clazz) {
+        super(env, clazz);
+    }
+
+    public Selector getSelector() {
+        return selector;
+    }
+
+    protected static class Registration {
+        protected final WrapSelectableChannel channel;
+        protected final Invoker invoker;
+        protected int ops;
+
+        public Registration(WrapSelectableChannel channel, Invoker invoker, int ops) {
+            this.channel = channel;
+            this.invoker = invoker;
+            this.ops = ops;
+        }
+    }
+
+    @Signature
+    public Memory __construct(Environment env, Memory... args) throws IOException {
+        selector = Selector.open();
+        return Memory.NULL;
+    }
+
+    protected SelectionKey keyOf(Memory channel) {
+        SelectionKey key = channel.toObject(WrapSelectableChannel.class).getChannel().keyFor(selector);
+        return key == null || !key.isValid() ? null : key;
+    }
+
+    /**
+     * Registers the channel or replaces its registration.
+     */
+    @Signature({
+            @Arg(value = "channel", typeClass = "php\\net\\SelectableChannel"),
+            @Arg("ops"),
+            @Arg(value = "callback", type = HintType.CALLABLE)
+    })
+    public Memory register(Environment env, Memory... args) throws IOException {
+        WrapSelectableChannel channel = args[0].toObject(WrapSelectableChannel.class);
+        Invoker invoker = Invoker.valueOf(env, null, args[2]);
+
+        if (invoker == null) {
+            env.exception("Argument 3 must be callable");
+            return Memory.NULL;
+        }
+
+        int ops = args[1].toInteger();
+        SelectableChannel selectable = channel.getChannel();
+
+        if ((ops & ~selectable.validOps()) != 0) {
+            env.exception("Unsupported operations %s for the channel", ops);
+            return Memory.NULL;
+        }
+
+        Registration registration = new Registration(channel, invoker, ops);
+        SelectionKey key = keyOf(args[0]);
+
+        if (key != null) {
+            key.attach(registration);
+            key.interestOps(channel.interestOps(ops));
+        } else if (selectable.keyFor(selector) == null) {
+            selectable.register(selector, channel.interestOps(ops), registration);
+        } else if (selecting) {
+            pendingRegistrations.put(selectable, registration); // registered at the end of the round
+        } else {
+            selector.selectNow(); // drops the cancelled key
+            selectable.register(selector, channel.interestOps(ops), registration);
+        }
+
+        return Memory.NULL;
+    }
+
+    protected void registerPending() throws IOException {
+        if (pendingRegistrations.isEmpty())
+            return;
+
+        selector.selectNow(); // drops the cancelled keys
+
+        for (Registration registration : pendingRegistrations.values()) {
+            SelectableChannel selectable = registration.channel.getChannel();
+
+            if (selectable.isOpen())
+                selectable.register(selector, registration.channel.interestOps(registration.ops), registration);
+        }
+
+        pendingRegistrations.clear();
+    }
+
+    /**
+     * Changes operations of the registered channel.
+     */
+    @Signature({@Arg(value = "channel", typeClass = "php\\net\\SelectableChannel"), @Arg("ops")})
+    public Memory interest(Environment env, Memory... args) {
+        SelectionKey key = keyOf(args[0]);
+        if (key == null) {
+            Registration registration = pendingRegistrations.get(args[0].toObject(WrapSelectableChannel.class).getChannel());
+            if (registration == null)
+                return Memory.FALSE;
+
+            registration.ops = args[1].toInteger();
+            return Memory.TRUE;
+        }
+
+        Registration registration = (Registration) key.attachment();
+        registration.ops = args[1].toInteger();
+        key.interestOps(registration.channel.interestOps(registration.ops));
+
+        return Memory.TRUE;
+    }
+
+    @Signature(@Arg(value = "channel", typeClass = "php\\net\\SelectableChannel"))
+    public Memory unregister(Environment env, Memory... args) {
+        SelectionKey key = keyOf(args[0]);
+        if (key == null) {
+            SelectableChannel selectable = args[0].toObject(WrapSelectableChannel.class).getChannel();
+            return pendingRegistrations.remove(selectable) == null ? Memory.FALSE : Memory.TRUE;
+        }
+
+        key.cancel();
+        return Memory.TRUE;
+    }
+
+    @Signature(@Arg(value = "channel", typeClass = "php\\net\\SelectableChannel"))
+    public Memory isRegistered(Environment env, Memory... args) {
+        if (keyOf(args[0]) != null)
+            return Memory.TRUE;
+
+        SelectableChannel selectable = args[0].toObject(WrapSelectableChannel.class).getChannel();
+        return pendingRegistrations.containsKey(selectable) ? Memory.TRUE : Memory.FALSE;
+    }
+
+    /**
+     * @return count of registered open channels
+     */
+    @Signature
+    public Memory count(Environment env, Memory... args) {
+        return LongMemory.valueOf(activeCount());
+    }
+
+    protected int activeCount() {
+        int count = 0;
+
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && key.channel().isOpen())
+                count++;
+        }
+
+        for (SelectableChannel selectable : pendingRegistrations.keySet()) {
+            if (selectable.isOpen())
+                count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Waits for ready channels and calls their callbacks.
+     *
+     * @param timeout in millis, -1 waits until a channel is ready, 0 does not wait
+     * @return count of called callbacks
+     */
+    protected int select(long timeout) throws IOException {
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid()) {
+                Registration registration = (Registration) key.attachment();
+                int ops = registration.channel.interestOps(registration.ops);
+
+                if (key.interestOps() != ops)
+                    key.interestOps(ops);
+            }
+        }
+
+        if (!selector.selectedKeys().isEmpty())
+            selector.selectNow(); // keys are left by registerPending(), select() would wait for new ones
+        else if (timeout < 0)
+            selector.select();
+        else if (timeout == 0)
+            selector.selectNow();
+        else
+            selector.select(timeout);
+
+        int count = 0;
+        ObjectMemory self = null;
+        boolean nested = selecting;
+
+        selecting = true;
+        try {
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+
+                if (!key.isValid())
+                    continue;
+
+                Registration registration = (Registration) key.attachment();
+                int readyOps;
+
+                try {
+                    readyOps = registration.channel.onReady(key.readyOps()) & registration.ops;
+                } catch (IOException e) {
+                    // a broken channel is dropped, the loop goes on for other channels
+                    key.cancel();
+                    closeQuietly(key.channel());
+                    continue;
+                }
+
+                if (readyOps != 0) {
+                    if (self == null)
+                        self = new ObjectMemory(this);
+
+                    registration.invoker.callNoThrow(
+                            new ObjectMemory(registration.channel), LongMemory.valueOf(readyOps), self
+                    );
+                    count++;
+                }
+            }
+        } finally {
+            selecting = nested;
+        }
+
+        if (!nested)
+            registerPending();
+
+        return count;
+    }
+
+    protected static void closeQuietly(SelectableChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nop
+        }
+    }
+
+    @Signature(@Arg(value = "timeout", optional = @Optional(value = "-1", type = HintType.INT)))
+    public Memory select(Environment env, Memory... args) throws IOException {
+        return LongMemory.valueOf(select(args[0].toLong()));
+    }
+
+    /**
+     * Runs the loop until stop() is called or all channels are closed or unregistered.
+     */
+    @Signature
+    public Memory run(Environment env, Memory... args) throws IOException {
+        running = true;
+
+        try {
+            while (running && activeCount() > 0) {
+                select(-1);
+            }
+        } finally {
+            running = false;
+        }
+
+        return Memory.NULL;
+    }
+
+    @Signature
+    public Memory stop(Environment env, Memory... args) {
+        running = false;
+        selector.wakeup();
+        return Memory.NULL;
+    }
+
+    @Signature
+    public Memory isRunning(Environment env, Memory... args) {
+        return running ? Memory.TRUE : Memory.FALSE;
+    }
+
+    @Signature
+    public Memory wakeup(Environment env, Memory... args) {
+        selector.wakeup();
+        return Memory.NULL;
+    }
+
+    @Signature
+    public Memory close(Environment env, Memory... args) throws IOException {
+        running = false;
+        pendingRegistrations.clear();
+        selector.close();
+        return Memory.NULL;
+    }
+
+    /**
+     * @return the event loop of the environment
+     */
+    @Signature
+    public static Memory current(Environment env, Memory... args) throws IOException {
+        WrapSelector selector = env.getUserValue(WrapSelector.class.getName(), WrapSelector.class);
+
+        if (selector == null || !selector.selector.isOpen()) {
+            selector = new WrapSelector(env, Selector.open());
+            env.setUserValue(WrapSelector.class.getName(), selector);
+        }
+
+        return new ObjectMemory(selector);
+    }
+}
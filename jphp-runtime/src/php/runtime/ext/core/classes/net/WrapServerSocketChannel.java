@@ -0,0 +1,85 @@
+package php.runtime.ext.core.classes.net;
+
+import php.runtime.Memory;
+import php.runtime.common.HintType;
+import php.runtime.env.Environment;
+import php.runtime.memory.LongMemory;
+import php.runtime.memory.ObjectMemory;
+import php.runtime.reflection.ClassEntity;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import static php.runtime.annotation.Reflection.*;
+
+@Name("php\\net\\ServerSocketChannel")
+public class WrapServerSocketChannel extends WrapSelectableChannel {
+    protected ServerSocketChannel channel;
+
+    public WrapServerSocketChannel(Environment env, ServerSocketChannel channel) {
+        super(env);
+        this.channel = channel;
+    }
+
+    public WrapServerSocketChannel(Environment env, ClassEntity clazz) {
+        super(env, clazz);
+    }
+
+    @Override
+    public SelectableChannel getChannel() {
+        return channel;
+    }
+
+    @Signature
+    public Memory __construct(Environment env, Memory... args) throws IOException {
+        channel = ServerSocketChannel.open();
+        channel.configureBlocking(false);
+        return Memory.NULL;
+    }
+
+    @Signature({@Arg("hostname"), @Arg("port"),
+            @Arg(value = "backLog", optional = @Optional(value = "50", type = HintType.INT))})
+    public Memory bind(Environment env, Memory... args) throws IOException {
+        channel.socket().bind(new InetSocketAddress(args[0].toString(), args[1].toInteger()), args[2].toInteger());
+        return Memory.NULL;
+    }
+
+    /**
+     * @return a non-blocking channel of the connection or NULL if there is no pending connection
+     */
+    @Signature
+    public Memory accept(Environment env, Memory... args) throws IOException {
+        SocketChannel accepted = channel.accept();
+        if (accepted == null)
+            return Memory.NULL;
+
+        accepted.configureBlocking(false);
+        return new ObjectMemory(new WrapSocketChannel(env, accepted));
+    }
+
+    @Signature
+    public Memory getLocalPort(Environment env, Memory... args) {
+        return LongMemory.valueOf(channel.socket().getLocalPort());
+    }
+
+    @Signature
+    public Memory isBound(Environment env, Memory... args) {
+        return channel.socket().isBound() ? Memory.TRUE : Memory.FALSE;
+    }
+
+    @Signature(@Arg("on"))
+    public Memory setReuseAddress(Environment env, Memory... args) throws SocketException {
+        channel.socket().setReuseAddress(args[0].toBoolean());
+        return Memory.NULL;
+    }
+
+    @Signature(@Arg("size"))
+    public Memory setReceiveBufferSize(Environment env, Memory... args) throws SocketException {
+        channel.socket().setReceiveBufferSize(args[0].toInteger());
+        return Memory.NULL;
+    }
+}
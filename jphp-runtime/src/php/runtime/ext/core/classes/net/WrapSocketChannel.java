@@ -0,0 +1,260 @@
+package php.runtime.ext.core.classes.net;
+
+import php.runtime.Memory;
+import php.runtime.common.HintType;
+import php.runtime.env.Environment;
+import php.runtime.ext.core.classes.stream.WrapIOException;
+import php.runtime.memory.BinaryMemory;
+import php.runtime.memory.LongMemory;
+import php.runtime.reflection.ClassEntity;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+import static php.runtime.annotation.Reflection.*;
+
+/**
+ * Non-blocking socket, read() and write() never wait.
+ *
+ * Bytes which cannot be written at once are kept in pooled direct buffers and written
+ * by flush() or by the selector when the socket becomes writable.
+ */
+@Name("php\\net\\SocketChannel")
+public class WrapSocketChannel extends WrapSelectableChannel {
+    protected SocketChannel channel;
+
+    protected final DirectBufferPool pool = DirectBufferPool.getDefault();
+    protected final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+    protected long pendingSize;
+
+    public WrapSocketChannel(Environment env, SocketChannel channel) {
+        super(env);
+        this.channel = channel;
+    }
+
+    public WrapSocketChannel(Environment env, ClassEntity clazz) {
+        super(env, clazz);
+    }
+
+    @Override
+    public SelectableChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    protected int interestOps(int ops) {
+        return pending.isEmpty() ? ops : ops | SelectionKey.OP_WRITE;
+    }
+
+    @Override
+    protected int onReady(int readyOps) throws IOException {
+        if ((readyOps & SelectionKey.OP_WRITE) != 0 && !flushPending())
+            readyOps &= ~SelectionKey.OP_WRITE;
+
+        return readyOps;
+    }
+
+    /**
+     * @return true if all pending bytes are written
+     */
+    protected boolean flushPending() throws IOException {
+        while (!pending.isEmpty()) {
+            ByteBuffer buffer = pending.peekFirst();
+
+            pendingSize -= channel.write(buffer);
+            if (buffer.hasRemaining())
+                return false;
+
+            pool.release(pending.pollFirst());
+        }
+
+        return true;
+    }
+
+    protected void releasePending() {
+        for (ByteBuffer buffer : pending) {
+            pool.release(buffer);
+        }
+
+        pending.clear();
+        pendingSize = 0;
+    }
+
+    @Signature
+    public Memory __construct(Environment env, Memory... args) throws IOException {
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        return Memory.NULL;
+    }
+
+    /**
+     * @return true if the connection is established, otherwise it is finished by finishConnect()
+     */
+    @Signature({@Arg("hostname"), @Arg("port")})
+    public Memory connect(Environment env, Memory... args) throws IOException {
+        return channel.connect(new InetSocketAddress(args[0].toString(), args[1].toInteger())) ? Memory.TRUE : Memory.FALSE;
+    }
+
+    @Signature
+    public Memory finishConnect(Environment env, Memory... args) throws IOException {
+        return channel.finishConnect() ? Memory.TRUE : Memory.FALSE;
+    }
+
+    @Signature
+    public Memory isConnected(Environment env, Memory... args) {
+        return channel.isConnected() ? Memory.TRUE : Memory.FALSE;
+    }
+
+    @Signature
+    public Memory isConnectionPending(Environment env, Memory... args) {
+        return channel.isConnectionPending() ? Memory.TRUE : Memory.FALSE;
+    }
+
+    /**
+     * @return available bytes (an empty string if there are none) or NULL at the end of stream
+     */
+    @Signature(@Arg(value = "length", optional = @Optional(value = "8192", type = HintType.INT)))
+    public Memory read(Environment env, Memory... args) throws IOException {
+        int length = args[0].toInteger();
+        if (length < 1)
+            env.exception(WrapIOException.class, "Length must be greater than zero, %s given", length);
+
+        ByteBuffer buffer = pool.acquire();
+        try {
+            byte[] result = null;
+            int size = 0;
+
+            while (size < length) {
+                buffer.clear();
+                buffer.limit(Math.min(buffer.capacity(), length - size));
+
+                int read = channel.read(buffer);
+                if (read == -1) {
+                    if (size == 0)
+                        return Memory.NULL;
+
+                    break;
+                }
+
+                if (read == 0)
+                    break;
+
+                if (result == null)
+                    result = new byte[buffer.hasRemaining() ? read : Math.min(length, read * 2)];
+                else if (result.length < size + read) {
+                    byte[] tmp = new byte[Math.min(length, Math.max(result.length * 2, size + read))];
+                    System.arraycopy(result, 0, tmp, 0, size);
+                    result = tmp;
+                }
+
+                buffer.flip();
+                buffer.get(result, size, read);
+                size += read;
+            }
+
+            if (size == 0)
+                return Memory.CONST_EMPTY_STRING;
+
+            if (size < result.length) {
+                byte[] tmp = new byte[size];
+                System.arraycopy(result, 0, tmp, 0, size);
+                result = tmp;
+            }
+
+            return new BinaryMemory(result);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * @return count of bytes written at once, the rest is pending
+     */
+    @Signature(@Arg("value"))
+    public Memory write(Environment env, Memory... args) throws IOException {
+        byte[] bytes = args[0].getBinaryBytes();
+        long written = 0;
+
+        for (int offset = 0; offset < bytes.length; ) {
+            ByteBuffer buffer = pool.acquire();
+            int size = Math.min(buffer.capacity(), bytes.length - offset);
+
+            buffer.put(bytes, offset, size);
+            buffer.flip();
+            offset += size;
+
+            if (pending.isEmpty()) {
+                written += channel.write(buffer);
+
+                if (!buffer.hasRemaining()) {
+                    pool.release(buffer);
+                    continue;
+                }
+            }
+
+            pending.addLast(buffer);
+            pendingSize += buffer.remaining();
+        }
+
+        return LongMemory.valueOf(written);
+    }
+
+    /**
+     * @return true if all pending bytes are written
+     */
+    @Signature
+    public Memory flush(Environment env, Memory... args) throws IOException {
+        return flushPending() ? Memory.TRUE : Memory.FALSE;
+    }
+
+    @Signature
+    public Memory getPendingSize(Environment env, Memory... args) {
+        return LongMemory.valueOf(pendingSize);
+    }
+
+    @Signature
+    public Memory getLocalPort(Environment env, Memory... args) {
+        return LongMemory.valueOf(channel.socket().getLocalPort());
+    }
+
+    @Signature
+    public Memory getPort(Environment env, Memory... args) {
+        return LongMemory.valueOf(channel.socket().getPort());
+    }
+
+    @Signature
+    public Memory shutdownInput(Environment env, Memory... args) throws IOException {
+        channel.socket().shutdownInput();
+        return Memory.NULL;
+    }
+
+    @Signature
+    public Memory shutdownOutput(Environment env, Memory... args) throws IOException {
+        channel.socket().shutdownOutput();
+        return Memory.NULL;
+    }
+
+    @Signature(@Arg("on"))
+    public Memory setTcpNoDelay(Environment env, Memory... args) throws SocketException {
+        channel.socket().setTcpNoDelay(args[0].toBoolean());
+        return Memory.NULL;
+    }
+
+    @Override
+    @Signature
+    public Memory close(Environment env, Memory... args) throws IOException {
+        try {
+            channel.close();
+        } finally {
+            releasePending();
+        }
+
+        return Memory.NULL;
+    }
+}
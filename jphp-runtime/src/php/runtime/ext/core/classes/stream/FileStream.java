@@ -7,21 +7,50 @@ import php.runtime.memory.BinaryMemory;
 import php.runtime.memory.LongMemory;
 import php.runtime.reflection.ClassEntity;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 import static php.runtime.annotation.Reflection.*;
 
+/**
+ * File stream, by default each operation is a call of {@link RandomAccessFile}.
+ *
+ * Options of the constructor:
+ *   buffered   - reads and writes through a reusable buffer, writes are flushed by flush(), seek() or close()
+ *   bufferSize - size of the buffer, 8192 by default
+ *   mmap       - read only mode on a memory-mapped file, large files are mapped by windows of 1 GB
+ */
 @Name("php\\io\\FileStream")
 public class FileStream extends Stream {
     private final static String MSG_FILE_NOT_FOUND = "File '%s' not found";
 
+    protected final static int DEFAULT_BUFFER_SIZE = 8192;
+    protected final static long MAP_WINDOW_SIZE = 1L << 30;
+
     protected RandomAccessFile accessFile;
     protected boolean canRead = true;
     protected long position = 0;
+    protected boolean closed = false;
+
+    // buffered mode: either buffer[bufferPos..bufferLimit) are read bytes after the position
+    // or buffer[0..bufferWritten) are written bytes before the position
+    protected byte[] buffer;
+    protected int bufferPos;
+    protected int bufferLimit;
+    protected int bufferWritten;
+
+    // mmap mode
+    protected boolean mapped = false;
+    protected long mappedLength;
+    protected MappedByteBuffer window;
+    protected long windowOffset;
 
     public FileStream(Environment env, ClassEntity clazz) {
         super(env, clazz);
@@ -36,7 +65,11 @@ public class FileStream extends Stream {
     }
 
     @Override
-    @Signature({@Arg("path"), @Arg(value = "mode", optional = @Reflection.Optional("r"))})
+    @Signature({
+            @Arg("path"),
+            @Arg(value = "mode", optional = @Reflection.Optional("r")),
+            @Arg(value = "options", optional = @Reflection.Optional("NULL"))
+    })
     public Memory __construct(Environment env, Memory... args) throws IOException {
         super.__construct(env, args);
 
@@ -84,6 +117,21 @@ public class FileStream extends Stream {
                     canRead = false;
             } else
                 env.exception(WrapIOException.class, "Unsupported mode - '%s'", getMode());
+
+            Memory options = args.length > 2 ? args[2] : Memory.NULL;
+
+            if (options.isArray()) {
+                if (options.valueOfIndex("mmap").toBoolean()) {
+                    if (!getMode().equals("r"))
+                        env.exception(WrapIOException.class, "Memory-mapped mode is supported only for 'r' mode");
+
+                    mapped = true;
+                    mappedLength = accessFile.length();
+                } else if (options.valueOfIndex("buffered").toBoolean()) {
+                    int size = options.valueOfIndex("bufferSize").toInteger();
+                    buffer = new byte[size > 0 ? size : DEFAULT_BUFFER_SIZE];
+                }
+            }
         } catch (FileNotFoundException e){
             throwFileNotFound(env);
         } catch (IOException e) {
@@ -93,14 +141,341 @@ public class FileStream extends Stream {
         return Memory.NULL;
     }
 
+    /**
+     * Enables the buffered mode, before the first read or write.
+     */
+    public void setBufferSize(int size) {
+        if (!mapped && bufferPos == bufferLimit && bufferWritten == 0)
+            buffer = new byte[size > 0 ? size : DEFAULT_BUFFER_SIZE];
+    }
+
+    protected void checkClosed() throws IOException {
+        if (closed)
+            throw new IOException("Stream Closed");
+    }
+
+    /**
+     * Writes pending bytes of the buffer or drops read bytes, the file pointer becomes equal to the position.
+     */
+    protected void flushBuffer() throws IOException {
+        if (bufferWritten > 0) {
+            accessFile.write(buffer, 0, bufferWritten);
+            bufferWritten = 0;
+        } else if (bufferPos < bufferLimit) {
+            accessFile.seek(position);
+        }
+
+        bufferPos = bufferLimit = 0;
+    }
+
+    /**
+     * @return the mapped window with the offset of file
+     */
+    protected MappedByteBuffer window(long offset) throws IOException {
+        if (window == null || offset < windowOffset || offset >= windowOffset + window.capacity()) {
+            window = null;
+            windowOffset = offset - offset % MAP_WINDOW_SIZE;
+            window = accessFile.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, windowOffset, Math.min(MAP_WINDOW_SIZE, mappedLength - windowOffset)
+            );
+        }
+
+        return window;
+    }
+
+    /**
+     * @return count of read bytes or -1 at the end of file
+     */
+    protected int readBytes(byte[] bytes, int off, int len) throws IOException {
+        checkClosed();
+
+        if (mapped) {
+            long remaining = mappedLength - position;
+            if (remaining <= 0)
+                return -1;
+
+            int count = (int) Math.min(len, remaining);
+            int done = 0;
+
+            while (done < count) {
+                MappedByteBuffer window = window(position);
+                int index = (int) (position - windowOffset);
+                int size = Math.min(count - done, window.capacity() - index);
+
+                window.position(index);
+                window.get(bytes, off + done, size);
+
+                done += size;
+                position += size;
+            }
+
+            return count;
+        }
+
+        if (buffer == null) {
+            int read = accessFile.read(bytes, off, len);
+            if (read > 0)
+                position += read;
+
+            return read;
+        }
+
+        if (bufferWritten > 0)
+            flushBuffer();
+
+        int done = 0;
+        while (done < len) {
+            if (bufferPos == bufferLimit) {
+                bufferPos = bufferLimit = 0;
+
+                if (len - done >= buffer.length) {
+                    int read = accessFile.read(bytes, off + done, len - done);
+                    if (read == -1)
+                        break;
+
+                    done += read;
+                    position += read;
+                    continue;
+                }
+
+                int read = accessFile.read(buffer, 0, buffer.length);
+                if (read == -1)
+                    break;
+
+                bufferLimit = read;
+            }
+
+            int size = Math.min(len - done, bufferLimit - bufferPos);
+            System.arraycopy(buffer, bufferPos, bytes, off + done, size);
+
+            bufferPos += size;
+            done += size;
+            position += size;
+        }
+
+        return done == 0 && len > 0 ? -1 : done;
+    }
+
+    @Override
+    public byte[] readLineBytes(Environment env, int limit) throws IOException {
+        if (!canRead)
+            throwCannotRead(env);
+
+        checkClosed();
+
+        if (limit < 0)
+            limit = Integer.MAX_VALUE;
+
+        if (mapped) {
+            if (position >= mappedLength)
+                return null;
+
+            long start = position;
+            long end = start;
+            long max = Math.min(mappedLength, start + limit);
+
+            scan:
+            while (end < max) {
+                MappedByteBuffer window = window(end);
+
+                int count = (int) Math.min(window.capacity(), max - windowOffset);
+                for (int i = (int) (end - windowOffset); i < count; i++) {
+                    end++;
+                    if (window.get(i) == '\n')
+                        break scan;
+                }
+            }
+
+            byte[] result = new byte[(int) (end - start)];
+            readBytes(result, 0, result.length);
+            return result;
+        }
+
+        ByteArrayOutputStream line = null;
+        int size = 0;
+
+        if (buffer != null) {
+            if (bufferWritten > 0)
+                flushBuffer();
+
+            while (true) {
+                if (bufferPos == bufferLimit) {
+                    bufferPos = bufferLimit = 0;
+
+                    int read = accessFile.read(buffer, 0, buffer.length);
+                    if (read == -1)
+                        return line == null ? null : line.toByteArray();
+
+                    bufferLimit = read;
+                }
+
+                int end = bufferPos;
+                int max = (int) Math.min(bufferLimit, (long) bufferPos + limit - size);
+                while (end < max && buffer[end] != '\n') {
+                    end++;
+                }
+
+                boolean found = end < max;
+                if (found)
+                    end++;
+
+                int count = end - bufferPos;
+                position += count;
+                size += count;
+
+                if ((found || size == limit) && line == null) {
+                    byte[] result = Arrays.copyOfRange(buffer, bufferPos, end);
+                    bufferPos = end;
+                    return result;
+                }
+
+                if (line == null)
+                    line = new ByteArrayOutputStream(Math.max(count * 2, 64));
+
+                line.write(buffer, bufferPos, count);
+                bufferPos = end;
+
+                if (found || size == limit)
+                    return line.toByteArray();
+            }
+        }
+
+        byte[] chunk = new byte[256];
+
+        while (true) {
+            int read = accessFile.read(chunk, 0, Math.min(chunk.length, limit - size));
+            if (read == -1)
+                return line == null ? null : line.toByteArray();
+
+            int end = 0;
+            while (end < read && chunk[end] != '\n') {
+                end++;
+            }
+
+            boolean found = end < read;
+            if (found)
+                end++;
+
+            if (line == null)
+                line = new ByteArrayOutputStream(Math.max(end, 64));
+
+            line.write(chunk, 0, end);
+            position += end;
+            size += end;
+
+            if (found || size == limit) {
+                accessFile.seek(position);
+                return line.toByteArray();
+            }
+        }
+    }
+
+    /**
+     * Writes pending bytes and drops read bytes of the buffer, so the channel can be used from the position.
+     */
+    protected FileChannel channel() throws IOException {
+        checkClosed();
+
+        if (buffer != null)
+            flushBuffer();
+
+        return accessFile.getChannel();
+    }
+
+    /**
+     * Writes a region of the channel at the position by {@link FileChannel#transferTo}, without copying to the heap.
+     *
+     * @return count of written bytes, less than count at the end of the channel
+     */
+    public long write(FileChannel source, long offset, long count) throws IOException {
+        if (mapped)
+            throw new IOException("Cannot write to a memory-mapped file");
+
+        FileChannel channel = channel();
+        long written = 0;
+
+        while (written < count) {
+            long size = source.transferTo(offset + written, count - written, channel);
+            if (size <= 0)
+                break;
+
+            written += size;
+        }
+
+        position += written;
+        return written;
+    }
+
+    @Override
+    public long transferTo(Environment env, Stream output) throws IOException {
+        if (!canRead)
+            throwCannotRead(env);
+
+        if (!(output instanceof FileStream))
+            return super.transferTo(env, output);
+
+        FileChannel channel = channel();
+        long written = ((FileStream) output).write(channel, position, remaining(channel));
+
+        skip(written);
+        return written;
+    }
+
+    @Override
+    public long transferToOutput(Environment env) throws IOException {
+        if (!canRead)
+            throwCannotRead(env);
+
+        FileChannel channel = channel();
+        long written = env.echo(channel, position, remaining(channel));
+
+        skip(written);
+        return written;
+    }
+
+    protected long remaining(FileChannel channel) throws IOException {
+        return Math.max(0, (mapped ? mappedLength : channel.size()) - position);
+    }
+
+    /**
+     * Moves the position after a transfer by the channel, which does not change the file pointer.
+     */
+    protected void skip(long count) throws IOException {
+        position += count;
+
+        if (!mapped)
+            accessFile.seek(position);
+    }
+
     @Signature({@Arg("value"), @Arg(value = "length", optional = @Optional("NULL"))})
     public Memory write(Environment env, Memory... args){
         int len = args[1].toInteger();
         byte[] bytes = args[0].getBinaryBytes();
 
+        if (mapped)
+            env.exception(WrapIOException.class, "Cannot write to a memory-mapped file");
+
         try {
-            accessFile.write(bytes, 0, len == 0 ? bytes.length : len);
-            return LongMemory.valueOf(len == 0 ? bytes.length : len);
+            checkClosed();
+
+            int count = len == 0 ? bytes.length : len;
+
+            if (buffer == null) {
+                accessFile.write(bytes, 0, count);
+            } else {
+                if (bufferLimit > 0 || count > buffer.length - bufferWritten)
+                    flushBuffer();
+
+                if (count >= buffer.length) {
+                    accessFile.write(bytes, 0, count);
+                } else {
+                    System.arraycopy(bytes, 0, buffer, bufferWritten, count);
+                    bufferWritten += count;
+                }
+            }
+
+            position += count;
+            return LongMemory.valueOf(count);
         } catch (IOException e) {
             env.exception(WrapIOException.class, e.getMessage());
         }
@@ -117,13 +492,13 @@ public class FileStream extends Stream {
         if (len < 1)
             env.exception(WrapIOException.class, "Length must be greater than zero, %s given", len);
 
-        byte[] buff = new byte[len];
         try {
-            int read = accessFile.read(buff, 0, len);
+            byte[] buff = new byte[mapped ? (int) Math.max(0, Math.min(len, mappedLength - position)) : len];
+
+            int read = readBytes(buff, 0, buff.length);
             if (read == -1)
                 return Memory.NULL;
 
-            position += read;
             if (read != buff.length){
                 buff = Arrays.copyOf(buff, read);
             }
@@ -140,14 +515,27 @@ public class FileStream extends Stream {
             throwCannotRead(env);
         long len = 0;
         try {
-            len = accessFile.length() - position;
+            if (mapped) {
+                len = mappedLength - position;
+            } else {
+                if (bufferWritten > 0)
+                    flushBuffer();
+
+                len = accessFile.length() - position;
+            }
 
             if (len <= 0)
                 return Memory.FALSE;
 
             byte[] buff = new byte[(int)len];
-            accessFile.readFully(buff);
-            position += len;
+            if (buffer == null && !mapped) {
+                accessFile.readFully(buff);
+                position += len;
+            } else {
+                int read = readBytes(buff, 0, buff.length);
+                if (read != buff.length)
+                    buff = Arrays.copyOf(buff, Math.max(read, 0));
+            }
 
             return new BinaryMemory(buff);
         } catch (IOException e) {
@@ -155,18 +543,88 @@ public class FileStream extends Stream {
         }
     }
 
+    @Signature({@Arg("offset"), @Arg("length")})
+    public Memory slice(Environment env, Memory... args){
+        if (!canRead)
+            throwCannotRead(env);
+
+        long offset = args[0].toLong();
+        int len = args[1].toInteger();
+
+        if (offset < 0 || len < 0)
+            env.exception(WrapIOException.class, "Offset and length must be positive");
+
+        long saved = position;
+        try {
+            checkClosed();
+
+            if (mapped) {
+                byte[] buff = new byte[(int) Math.max(0, Math.min(len, mappedLength - offset))];
+
+                position = offset;
+                readBytes(buff, 0, buff.length);
+                return new BinaryMemory(buff);
+            }
+
+            if (bufferWritten > 0)
+                flushBuffer();
+
+            FileChannel channel = accessFile.getChannel();
+            ByteBuffer buff = ByteBuffer.allocate((int) Math.max(0, Math.min(len, channel.size() - offset)));
+
+            while (buff.hasRemaining()) {
+                if (channel.read(buff, offset + buff.position()) == -1)
+                    break;
+            }
+
+            return new BinaryMemory(buff.position() == buff.capacity() ? buff.array() : Arrays.copyOf(buff.array(), buff.position()));
+        } catch (IOException e) {
+            env.exception(WrapIOException.class, e.getMessage());
+            return Memory.FALSE;
+        } finally {
+            position = saved;
+        }
+    }
+
     @Signature
     public Memory eof(Environment env, Memory... args){
         try {
+            if (mapped)
+                return position >= mappedLength ? Memory.TRUE : Memory.FALSE;
+
+            if (bufferPos < bufferLimit)
+                return Memory.FALSE;
+
+            if (bufferWritten > 0)
+                flushBuffer();
+
             return position >= accessFile.length() ? Memory.TRUE : Memory.FALSE;
         } catch (IOException e) {
             return Memory.FALSE;
         }
     }
 
+    @Signature
+    public Memory flush(Environment env, Memory... args) throws IOException {
+        if (bufferWritten > 0)
+            flushBuffer();
+
+        return Memory.NULL;
+    }
+
     @Signature
     public Memory close(Environment env, Memory... args) throws IOException {
-        accessFile.close();
+        try {
+            if (!closed && bufferWritten > 0)
+                flushBuffer();
+        } finally {
+            closed = true;
+            bufferPos = bufferLimit = bufferWritten = 0;
+            window = null;
+
+            accessFile.close();
+        }
+
         return Memory.NULL;
     }
 
@@ -177,23 +635,59 @@ public class FileStream extends Stream {
 
     @Signature(@Arg("position"))
     public Memory seek(Environment env, Memory... args) throws IOException {
-        accessFile.seek(args[0].toLong());
+        long pos = args[0].toLong();
+        checkClosed();
+
+        if (mapped) {
+            position = pos;
+            return Memory.NULL;
+        }
+
+        if (buffer != null) {
+            long start = position - bufferPos;
+            if (bufferWritten == 0 && bufferLimit > 0 && pos >= start && pos <= start + bufferLimit) {
+                bufferPos = (int) (pos - start);
+                position = pos;
+                return Memory.NULL;
+            }
+
+            flushBuffer();
+        }
+
+        accessFile.seek(pos);
+        position = pos;
         return Memory.NULL;
     }
 
     @Signature
     public Memory getFilePointer(Environment env, Memory... args) throws IOException {
+        if (buffer != null || mapped)
+            return LongMemory.valueOf(position);
+
         return LongMemory.valueOf(accessFile.getFilePointer());
     }
 
     @Signature
     public Memory length(Environment env, Memory... args) throws IOException {
+        if (mapped)
+            return LongMemory.valueOf(mappedLength);
+
+        if (bufferWritten > 0)
+            flushBuffer();
+
         return LongMemory.valueOf(accessFile.length());
     }
 
     @Signature(@Arg("size"))
     public Memory truncate(Environment env, Memory... args) throws IOException {
+        if (mapped)
+            env.exception(WrapIOException.class, "Cannot truncate a memory-mapped file");
+
+        if (buffer != null)
+            flushBuffer();
+
         accessFile.setLength(args[0].toLong());
+        position = accessFile.getFilePointer();
         return Memory.NULL;
     }
 }
@@ -18,6 +18,7 @@ import java.io.*;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Arrays;
 
 import static java.lang.annotation.ElementType.TYPE;
 import static php.runtime.annotation.Reflection.*;
@@ -36,6 +37,9 @@ abstract public class Stream extends BaseObject implements Resource {
     @Ignore
     public final static String CLASS_NAME = "php\\io\\Stream";
 
+    @Ignore
+    protected final static Memory TRANSFER_CHUNK_SIZE = LongMemory.valueOf(8192);
+
     private String path;
     private String mode;
     private Memory context = Memory.NULL;
@@ -108,6 +112,120 @@ abstract public class Stream extends BaseObject implements Resource {
     @Signature
     abstract public Memory close(Environment env, Memory... args) throws IOException;
 
+    /**
+     * Reads bytes up to the line break (included) or the limit, streams read it by one byte by default.
+     *
+     * @param limit max count of bytes, -1 for no limit
+     * @return null at the end of stream
+     */
+    public byte[] readLineBytes(Environment env, int limit) throws IOException {
+        ByteArrayOutputStream line = null;
+
+        while (limit < 0 || line == null || line.size() < limit) {
+            Memory value = read(env, Memory.CONST_INT_1);
+            if (!value.isString())
+                break;
+
+            byte[] bytes = value.getBinaryBytes();
+            if (bytes.length == 0)
+                break;
+
+            if (line == null)
+                line = new ByteArrayOutputStream(64);
+
+            line.write(bytes[0]);
+            if (bytes[0] == '\n')
+                break;
+        }
+
+        return line == null ? null : line.toByteArray();
+    }
+
+    @Signature
+    public Memory readLine(Environment env, Memory... args) {
+        byte[] line;
+        try {
+            line = readLineBytes(env, -1);
+        } catch (IOException e) {
+            env.exception(WrapIOException.class, e.getMessage());
+            return Memory.FALSE;
+        }
+
+        if (line == null)
+            return Memory.NULL;
+
+        int len = line.length;
+        if (len > 0 && line[len - 1] == '\n') {
+            len--;
+
+            if (len > 0 && line[len - 1] == '\r')
+                len--;
+        }
+
+        return new BinaryMemory(len == line.length ? line : Arrays.copyOf(line, len));
+    }
+
+    /**
+     * Copies the rest of the stream to the output stream by chunks.
+     *
+     * @return count of copied bytes
+     */
+    public long transferTo(Environment env, Stream output) throws IOException {
+        long count = 0;
+
+        while (true) {
+            Memory value = read(env, TRANSFER_CHUNK_SIZE);
+            if (!value.isString())
+                break;
+
+            byte[] bytes = value.getBinaryBytes();
+            if (bytes.length == 0)
+                break;
+
+            output.write(env, value, LongMemory.valueOf(bytes.length));
+            count += bytes.length;
+        }
+
+        return count;
+    }
+
+    /**
+     * Echoes the rest of the stream by chunks.
+     *
+     * @return count of echoed bytes
+     */
+    public long transferToOutput(Environment env) throws IOException {
+        long count = 0;
+
+        while (true) {
+            Memory value = read(env, TRANSFER_CHUNK_SIZE);
+            if (!value.isString())
+                break;
+
+            byte[] bytes = value.getBinaryBytes();
+            if (bytes.length == 0)
+                break;
+
+            env.echo(bytes, bytes.length);
+            count += bytes.length;
+        }
+
+        return count;
+    }
+
+    @Signature(@Arg(value = "output", typeClass = CLASS_NAME, optional = @Optional("NULL")))
+    public Memory pipeTo(Environment env, Memory... args) {
+        try {
+            if (args[0].isNull())
+                return LongMemory.valueOf(transferToOutput(env));
+
+            return LongMemory.valueOf(transferTo(env, args[0].toObject(Stream.class)));
+        } catch (IOException e) {
+            env.exception(WrapIOException.class, e.getMessage());
+            return Memory.FALSE;
+        }
+    }
+
     public static Stream create(Environment env, String path, String mode) throws Throwable {
         return of(env, StringMemory.valueOf(path), StringMemory.valueOf(mode)).toObject(Stream.class);
     }
@@ -10,10 +10,12 @@ import php.runtime.memory.LongMemory;
 import php.runtime.memory.ObjectMemory;
 import php.runtime.memory.StringMemory;
 import php.runtime.reflection.ClassEntity;
+import php.runtime.util.DateFormatPool;
+import php.runtime.util.FormatCache;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
 
 import static php.runtime.annotation.Reflection.*;
@@ -206,16 +208,14 @@ public class WrapTime extends BaseObject implements IComparableObject<WrapTime>
 
     @Signature
     public Memory __toString(Environment env, Memory... args) {
-        SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-        isoFormat.setTimeZone(timeZone);
-        return new StringMemory(isoFormat.format(date));
+        FormatCache cache = env.getScope().getFormatCache();
+        return new StringMemory(DateFormatPool.valueOf(cache, "yyyy-MM-dd'T'HH:mm:ss", Locale.getDefault(), timeZone).format(date));
     }
 
     @Signature(@Arg("format"))
     public Memory toString(Environment env, Memory... args) {
-        SimpleDateFormat format = new SimpleDateFormat(args[0].toString());
-        format.setTimeZone(timeZone);
-        return StringMemory.valueOf(format.format(date));
+        FormatCache cache = env.getScope().getFormatCache();
+        return StringMemory.valueOf(DateFormatPool.valueOf(cache, args[0].toString(), Locale.getDefault(), timeZone).format(date));
     }
 
     @Signature({
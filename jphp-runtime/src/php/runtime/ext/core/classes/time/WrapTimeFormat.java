@@ -9,24 +9,37 @@ import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.ObjectMemory;
 import php.runtime.memory.StringMemory;
 import php.runtime.reflection.ClassEntity;
+import php.runtime.util.DateFormatPool;
+import php.runtime.util.FormatCache;
 
 import java.text.DateFormat;
 import java.text.DateFormatSymbols;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static php.runtime.annotation.Reflection.*;
 
 @Name("php\\time\\TimeFormat")
 public class WrapTimeFormat extends BaseObject {
     protected String format;
-    protected DateFormat dateFormat;
+    protected Locale locale;
+    protected DateFormatPool pool;
+    protected FormatCache formatCache;
+
+    /**
+     * Pools of other time zones, they are created only for formats with custom symbols,
+     * other formats use shared pools of the scope.
+     */
+    protected ConcurrentHashMap<String, DateFormatPool> zonePools;
 
     public WrapTimeFormat(Environment env, DateFormat dateFormat) {
         super(env);
-        this.dateFormat = dateFormat;
+        this.pool = new DateFormatPool(dateFormat);
+        this.zonePools = new ConcurrentHashMap<String, DateFormatPool>();
     }
 
     public WrapTimeFormat(Environment env, ClassEntity clazz) {
@@ -37,24 +50,34 @@ public class WrapTimeFormat extends BaseObject {
         return format;
     }
 
-    public DateFormat getDateFormat(WrapTime time) {
-        if (dateFormat.getTimeZone().equals(time.timeZone))
-            return dateFormat;
-        else {
-            DateFormat dt = (DateFormat)dateFormat.clone();
-            dt.setTimeZone(time.timeZone);
-            return dt;
+    protected DateFormatPool getPool(TimeZone zone) {
+        if (pool.getTimeZone().equals(zone))
+            return pool;
+
+        if (zonePools == null)
+            return DateFormatPool.valueOf(formatCache, format, locale, zone);
+
+        DateFormatPool result = zonePools.get(zone.getID());
+        if (result == null || !result.getTimeZone().equals(zone)) {
+            result = pool.withTimeZone(zone);
+            zonePools.put(zone.getID(), result);
         }
+
+        return result;
+    }
+
+    /**
+     * @return a private copy of the format, it can be changed
+     */
+    public DateFormat getDateFormat(WrapTime time) {
+        return getDateFormat(time.timeZone);
     }
 
+    /**
+     * @return a private copy of the format, it can be changed
+     */
     public DateFormat getDateFormat(TimeZone zone) {
-        if (dateFormat.getTimeZone().equals(zone))
-            return dateFormat;
-        else {
-            DateFormat dt = (DateFormat)dateFormat.clone();
-            dt.setTimeZone(zone);
-            return dt;
-        }
+        return getPool(zone).newDateFormat();
     }
 
     @Signature({
@@ -64,15 +87,15 @@ public class WrapTimeFormat extends BaseObject {
     })
     public Memory __construct(Environment env, Memory... args) {
         format = args[0].toString();
+        locale = args[1].isNull() ? WrapLocale.getDefault(env) : args[1].toObject(WrapLocale.class).getLocale();
+
         if (args[2].isNull()) {
-            if (args[1].isNull())
-                dateFormat = new SimpleDateFormat(args[0].toString(), WrapLocale.getDefault(env));
-            else
-                dateFormat = new SimpleDateFormat(args[0].toString(), args[1].toObject(WrapLocale.class).getLocale());
+            formatCache = env.getScope().getFormatCache();
+            pool = DateFormatPool.valueOf(formatCache, format, locale, TimeZone.getDefault());
         } else {
             final ArrayMemory symbols = args[2].toValue(ArrayMemory.class);
 
-            dateFormat = new SimpleDateFormat(args[0].toString(),
+            DateFormat dateFormat = new SimpleDateFormat(args[0].toString(),
                     new DateFormatSymbols(WrapLocale.getDefault(env, args[1])){{
 
                     Memory months = symbols.getByScalar("months");
@@ -110,6 +133,9 @@ public class WrapTimeFormat extends BaseObject {
                         this.setLocalPatternChars(localPatternChars.toString());
                     }
             }});
+
+            pool = new DateFormatPool(dateFormat);
+            zonePools = new ConcurrentHashMap<String, DateFormatPool>();
         }
 
         return Memory.NULL;
@@ -126,9 +152,7 @@ public class WrapTimeFormat extends BaseObject {
     @Signature(@Arg(value = "time", nativeType = WrapTime.class))
     public Memory format(Environment env, Memory... args) {
         WrapTime time = args[0].toObject(WrapTime.class);
-        DateFormat df = getDateFormat(time);
-
-        return StringMemory.valueOf(df.format(time.date));
+        return StringMemory.valueOf(getPool(time.timeZone).format(time.date));
     }
 
     @Signature({
@@ -138,7 +162,7 @@ public class WrapTimeFormat extends BaseObject {
     public Memory parse(Environment env, Memory... args) {
         try {
             TimeZone timeZone = WrapTimeZone.getTimeZone(env, args[1]);
-            Date date = getDateFormat(timeZone).parse(args[0].toString());
+            Date date = getPool(timeZone).parse(args[0].toString());
 
             return new ObjectMemory(new WrapTime(env, date, timeZone));
         } catch (ParseException e) {
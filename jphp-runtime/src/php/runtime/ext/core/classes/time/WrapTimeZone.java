@@ -133,10 +133,17 @@ public class WrapTimeZone extends BaseObject implements IComparableObject<WrapTi
         if (args[1].toBoolean())
             TimeZone.setDefault(args[0].toObject(WrapTimeZone.class).timeZone);
         else
-            env.setUserValue(WrapTime.class.getName() + "#def_time_zone", args[0].toObject(WrapTimeZone.class).timeZone);
+            setDefaultTimeZone(env, args[0].toObject(WrapTimeZone.class).timeZone);
         return Memory.NULL;
     }
 
+    /**
+     * Changes the default time zone of the environment, it is shared with date functions.
+     */
+    public static void setDefaultTimeZone(Environment env, TimeZone timeZone) {
+        env.setUserValue(WrapTime.class.getName() + "#def_time_zone", timeZone);
+    }
+
     @Signature(@Arg(value = "globally", optional = @Optional("false")))
     public static Memory getDefault(Environment env, Memory... args) {
         return new ObjectMemory(new WrapTimeZone(env,
@@ -5,16 +5,23 @@ import php.runtime.common.HintType;
 import php.runtime.env.Environment;
 import php.runtime.ext.core.classes.lib.ItemsUtils;
 import php.runtime.ext.core.classes.stream.Stream;
+import php.runtime.invoke.DynamicMethodInvoker;
 import php.runtime.invoke.Invoker;
 import php.runtime.lang.BaseObject;
+import php.runtime.lang.Closure;
 import php.runtime.lang.ForeachIterator;
 import php.runtime.lang.IObject;
 import php.runtime.lang.spl.iterator.Iterator;
 import php.runtime.memory.*;
 import php.runtime.reflection.ClassEntity;
+import php.runtime.reflection.ParameterEntity;
+import php.runtime.reflection.helper.ClosureEntity;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static php.runtime.annotation.Reflection.*;
@@ -34,12 +41,7 @@ public class WrapFlow extends BaseObject implements Iterator {
     public WrapFlow(Environment env, ForeachIterator iterator) {
         super(env);
         this.iterator = iterator;
-        this.worker = new Worker() {
-            @Override
-            public boolean next(Environment env) {
-                return WrapFlow.this.iterator.next();
-            }
-        };
+        this.worker = new IteratorWorker();
         this.worker.setIterator(iterator);
     }
 
@@ -74,6 +76,22 @@ public class WrapFlow extends BaseObject implements Iterator {
             return invoker.callNoThrow(iterator.getValue(), iterator.getMemoryKey());
     }
 
+    /**
+     * Appends the stage to the pipeline of this flow if the flow is not iterated yet,
+     * so all stages are applied in one loop.
+     */
+    protected WrapFlow fuse(Environment env, Stage stage) {
+        if (!init && selfIterator == null) {
+            Pipeline pipeline = worker instanceof Pipeline
+                    ? ((Pipeline) worker).with(stage)
+                    : new Pipeline(worker, stage);
+
+            return new WrapFlow(env, iterator, pipeline);
+        }
+
+        return new WrapFlow(env, getSelfIterator(env), new Pipeline(new IteratorWorker(), stage));
+    }
+
     @Signature({
             @Arg(value = "collection", type = HintType.TRAVERSABLE)
     })
@@ -81,12 +99,7 @@ public class WrapFlow extends BaseObject implements Iterator {
         ForeachIterator iterator = args[0].toImmutable().getNewIterator(env);
 
         this.iterator = iterator;
-        this.worker = new Worker() {
-            @Override
-            public boolean next(Environment env) {
-                return WrapFlow.this.iterator.next();
-            }
-        };
+        this.worker = new IteratorWorker();
         this.worker.setIterator(iterator);
 
         return Memory.NULL;
@@ -164,11 +177,15 @@ public class WrapFlow extends BaseObject implements Iterator {
     })
     public static Memory ofStream(final Environment env, Memory... args) {
         final Stream stream = args[0].toObject(Stream.class);
-        final int chunkSize = args[1].toInteger() < 1 ? 1 : args[1].toInteger();
+        final Memory chunkSize = LongMemory.valueOf(args[1].toInteger() < 1 ? 1 : args[1].toInteger());
+        final boolean isNative = stream.getReflection().isInternal();
 
         return new ObjectMemory(new WrapFlow(env, new ForeachIterator(false, false, false) {
 
             protected boolean eof() {
+                if (isNative)
+                    return stream.eof(env).toBoolean();
+
                 env.pushCall(stream, "eof");
                 try {
                     return stream.eof(env).toBoolean();
@@ -188,14 +205,16 @@ public class WrapFlow extends BaseObject implements Iterator {
                 if (eof())
                     return false;
 
-                env.pushCall(stream, "read", LongMemory.valueOf(chunkSize));
+                if (!isNative)
+                    env.pushCall(stream, "read", chunkSize);
                 try {
-                    currentValue = stream.read(env, LongMemory.valueOf(chunkSize));
+                    currentValue = stream.read(env, chunkSize);
                     currentKey = ((LongMemory)currentKey).inc();
                 } catch (IOException e) {
                     env.catchUncaught(e);
                 } finally {
-                    env.popCall();
+                    if (!isNative)
+                        env.popCall();
                 }
                 return true;
             }
@@ -220,6 +239,85 @@ public class WrapFlow extends BaseObject implements Iterator {
         }));
     }
 
+    @FastMethod
+    @Signature({
+            @Arg(value = "stream", typeClass = Stream.CLASS_NAME)
+    })
+    public static Memory ofLines(Environment env, Memory... args) {
+        return new ObjectMemory(lines(env, args[0].toObject(Stream.class), false, false, false));
+    }
+
+    /**
+     * Lazy flow of lines, each line is read when it is requested.
+     *
+     * @param withBreaks lines with line breaks
+     * @param skipEmpty skip empty lines
+     * @param close close the stream at the end
+     */
+    public static WrapFlow lines(final Environment env, final Stream stream,
+                                 final boolean withBreaks, final boolean skipEmpty, final boolean close) {
+        final boolean isNative = stream.getReflection().isInternal();
+
+        return new WrapFlow(env, new ForeachIterator(false, false, false) {
+            protected long index;
+
+            @Override
+            protected boolean init() {
+                index = 0;
+                return true;
+            }
+
+            @Override
+            protected boolean nextValue() {
+                if (!isNative)
+                    env.pushCall(stream, "readLine");
+                try {
+                    while (true) {
+                        byte[] line = stream.readLineBytes(env, -1);
+                        if (line == null) {
+                            if (close)
+                                stream.close(env);
+
+                            return false;
+                        }
+
+                        int len = line.length;
+                        if (!withBreaks && len > 0 && line[len - 1] == '\n') {
+                            len--;
+
+                            if (len > 0 && line[len - 1] == '\r')
+                                len--;
+                        }
+
+                        if (skipEmpty && (len == 0 || (len == 1 && line[0] == '\n')))
+                            continue;
+
+                        currentValue = new BinaryMemory(len == line.length ? line : Arrays.copyOf(line, len));
+                        currentKey = LongMemory.valueOf(index++);
+                        currentKeyMemory = null;
+                        return true;
+                    }
+                } catch (IOException e) {
+                    env.catchUncaught(e);
+                    return false;
+                } finally {
+                    if (!isNative)
+                        env.popCall();
+                }
+            }
+
+            @Override
+            protected boolean prevValue() {
+                return false;
+            }
+
+            @Override
+            public void reset() {
+                index = 0;
+            }
+        });
+    }
+
     @FastMethod
     @Signature({
             @Arg("string"),
@@ -398,6 +496,73 @@ public class WrapFlow extends BaseObject implements Iterator {
         return LongMemory.valueOf(cnt);
     }
 
+    @Signature
+    public Memory sum(Environment env, Memory... args) {
+        ForeachIterator iterator = getSelfIterator(env);
+        Memory r = Memory.CONST_INT_0;
+
+        while (iterator.next()) {
+            r = r.plus(iterator.getValue());
+        }
+
+        return r;
+    }
+
+    /**
+     * @return the average value as float or NULL if the flow is empty
+     */
+    @Signature
+    public Memory avg(Environment env, Memory... args) {
+        ForeachIterator iterator = getSelfIterator(env);
+        Memory r = Memory.CONST_INT_0;
+        long cnt = 0;
+
+        while (iterator.next()) {
+            r = r.plus(iterator.getValue());
+            cnt++;
+        }
+
+        return cnt == 0 ? Memory.NULL : new DoubleMemory(r.toDouble() / cnt);
+    }
+
+    @Signature(@Arg(value = "comparator", type = HintType.CALLABLE, optional = @Optional("null")))
+    public Memory min(Environment env, Memory... args) {
+        return extremum(env, args[0], false);
+    }
+
+    @Signature(@Arg(value = "comparator", type = HintType.CALLABLE, optional = @Optional("null")))
+    public Memory max(Environment env, Memory... args) {
+        return extremum(env, args[0], true);
+    }
+
+    /**
+     * @return the first max or min value or NULL if the flow is empty
+     */
+    protected Memory extremum(Environment env, Memory comparator, boolean max) {
+        Invoker invoker = comparator.isNull() ? null : Invoker.valueOf(env, null, comparator);
+
+        ForeachIterator iterator = getSelfIterator(env);
+        Memory r = null;
+
+        while (iterator.next()) {
+            Memory value = iterator.getValue();
+
+            if (r == null) {
+                r = value;
+            } else if (invoker == null) {
+                if (max ? value.greater(r) : value.smaller(r))
+                    r = value;
+            } else {
+                int cmp = invoker.callNoThrow(value, r).toInteger();
+
+                if (max ? cmp > 0 : cmp < 0)
+                    r = value;
+            }
+        }
+
+        return r == null ? Memory.NULL : r;
+    }
+
     @Signature(@Arg(value = "comparator", type = HintType.CALLABLE, optional = @Optional("null")))
     public Memory sort(Environment env, Memory... args) {
         return ItemsUtils.sort(env, new ObjectMemory(this), args[0], this.withKeys ? Memory.TRUE : Memory.FALSE);
@@ -422,6 +587,26 @@ public class WrapFlow extends BaseObject implements Iterator {
         return r.toConstant();
     }
 
+    /**
+     * Takes a snapshot of elements for processing by several threads.
+     */
+    @Signature(@Arg(value = "threads", optional = @Optional(value = "0", type = HintType.INT)))
+    public Memory parallel(Environment env, Memory... args) {
+        ForeachIterator iterator = getSelfIterator(env);
+        List<Memory> keys = new ArrayList<Memory>();
+        List<Memory> values = new ArrayList<Memory>();
+
+        while (iterator.next()) {
+            keys.add(iterator.getMemoryKey().toImmutable());
+            values.add(iterator.getValue().toImmutable());
+        }
+
+        return new ObjectMemory(new WrapParallelFlow(
+                env, keys.toArray(new Memory[keys.size()]), values.toArray(new Memory[values.size()]),
+                args[0].toInteger(), withKeys
+        ));
+    }
+
     @Signature(@Arg(value = "separator"))
     public Memory toString(Environment env, Memory... args) {
         String sep = args[0].toString();
@@ -576,39 +761,28 @@ public class WrapFlow extends BaseObject implements Iterator {
             }
         }
 
-        return new WrapFlow(env, getSelfIterator(env), new Worker() {
+        return fuse(env, new Stage() {
             @Override
-            public boolean next(Environment env) {
-                while (iterator.next()) {
-                    String key = iterator.getKey().toString();
+            public int apply(Pipeline pipeline) {
+                String key = pipeline.key.toString();
 
-                    if (ignoreCase) {
-                        key = key.toLowerCase();
-                    }
-
-                    if (keys.contains(key)) {
-                        return true;
-                    }
+                if (ignoreCase) {
+                    key = key.toLowerCase();
                 }
 
-                return false;
+                return keys.contains(key) ? ACCEPT : REJECT;
             }
         });
     }
 
     @Signature(@Arg(value = "filter", type = HintType.CALLABLE, optional = @Optional("NULL")))
     public Memory find(Environment env, Memory... args) {
-        final Invoker invoker = Invoker.valueOf(env, null, args[0]);
+        final Callback callback = new Callback(Invoker.valueOf(env, null, args[0]));
 
-        return new ObjectMemory(new WrapFlow(env, getSelfIterator(env), new Worker() {
+        return new ObjectMemory(fuse(env, new Stage() {
             @Override
-            public boolean next(final Environment env) {
-                while (iterator.next()) {
-                    if (call(iterator, invoker).toBoolean())
-                        return true;
-                }
-
-                return false;
+            public int apply(Pipeline pipeline) {
+                return callback.call(pipeline.current, pipeline.key).toBoolean() ? ACCEPT : REJECT;
             }
         }));
     }
@@ -631,59 +805,34 @@ public class WrapFlow extends BaseObject implements Iterator {
 
     @Signature
     public Memory keys(Environment env, Memory... args) {
-        return new ObjectMemory(new WrapFlow(env, getSelfIterator(env), new Worker() {
-            Memory current;
-            Memory key;
-
-            @Override
-            public boolean next(final Environment env) {
-                if (iterator.next()) {
-                    current = iterator.getMemoryKey();
-                    key = key == null ? Memory.CONST_INT_0 : key.inc();
-                    return true;
-                }
-
-                return false;
-            }
+        return new ObjectMemory(fuse(env, new Stage() {
+            protected Memory index;
 
             @Override
-            public Memory current(Environment env) {
-                return current == null ? Memory.NULL : current;
-            }
+            public int apply(Pipeline pipeline) {
+                index = index == null ? Memory.CONST_INT_0 : index.inc();
 
-            @Override
-            public Memory key(Environment env) {
-                return key == null ? Memory.NULL : key;
+                pipeline.current = pipeline.key;
+                pipeline.key = index;
+                return ACCEPT;
             }
 
             @Override
             public void reset() {
-                key = null;
-                current = null;
+                index = null;
             }
         }));
     }
 
     @Signature(@Arg(value = "callback", type = HintType.CALLABLE))
     public Memory map(Environment env, Memory... args) {
-        final Invoker invoker = Invoker.valueOf(env, null, args[0]);
-
-        return new ObjectMemory(new WrapFlow(env, getSelfIterator(env), new Worker() {
-            Memory current;
+        final Callback callback = new Callback(Invoker.valueOf(env, null, args[0]));
 
+        return new ObjectMemory(fuse(env, new Stage() {
             @Override
-            public boolean next(final Environment env) {
-                if (iterator.next()) {
-                    current = call(iterator, invoker);
-                    return true;
-                }
-
-                return false;
-            }
-
-            @Override
-            public Memory current(Environment env) {
-                return current == null ? Memory.NULL : current;
+            public int apply(Pipeline pipeline) {
+                pipeline.current = callback.call(pipeline.current, pipeline.key);
+                return ACCEPT;
             }
         }));
     }
@@ -694,18 +843,17 @@ public class WrapFlow extends BaseObject implements Iterator {
         if (skip <= 0)
             return new ObjectMemory(this);
 
-        return new ObjectMemory(new WrapFlow(env, getSelfIterator(env), new Worker() {
+        return new ObjectMemory(fuse(env, new Stage() {
             protected int i = 0;
 
             @Override
-            public boolean next(final Environment env) {
-                while (iterator.next()) {
-                    i++;
-                    if (i > skip)
-                        return true;
-                }
+            public int apply(Pipeline pipeline) {
+                return ++i > skip ? ACCEPT : REJECT;
+            }
 
-                return false;
+            @Override
+            public void reset() {
+                i = 0;
             }
         }));
     }
@@ -713,18 +861,27 @@ public class WrapFlow extends BaseObject implements Iterator {
     @Signature(@Arg("max"))
     public Memory limit(Environment env, Memory... args) {
         final int limit = args[0].toInteger();
-        return new ObjectMemory(new WrapFlow(env, getSelfIterator(env), new Worker() {
+
+        return new ObjectMemory(fuse(env, new Stage() {
             protected int i = 0;
 
             @Override
-            public boolean next(final Environment env) {
+            public int apply(Pipeline pipeline) {
                 if (i >= limit)
-                    return false;
-                if (iterator.next()) {
-                    i++;
-                    return true;
-                }
-                return false;
+                    return STOP;
+
+                i++;
+                return ACCEPT;
+            }
+
+            @Override
+            public boolean isDone() {
+                return i >= limit;
+            }
+
+            @Override
+            public void reset() {
+                i = 0;
             }
         }));
     }
@@ -760,4 +917,174 @@ public class WrapFlow extends BaseObject implements Iterator {
             iterator.reset();
         }
     }
+
+    protected static class IteratorWorker extends Worker {
+        @Override
+        public boolean next(Environment env) {
+            return iterator.next();
+        }
+    }
+
+    /**
+     * Stage of a {@link Pipeline}, it changes the current element of the pipeline or rejects it.
+     */
+    abstract static protected class Stage {
+        public static final int ACCEPT = 0;
+        public static final int REJECT = 1;
+        public static final int STOP = 2;
+
+        abstract public int apply(Pipeline pipeline);
+
+        /**
+         * @return true if the stage will not accept elements anymore
+         */
+        public boolean isDone() {
+            return false;
+        }
+
+        public void reset() {
+        }
+    }
+
+    /**
+     * Consecutive stages of a flow which are applied to each element in one loop.
+     */
+    protected static class Pipeline extends Worker {
+        protected final Worker source;
+        protected final Stage[] stages;
+
+        protected Memory current;
+        protected Memory key;
+
+        public Pipeline(Worker source, Stage... stages) {
+            this.source = source;
+            this.stages = stages;
+        }
+
+        public Pipeline with(Stage stage) {
+            Stage[] stages = Arrays.copyOf(this.stages, this.stages.length + 1);
+            stages[this.stages.length] = stage;
+
+            return new Pipeline(source, stages);
+        }
+
+        @Override
+        public void setIterator(ForeachIterator iterator) {
+            super.setIterator(iterator);
+            source.setIterator(iterator);
+        }
+
+        @Override
+        public boolean next(Environment env) {
+            next:
+            while (true) {
+                for (Stage stage : stages) {
+                    if (stage.isDone())
+                        return false;
+                }
+
+                if (!source.next(env))
+                    return false;
+
+                current = source.current(env);
+                key = source.key(env);
+
+                for (Stage stage : stages) {
+                    switch (stage.apply(this)) {
+                        case Stage.REJECT:
+                            continue next;
+                        case Stage.STOP:
+                            return false;
+                    }
+                }
+
+                return true;
+            }
+        }
+
+        @Override
+        public Memory current(Environment env) {
+            return current == null ? Memory.NULL : current;
+        }
+
+        @Override
+        public Memory key(Environment env) {
+            return key == null ? Memory.NULL : key;
+        }
+
+        @Override
+        public void reset() {
+            source.reset();
+            current = null;
+            key = null;
+
+            for (Stage stage : stages) {
+                stage.reset();
+            }
+        }
+    }
+
+    /**
+     * Callback of a stage, closures are called with a reused array of arguments.
+     */
+    protected static class Callback {
+        protected final Invoker invoker;
+        protected final boolean withKey;
+        protected final Memory[] args;
+
+        public Callback(Invoker invoker) {
+            this.invoker = invoker;
+            this.withKey = invoker != null && invoker.getArgumentCount() != 1;
+            this.args = invoker != null && isReusable(invoker) ? new Memory[withKey ? 2 : 1] : null;
+        }
+
+        /**
+         * Arguments of generators are kept by them, references and variadic arguments are not passed as is.
+         */
+        protected static boolean isReusable(Invoker invoker) {
+            if (!(invoker instanceof DynamicMethodInvoker))
+                return false;
+
+            DynamicMethodInvoker methodInvoker = (DynamicMethodInvoker) invoker;
+            if (!(methodInvoker.getObject() instanceof Closure) || methodInvoker.getMethod().getGeneratorEntity() != null)
+                return false;
+
+            ClassEntity reflection = methodInvoker.getObject().getReflection();
+            if (reflection instanceof ClosureEntity && ((ClosureEntity) reflection).getGeneratorEntity() != null)
+                return false;
+
+            ParameterEntity[] parameters = invoker.getParameters();
+            if (parameters != null) {
+                if (parameters.length > 2)
+                    return false;
+
+                for (ParameterEntity parameter : parameters) {
+                    if (parameter.isReference() || parameter.isVariadic())
+                        return false;
+                }
+            }
+
+            return true;
+        }
+
+        public Memory call(Memory value, Memory key) {
+            if (invoker == null)
+                return value;
+
+            if (args == null)
+                return withKey ? invoker.callNoThrow(value, key) : invoker.callNoThrow(value);
+
+            args[0] = value;
+            if (withKey)
+                args[1] = key;
+
+            try {
+                return invoker.callNoThrow(args);
+            } finally {
+                args[0] = null;
+                if (withKey)
+                    args[1] = null;
+            }
+        }
+    }
 }
@@ -0,0 +1,550 @@
+package php.runtime.ext.core.classes.util;
+
+import php.runtime.Memory;
+import php.runtime.common.HintType;
+import php.runtime.env.ConcurrentEnvironment;
+import php.runtime.env.Environment;
+import php.runtime.invoke.Invoker;
+import php.runtime.lang.BaseObject;
+import php.runtime.memory.ArrayMemory;
+import php.runtime.memory.LongMemory;
+import php.runtime.memory.ObjectMemory;
+import php.runtime.reflection.ClassEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static php.runtime.annotation.Reflection.*;
+
+/**
+ * Flow of an array snapshot processed by several threads, see Flow::parallel().
+ *
+ * map() and filter() are lazy and fused, terminal operations split elements into ranges which are processed
+ * by worker threads of a shared pool in a child {@link ConcurrentEnvironment}. Values passed between threads
+ * are immutable and results are combined in the order of ranges, so the order of elements is kept.
+ */
+@Name("php\\util\\ParallelFlow")
+public class WrapParallelFlow extends BaseObject {
+    protected final static int RANGES_PER_THREAD = 4;
+    protected final static int MIN_RANGE_SIZE = 64;
+
+    private final static ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        protected final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "jphp-parallel-flow-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    protected Memory[] keys;
+    protected Memory[] values;
+    protected Stage[] stages;
+    protected int threads;
+    protected boolean withKeys;
+
+    public WrapParallelFlow(Environment env, Memory[] keys, Memory[] values, int threads, boolean withKeys) {
+        this(env, keys, values, new Stage[0], threads, withKeys);
+    }
+
+    protected WrapParallelFlow(Environment env, Memory[] keys, Memory[] values, Stage[] stages,
+                               int threads, boolean withKeys) {
+        super(env);
+        this.keys = keys;
+        this.values = values;
+        this.stages = stages;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.withKeys = withKeys;
+    }
+
+    public WrapParallelFlow(Environment env, ClassEntity clazz) {
+        super(env, clazz);
+    }
+
+    protected static class Stage {
+        protected final Memory callback;
+        protected final boolean filter;
+
+        public Stage(Memory callback, boolean filter) {
+            this.callback = callback;
+            this.filter = filter;
+        }
+    }
+
+    /**
+     * Stages of the flow with invokers of one worker.
+     */
+    protected class Pipeline {
+        protected final Environment env;
+        protected final Invoker[] invokers;
+
+        public Pipeline(Environment env) {
+            this.env = env;
+            this.invokers = new Invoker[stages.length];
+
+            for (int i = 0; i < stages.length; i++) {
+                invokers[i] = Invoker.valueOf(env, null, stages[i].callback);
+            }
+        }
+
+        /**
+         * @return the value after all stages or null if it is filtered
+         */
+        public Memory apply(int index) {
+            Memory key = keys[index];
+            Memory value = values[index];
+
+            for (int i = 0; i < invokers.length; i++) {
+                Memory result = call(invokers[i], value, key);
+
+                if (stages[i].filter) {
+                    if (!result.toBoolean())
+                        return null;
+                } else
+                    value = result.toImmutable();
+            }
+
+            return value;
+        }
+    }
+
+    /**
+     * Elements of one range after stages.
+     */
+    protected static class Part {
+        protected final List<Memory> keys = new ArrayList<Memory>();
+        protected final List<Memory> values = new ArrayList<Memory>();
+
+        public void add(Memory key, Memory value) {
+            keys.add(key);
+            values.add(value);
+        }
+
+        public int size() {
+            return values.size();
+        }
+    }
+
+    protected interface Task {
+        /**
+         * @return result of the task with the index, must be immutable
+         */
+        Object run(Pipeline pipeline, int index);
+    }
+
+    protected static Memory call(Invoker invoker, Memory value, Memory key) {
+        if (invoker.getArgumentCount() == 1)
+            return invoker.callNoThrow(value);
+        else
+            return invoker.callNoThrow(value, key);
+    }
+
+    protected Memory callback(Environment env, Memory callback, int index) {
+        Invoker invoker = Invoker.valueOf(env, null, callback);
+        if (invoker == null)
+            env.exception("Argument %s must be callable", index);
+
+        return callback;
+    }
+
+    protected int rangeCount() {
+        if (values.length == 0)
+            return 0;
+
+        return Math.max(1, Math.min(threads * RANGES_PER_THREAD, values.length / MIN_RANGE_SIZE));
+    }
+
+    protected int rangeFrom(int range, int count) {
+        return (int) ((long) values.length * range / count);
+    }
+
+    /**
+     * Runs count tasks by worker threads, each worker takes the next index until all tasks are done.
+     *
+     * @return results in the order of indexes
+     */
+    protected Object[] execute(Environment env, final int count, final Task task) {
+        final Object[] results = new Object[count];
+        if (count == 0)
+            return results;
+
+        final Environment workerEnv = new ConcurrentEnvironment(env);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        int workers = Math.min(threads, count);
+        List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    Environment.addThreadSupport();
+                    Pipeline pipeline = new Pipeline(workerEnv);
+
+                    int index;
+                    while (!failed.get() && (index = next.getAndIncrement()) < count) {
+                        try {
+                            results[index] = task.run(pipeline, index);
+                        } catch (RuntimeException e) {
+                            failed.set(true);
+                            throw e;
+                        } catch (Error e) {
+                            failed.set(true);
+                            throw e;
+                        }
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        Throwable error = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (error == null)
+                    error = e.getCause();
+            } catch (InterruptedException e) {
+                failed.set(true);
+                Thread.currentThread().interrupt();
+
+                if (error == null)
+                    error = e;
+            }
+        }
+
+        if (error instanceof RuntimeException)
+            throw (RuntimeException) error;
+
+        if (error instanceof Error)
+            throw (Error) error;
+
+        if (error != null)
+            throw new RuntimeException(error);
+
+        return results;
+    }
+
+    /**
+     * Applies stages to all elements.
+     *
+     * @return parts in the order of ranges
+     */
+    protected Part[] parts(Environment env) {
+        final int count = rangeCount();
+
+        Object[] results = execute(env, count, new Task() {
+            @Override
+            public Object run(Pipeline pipeline, int index) {
+                Part part = new Part();
+                int to = rangeFrom(index + 1, count);
+
+                for (int i = rangeFrom(index, count); i < to; i++) {
+                    Memory value = pipeline.apply(i);
+                    if (value != null)
+                        part.add(keys[i], value);
+                }
+
+                return part;
+            }
+        });
+
+        return Arrays.copyOf(results, results.length, Part[].class);
+    }
+
+    protected WrapParallelFlow withStage(Environment env, Stage stage) {
+        Stage[] stages = Arrays.copyOf(this.stages, this.stages.length + 1);
+        stages[this.stages.length] = stage;
+
+        return new WrapParallelFlow(env, keys, values, stages, threads, withKeys);
+    }
+
+    @Signature
+    private Memory __construct(Environment env, Memory... args) {
+        return Memory.NULL;
+    }
+
+    @Signature
+    public Memory withKeys(Environment env, Memory... args) {
+        return new ObjectMemory(new WrapParallelFlow(env, keys, values, stages, threads, true));
+    }
+
+    @Signature
+    public Memory getThreads(Environment env, Memory... args) {
+        return LongMemory.valueOf(threads);
+    }
+
+    @Signature(@Arg(value = "callback", type = HintType.CALLABLE))
+    public Memory map(Environment env, Memory... args) {
+        return new ObjectMemory(withStage(env, new Stage(callback(env, args[0], 1), false)));
+    }
+
+    @Signature(@Arg(value = "callback", type = HintType.CALLABLE))
+    public Memory filter(Environment env, Memory... args) {
+        return new ObjectMemory(withStage(env, new Stage(callback(env, args[0], 1), true)));
+    }
+
+    @Signature
+    public Memory count(Environment env, Memory... args) {
+        if (stages.length == 0)
+            return LongMemory.valueOf(values.length);
+
+        long count = 0;
+        for (Part part : parts(env)) {
+            count += part.size();
+        }
+
+        return LongMemory.valueOf(count);
+    }
+
+    @Signature
+    public Memory toArray(Environment env, Memory... args) {
+        ArrayMemory result = new ArrayMemory();
+
+        for (Part part : parts(env)) {
+            for (int i = 0; i < part.size(); i++) {
+                if (withKeys)
+                    result.put(ArrayMemory.toKey(part.keys.get(i)), part.values.get(i));
+                else
+                    result.add(part.values.get(i));
+            }
+        }
+
+        return result.toConstant();
+    }
+
+    /**
+     * Reduces ranges by worker threads and then their results in order by the same callback,
+     * so the callback must be associative, e.g. sum, min, max, concatenation.
+     */
+    @Signature(@Arg(value = "callback", type = HintType.CALLABLE))
+    public Memory reduce(Environment env, Memory... args) {
+        final Memory callback = callback(env, args[0], 1);
+        final int count = rangeCount();
+
+        Object[] results = execute(env, count, new Task() {
+            @Override
+            public Object run(Pipeline pipeline, int index) {
+                Invoker invoker = Invoker.valueOf(pipeline.env, null, callback);
+                int argCount = invoker.getArgumentCount();
+
+                Memory result = null;
+                int to = rangeFrom(index + 1, count);
+
+                for (int i = rangeFrom(index, count); i < to; i++) {
+                    Memory value = pipeline.apply(i);
+                    if (value == null)
+                        continue;
+
+                    Memory r = result == null ? Memory.NULL : result;
+
+                    if (argCount < 3)
+                        result = invoker.callNoThrow(r, value);
+                    else
+                        result = invoker.callNoThrow(r, value, keys[i]);
+
+                    result = result.toImmutable();
+                }
+
+                return result;
+            }
+        });
+
+        Invoker invoker = Invoker.valueOf(env, null, callback);
+        Memory result = null;
+
+        for (Object part : results) {
+            if (part == null)
+                continue;
+
+            if (result == null)
+                result = (Memory) part;
+            else if (invoker.getArgumentCount() < 3)
+                result = invoker.callNoThrow(result, (Memory) part);
+            else
+                result = invoker.callNoThrow(result, (Memory) part, Memory.NULL);
+        }
+
+        return result == null ? Memory.NULL : result;
+    }
+
+    /**
+     * Groups values by keys which are returned by the callback.
+     *
+     * @return [groupKey => [values]], groups are in the order of their first elements
+     */
+    @Signature(@Arg(value = "callback", type = HintType.CALLABLE))
+    public Memory group(Environment env, Memory... args) {
+        final Memory callback = callback(env, args[0], 1);
+        final int count = rangeCount();
+
+        Object[] results = execute(env, count, new Task() {
+            @Override
+            public Object run(Pipeline pipeline, int index) {
+                Invoker invoker = Invoker.valueOf(pipeline.env, null, callback);
+
+                Part part = new Part();
+                List<Memory> groups = new ArrayList<Memory>();
+                int to = rangeFrom(index + 1, count);
+
+                for (int i = rangeFrom(index, count); i < to; i++) {
+                    Memory value = pipeline.apply(i);
+                    if (value == null)
+                        continue;
+
+                    groups.add(call(invoker, value, keys[i]).toImmutable());
+                    part.add(keys[i], value);
+                }
+
+                return new Object[]{part, groups};
+            }
+        });
+
+        ArrayMemory result = new ArrayMemory();
+
+        for (Object item : results) {
+            Part part = (Part) ((Object[]) item)[0];
+
+            @SuppressWarnings("unchecked")
+            List<Memory> groups = (List<Memory>) ((Object[]) item)[1];
+
+            for (int i = 0; i < part.size(); i++) {
+                Memory group = result.refOfIndex(groups.get(i));
+                if (!group.isArray())
+                    group.assign(new ArrayMemory());
+
+                ArrayMemory values = group.toValue(ArrayMemory.class);
+                if (withKeys)
+                    values.put(ArrayMemory.toKey(part.keys.get(i)), part.values.get(i));
+                else
+                    values.add(part.values.get(i));
+            }
+        }
+
+        return result.toConstant();
+    }
+
+    /**
+     * Sorts ranges by worker threads and merges them by pairs in parallel, the sort is stable.
+     */
+    @Signature(@Arg(value = "comparator", type = HintType.CALLABLE, optional = @Optional("null")))
+    public Memory sort(Environment env, Memory... args) {
+        final Memory callback = args[0].isNull() ? null : callback(env, args[0], 1);
+        final Part[] parts = parts(env);
+
+        Object[] sorted = execute(env, parts.length, new Task() {
+            @Override
+            public Object run(Pipeline pipeline, int index) {
+                Part part = parts[index];
+                Integer[] order = new Integer[part.size()];
+
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                }
+
+                Arrays.sort(order, new PartComparator(part, part, comparator(pipeline.env, callback)));
+
+                Part result = new Part();
+                for (Integer i : order) {
+                    result.add(part.keys.get(i), part.values.get(i));
+                }
+
+                return result;
+            }
+        });
+
+        while (sorted.length > 1) {
+            final Object[] round = sorted;
+
+            sorted = execute(env, (round.length + 1) / 2, new Task() {
+                @Override
+                public Object run(Pipeline pipeline, int index) {
+                    if (index * 2 + 1 == round.length)
+                        return round[index * 2];
+
+                    Part left = (Part) round[index * 2];
+                    Part right = (Part) round[index * 2 + 1];
+
+                    return merge(left, right, comparator(pipeline.env, callback));
+                }
+            });
+        }
+
+        ArrayMemory result = new ArrayMemory();
+
+        if (sorted.length == 1) {
+            Part part = (Part) sorted[0];
+
+            for (int i = 0; i < part.size(); i++) {
+                if (withKeys)
+                    result.put(ArrayMemory.toKey(part.keys.get(i)), part.values.get(i));
+                else
+                    result.add(part.values.get(i));
+            }
+        }
+
+        return result.toConstant();
+    }
+
+    protected static Invoker comparator(Environment env, Memory callback) {
+        return callback == null ? null : Invoker.valueOf(env, null, callback);
+    }
+
+    protected static int compare(Invoker comparator, Memory a, Memory b) {
+        if (comparator == null)
+            return a.compareTo(b);
+
+        return comparator.callNoThrow(a, b).toInteger();
+    }
+
+    protected static Part merge(Part left, Part right, Invoker comparator) {
+        Part result = new Part();
+        int i = 0, j = 0;
+
+        while (i < left.size() && j < right.size()) {
+            if (compare(comparator, right.values.get(j), left.values.get(i)) < 0) {
+                result.add(right.keys.get(j), right.values.get(j));
+                j++;
+            } else {
+                result.add(left.keys.get(i), left.values.get(i));
+                i++;
+            }
+        }
+
+        for (; i < left.size(); i++) {
+            result.add(left.keys.get(i), left.values.get(i));
+        }
+
+        for (; j < right.size(); j++) {
+            result.add(right.keys.get(j), right.values.get(j));
+        }
+
+        return result;
+    }
+
+    protected static class PartComparator implements java.util.Comparator<Integer> {
+        protected final Part left;
+        protected final Part right;
+        protected final Invoker comparator;
+
+        public PartComparator(Part left, Part right, Invoker comparator) {
+            this.left = left;
+            this.right = right;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            return WrapParallelFlow.compare(comparator, left.values.get(a), right.values.get(b));
+        }
+    }
+}
@@ -217,7 +217,7 @@ final public class WrapRegex extends BaseObject implements Iterator {
     })
     public static Memory of(Environment env, Memory... args) {
         int flags = args[1].toInteger();
-        Pattern pattern = Pattern.compile(args[0].toString(), flags);
+        Pattern pattern = env.getScope().getPatternCache().compile(args[0].toString(), flags);
         Matcher matcher = pattern.matcher("");
 
         return ObjectMemory.valueOf(new WrapRegex(env, matcher, ""));
@@ -226,7 +226,7 @@ final public class WrapRegex extends BaseObject implements Iterator {
     @Signature(@Arg(value = "flags"))
     public Memory withFlags(Environment env, Memory... args) {
         int flags = args[0].toInteger();
-        Pattern pattern = Pattern.compile(matcher.pattern().pattern(), flags);
+        Pattern pattern = env.getScope().getPatternCache().compile(matcher.pattern().pattern(), flags);
         Matcher matcher1 = pattern.matcher(input);
 
         return ObjectMemory.valueOf(new WrapRegex(env, matcher1, input));
@@ -279,7 +279,8 @@ final public class WrapRegex extends BaseObject implements Iterator {
             @Arg("string")
     })
     public static Memory match(Environment env, Memory... args) {
-        return args[1].toString().matches(args[0].toString()) ? Memory.TRUE : Memory.FALSE;
+        Pattern pattern = env.getScope().getPatternCache().compile(args[0].toString(), 0);
+        return pattern.matcher(args[1].toString()).matches() ? Memory.TRUE : Memory.FALSE;
     }
 
     @Signature({
@@ -288,13 +289,9 @@ final public class WrapRegex extends BaseObject implements Iterator {
             @Arg(value = "limit", optional = @Reflection.Optional("0"))
     })
     public static Memory split(Environment env, Memory... args) {
-        String[] r;
         int limit = args[2].toInteger();
-
-        if (limit <= 0)
-            r = args[1].toString().split(args[0].toString());
-        else
-            r = args[1].toString().split(args[0].toString(), limit);
+        Pattern pattern = env.getScope().getPatternCache().compile(args[0].toString(), 0);
+        String[] r = pattern.split(args[1].toString(), limit < 0 ? 0 : limit);
 
         return ArrayMemory.ofStrings(r).toConstant();
     }
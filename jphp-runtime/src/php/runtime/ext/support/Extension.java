@@ -4,6 +4,7 @@ import php.runtime.Information;
 import php.runtime.common.collections.map.HashedMap;
 import php.runtime.env.CompileScope;
 import php.runtime.env.Environment;
+import php.runtime.env.ScopeSnapshot;
 import php.runtime.exceptions.CriticalException;
 import php.runtime.ext.java.JavaException;
 import php.runtime.ext.support.compile.CompileConstant;
@@ -14,6 +15,7 @@ import php.runtime.lang.BaseWrapper;
 import php.runtime.lang.IObject;
 import php.runtime.memory.support.MemoryOperation;
 
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -28,6 +30,8 @@ abstract public class Extension {
     protected final Map<String, CompileFunction> functions = new LinkedHashMap<String, CompileFunction>();
     protected final Map<String, Class<?>> classes = new LinkedHashMap<String, Class<?>>();
 
+    protected ScopeSnapshot snapshot;
+
     public String getName() {
         return getClass().getName();
     }
@@ -63,6 +67,14 @@ abstract public class Extension {
         // nop
     }
 
+    public ScopeSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(ScopeSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
     public Map<String, CompileConstant> getConstants() {
         return constants;
     }
@@ -122,13 +134,31 @@ abstract public class Extension {
     }
 
     public void registerConstants(ConstantsContainer container){
-        for(CompileConstant constant : container.getConstants()){
+        Collection<CompileConstant> result = snapshot == null ? null : snapshot.getConstants(container);
+
+        if (result == null) {
+            result = container.getConstants();
+
+            if (snapshot != null)
+                snapshot.putConstants(container, result);
+        }
+
+        for(CompileConstant constant : result){
             constants.put(constant.name, constant);
         }
     }
 
     public void registerFunctions(FunctionsContainer container){
-        for(CompileFunction function : container.getFunctions()){
+        Collection<CompileFunction> result = snapshot == null ? null : snapshot.getFunctions(container);
+
+        if (result == null) {
+            result = container.getFunctions();
+
+            if (snapshot != null)
+                snapshot.putFunctions(container, result);
+        }
+
+        for(CompileFunction function : result){
             functions.put(function.name.toLowerCase(), function);
         }
     }
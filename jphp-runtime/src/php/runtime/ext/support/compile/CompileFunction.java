@@ -12,7 +12,9 @@ import php.runtime.memory.support.MemoryUtils;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class CompileFunction {
     public String name;
@@ -40,18 +42,50 @@ public class CompileFunction {
     }
 
     public int getMinArgs() {
+        resolve();
         return minArgs;
     }
 
     public int getMaxArgs() {
+        resolve();
         return maxArgs;
     }
 
+    /**
+     * Adds methods which are not known yet, it is called before any access to methods of the function.
+     */
+    protected void resolve() {
+        // nop
+    }
+
+    /**
+     * @return all methods of the function, a var-args method is included once
+     */
+    public List<Method> getMethods() {
+        resolve();
+        List<Method> result = new ArrayList<Method>();
+
+        for (Method method : methods) {
+            if (method != null && (methodVarArgs == null || !method.method.equals(methodVarArgs.method))) {
+                result.add(method);
+            }
+        }
+
+        if (methodVarArgs != null) {
+            result.add(methodVarArgs);
+        }
+
+        return result;
+    }
+
     public Method addMethod(java.lang.reflect.Method method){
         return addMethod(method, false);
     }
 
     public void mergeFunction(CompileFunction function) {
+        resolve();
+        function.resolve();
+
         if (methods.length < function.methods.length) {
             methods = Arrays.copyOf(methods, function.methods.length);
         }
@@ -152,6 +186,8 @@ public class CompileFunction {
     }
 
     public boolean delete(int paramCount) {
+        resolve();
+
         if (paramCount < minArgs)
             return false;
 
@@ -180,6 +216,8 @@ public class CompileFunction {
     }
 
     public Method find(int paramCount) {
+        resolve();
+
         if (paramCount < minArgs)
             return null;
 
@@ -0,0 +1,104 @@
+package php.runtime.ext.support.compile;
+
+import php.runtime.exceptions.CriticalException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A function restored from a scope snapshot, its java methods are looked up and
+ * scanned for annotations only on first access.
+ */
+public class LazyCompileFunction extends CompileFunction {
+    protected final ClassLoader classLoader;
+    protected volatile Signature[] signatures;
+
+    public LazyCompileFunction(String name, ClassLoader classLoader, Signature... signatures) {
+        super(name);
+        this.classLoader = classLoader;
+        this.signatures = signatures;
+    }
+
+    public boolean isResolved() {
+        return signatures == null;
+    }
+
+    @Override
+    protected void resolve() {
+        if (signatures != null) {
+            synchronized (this) {
+                Signature[] signatures = this.signatures;
+
+                if (signatures != null) {
+                    for (Signature signature : signatures) {
+                        addMethod(signature.load(classLoader), signature.immutable);
+                    }
+
+                    this.signatures = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Java method of a function: declaring class, name and parameter types.
+     */
+    public static class Signature {
+        protected final static Map<String, Class<?>> primitives = new HashMap<String, Class<?>>();
+
+        static {
+            for (Class<?> type : new Class<?>[] {
+                    boolean.class, byte.class, char.class, short.class, int.class, long.class,
+                    float.class, double.class, void.class
+            }) {
+                primitives.put(type.getName(), type);
+            }
+        }
+
+        public final String className;
+        public final String name;
+        public final String[] parameterTypes;
+        public final boolean immutable;
+
+        public Signature(String className, String name, String[] parameterTypes, boolean immutable) {
+            this.className = className;
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+            this.immutable = immutable;
+        }
+
+        public Signature(Method method) {
+            this.className = method.method.getDeclaringClass().getName();
+            this.name = method.method.getName();
+            this.immutable = method.isImmutable;
+
+            Class<?>[] types = method.method.getParameterTypes();
+            this.parameterTypes = new String[types.length];
+
+            for (int i = 0; i < types.length; i++) {
+                parameterTypes[i] = types[i].getName();
+            }
+        }
+
+        protected static Class<?> forName(String name, ClassLoader classLoader) throws ClassNotFoundException {
+            Class<?> type = primitives.get(name);
+            return type != null ? type : Class.forName(name, false, classLoader);
+        }
+
+        public java.lang.reflect.Method load(ClassLoader classLoader) {
+            try {
+                Class<?>[] types = new Class<?>[parameterTypes.length];
+
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = forName(parameterTypes[i], classLoader);
+                }
+
+                return forName(className, classLoader).getDeclaredMethod(name, types);
+            } catch (ClassNotFoundException e) {
+                throw new CriticalException("Scope snapshot is out of date, " + e.getMessage());
+            } catch (NoSuchMethodException e) {
+                throw new CriticalException("Scope snapshot is out of date, method not found - " + className + "::" + name);
+            }
+        }
+    }
+}
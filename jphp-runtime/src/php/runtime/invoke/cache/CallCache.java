@@ -1,6 +1,7 @@
 package php.runtime.invoke.cache;
 
 import php.runtime.env.Environment;
+import php.runtime.monitor.RuntimeMetrics;
 import php.runtime.reflection.support.Entity;
 
 import java.lang.ref.WeakReference;
@@ -9,6 +10,19 @@ abstract public class CallCache<T extends Entity> {
     protected Item[][] cache;
 
     public T get(Environment env, int index) {
+        T result = fetch(env, index);
+
+        if (RuntimeMetrics.enabled) {
+            if (result == null)
+                RuntimeMetrics.CALL_CACHE_MISSES.inc();
+            else
+                RuntimeMetrics.CALL_CACHE_HITS.inc();
+        }
+
+        return result;
+    }
+
+    protected T fetch(Environment env, int index) {
         if (cache == null) {
             return null;
         }
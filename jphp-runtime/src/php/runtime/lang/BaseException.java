@@ -4,11 +4,13 @@ import php.runtime.Memory;
 import php.runtime.common.HintType;
 import php.runtime.common.Modifier;
 import php.runtime.env.CallStackItem;
+import php.runtime.env.CallStackSnapshot;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
 import php.runtime.exceptions.JPHPException;
 import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.StringMemory;
+import php.runtime.monitor.RuntimeMetrics;
 import php.runtime.reflection.ClassEntity;
 
 import java.lang.ref.WeakReference;
@@ -33,9 +35,11 @@ public class BaseException extends RuntimeException implements IObject, JPHPExce
     protected ClassEntity clazz;
     protected final WeakReference<Environment> env;
     protected TraceInfo trace;
+    protected CallStackSnapshot callStackSnapshot;
     protected CallStackItem[] callStack;
 
     private boolean init = true;
+    private boolean traceInit = true;
     private boolean isFinalized = false;
 
     public BaseException(Environment env){
@@ -44,6 +48,9 @@ public class BaseException extends RuntimeException implements IObject, JPHPExce
     }
 
     public BaseException(Environment env, ClassEntity clazz) {
+        if (RuntimeMetrics.enabled)
+            RuntimeMetrics.EXCEPTIONS_CREATED.inc();
+
         this.clazz = clazz;
         this.props = new ArrayMemory();
         this.env = new WeakReference<Environment>(env);
@@ -66,34 +73,36 @@ public class BaseException extends RuntimeException implements IObject, JPHPExce
     }
 
     public void setTraceInfo(Environment env, TraceInfo trace) {
-        this.callStack = env.getCallStackSnapshot();
+        this.callStackSnapshot = env.captureCallStack();
+        this.callStack = null;
         this.trace = trace;
         this.init = false;
+        this.traceInit = false;
     }
 
     @Signature
     final public Memory getMessage(Environment env, Memory... args) {
-        return clazz.refOfProperty(getProperties(), "message").toValue();
+        return clazz.refOfProperty(getBaseProperties(), "message").toValue();
     }
 
     @Signature
     final public Memory getCode(Environment env, Memory... args){
-        return clazz.refOfProperty(getProperties(), "code").toValue();
+        return clazz.refOfProperty(getBaseProperties(), "code").toValue();
     }
 
     @Signature
     final public Memory getLine(Environment env, Memory... args){
-        return clazz.refOfProperty(getProperties(), "line").toValue();
+        return clazz.refOfProperty(getBaseProperties(), "line").toValue();
     }
 
     @Signature
     final public Memory getPosition(Environment env, Memory... args){
-        return clazz.refOfProperty(getProperties(), "position").toValue();
+        return clazz.refOfProperty(getBaseProperties(), "position").toValue();
     }
 
     @Signature
     final public Memory getFile(Environment env, Memory... args){
-        return clazz.refOfProperty(getProperties(), "file").toValue();
+        return clazz.refOfProperty(getBaseProperties(), "file").toValue();
     }
 
     @Signature
@@ -103,7 +112,7 @@ public class BaseException extends RuntimeException implements IObject, JPHPExce
 
     @Signature
     public Memory getPrevious(Environment env, Memory... args) {
-        return clazz.refOfProperty(getProperties(), "previous").toValue();
+        return clazz.refOfProperty(getBaseProperties(), "previous").toValue();
     }
 
     @Signature
@@ -116,10 +125,10 @@ public class BaseException extends RuntimeException implements IObject, JPHPExce
         StringBuilder sb = new StringBuilder();
         sb.append("exception '")
                 .append(clazz.getName()).append("' with message '")
-                .append(clazz.refOfProperty(getProperties(), "message"))
+                .append(clazz.refOfProperty(getBaseProperties(), "message"))
                 .append("' in ")
-                .append(clazz.refOfProperty(getProperties(), "file"))
-                .append(":").append(clazz.refOfProperty(getProperties(), "line"));
+                .append(clazz.refOfProperty(getBaseProperties(), "file"))
+                .append(":").append(clazz.refOfProperty(getBaseProperties(), "line"));
         sb.append("\nStack Trace:\n");
         sb.append(getTraceAsString(env));
         return new StringMemory(sb.toString());
@@ -127,22 +136,10 @@ public class BaseException extends RuntimeException implements IObject, JPHPExce
 
     @Signature
     final public Memory getTraceAsString(Environment env, Memory... args){
-        int i = 0;
-        StringBuilder sb = new StringBuilder();
-        if (callStack != null){
-            for (CallStackItem e : getCallStack()){
-                if (i != 0)
-                    sb.append("\n");
+        if (callStack == null && callStackSnapshot != null)
+            return new StringMemory(callStackSnapshot.toString(false));
 
-                sb.append("#").append(i).append(" ").append(e.toString(false));
-                i++;
-            }
-            if (i != 0)
-                sb.append("\n");
-
-            sb.append("#").append(i).append(" {main}");
-        }
-        return new StringMemory(sb.toString());
+        return new StringMemory(CallStackItem.toString(callStack, false));
     }
 
     @Override
@@ -150,8 +147,11 @@ public class BaseException extends RuntimeException implements IObject, JPHPExce
         return clazz;
     }
 
-    @Override
-    public ArrayMemory getProperties() {
+    /**
+     * Returns properties with filled file, line and position but without building of the trace array,
+     * the trace is materialized only by {@link #getProperties()}.
+     */
+    protected ArrayMemory getBaseProperties() {
         if (!init){
             init = true;
             if (trace != null){
@@ -167,12 +167,20 @@ public class BaseException extends RuntimeException implements IObject, JPHPExce
                 m = clazz.refOfProperty(props, "position");
                 if (m.isNull())
                     m.assign(trace.getStartPosition() + 1);
+            }
+        }
+
+        return props;
+    }
 
-                ArrayMemory backTrace = new ArrayMemory();
-                for(CallStackItem el : callStack)
-                    backTrace.add(el.toArray());
+    @Override
+    public ArrayMemory getProperties() {
+        getBaseProperties();
 
-                clazz.refOfProperty(props, "trace").assign(backTrace);
+        if (!traceInit){
+            traceInit = true;
+            if (trace != null && callStackSnapshot != null){
+                clazz.refOfProperty(props, "trace").assign(callStackSnapshot.toArray());
             }
         }
 
@@ -195,9 +203,16 @@ public class BaseException extends RuntimeException implements IObject, JPHPExce
     }
 
     public CallStackItem[] getCallStack() {
+        if (callStack == null && callStackSnapshot != null)
+            callStack = callStackSnapshot.toItems();
+
         return callStack;
     }
 
+    public CallStackSnapshot getCallStackSnapshot() {
+        return callStackSnapshot;
+    }
+
     public TraceInfo getTrace() {
         return trace;
     }
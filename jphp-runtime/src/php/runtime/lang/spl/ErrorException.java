@@ -59,6 +59,6 @@ public class ErrorException extends BaseException {
 
     @Reflection.Signature
     final public Memory getSeverity(Environment env, Memory... args){
-        return clazz.refOfProperty(getProperties(), "severity").toValue();
+        return clazz.refOfProperty(getBaseProperties(), "severity").toValue();
     }
 }
@@ -0,0 +1,549 @@
+package php.runtime.loader;
+
+import php.runtime.loader.dump.io.DumpException;
+import php.runtime.reflection.ClassEntity;
+import php.runtime.reflection.ConstantEntity;
+import php.runtime.reflection.FunctionEntity;
+import php.runtime.reflection.ModuleEntity;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Single uncompressed archive of module dumps (with byte code) and sorted indexes of names, it is
+ * memory-mapped and modules are read by offset only when they are used.
+ *
+ * Layout (big endian):
+ * <pre>
+ *   header:   stamp, version, module count, module table offset,
+ *             (count, offset) of modules, classes, functions and constants indexes
+ *   modules:  (name ref, internal name ref, dump offset, dump length) per module
+ *   indexes:  (key ref, module) per name, sorted by UTF-8 bytes of keys
+ *   strings:  (unsigned short length, UTF-8 bytes) per string
+ *   dumps:    dumps of {@link php.runtime.loader.dump.ModuleDumper}
+ * </pre>
+ */
+public class ModuleArchive {
+    public final static String ENTRY_NAME = "JPHP-INF/modules.archive";
+
+    public final static int ARCHIVE_STAMP = 0x4A504841; // JPHA
+    public final static int ARCHIVE_VERSION = 20150301;
+
+    protected final static int HEADER_SIZE = 48;
+    protected final static int MODULE_ENTRY_SIZE = 16;
+    protected final static int INDEX_ENTRY_SIZE = 8;
+
+    public final static int INDEX_MODULES = 0;
+    public final static int INDEX_CLASSES = 1;
+    public final static int INDEX_FUNCTIONS = 2;
+    public final static int INDEX_CONSTANTS = 3;
+
+    protected final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    protected final ByteBuffer buffer;
+    protected final int moduleCount;
+    protected final int moduleTable;
+    protected final int[] indexCounts = new int[4];
+    protected final int[] indexOffsets = new int[4];
+
+    public ModuleArchive(ByteBuffer buffer) throws DumpException {
+        this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+
+        if (this.buffer.capacity() < HEADER_SIZE || this.buffer.getInt(0) != ARCHIVE_STAMP)
+            throw new DumpException("Invalid module archive format");
+
+        int version = this.buffer.getInt(4);
+        if (version != ARCHIVE_VERSION)
+            throw new DumpException("Invalid module archive version - " + version + ", only " + ARCHIVE_VERSION);
+
+        moduleCount = this.buffer.getInt(8);
+        moduleTable = this.buffer.getInt(12);
+
+        for (int i = 0; i < 4; i++) {
+            indexCounts[i] = this.buffer.getInt(16 + i * 8);
+            indexOffsets[i] = this.buffer.getInt(20 + i * 8);
+        }
+    }
+
+    /**
+     * Maps the archive file into memory.
+     */
+    public static ModuleArchive map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = raf.getChannel();
+            return new ModuleArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Maps the archive stored (without compression) in a jar file.
+     *
+     * @return null if there is no such stored entry in the jar
+     */
+    public static ModuleArchive map(File jarFile, String entryName) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(jarFile, "r");
+
+        try {
+            long[] region = findStoredEntry(raf, entryName);
+            if (region == null)
+                return null;
+
+            return new ModuleArchive(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, region[0], region[1]));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads the archive from a stream, it is used when the archive cannot be mapped.
+     */
+    public static ModuleArchive read(InputStream input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bytes = new byte[8192];
+        int length;
+
+        while ((length = input.read(bytes)) != -1) {
+            out.write(bytes, 0, length);
+        }
+
+        return new ModuleArchive(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Maps the archive of the resource url (a file or an entry of a local jar) or reads it.
+     */
+    public static ModuleArchive open(URL url) throws IOException {
+        try {
+            if ("file".equals(url.getProtocol()))
+                return map(new File(url.toURI()));
+
+            if ("jar".equals(url.getProtocol())) {
+                URLConnection connection = url.openConnection();
+
+                if (connection instanceof JarURLConnection) {
+                    JarURLConnection jarConnection = (JarURLConnection) connection;
+                    URL jarUrl = jarConnection.getJarFileURL();
+
+                    if ("file".equals(jarUrl.getProtocol())) {
+                        ModuleArchive archive = map(new File(jarUrl.toURI()), jarConnection.getEntryName());
+
+                        if (archive != null)
+                            return archive;
+                    }
+                }
+            }
+        } catch (URISyntaxException e) {
+            // read it from the stream.
+        }
+
+        InputStream input = url.openStream();
+        try {
+            return read(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @return {offset, size} of data of the stored (not compressed) zip entry or null
+     */
+    protected static long[] findStoredEntry(RandomAccessFile file, String entryName) throws IOException {
+        long length = file.length();
+        int tailSize = (int) Math.min(length, 0xFFFF + 22);
+
+        byte[] tail = new byte[tailSize];
+        file.seek(length - tailSize);
+        file.readFully(tail);
+
+        ByteBuffer buf = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+
+        int end = -1;
+        for (int i = tailSize - 22; i >= 0; i--) {
+            if (buf.getInt(i) == 0x06054b50) {
+                end = i;
+                break;
+            }
+        }
+
+        if (end == -1)
+            return null;
+
+        long directorySize = buf.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = buf.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (directoryOffset == 0xFFFFFFFFL || directoryOffset + directorySize > length)
+            return null; // zip64
+
+        byte[] directory = new byte[(int) directorySize];
+        file.seek(directoryOffset);
+        file.readFully(directory);
+
+        buf = ByteBuffer.wrap(directory).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] name = entryName.getBytes(UTF_8);
+
+        for (int i = 0; i + 46 <= directory.length && buf.getInt(i) == 0x02014b50; ) {
+            int method = buf.getShort(i + 10) & 0xFFFF;
+            long size = buf.getInt(i + 20) & 0xFFFFFFFFL;
+            int nameLength = buf.getShort(i + 28) & 0xFFFF;
+            int extraLength = buf.getShort(i + 30) & 0xFFFF;
+            int commentLength = buf.getShort(i + 32) & 0xFFFF;
+            long headerOffset = buf.getInt(i + 42) & 0xFFFFFFFFL;
+
+            if (nameLength == name.length && regionEquals(directory, i + 46, name)) {
+                if (method != 0)
+                    return null;
+
+                byte[] header = new byte[30];
+                file.seek(headerOffset);
+                file.readFully(header);
+
+                ByteBuffer local = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+                if (local.getInt(0) != 0x04034b50)
+                    return null;
+
+                long dataOffset = headerOffset + 30 + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+                return new long[]{dataOffset, size};
+            }
+
+            i += 46 + nameLength + extraLength + commentLength;
+        }
+
+        return null;
+    }
+
+    protected static boolean regionEquals(byte[] bytes, int offset, byte[] value) {
+        for (int i = 0; i < value.length; i++) {
+            if (bytes[offset + i] != value[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    public int getModuleCount() {
+        return moduleCount;
+    }
+
+    protected String readString(int ref) {
+        int length = buffer.getShort(ref) & 0xFFFF;
+        byte[] bytes = new byte[length];
+
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(ref + 2);
+        dup.get(bytes);
+
+        return new String(bytes, UTF_8);
+    }
+
+    public String getModuleName(int module) {
+        return readString(buffer.getInt(moduleTable + module * MODULE_ENTRY_SIZE));
+    }
+
+    public String getModuleInternalName(int module) {
+        return readString(buffer.getInt(moduleTable + module * MODULE_ENTRY_SIZE + 4));
+    }
+
+    /**
+     * @return stream of the module dump, it does not copy bytes of the archive
+     */
+    public InputStream openModule(int module) {
+        int entry = moduleTable + module * MODULE_ENTRY_SIZE;
+
+        ByteBuffer dump = buffer.duplicate();
+        dump.position(buffer.getInt(entry + 8));
+        dump.limit(buffer.getInt(entry + 8) + buffer.getInt(entry + 12));
+
+        return new ByteBufferInputStream(dump.slice());
+    }
+
+    protected int compareKey(int ref, byte[] key) {
+        int length = buffer.getShort(ref) & 0xFFFF;
+        int min = Math.min(length, key.length);
+
+        for (int i = 0; i < min; i++) {
+            int a = buffer.get(ref + 2 + i) & 0xFF;
+            int b = key[i] & 0xFF;
+
+            if (a != b)
+                return a - b;
+        }
+
+        return length - key.length;
+    }
+
+    /**
+     * Binary search of the name in the index.
+     *
+     * @param index one of INDEX_* constants
+     * @return module or -1
+     */
+    public int find(int index, String name) {
+        byte[] key = name.getBytes(UTF_8);
+
+        int offset = indexOffsets[index];
+        int low = 0;
+        int high = indexCounts[index] - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = offset + mid * INDEX_ENTRY_SIZE;
+            int cmp = compareKey(buffer.getInt(entry), key);
+
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return buffer.getInt(entry + 4);
+        }
+
+        return -1;
+    }
+
+    public int findModule(String name) {
+        return find(INDEX_MODULES, moduleKey(name));
+    }
+
+    public int findClass(String name) {
+        return find(INDEX_CLASSES, name.toLowerCase());
+    }
+
+    public int findFunction(String name) {
+        return find(INDEX_FUNCTIONS, name.toLowerCase());
+    }
+
+    public int findConstant(String name) {
+        return find(INDEX_CONSTANTS, name);
+    }
+
+    /**
+     * @return key of the module name: lower case without the .php extension
+     */
+    public static String moduleKey(String name) {
+        if (name.endsWith(".php"))
+            name = name.substring(0, name.lastIndexOf(".php"));
+
+        return name.toLowerCase();
+    }
+
+    protected static class ByteBufferInputStream extends InputStream {
+        protected final ByteBuffer buffer;
+
+        public ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+
+            if (!buffer.hasRemaining())
+                return -1;
+
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Builder of an archive, modules are added with their dumps and written at once.
+     */
+    public static class Writer {
+        protected final List<String> names = new ArrayList<String>();
+        protected final List<String> internalNames = new ArrayList<String>();
+        protected final List<byte[]> dumps = new ArrayList<byte[]>();
+
+        @SuppressWarnings("unchecked")
+        protected final Map<String, Integer>[] indexes = new Map[]{
+                new HashMap<String, Integer>(), new HashMap<String, Integer>(),
+                new HashMap<String, Integer>(), new HashMap<String, Integer>()
+        };
+
+        /**
+         * @param name name of the module in the archive (path relative to sources)
+         * @param dump dump of the module with byte code
+         */
+        public void add(String name, ModuleEntity module, byte[] dump) {
+            int index = names.size();
+
+            names.add(name);
+            internalNames.add(module.getInternalName());
+            dumps.add(dump);
+
+            indexes[INDEX_MODULES].put(moduleKey(name), index);
+
+            for (ClassEntity e : module.getClasses()) {
+                indexes[INDEX_CLASSES].put(e.getName().toLowerCase(), index);
+            }
+
+            for (FunctionEntity e : module.getFunctions()) {
+                indexes[INDEX_FUNCTIONS].put(e.getName().toLowerCase(), index);
+            }
+
+            for (ConstantEntity e : module.getConstants()) {
+                indexes[INDEX_CONSTANTS].put(e.getName(), index);
+            }
+        }
+
+        public int size() {
+            return names.size();
+        }
+
+        protected static int compareBytes(byte[] a, byte[] b) {
+            int min = Math.min(a.length, b.length);
+
+            for (int i = 0; i < min; i++) {
+                int x = a[i] & 0xFF;
+                int y = b[i] & 0xFF;
+
+                if (x != y)
+                    return x - y;
+            }
+
+            return a.length - b.length;
+        }
+
+        public void write(OutputStream output) throws IOException {
+            ByteArrayOutputStream strings = new ByteArrayOutputStream();
+            DataOutputStream stringsOut = new DataOutputStream(strings);
+
+            int moduleTable = HEADER_SIZE;
+            int indexStart = moduleTable + names.size() * MODULE_ENTRY_SIZE;
+
+            int indexesSize = 0;
+            for (Map<String, Integer> index : indexes) {
+                indexesSize += index.size() * INDEX_ENTRY_SIZE;
+            }
+
+            int stringsStart = indexStart + indexesSize;
+
+            // strings of module names.
+            int[] nameRefs = new int[names.size()];
+            int[] internalRefs = new int[names.size()];
+
+            for (int i = 0; i < names.size(); i++) {
+                nameRefs[i] = stringsStart + writeString(stringsOut, names.get(i));
+                internalRefs[i] = stringsStart + writeString(stringsOut, internalNames.get(i));
+            }
+
+            // sorted indexes.
+            List<int[]> indexEntries = new ArrayList<int[]>();
+
+            for (Map<String, Integer> index : indexes) {
+                List<Map.Entry<byte[], Integer>> entries = new ArrayList<Map.Entry<byte[], Integer>>();
+
+                for (Map.Entry<String, Integer> e : index.entrySet()) {
+                    entries.add(new AbstractMap.SimpleEntry<byte[], Integer>(e.getKey().getBytes(UTF_8), e.getValue()));
+                }
+
+                Collections.sort(entries, new Comparator<Map.Entry<byte[], Integer>>() {
+                    @Override
+                    public int compare(Map.Entry<byte[], Integer> o1, Map.Entry<byte[], Integer> o2) {
+                        return compareBytes(o1.getKey(), o2.getKey());
+                    }
+                });
+
+                int[] result = new int[entries.size() * 2];
+
+                for (int i = 0; i < entries.size(); i++) {
+                    result[i * 2] = stringsStart + writeBytes(stringsOut, entries.get(i).getKey());
+                    result[i * 2 + 1] = entries.get(i).getValue();
+                }
+
+                indexEntries.add(result);
+            }
+
+            stringsOut.flush();
+
+            int dumpStart = stringsStart + strings.size();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+
+            // header
+            out.writeInt(ARCHIVE_STAMP);
+            out.writeInt(ARCHIVE_VERSION);
+            out.writeInt(names.size());
+            out.writeInt(moduleTable);
+
+            int offset = indexStart;
+            for (Map<String, Integer> index : indexes) {
+                out.writeInt(index.size());
+                out.writeInt(offset);
+                offset += index.size() * INDEX_ENTRY_SIZE;
+            }
+
+            // modules
+            int dumpOffset = dumpStart;
+            for (int i = 0; i < names.size(); i++) {
+                out.writeInt(nameRefs[i]);
+                out.writeInt(internalRefs[i]);
+                out.writeInt(dumpOffset);
+                out.writeInt(dumps.get(i).length);
+
+                dumpOffset += dumps.get(i).length;
+            }
+
+            // indexes
+            for (int[] entries : indexEntries) {
+                for (int entry : entries) {
+                    out.writeInt(entry);
+                }
+            }
+
+            strings.writeTo(out);
+
+            for (byte[] dump : dumps) {
+                out.write(dump);
+            }
+
+            out.flush();
+        }
+
+        /**
+         * @return offset of the string in the string pool
+         */
+        protected static int writeString(DataOutputStream out, String value) throws IOException {
+            return writeBytes(out, value.getBytes(UTF_8));
+        }
+
+        protected static int writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+            if (bytes.length > 0xFFFF)
+                throw new DumpException("Name is too long - " + bytes.length + " bytes");
+
+            int offset = out.size();
+            out.writeShort(bytes.length);
+            out.write(bytes);
+            return offset;
+        }
+    }
+}
@@ -29,6 +29,9 @@ public class StandaloneLoader {
     protected final Map<String, Module> constants;
     protected final Map<String, Module> modules;
 
+    protected final List<ModuleArchive> archives = new ArrayList<ModuleArchive>();
+    protected final Map<String, ModuleEntity> archivedModules = new HashMap<String, ModuleEntity>();
+
     public StandaloneLoader() {
         scope = new CompileScope();
         env = new Environment(scope, System.out);
@@ -46,8 +49,7 @@ public class StandaloneLoader {
                 ModuleEntity module = fetchClass(name);
 
                 if (module != null) {
-                    loadModule(module);
-                    scope.loadModule(module, false);
+                    defineModule(module);
                     scope.registerModule(module);
                 }
             }
@@ -59,8 +61,7 @@ public class StandaloneLoader {
                 ModuleEntity module = fetchFunction(name);
 
                 if (module != null) {
-                    loadModule(module);
-                    scope.loadModule(module, false);
+                    defineModule(module);
                     scope.registerModule(module);
                 }
             }
@@ -72,8 +73,7 @@ public class StandaloneLoader {
                 ModuleEntity module = fetchConstant(name);
 
                 if (module != null) {
-                    loadModule(module);
-                    scope.loadModule(module, false);
+                    defineModule(module);
                     scope.registerModule(module);
                 }
             }
@@ -140,7 +140,20 @@ public class StandaloneLoader {
             throw new NullPointerException("classLoader is null");
         }
 
-        this.loadClassesDump(classLoader.getResourceAsStream("JPHP-INF/classes.dump"));
+        URL archive = classLoader.getResource(ModuleArchive.ENTRY_NAME);
+
+        if (archive != null) {
+            addArchive(ModuleArchive.open(archive));
+        } else {
+            this.loadClassesDump(classLoader.getResourceAsStream("JPHP-INF/classes.dump"));
+        }
+    }
+
+    /**
+     * Adds an archive of modules, its modules are loaded and defined only on first use.
+     */
+    public void addArchive(ModuleArchive archive) {
+        archives.add(archive);
     }
 
     public void run() {
@@ -165,11 +178,11 @@ public class StandaloneLoader {
         }
     }
 
-    protected ModuleEntity _fetch(String name, Map<String, Module> source) {
+    protected ModuleEntity _fetch(String name, Map<String, Module> source, int archiveIndex) {
         Module module = source.get(name);
 
         if (module == null) {
-            return null;
+            return _fetchArchived(name, archiveIndex);
         }
 
         InputStream input = classLoader.getResourceAsStream(module.internalName + ".dump");
@@ -187,12 +200,60 @@ public class StandaloneLoader {
         }
     }
 
+    protected ModuleEntity _fetchArchived(String name, int archiveIndex) {
+        for (ModuleArchive archive : archives) {
+            int module = archive.find(archiveIndex, name);
+
+            if (module != -1) {
+                return loadArchivedModule(archive, module);
+            }
+        }
+
+        return null;
+    }
+
+    protected synchronized ModuleEntity loadArchivedModule(ModuleArchive archive, int module) {
+        String internalName = archive.getModuleInternalName(module);
+        ModuleEntity entity = archivedModules.get(internalName);
+
+        if (entity == null) {
+            ModuleDumper moduleDumper = new ModuleDumper(
+                    new Context(new File(archive.getModuleName(module))), env, true
+            );
+
+            try {
+                entity = moduleDumper.load(archive.openModule(module));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            archivedModules.put(internalName, entity);
+        }
+
+        return entity;
+    }
+
+    /**
+     * Links the module with its classes, modules of archives contain byte code and it is defined once.
+     */
+    protected synchronized void defineModule(ModuleEntity module) {
+        byte[] data = module.getData();
+
+        if (data != null && data.length > 0) {
+            if (!module.isLoaded()) {
+                scope.loadModule(module, true);
+            }
+        } else {
+            loadModule(module);
+            scope.loadModule(module, false);
+        }
+    }
+
     public ModuleEntity fetchModule(String name) {
-        ModuleEntity entity = _fetch(name.toLowerCase(), modules);
+        ModuleEntity entity = _fetch(name.toLowerCase(), modules, ModuleArchive.INDEX_MODULES);
 
         if (entity != null) {
-            loadModule(entity);
-            scope.loadModule(entity, false);
+            defineModule(entity);
             scope.addUserModule(entity);
         }
 
@@ -200,15 +261,15 @@ public class StandaloneLoader {
     }
 
     public ModuleEntity fetchClass(String name) {
-        return _fetch(name.toLowerCase(), classes);
+        return _fetch(name.toLowerCase(), classes, ModuleArchive.INDEX_CLASSES);
     }
 
     public ModuleEntity fetchFunction(String name) {
-        return _fetch(name.toLowerCase(), functions);
+        return _fetch(name.toLowerCase(), functions, ModuleArchive.INDEX_FUNCTIONS);
     }
 
     public ModuleEntity fetchConstant(String name) {
-        return _fetch(name, constants);
+        return _fetch(name, constants, ModuleArchive.INDEX_CONSTANTS);
     }
 
     public CompileScope getScope() {
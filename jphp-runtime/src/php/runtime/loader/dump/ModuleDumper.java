@@ -5,6 +5,7 @@ import php.runtime.env.Environment;
 import php.runtime.loader.dump.io.DumpException;
 import php.runtime.loader.dump.io.DumpInputStream;
 import php.runtime.loader.dump.io.DumpOutputStream;
+import php.runtime.monitor.RuntimeMonitor;
 import php.runtime.reflection.ClassEntity;
 import php.runtime.reflection.ConstantEntity;
 import php.runtime.reflection.FunctionEntity;
@@ -108,6 +109,17 @@ public class ModuleDumper extends Dumper<ModuleEntity> {
 
     @Override
     public ModuleEntity load(InputStream input) throws IOException {
+        if (RuntimeMonitor.enabled) {
+            long time = System.nanoTime();
+            ModuleEntity entity = doLoad(input);
+            RuntimeMonitor.moduleLoaded(entity, entity.getData().length, System.nanoTime() - time);
+            return entity;
+        }
+
+        return doLoad(input);
+    }
+
+    protected ModuleEntity doLoad(InputStream input) throws IOException {
         DumpInputStream data = new DumpInputStream(input);
 
         int STAMP = data.readInt();
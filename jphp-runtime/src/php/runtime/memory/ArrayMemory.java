@@ -15,6 +15,7 @@ import php.runtime.memory.helper.ShortcutMemory;
 import php.runtime.memory.support.MemoryOperation;
 import php.runtime.memory.support.MemoryStringUtils;
 import php.runtime.memory.support.MemoryUtils;
+import php.runtime.monitor.RuntimeMetrics;
 import php.runtime.reflection.support.ReflectionUtils;
 
 import java.util.*;
@@ -40,6 +41,18 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
         lastLongIndex = -1;
     }
 
+    /**
+     * @param size expected count of elements, the list or the hash table is allocated for it
+     */
+    public ArrayMemory(boolean asMap, int size) {
+        super(Type.ARRAY);
+        if (asMap)
+            map = new LinkedMap<Object, ReferenceMemory>(size < 1 ? 1 : (int) (size / 0.75f) + 1);
+        else
+            list = new ArrayList<ReferenceMemory>(size);
+        lastLongIndex = -1;
+    }
+
     public ArrayMemory(){
         this(false);
     }
@@ -155,6 +168,9 @@ public class ArrayMemory extends Memory implements Iterable<ReferenceMemory> {
 
     public ArrayMemory checkCopied(){
         if (original != null || copies > 0) {
+            if (RuntimeMetrics.enabled)
+                RuntimeMetrics.ARRAY_COPIES.inc();
+
             ArrayMemory dup = duplicate();
             this.map  = dup.map;
             this.list = dup.list;
@@ -0,0 +1,350 @@
+package php.runtime.memory.output.serialization;
+
+import php.runtime.Memory;
+import php.runtime.common.Messages;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.exceptions.support.ErrorType;
+import php.runtime.lang.IObject;
+import php.runtime.lang.spl.Serializable;
+import php.runtime.memory.*;
+import php.runtime.reflection.ClassEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static php.runtime.memory.output.serialization.BinarySerializer.*;
+
+/**
+ * Reads documents written by {@link BinarySerializer} from a byte array or an input stream.
+ */
+public class BinaryDeserializer {
+    protected final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    protected final Environment env;
+    protected final TraceInfo trace;
+
+    protected InputStream input;
+    protected byte[] buffer;
+    protected int pos;
+    protected int limit;
+    protected long offset;
+
+    protected final List<String> strings = new ArrayList<String>();
+    protected final List<Memory> objects = new ArrayList<Memory>();
+    protected final List<ReferenceMemory> references = new ArrayList<ReferenceMemory>();
+
+    public BinaryDeserializer(Environment env, TraceInfo trace) {
+        this.env = env;
+        this.trace = trace;
+    }
+
+    /**
+     * @return value or FALSE with a warning if the data is malformed
+     */
+    public Memory read(byte[] data) {
+        input = null;
+        buffer = data;
+        pos = 0;
+        limit = data.length;
+        offset = 0;
+
+        try {
+            return readDocument();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // never happens without input
+        }
+    }
+
+    /**
+     * Reads the next document of the stream, bytes after the document are not read,
+     * so a buffered input is preferable.
+     *
+     * @return value or FALSE with a warning if the data is malformed
+     */
+    public Memory read(InputStream input) throws IOException {
+        if (this.input != input) {
+            this.input = input;
+            buffer = new byte[8192];
+            pos = limit = 0;
+            offset = 0;
+        }
+
+        return readDocument();
+    }
+
+    protected Memory readDocument() throws IOException {
+        try {
+            for (byte b : HEADER) {
+                if (readByte() != b)
+                    throw new FormatException();
+            }
+
+            return readValue();
+        } catch (FormatException e) {
+            env.error(trace, ErrorType.E_WARNING, "unserialize(): Error at offset %s of binary data", offset + pos - 1);
+            return Memory.FALSE;
+        } finally {
+            strings.clear();
+            objects.clear();
+            references.clear();
+        }
+    }
+
+    /**
+     * @return false at the end of input
+     */
+    protected boolean fill(int size) throws IOException {
+        if (pos + size <= limit)
+            return true;
+
+        if (input == null)
+            return false;
+
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            offset += pos;
+            limit -= pos;
+            pos = 0;
+        }
+
+        while (limit < size) {
+            if (limit == buffer.length) {
+                // grows by the data actually read, a malformed size fails at the end of input
+                byte[] tmp = new byte[(int) Math.min(size, buffer.length * 2L)];
+                System.arraycopy(buffer, 0, tmp, 0, limit);
+                buffer = tmp;
+            }
+
+            // no read-ahead, the next document is left in the input
+            int count = input.read(buffer, limit, Math.min(size, buffer.length) - limit);
+            if (count == -1)
+                return false;
+
+            limit += count;
+        }
+
+        return true;
+    }
+
+    protected int readByte() throws IOException {
+        if (!fill(1))
+            throw new FormatException();
+
+        return buffer[pos++];
+    }
+
+    protected long readVarLong() throws IOException {
+        long result = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0)
+                return result;
+        }
+
+        throw new FormatException();
+    }
+
+    protected int readSize() throws IOException {
+        long size = readVarLong();
+        if (size < 0 || size > Integer.MAX_VALUE)
+            throw new FormatException();
+
+        return (int) size;
+    }
+
+    protected Memory readValue() throws IOException {
+        int tag = readByte();
+
+        switch (tag) {
+            case TAG_NULL:
+                return Memory.NULL;
+            case TAG_FALSE:
+                return Memory.FALSE;
+            case TAG_TRUE:
+                return Memory.TRUE;
+            case TAG_INT:
+                return LongMemory.valueOf(readLong());
+            case TAG_DOUBLE: {
+                if (!fill(8))
+                    throw new FormatException();
+
+                long bits = 0;
+                for (int i = 0; i < 8; i++) {
+                    bits = (bits << 8) | (buffer[pos++] & 0xFF);
+                }
+
+                return new DoubleMemory(Double.longBitsToDouble(bits));
+            }
+            case TAG_STRING:
+            case TAG_STRING_ID:
+                return new StringMemory(readString(tag));
+            case TAG_BINARY: {
+                int size = readSize();
+                if (!fill(size))
+                    throw new FormatException();
+
+                byte[] bytes = new byte[size];
+                System.arraycopy(buffer, pos, bytes, 0, size);
+                pos += size;
+                return new BinaryMemory(bytes);
+            }
+            case TAG_ARRAY:
+                return readProperties(new ArrayMemory());
+            case TAG_OBJECT:
+            case TAG_OBJECT_SERIALIZED:
+                return readObject(tag == TAG_OBJECT_SERIALIZED);
+            case TAG_OBJECT_ID: {
+                int id = readSize();
+                if (id >= objects.size())
+                    throw new FormatException();
+
+                return objects.get(id);
+            }
+            default:
+                throw new FormatException();
+        }
+    }
+
+    protected long readLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    protected String readString(int tag) throws IOException {
+        if (tag == TAG_STRING_ID) {
+            int id = readSize();
+            if (id >= strings.size())
+                throw new FormatException();
+
+            return strings.get(id);
+        }
+
+        if (tag != TAG_STRING)
+            throw new FormatException();
+
+        int size = readSize();
+        if (!fill(size))
+            throw new FormatException();
+
+        String value = new String(buffer, pos, size, UTF_8);
+        pos += size;
+
+        strings.add(value);
+        return value;
+    }
+
+    protected Memory readKey() throws IOException {
+        int tag = readByte();
+
+        if (tag == TAG_INT)
+            return LongMemory.valueOf(readLong());
+
+        return new StringMemory(readString(tag));
+    }
+
+    protected ArrayMemory readProperties(ArrayMemory result) throws IOException {
+        int size = readSize();
+
+        for (int i = 0; i < size; i++) {
+            Object key = ArrayMemory.toKey(readKey());
+
+            if (fill(1) && buffer[pos] == TAG_REFERENCE_ID) {
+                pos++;
+
+                int id = readSize();
+                if (id >= references.size())
+                    throw new FormatException();
+
+                ReferenceMemory reference = references.get(id);
+                references.add(reference);
+                result.put(key, Memory.NULL).assignRef(reference);
+            } else {
+                // the slot is numbered before its value, values inside it may refer to it
+                ReferenceMemory slot = result.put(key, Memory.NULL);
+                references.add(slot);
+                slot.value = readValue();
+            }
+        }
+
+        return result;
+    }
+
+    protected Memory readObject(boolean isSerializable) throws IOException {
+        String className = readString(readByte());
+
+        ClassEntity classEntity = env.fetchClass(className, true);
+        if (classEntity == null) {
+            // the data is read first, so the stream stays at the end of the document
+            objects.add(Memory.NULL);
+            if (isSerializable) {
+                readString(readByte());
+            } else {
+                readProperties(new ArrayMemory());
+            }
+
+            env.error(trace, ErrorType.E_ERROR, Messages.ERR_CLASS_NOT_FOUND, className);
+            return Memory.NULL;
+        }
+
+        try {
+            IObject object = classEntity.newObjectWithoutConstruct(env);
+            if (object == null) {
+                env.exception(trace,
+                        new Messages.Item("Unserialization of '%s' is not allowed").fetch(classEntity.getName())
+                );
+            }
+
+            ObjectMemory result = new ObjectMemory(object);
+            objects.add(result);
+
+            if (isSerializable) {
+                StringMemory data = new StringMemory(readString(readByte()));
+
+                if (!(object instanceof Serializable)) {
+                    env.warning(trace, "Class %s has no unserializer", classEntity.getName());
+                    return Memory.NULL;
+                }
+
+                env.pushCall(trace, object, "unserialize", data);
+                try {
+                    ((Serializable) object).unserialize(env, data);
+                } finally {
+                    env.popCall();
+                }
+            } else {
+                readProperties(object.getProperties());
+
+                if (classEntity.methodMagicWakeup != null) {
+                    env.pushCall(trace, object, classEntity.methodMagicWakeup.getName());
+                    try {
+                        classEntity.methodMagicWakeup.invokeDynamic(object, env);
+                    } finally {
+                        env.popCall();
+                    }
+                }
+            }
+
+            return result;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+    }
+
+    protected static class FormatException extends RuntimeException {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
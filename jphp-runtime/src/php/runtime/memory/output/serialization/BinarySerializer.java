@@ -0,0 +1,392 @@
+package php.runtime.memory.output.serialization;
+
+import php.runtime.Memory;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.lang.ForeachIterator;
+import php.runtime.lang.IObject;
+import php.runtime.lang.spl.Serializable;
+import php.runtime.memory.*;
+import php.runtime.reflection.ClassEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Compact binary alternative of {@link Serializer}, read by {@link BinaryDeserializer}.
+ *
+ * A document is the header (J, B, S, version) and one value, a value is a tag byte and its data:
+ * integers and sizes are varints, each distinct string (keys, values, class names) is written once
+ * and then referenced by its index, repeated objects are written as back-references. Values of arrays and
+ * properties are numbered in the order of writing, a php reference to an already written value is written as
+ * its number, so shared and self references are restored. Recursive arrays are written as null,
+ * as by {@link Serializer}.
+ */
+public class BinarySerializer {
+    protected final static byte[] HEADER = {'J', 'B', 'S', 2};
+
+    protected final static int TAG_NULL = 0;
+    protected final static int TAG_FALSE = 1;
+    protected final static int TAG_TRUE = 2;
+    protected final static int TAG_INT = 3;
+    protected final static int TAG_DOUBLE = 4;
+    protected final static int TAG_STRING = 5;
+    protected final static int TAG_STRING_ID = 6;
+    protected final static int TAG_BINARY = 7;
+    protected final static int TAG_ARRAY = 8;
+    protected final static int TAG_OBJECT = 9;
+    protected final static int TAG_OBJECT_SERIALIZED = 10;
+    protected final static int TAG_OBJECT_ID = 11;
+    protected final static int TAG_REFERENCE_ID = 12;
+
+    protected final Environment env;
+    protected final TraceInfo trace;
+    protected final OutputStream output;
+
+    protected byte[] buffer;
+    protected int pos;
+
+    protected final Map<String, Integer> strings = new HashMap<String, Integer>();
+    protected final Map<Object, Integer> objects = new IdentityHashMap<Object, Integer>();
+    protected final Map<Object, Integer> values = new IdentityHashMap<Object, Integer>();
+    protected final Map<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+    protected int slots;
+    protected final Map<Object, Boolean> used = new IdentityHashMap<Object, Boolean>();
+
+    /**
+     * Writes to the output by chunks, the output is flushed after each document but not closed.
+     */
+    public BinarySerializer(Environment env, TraceInfo trace, OutputStream output) {
+        this.env = env;
+        this.trace = trace;
+        this.output = output;
+        this.buffer = new byte[8192];
+    }
+
+    /**
+     * Writes to memory, see {@link #toByteArray()}.
+     */
+    public BinarySerializer(Environment env, TraceInfo trace) {
+        this.env = env;
+        this.trace = trace;
+        this.output = null;
+        this.buffer = new byte[256];
+    }
+
+    /**
+     * Writes a document with the value.
+     */
+    public void write(Memory memory) throws IOException {
+        for (byte b : HEADER) {
+            writeByte(b);
+        }
+
+        try {
+            writeValue(memory.toValue());
+        } finally {
+            strings.clear();
+            objects.clear();
+            values.clear();
+            references.clear();
+            slots = 0;
+            used.clear();
+        }
+
+        if (output != null) {
+            output.write(buffer, 0, pos);
+            output.flush();
+            pos = 0;
+        }
+    }
+
+    /**
+     * @return written documents if the serializer writes to memory
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, pos);
+    }
+
+    /**
+     * Serializes the value to a new byte array.
+     */
+    public static byte[] serialize(Environment env, TraceInfo trace, Memory value) {
+        BinarySerializer serializer = new BinarySerializer(env, trace);
+
+        try {
+            serializer.write(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // never happens without output
+        }
+
+        return serializer.toByteArray();
+    }
+
+    protected void ensure(int size) throws IOException {
+        if (pos + size <= buffer.length)
+            return;
+
+        if (output != null) {
+            output.write(buffer, 0, pos);
+            pos = 0;
+
+            if (size <= buffer.length)
+                return;
+        }
+
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, pos + size));
+    }
+
+    protected void writeByte(int value) throws IOException {
+        ensure(1);
+        buffer[pos++] = (byte) value;
+    }
+
+    protected void writeVarLong(long value) throws IOException {
+        ensure(10);
+
+        while ((value & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[pos++] = (byte) value;
+    }
+
+    protected void writeValue(Memory memory) throws IOException {
+        switch (memory.type) {
+            case NULL:
+                writeByte(TAG_NULL);
+                break;
+            case BOOL:
+                writeByte(memory.toBoolean() ? TAG_TRUE : TAG_FALSE);
+                break;
+            case INT:
+                writeLong(memory.toLong());
+                break;
+            case DOUBLE:
+                writeDouble(memory.toDouble());
+                break;
+            case STRING:
+                if (memory instanceof BinaryMemory)
+                    writeBinary(memory.getBinaryBytes());
+                else
+                    writeString(memory.toString());
+                break;
+            case ARRAY:
+                writeArray((ArrayMemory) memory);
+                break;
+            case OBJECT:
+                writeObject((ObjectMemory) memory);
+                break;
+            case REFERENCE:
+                writeValue(memory.toValue());
+                break;
+            default:
+                writeByte(TAG_NULL);
+        }
+    }
+
+    public void writeLong(long value) throws IOException {
+        writeByte(TAG_INT);
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeDouble(double value) throws IOException {
+        writeByte(TAG_DOUBLE);
+        ensure(8);
+
+        long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[pos++] = (byte) (bits >>> shift);
+        }
+    }
+
+    public void writeString(String value) throws IOException {
+        Integer id = strings.get(value);
+        if (id != null) {
+            writeByte(TAG_STRING_ID);
+            writeVarLong(id);
+            return;
+        }
+
+        strings.put(value, strings.size());
+        writeByte(TAG_STRING);
+
+        int length = value.length();
+        int size = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (c < 0x80)
+                continue;
+
+            if (c < 0x800) {
+                size += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                size += 2;
+                i++;
+            } else {
+                size += 2;
+            }
+        }
+
+        writeVarLong(size);
+        ensure(size);
+
+        byte[] buffer = this.buffer;
+        int pos = this.pos;
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        this.pos = pos;
+    }
+
+    public void writeBinary(byte[] value) throws IOException {
+        writeByte(TAG_BINARY);
+        writeVarLong(value.length);
+
+        ensure(value.length);
+        System.arraycopy(value, 0, buffer, pos, value.length);
+        pos += value.length;
+    }
+
+    protected void writeKey(Memory key) throws IOException {
+        if (key.type == Memory.Type.INT)
+            writeLong(key.toLong());
+        else
+            writeString(key.toString());
+    }
+
+    public void writeArray(ArrayMemory memory) throws IOException {
+        if (used.put(memory, Boolean.TRUE) != null) {
+            writeByte(TAG_NULL);
+            return;
+        }
+
+        writeByte(TAG_ARRAY);
+        writeProperties(memory);
+
+        used.remove(memory);
+    }
+
+    protected void writeProperties(ArrayMemory memory) throws IOException {
+        writeVarLong(memory.size());
+
+        ForeachIterator iterator = memory.foreachIterator(true, false);
+        iterator.setPlainReferences(true);
+
+        while (iterator.next()) {
+            writeKey(iterator.getMemoryKey());
+
+            ReferenceMemory slot = (ReferenceMemory) iterator.getValue();
+            int number = slots++;
+            Integer id;
+
+            if (slot.isShortcut()) {
+                // a php reference points to a variable or to a slot of an array, which may be written already
+                ReferenceMemory reference = slot.getReference();
+
+                id = values.get(reference);
+                if (id == null)
+                    id = references.get(reference);
+
+                if (id == null) {
+                    references.put(reference, number);
+                    writeValue(reference.value);
+                    continue;
+                }
+            } else {
+                // the same array written twice shares its slots, only targets of references are linked
+                id = references.isEmpty() ? null : references.get(slot);
+
+                if (id == null) {
+                    values.put(slot, number);
+                    writeValue(slot.value);
+                    continue;
+                }
+            }
+
+            writeByte(TAG_REFERENCE_ID);
+            writeVarLong(id);
+        }
+    }
+
+    public void writeObject(ObjectMemory memory) throws IOException {
+        IObject object = memory.value;
+
+        Integer id = objects.get(object);
+        if (id != null) {
+            writeByte(TAG_OBJECT_ID);
+            writeVarLong(id);
+            return;
+        }
+
+        ClassEntity reflection = object.getReflection();
+
+        if (object instanceof Serializable) {
+            Memory result;
+            env.pushCall(trace, object, "serialize");
+            try {
+                result = ((Serializable) object).serialize(env);
+            } finally {
+                env.popCall();
+            }
+
+            if (result.isNull()) {
+                writeByte(TAG_NULL);
+                return;
+            }
+
+            if (!result.isString()) {
+                env.exception(trace, reflection.getName() + "::serialize() must return a string or NULL");
+                return;
+            }
+
+            objects.put(object, objects.size());
+            writeByte(TAG_OBJECT_SERIALIZED);
+            writeString(reflection.getName());
+            writeString(result.toString());
+            return;
+        }
+
+        ArrayMemory props;
+        if (reflection.methodMagicSleep != null) {
+            props = Serializer.sleep(env, trace, memory);
+
+            if (props == null) {
+                writeByte(TAG_NULL);
+                return;
+            }
+        } else {
+            props = reflection.getProperties() == null ? new ArrayMemory() : object.getProperties();
+        }
+
+        objects.put(object, objects.size());
+        writeByte(TAG_OBJECT);
+        writeString(reflection.getName());
+        writeProperties(props);
+    }
+}
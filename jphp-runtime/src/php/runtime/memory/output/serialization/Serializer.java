@@ -153,62 +153,10 @@ public class Serializer {
 
             ArrayMemory only = null;
             if (reflection.methodMagicSleep != null){
-                env.pushCall(trace, object, reflection.methodMagicSleep.getName());
-                try {
-                    Memory result = reflection.methodMagicSleep.invokeDynamic(object, env);
-                    if (!result.isArray()){
-                        env.error(
-                                ErrorType.E_NOTICE,
-                                "serialize(): __sleep() should return an array only containing the names of instance-variables to serialize"
-                        );
-                        writeNull();
-                        return;
-                    } else {
-                        ForeachIterator iterator = result.getNewIterator(env, false, false);
-                        only = new ArrayMemory(true);
-                        ArrayMemory props = memory.getProperties();
-
-                        Set<String> need = new LinkedHashSet<String>();
-                        while (iterator.next()){
-                            if (iterator.getValue().isNumber())
-                                continue;
-                            need.add(iterator.getValue().toString());
-                        }
-
-                        for(PropertyEntity e : reflection.getProperties()){
-                            if (need.contains(e.getName())){
-                                props.refOfIndex(e.getSpecificName());
-                            }
-                        }
-
-                        iterator = result.getNewIterator(env, false, false);
-                        while (iterator.next()){
-                            Memory value = iterator.getValue().toValue();
-                            PropertyEntity entity = reflection.findProperty(value.toString());
-                            value = entity == null
-                                    ? props.valueOfIndex(value).toValue()
-                                    : props.valueOfIndex(entity.getSpecificName()).toValue();
-
-                            if (value == Memory.UNDEFINED){
-                                env.error(trace,
-                                        ErrorType.E_NOTICE,
-                                        "serialize(): \"%s\" returned as member variable from __sleep() but does not exist",
-                                        iterator.getValue().toString()
-                                );
-                            }
-
-                            if (entity != null)
-                                only.put(entity.getSpecificName(), value);
-                            else
-                                only.refOfIndex(iterator.getValue()).assign(value);
-                        }
-                    }
-                } catch (RuntimeException e){
-                    throw e;
-                } catch (Throwable throwable) {
-                    throw new RuntimeException(throwable);
-                } finally {
-                    env.popCall();
+                only = sleep(env, trace, memory);
+                if (only == null){
+                    writeNull();
+                    return;
                 }
             }
 
@@ -224,4 +172,73 @@ public class Serializer {
         } else
             writeNull();
     }
+
+    /**
+     * Calls __sleep() of the object.
+     *
+     * @return properties returned by __sleep() or null if it returned not an array
+     */
+    static ArrayMemory sleep(Environment env, TraceInfo trace, ObjectMemory memory){
+        IObject object = memory.value;
+        ClassEntity reflection = object.getReflection();
+
+        env.pushCall(trace, object, reflection.methodMagicSleep.getName());
+        try {
+            Memory result = reflection.methodMagicSleep.invokeDynamic(object, env);
+            if (!result.isArray()){
+                env.error(
+                        ErrorType.E_NOTICE,
+                        "serialize(): __sleep() should return an array only containing the names of instance-variables to serialize"
+                );
+                return null;
+            } else {
+                ForeachIterator iterator = result.getNewIterator(env, false, false);
+                ArrayMemory only = new ArrayMemory(true);
+                ArrayMemory props = memory.getProperties();
+
+                Set<String> need = new LinkedHashSet<String>();
+                while (iterator.next()){
+                    if (iterator.getValue().isNumber())
+                        continue;
+                    need.add(iterator.getValue().toString());
+                }
+
+                for(PropertyEntity e : reflection.getProperties()){
+                    if (need.contains(e.getName())){
+                        props.refOfIndex(e.getSpecificName());
+                    }
+                }
+
+                iterator = result.getNewIterator(env, false, false);
+                while (iterator.next()){
+                    Memory value = iterator.getValue().toValue();
+                    PropertyEntity entity = reflection.findProperty(value.toString());
+                    value = entity == null
+                            ? props.valueOfIndex(value).toValue()
+                            : props.valueOfIndex(entity.getSpecificName()).toValue();
+
+                    if (value == Memory.UNDEFINED){
+                        env.error(trace,
+                                ErrorType.E_NOTICE,
+                                "serialize(): \"%s\" returned as member variable from __sleep() but does not exist",
+                                iterator.getValue().toString()
+                        );
+                    }
+
+                    if (entity != null)
+                        only.put(entity.getSpecificName(), value);
+                    else
+                        only.refOfIndex(iterator.getValue()).assign(value);
+                }
+
+                return only;
+            }
+        } catch (RuntimeException e){
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        } finally {
+            env.popCall();
+        }
+    }
 }
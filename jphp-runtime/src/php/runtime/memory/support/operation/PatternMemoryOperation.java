@@ -20,7 +20,7 @@ public class PatternMemoryOperation extends MemoryOperation<Pattern> {
         if (arg.instanceOf(WrapRegex.class)) {
             return arg.toObject(WrapRegex.class).getMatcher().pattern();
         } else {
-            return Pattern.compile(arg.toString());
+            return env.getScope().getPatternCache().compile(arg.toString(), 0);
         }
     }
 
@@ -21,6 +21,10 @@ public class PropertiesMemoryOperation extends MemoryOperation<Properties> {
 
     @Override
     public Properties convert(Environment env, TraceInfo trace, Memory arg) throws Throwable {
+        if (arg.isNull()) {
+            return null;
+        }
+
         Properties properties = new Properties();
 
         ForeachIterator iterator = arg.getNewIterator(env);
@@ -0,0 +1,54 @@
+package php.runtime.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monotonic counter which is safe to increment from many threads.
+ *
+ * Increments go to one of several padded cells chosen by the thread id, so threads rarely
+ * contend on the same cache line, the value is a sum of all cells.
+ */
+public class Counter {
+    private final static int PADDING = 8; // longs per cache line
+    private final static int CELLS;
+    private final static int MASK;
+
+    static {
+        int cells = 1;
+        while (cells < Runtime.getRuntime().availableProcessors() * 2) {
+            cells <<= 1;
+        }
+
+        CELLS = cells;
+        MASK = cells - 1;
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray(CELLS * PADDING);
+
+    public void inc() {
+        cells.getAndIncrement(cell());
+    }
+
+    public void add(long delta) {
+        cells.getAndAdd(cell(), delta);
+    }
+
+    public long get() {
+        long result = 0;
+        for (int i = 0; i < CELLS; i++) {
+            result += cells.get(i * PADDING);
+        }
+
+        return result;
+    }
+
+    public void reset() {
+        for (int i = 0; i < CELLS; i++) {
+            cells.set(i * PADDING, 0);
+        }
+    }
+
+    private static int cell() {
+        return ((int) Thread.currentThread().getId() & MASK) * PADDING;
+    }
+}
@@ -0,0 +1,88 @@
+package php.runtime.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of positive values (latencies in nanos, sizes), buckets are powers of two,
+ * so percentiles are approximate: the result is the upper bound of the bucket.
+ */
+public class Histogram {
+    private final static int BUCKETS = 64;
+
+    private final Counter count = new Counter();
+    private final Counter sum = new Counter();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        count.inc();
+        sum.add(value);
+        buckets.getAndIncrement(bucket(value));
+
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value))
+                break;
+        }
+    }
+
+    /**
+     * @return i for values from 2^i to 2^(i+1) - 1, 0 for zero
+     */
+    private static int bucket(long value) {
+        return value == 0 ? 0 : BUCKETS - 1 - Long.numberOfLeadingZeros(value);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : getSum() / count;
+    }
+
+    /**
+     * @param quantile from 0.0 to 1.0
+     */
+    public long getPercentile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+        }
+
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0)
+                return Math.min(i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, getMax());
+        }
+
+        return getMax();
+    }
+
+    public void reset() {
+        count.reset();
+        sum.reset();
+        max.set(0);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package php.runtime.monitor;
+
+import java.util.Map;
+
+/**
+ * Sends snapshots of runtime metrics to an external system (logs, statsd, prometheus, etc.),
+ * see {@link RuntimeMetrics#addExporter(MetricsExporter, long)}.
+ */
+public interface MetricsExporter {
+    /**
+     * @param metrics name => value, the order of names is stable
+     */
+    void export(Map<String, Long> metrics) throws Exception;
+
+    /**
+     * Called in the exporter thread when {@link #export(Map)} fails, the next export is still scheduled.
+     */
+    void onExportError(Throwable error);
+}
@@ -0,0 +1,74 @@
+package php.runtime.monitor;
+
+import javax.management.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dynamic MBean with one read-only attribute per metric of {@link RuntimeMetrics} and the reset operation.
+ */
+public class MetricsMBean implements DynamicMBean {
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long value = RuntimeMetrics.snapshot().get(attribute);
+        if (value == null)
+            throw new AttributeNotFoundException(attribute);
+
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Long> snapshot = RuntimeMetrics.snapshot();
+
+        AttributeList result = new AttributeList();
+        for (String name : attributes) {
+            Long value = snapshot.get(name);
+            if (value != null)
+                result.add(new Attribute(name, value));
+        }
+
+        return result;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            RuntimeMetrics.reset();
+            return null;
+        }
+
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (String name : RuntimeMetrics.snapshot().keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+        }
+
+        MBeanOperationInfo reset = new MBeanOperationInfo(
+                "reset", "Resets all metrics", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION
+        );
+
+        return new MBeanInfo(
+                getClass().getName(), "JPHP runtime metrics",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                new MBeanConstructorInfo[0],
+                new MBeanOperationInfo[]{reset},
+                new MBeanNotificationInfo[0]
+        );
+    }
+}
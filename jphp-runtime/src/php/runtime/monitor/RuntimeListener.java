@@ -0,0 +1,61 @@
+package php.runtime.monitor;
+
+import php.runtime.env.CallStackItem;
+import php.runtime.env.Environment;
+import php.runtime.env.message.SystemMessage;
+import php.runtime.reflection.ModuleEntity;
+
+/**
+ * Receiver of internal runtime events, see {@link RuntimeMonitor}.
+ *
+ * All methods are called synchronously in the thread of the event and must be fast,
+ * all durations are in nanos.
+ */
+abstract public class RuntimeListener {
+    /**
+     * A module is compiled from the source.
+     * @param sourceSize length of the source in chars, -1 if unknown
+     * @param bytecodeSize size of the generated byte code of the module
+     */
+    public void onModuleCompile(ModuleEntity module, int sourceSize, int bytecodeSize, long duration) {
+    }
+
+    /**
+     * A module is loaded from a dump.
+     */
+    public void onModuleLoad(ModuleEntity module, int bytecodeSize, long duration) {
+    }
+
+    /**
+     * @param function include, include_once, require or require_once
+     * @param cached true if the module was already in the module cache of the environment
+     * @param found false if the file does not exist
+     */
+    public void onImport(Environment env, String path, String function, boolean cached, boolean found, long duration) {
+    }
+
+    public void onAutoload(Environment env, String className, boolean loaded, long duration) {
+    }
+
+    /**
+     * A php function call which took more than {@link RuntimeMonitor#getSlowCallThreshold()},
+     * the item is valid only while the method works.
+     */
+    public void onSlowCall(Environment env, CallStackItem item, long duration) {
+    }
+
+    public void onUncaughtException(Environment env, Throwable exception) {
+    }
+
+    /**
+     * Warnings, notices and other not fatal errors.
+     */
+    public void onMessage(Environment env, SystemMessage message) {
+    }
+
+    /**
+     * Output of the environment is written to the real output (stdout, response, etc.).
+     */
+    public void onOutputFlush(Environment env, long bytes, long duration) {
+    }
+}
@@ -0,0 +1,238 @@
+package php.runtime.monitor;
+
+import php.runtime.env.CompileScope;
+import php.runtime.env.Environment;
+import php.runtime.env.message.SystemMessage;
+import php.runtime.reflection.ModuleEntity;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Process-wide counters and histograms of the runtime internals.
+ *
+ * Metrics are collected only when enabled ({@link #setEnabled(boolean)}), hot paths check {@link #enabled}
+ * before touching counters. Values are available as a snapshot map, via the MBean
+ * {@link #OBJECT_NAME} and can be pushed periodically to {@link MetricsExporter}s.
+ */
+final public class RuntimeMetrics {
+    public final static String OBJECT_NAME = "org.develnext.jphp:type=RuntimeMetrics";
+
+    public static volatile boolean enabled = false;
+
+    public final static Counter CALL_CACHE_HITS = new Counter();
+    public final static Counter CALL_CACHE_MISSES = new Counter();
+    public final static Counter MODULES_COMPILED = new Counter();
+    public final static Counter MODULES_LOADED = new Counter();
+    public final static Counter MODULES_CACHED = new Counter();
+    public final static Counter BYTECODE_BYTES = new Counter();
+    public final static Counter ENVIRONMENTS_CREATED = new Counter();
+    public final static Counter ENVIRONMENTS_DESTROYED = new Counter();
+    public final static Counter OUTPUT_BYTES = new Counter();
+    public final static Counter EXCEPTIONS_CREATED = new Counter();
+    public final static Counter UNCAUGHT_EXCEPTIONS = new Counter();
+    public final static Counter ERROR_MESSAGES = new Counter();
+    public final static Counter ARRAY_COPIES = new Counter();
+    public final static Counter REGEX_CACHE_HITS = new Counter();
+    public final static Counter REGEX_CACHE_MISSES = new Counter();
+    public final static Counter FORMAT_CACHE_HITS = new Counter();
+    public final static Counter FORMAT_CACHE_MISSES = new Counter();
+    public final static Histogram AUTOLOAD_TIME = new Histogram();
+    public final static Histogram COMPILE_TIME = new Histogram();
+
+    private final static Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+    private final static RuntimeListener listener = new Listener();
+
+    private static Timer exportTimer;
+    private static boolean mbeanRegistered;
+
+    static {
+        register("callCache.hits", CALL_CACHE_HITS);
+        register("callCache.misses", CALL_CACHE_MISSES);
+        register("modules.compiled", MODULES_COMPILED);
+        register("modules.loaded", MODULES_LOADED);
+        register("modules.cached", MODULES_CACHED);
+        register("compiler.bytecodeBytes", BYTECODE_BYTES);
+        register("compiler.time", COMPILE_TIME);
+        register("environments.created", ENVIRONMENTS_CREATED);
+        register("environments.destroyed", ENVIRONMENTS_DESTROYED);
+        register("output.bytes", OUTPUT_BYTES);
+        register("exceptions.created", EXCEPTIONS_CREATED);
+        register("exceptions.uncaught", UNCAUGHT_EXCEPTIONS);
+        register("errors.messages", ERROR_MESSAGES);
+        register("autoload.time", AUTOLOAD_TIME);
+        register("array.cowCopies", ARRAY_COPIES);
+        register("regexCache.hits", REGEX_CACHE_HITS);
+        register("regexCache.misses", REGEX_CACHE_MISSES);
+        register("formatCache.hits", FORMAT_CACHE_HITS);
+        register("formatCache.misses", FORMAT_CACHE_MISSES);
+    }
+
+    private RuntimeMetrics() { }
+
+    /**
+     * Registers a custom metric.
+     * @param metric {@link Counter} or {@link Histogram}
+     */
+    public static void register(String name, Object metric) {
+        if (!(metric instanceof Counter) && !(metric instanceof Histogram))
+            throw new IllegalArgumentException("Unsupported metric type: " + metric.getClass().getName());
+
+        synchronized (metrics) {
+            if (metrics.containsKey(name))
+                throw new IllegalArgumentException("Metric '" + name + "' already registered");
+
+            metrics.put(name, metric);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static synchronized void setEnabled(boolean value) {
+        enabled = value;
+
+        if (value)
+            RuntimeMonitor.addListener(listener);
+        else
+            RuntimeMonitor.removeListener(listener);
+    }
+
+    /**
+     * @return name => value, histograms are expanded to .count, .sum, .avg, .p50, .p99, .max
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+
+        synchronized (metrics) {
+            for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+                String name = entry.getKey();
+                Object metric = entry.getValue();
+
+                if (metric instanceof Counter) {
+                    result.put(name, ((Counter) metric).get());
+                } else {
+                    Histogram histogram = (Histogram) metric;
+                    result.put(name + ".count", histogram.getCount());
+                    result.put(name + ".sum", histogram.getSum());
+                    result.put(name + ".avg", histogram.getMean());
+                    result.put(name + ".p50", histogram.getPercentile(0.5));
+                    result.put(name + ".p99", histogram.getPercentile(0.99));
+                    result.put(name + ".max", histogram.getMax());
+                }
+            }
+        }
+
+        result.put("environments.alive", ENVIRONMENTS_CREATED.get() - ENVIRONMENTS_DESTROYED.get());
+        return result;
+    }
+
+    /**
+     * Snapshot with gauges of the compile scope: count of registered classes, functions, constants, modules,
+     * cached regex patterns and formats.
+     */
+    public static Map<String, Long> snapshot(CompileScope scope) {
+        Map<String, Long> result = snapshot();
+        result.put("scope.classes", (long) scope.getClassMap().size());
+        result.put("scope.functions", (long) scope.getFunctionMap().size());
+        result.put("scope.constants", (long) scope.getConstantMap().size());
+        result.put("scope.modules", (long) scope.moduleMap.size());
+        result.put("scope.patterns", (long) scope.getPatternCache().size());
+        result.put("scope.formats", (long) scope.getFormatCache().size());
+        return result;
+    }
+
+    public static void reset() {
+        synchronized (metrics) {
+            for (Object metric : metrics.values()) {
+                if (metric instanceof Counter)
+                    ((Counter) metric).reset();
+                else
+                    ((Histogram) metric).reset();
+            }
+        }
+    }
+
+    /**
+     * Registers the MBean in the platform MBean server, once.
+     * @return false if JMX is not available (android, etc.)
+     */
+    public static synchronized boolean registerMBean() {
+        if (mbeanRegistered)
+            return true;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new MetricsMBean(), new javax.management.ObjectName(OBJECT_NAME)
+            );
+            return mbeanRegistered = true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * Exports snapshots periodically in a daemon thread.
+     * @param period in millis
+     */
+    public static synchronized void addExporter(final MetricsExporter exporter, long period) {
+        if (exportTimer == null)
+            exportTimer = new Timer("jphp-metrics-exporter", true);
+
+        exportTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    exporter.export(snapshot());
+                } catch (Throwable e) {
+                    exporter.onExportError(e);
+                }
+            }
+        }, period, period);
+    }
+
+    /**
+     * Stops all exporters.
+     */
+    public static synchronized void stopExporters() {
+        if (exportTimer != null) {
+            exportTimer.cancel();
+            exportTimer = null;
+        }
+    }
+
+    private static class Listener extends RuntimeListener {
+        @Override
+        public void onModuleCompile(ModuleEntity module, int sourceSize, int bytecodeSize, long duration) {
+            MODULES_COMPILED.inc();
+            BYTECODE_BYTES.add(bytecodeSize);
+            COMPILE_TIME.record(duration);
+        }
+
+        @Override
+        public void onModuleLoad(ModuleEntity module, int bytecodeSize, long duration) {
+            MODULES_LOADED.inc();
+        }
+
+        @Override
+        public void onAutoload(Environment env, String className, boolean loaded, long duration) {
+            AUTOLOAD_TIME.record(duration);
+        }
+
+        @Override
+        public void onUncaughtException(Environment env, Throwable exception) {
+            UNCAUGHT_EXCEPTIONS.inc();
+        }
+
+        @Override
+        public void onMessage(Environment env, SystemMessage message) {
+            ERROR_MESSAGES.inc();
+        }
+
+        @Override
+        public void onOutputFlush(Environment env, long bytes, long duration) {
+            OUTPUT_BYTES.add(bytes);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package php.runtime.monitor;
+
+import php.runtime.env.CallStackItem;
+import php.runtime.env.Environment;
+import php.runtime.env.message.SystemMessage;
+import php.runtime.reflection.ModuleEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Process-wide dispatcher of runtime events to the registered listeners (JFR, metrics, etc.).
+ *
+ * Call sites check {@link #enabled} before measuring anything, so without listeners the cost of
+ * instrumentation is one static field read. Timing of php calls is a separate switch ({@link #callTiming}),
+ * because it adds work to every call of a function which is pushed to the call stack.
+ */
+final public class RuntimeMonitor {
+    public static volatile boolean enabled = false;
+    public static volatile boolean callTiming = false;
+
+    private static volatile RuntimeListener[] listeners = new RuntimeListener[0];
+    private static volatile long slowCallThreshold = 0;
+
+    private RuntimeMonitor() { }
+
+    public static synchronized void addListener(RuntimeListener listener) {
+        List<RuntimeListener> list = new ArrayList<RuntimeListener>(Arrays.asList(listeners));
+        if (!list.contains(listener)) {
+            list.add(listener);
+            listeners = list.toArray(new RuntimeListener[list.size()]);
+        }
+
+        update();
+    }
+
+    public static synchronized void removeListener(RuntimeListener listener) {
+        List<RuntimeListener> list = new ArrayList<RuntimeListener>(Arrays.asList(listeners));
+        if (list.remove(listener)) {
+            listeners = list.toArray(new RuntimeListener[list.size()]);
+        }
+
+        update();
+    }
+
+    private static void update() {
+        enabled = listeners.length > 0;
+        callTiming = enabled && slowCallThreshold > 0;
+    }
+
+    public static RuntimeListener[] getListeners() {
+        return listeners.clone();
+    }
+
+    /**
+     * @return threshold of slow calls in nanos, 0 if calls are not timed
+     */
+    public static long getSlowCallThreshold() {
+        return slowCallThreshold;
+    }
+
+    /**
+     * Enables timing of php calls, calls longer than threshold are reported to {@link RuntimeListener#onSlowCall}.
+     * @param threshold in nanos, 0 - disable timing
+     */
+    public static synchronized void setSlowCallThreshold(long threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("Threshold must be positive or zero");
+
+        slowCallThreshold = threshold;
+        update();
+    }
+
+    public static void moduleCompiled(ModuleEntity module, int sourceSize, int bytecodeSize, long duration) {
+        for (RuntimeListener listener : listeners) {
+            listener.onModuleCompile(module, sourceSize, bytecodeSize, duration);
+        }
+    }
+
+    public static void moduleLoaded(ModuleEntity module, int bytecodeSize, long duration) {
+        for (RuntimeListener listener : listeners) {
+            listener.onModuleLoad(module, bytecodeSize, duration);
+        }
+    }
+
+    public static void imported(Environment env, String path, String function, boolean cached, boolean found,
+                                long duration) {
+        for (RuntimeListener listener : listeners) {
+            listener.onImport(env, path, function, cached, found, duration);
+        }
+    }
+
+    public static void autoloaded(Environment env, String className, boolean loaded, long duration) {
+        for (RuntimeListener listener : listeners) {
+            listener.onAutoload(env, className, loaded, duration);
+        }
+    }
+
+    /**
+     * Called when a timed call is popped from the call stack.
+     */
+    public static void callFinished(Environment env, CallStackItem item) {
+        long duration = System.nanoTime() - item.startTime;
+        long threshold = slowCallThreshold;
+
+        if (threshold > 0 && duration >= threshold) {
+            for (RuntimeListener listener : listeners) {
+                listener.onSlowCall(env, item, duration);
+            }
+        }
+    }
+
+    public static void uncaughtException(Environment env, Throwable exception) {
+        for (RuntimeListener listener : listeners) {
+            listener.onUncaughtException(env, exception);
+        }
+    }
+
+    public static void message(Environment env, SystemMessage message) {
+        for (RuntimeListener listener : listeners) {
+            listener.onMessage(env, message);
+        }
+    }
+
+    public static void outputFlushed(Environment env, long bytes, long duration) {
+        for (RuntimeListener listener : listeners) {
+            listener.onOutputFlush(env, bytes, duration);
+        }
+    }
+}
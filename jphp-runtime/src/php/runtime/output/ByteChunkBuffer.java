@@ -0,0 +1,315 @@
+package php.runtime.output;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable byte buffer built from fixed-size chunks taken from a {@link Pool}.
+ *
+ * Strings are encoded straight into the chunks, ASCII without any allocation,
+ * nested buffers are moved to the parent by splicing chunks instead of copying bytes
+ * and the final flush writes all chunks at once (gathering write when the target is a channel).
+ */
+public class ByteChunkBuffer {
+    public final static int CHUNK_SIZE = 4096;
+
+    protected final Pool pool;
+    protected final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    protected ByteBuffer current;
+    protected int size;
+
+    public ByteChunkBuffer(Pool pool) {
+        this.pool = pool;
+    }
+
+    public ByteChunkBuffer() {
+        this(new Pool());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    protected ByteBuffer nextChunk() {
+        current = pool.acquire();
+        chunks.add(current);
+        return current;
+    }
+
+    protected ByteBuffer writableChunk() {
+        if (current == null || !current.hasRemaining())
+            return nextChunk();
+
+        return current;
+    }
+
+    public void write(int b) {
+        writableChunk().put((byte) b);
+        size++;
+    }
+
+    public void write(byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer chunk = writableChunk();
+            int count = Math.min(chunk.remaining(), length);
+
+            chunk.put(bytes, offset, count);
+            offset += count;
+            length -= count;
+            size += count;
+        }
+    }
+
+    public void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Encodes a string into the buffer.
+     *
+     * @param asciiCompatible true if the charset of the encoder maps 0..127 chars to the same single bytes,
+     *                        such strings are copied char by char without the encoder
+     */
+    public void write(String value, CharsetEncoder encoder, boolean asciiCompatible) {
+        int length = value.length();
+        int i = 0;
+
+        if (asciiCompatible) {
+            while (i < length) {
+                ByteBuffer chunk = writableChunk();
+                byte[] array = chunk.array();
+                int position = chunk.arrayOffset() + chunk.position();
+                int limit = Math.min(chunk.arrayOffset() + chunk.limit(), position + length - i);
+                int start = position;
+
+                while (position < limit) {
+                    char ch = value.charAt(i);
+                    if (ch >= 0x80)
+                        break;
+
+                    array[position++] = (byte) ch;
+                    i++;
+                }
+
+                int count = position - start;
+                chunk.position(chunk.position() + count);
+                size += count;
+
+                if (position < limit)
+                    break;
+            }
+        }
+
+        if (i < length)
+            encode(CharBuffer.wrap(value, i, length), encoder);
+    }
+
+    protected void encode(CharBuffer in, CharsetEncoder encoder) {
+        encoder.reset();
+        ByteBuffer chunk = writableChunk();
+
+        while (true) {
+            int before = chunk.position();
+            CoderResult result = encoder.encode(in, chunk, true);
+            size += chunk.position() - before;
+
+            if (result.isOverflow()) {
+                chunk = nextChunk();
+            } else {
+                break;
+            }
+        }
+
+        while (true) {
+            int before = chunk.position();
+            CoderResult result = encoder.flush(chunk);
+            size += chunk.position() - before;
+
+            if (result.isOverflow()) {
+                chunk = nextChunk();
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Moves all data of another buffer to the end of this one, the other buffer becomes empty.
+     * Small contents are copied into the free space of the current chunk, large ones are linked by chunks.
+     */
+    public void splice(ByteChunkBuffer other) {
+        if (other == this || other.size == 0)
+            return;
+
+        if (current != null && other.size <= current.remaining()) {
+            for (ByteBuffer chunk : other.chunks) {
+                current.put(chunk.array(), chunk.arrayOffset(), chunk.position());
+            }
+
+            size += other.size;
+            other.reset();
+        } else {
+            chunks.addAll(other.chunks);
+            current = other.current;
+            size += other.size;
+
+            other.chunks.clear();
+            other.current = null;
+            other.size = 0;
+        }
+    }
+
+    public byte[] toByteArray() {
+        byte[] result = new byte[size];
+        int offset = 0;
+
+        for (ByteBuffer chunk : chunks) {
+            System.arraycopy(chunk.array(), chunk.arrayOffset(), result, offset, chunk.position());
+            offset += chunk.position();
+        }
+
+        return result;
+    }
+
+    public String toString(Charset charset) {
+        if (size == 0)
+            return "";
+
+        if (chunks.size() == 1) {
+            ByteBuffer chunk = chunks.get(0);
+            return new String(chunk.array(), chunk.arrayOffset(), chunk.position(), charset);
+        }
+
+        return new String(toByteArray(), charset);
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        if (output instanceof FileOutputStream) {
+            writeTo(((FileOutputStream) output).getChannel());
+            return;
+        }
+
+        for (ByteBuffer chunk : chunks) {
+            output.write(chunk.array(), chunk.arrayOffset(), chunk.position());
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        if (size == 0)
+            return;
+
+        ByteBuffer[] buffers = new ByteBuffer[chunks.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuffer chunk = chunks.get(i).duplicate();
+            chunk.flip();
+            buffers[i] = chunk;
+        }
+
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            long remaining = size;
+
+            while (remaining > 0) {
+                remaining -= gathering.write(buffers);
+            }
+        } else {
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the buffer and gives all chunks back to the pool.
+     */
+    public void reset() {
+        for (ByteBuffer chunk : chunks) {
+            pool.release(chunk);
+        }
+
+        chunks.clear();
+        current = null;
+        size = 0;
+    }
+
+    /**
+     * Checks that the charset encodes chars 0..127 as the same single bytes (UTF-8, ISO-8859-*, etc.).
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode())
+            return false;
+
+        char[] chars = new char[128];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) i;
+        }
+
+        byte[] bytes = new String(chars).getBytes(charset);
+        if (bytes.length != chars.length)
+            return false;
+
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != i)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Free list of chunks, shared by all buffers of one environment.
+     */
+    public static class Pool {
+        public final static int DEFAULT_MAX_FREE = 64;
+
+        protected final int chunkSize;
+        protected final int maxFree;
+        protected final ArrayDeque<ByteBuffer> free = new ArrayDeque<ByteBuffer>();
+
+        public Pool(int chunkSize, int maxFree) {
+            this.chunkSize = chunkSize;
+            this.maxFree = maxFree;
+        }
+
+        public Pool() {
+            this(CHUNK_SIZE, DEFAULT_MAX_FREE);
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public synchronized ByteBuffer acquire() {
+            ByteBuffer chunk = free.pollLast();
+            return chunk == null ? ByteBuffer.allocate(chunkSize) : chunk;
+        }
+
+        public synchronized void release(ByteBuffer chunk) {
+            if (chunk.capacity() == chunkSize && free.size() < maxFree) {
+                chunk.clear();
+                free.addLast(chunk);
+            }
+        }
+
+        public synchronized int getFreeCount() {
+            return free.size();
+        }
+    }
+}
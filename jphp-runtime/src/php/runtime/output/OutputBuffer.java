@@ -1,16 +1,21 @@
 package php.runtime.output;
 
 import php.runtime.Memory;
+import php.runtime.env.ConcurrentEnvironment;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
 import php.runtime.invoke.Invoker;
 import php.runtime.memory.BinaryMemory;
 import php.runtime.memory.LongMemory;
 import php.runtime.memory.StringMemory;
+import php.runtime.monitor.RuntimeMonitor;
 
-import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 public class OutputBuffer {
     public final static int HANDLER_START = 1;
@@ -22,9 +27,15 @@ public class OutputBuffer {
     public enum Type { INTERNAL, USER }
 
     private OutputStream output;
-    private ByteArrayOutputStream buffer;
+    private WritableByteChannel outputChannel;
+    private ByteChunkBuffer buffer;
     private boolean binaryInBuffer;
 
+    /**
+     * Writes are locked only if threads share the environment, a usual environment writes from one thread.
+     */
+    private final boolean concurrent;
+
     private Memory callback;
     private Invoker invoker;
 
@@ -48,7 +59,8 @@ public class OutputBuffer {
 
     public OutputBuffer(Environment environment, OutputBuffer parent, Memory callback, int chunkSize, boolean erase) {
         this.environment = environment;
-        this.buffer = new ByteArrayOutputStream(4098);
+        this.buffer = new ByteChunkBuffer(environment.getOutputChunkPool());
+        this.concurrent = environment instanceof ConcurrentEnvironment;
 
         this.callback = callback;
         if (callback != null)
@@ -115,6 +127,65 @@ public class OutputBuffer {
         return output;
     }
 
+    /**
+     * Sets a channel as the final target of the buffer, chunks are flushed to it by one gathering write.
+     */
+    public void setOutputChannel(WritableByteChannel outputChannel) {
+        this.outputChannel = outputChannel;
+    }
+
+    public WritableByteChannel getOutputChannel() {
+        return outputChannel;
+    }
+
+    protected boolean hasOutput() {
+        return output != null || outputChannel != null;
+    }
+
+    /**
+     * @return the output as a channel if it can be written without copying through the heap, otherwise null
+     */
+    protected WritableByteChannel directChannel() {
+        if (outputChannel != null)
+            return outputChannel;
+
+        if (output instanceof FileOutputStream)
+            return ((FileOutputStream) output).getChannel();
+
+        if (output instanceof WritableByteChannel)
+            return (WritableByteChannel) output;
+
+        return null;
+    }
+
+    protected void writeToOutput(ByteChunkBuffer data) throws Throwable {
+        long time = RuntimeMonitor.enabled ? System.nanoTime() : 0;
+        int size = data.size();
+
+        if (outputChannel != null)
+            data.writeTo(outputChannel);
+        else
+            data.writeTo(output);
+
+        if (time != 0)
+            RuntimeMonitor.outputFlushed(environment, size, System.nanoTime() - time);
+    }
+
+    protected void writeToOutput(byte[] data) throws Throwable {
+        long time = RuntimeMonitor.enabled ? System.nanoTime() : 0;
+
+        if (outputChannel != null) {
+            ByteBuffer wrapped = ByteBuffer.wrap(data);
+            while (wrapped.hasRemaining()) {
+                outputChannel.write(wrapped);
+            }
+        } else
+            output.write(data);
+
+        if (time != 0)
+            RuntimeMonitor.outputFlushed(environment, data.length, System.nanoTime() - time);
+    }
+
     public void setCallback(Memory callback) {
         this.callback = callback;
     }
@@ -137,7 +208,7 @@ public class OutputBuffer {
 
     public Memory getContents() throws UnsupportedEncodingException {
         if (!binaryInBuffer){
-            return new StringMemory(buffer.toString(environment.getDefaultCharset().name()));
+            return new StringMemory(buffer.toString(environment.getDefaultCharset()));
         } else
             return new BinaryMemory(buffer.toByteArray());
     }
@@ -173,7 +244,7 @@ public class OutputBuffer {
             invoker.setTrace(trace == null ? TraceInfo.UNKNOWN : trace);
             Memory[] args;
             if (!binaryInBuffer){
-                args = new Memory[]{ new StringMemory(buffer.toString(environment.getDefaultCharset().name())), null };
+                args = new Memory[]{ new StringMemory(buffer.toString(environment.getDefaultCharset())), null };
             } else
                 args = new Memory[]{ new BinaryMemory(buffer.toByteArray()), null };
 
@@ -191,10 +262,10 @@ public class OutputBuffer {
                 byte[] data = result instanceof BinaryMemory
                         ? result.getBinaryBytes() : result.toString().getBytes(environment.getDefaultCharset());
                 if (flush){
-                    if (output == null)
+                    if (!hasOutput())
                         parentOutput.write(data);
                     else
-                        output.write(data);
+                        writeToOutput(data);
                     reset();
                     status = HANDLER_FLUSH;
                 }
@@ -205,18 +276,43 @@ public class OutputBuffer {
 
         if (flush){
             status |= HANDLER_FLUSH;
-            if (output == null)
-                parentOutput.write(buffer.toByteArray());
+            if (!hasOutput())
+                parentOutput.write(buffer);
             else
-                buffer.writeTo(output);
+                writeToOutput(buffer);
 
             reset();
         }
     }
 
     public void write(String content) throws Throwable {
-        if (!isLock())
-            _write(content.getBytes(environment.getDefaultCharset()));
+        if (!isLock()) {
+            if (concurrent) {
+                synchronized (buffer) {
+                    buffer.write(content, environment.getDefaultCharsetEncoder(), environment.isAsciiCompatibleCharset());
+                }
+            } else
+                buffer.write(content, environment.getDefaultCharsetEncoder(), environment.isAsciiCompatibleCharset());
+
+            checkFlush();
+        }
+    }
+
+    /**
+     * Moves content of a nested buffer into this one without copying, the nested buffer becomes empty.
+     */
+    public void write(ByteChunkBuffer content) throws Throwable {
+        if (!isLock()){
+            binaryInBuffer = true;
+            if (concurrent) {
+                synchronized (buffer) {
+                    buffer.splice(content);
+                }
+            } else
+                buffer.splice(content);
+
+            checkFlush();
+        }
     }
 
     public void write(Memory content) throws Throwable {
@@ -236,28 +332,19 @@ public class OutputBuffer {
     protected void _write(byte[] bytes, int length) throws Throwable {
         if (isLock()) return;
 
-        boolean needFlush = implicitFlush || (chunkSize > 0 && length + buffer.size() >= chunkSize);
-
-        if (needFlush){
-            if (chunkSize > 0){
-                int cutLength = (length + buffer.size()) - chunkSize;
-                if (cutLength > 0){
-                    buffer.write(bytes, 0, length);
-                    doFlush(true);
-
-                    /*byte[] tmp = new byte[cutLength];
-                    System.arraycopy(bytes, bytes.length - cutLength, tmp, 0, cutLength);
-                    _write(tmp);*/
-                } else {
-                    buffer.write(bytes, 0, length);
-                    doFlush(true);
-                }
-            } else {
+        if (concurrent) {
+            synchronized (buffer) {
                 buffer.write(bytes, 0, length);
-                doFlush(true);
             }
-        } else {
+        } else
             buffer.write(bytes, 0, length);
+
+        checkFlush();
+    }
+
+    protected void checkFlush() throws Throwable {
+        if (implicitFlush || (chunkSize > 0 && buffer.size() >= chunkSize)) {
+            doFlush(true);
         }
     }
 
@@ -272,6 +359,65 @@ public class OutputBuffer {
         write(bytes, bytes.length);
     }
 
+    /**
+     * Writes a region of the file without reading it into memory as a whole.
+     *
+     * The root buffer without a handler flushes its content and sends the file straight to the output,
+     * by {@link FileChannel#transferTo} if the output is a channel or through one pooled chunk otherwise.
+     * Nested buffers and buffers with a handler get the file by chunks as usual writes.
+     *
+     * @return count of written bytes, less than count at the end of file
+     */
+    public long write(FileChannel channel, long position, long count) throws Throwable {
+        if (isLock())
+            return 0;
+
+        boolean direct = isRoot() && invoker == null && hasOutput();
+        if (direct && !isBufferEmpty())
+            doFlush(true);
+
+        long time = direct && RuntimeMonitor.enabled ? System.nanoTime() : 0;
+        long written = 0;
+
+        WritableByteChannel target = direct ? directChannel() : null;
+        if (target != null) {
+            while (written < count) {
+                long size = channel.transferTo(position + written, count - written, target);
+                if (size <= 0)
+                    break;
+
+                written += size;
+            }
+        } else {
+            ByteBuffer chunk = environment.getOutputChunkPool().acquire();
+            try {
+                while (written < count) {
+                    chunk.clear();
+                    if (count - written < chunk.capacity())
+                        chunk.limit((int) (count - written));
+
+                    int size = channel.read(chunk, position + written);
+                    if (size <= 0)
+                        break;
+
+                    if (direct)
+                        output.write(chunk.array(), chunk.arrayOffset(), size);
+                    else
+                        write(chunk.array(), size);
+
+                    written += size;
+                }
+            } finally {
+                environment.getOutputChunkPool().release(chunk);
+            }
+        }
+
+        if (time != 0)
+            RuntimeMonitor.outputFlushed(environment, written, System.nanoTime() - time);
+
+        return written;
+    }
+
     public void flush() throws Throwable {
         if (!isLock()){
             status = HANDLER_FLUSH;
@@ -0,0 +1,226 @@
+package php.runtime.profiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.*;
+
+/**
+ * Encodes a call tree as a pprof profile (perftools.profiles.Profile protobuf message), without dependencies.
+ */
+public class PprofWriter {
+    // Profile
+    private final static int PROFILE_SAMPLE_TYPE = 1;
+    private final static int PROFILE_SAMPLE = 2;
+    private final static int PROFILE_LOCATION = 4;
+    private final static int PROFILE_FUNCTION = 5;
+    private final static int PROFILE_STRING_TABLE = 6;
+    private final static int PROFILE_TIME_NANOS = 9;
+    private final static int PROFILE_DURATION_NANOS = 10;
+    private final static int PROFILE_PERIOD_TYPE = 11;
+    private final static int PROFILE_PERIOD = 12;
+
+    // ValueType
+    private final static int VALUE_TYPE_TYPE = 1;
+    private final static int VALUE_TYPE_UNIT = 2;
+
+    // Sample
+    private final static int SAMPLE_LOCATION_ID = 1;
+    private final static int SAMPLE_VALUE = 2;
+
+    // Location
+    private final static int LOCATION_ID = 1;
+    private final static int LOCATION_LINE = 4;
+
+    // Line
+    private final static int LINE_FUNCTION_ID = 1;
+    private final static int LINE_LINE = 2;
+
+    // Function
+    private final static int FUNCTION_ID = 1;
+    private final static int FUNCTION_NAME = 2;
+    private final static int FUNCTION_SYSTEM_NAME = 3;
+    private final static int FUNCTION_FILENAME = 4;
+
+    private final ProfileNode root;
+    private final long period;
+    private final long timeNanos;
+    private final long durationNanos;
+
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+    private final Map<ProfileFrame, Integer> locations = new LinkedHashMap<ProfileFrame, Integer>();
+    private final Map<String, Integer> functions = new LinkedHashMap<String, Integer>();
+
+    /**
+     * @param period sampling interval in nanos
+     */
+    public PprofWriter(ProfileNode root, long period, long timeNanos, long durationNanos) {
+        this.root = root;
+        this.period = period;
+        this.timeNanos = timeNanos;
+        this.durationNanos = durationNanos;
+
+        string(""); // index 0 must be empty
+    }
+
+    public void write(OutputStream output) throws IOException {
+        Message profile = new Message();
+
+        profile.writeMessage(PROFILE_SAMPLE_TYPE, valueType("samples", "count"));
+        profile.writeMessage(PROFILE_SAMPLE_TYPE, valueType("wall", "nanoseconds"));
+
+        List<Long> stack = new ArrayList<Long>();
+        for (ProfileNode child : root.getChildren()) {
+            writeSamples(profile, child, stack);
+        }
+
+        for (Map.Entry<ProfileFrame, Integer> entry : locations.entrySet()) {
+            ProfileFrame frame = entry.getKey();
+
+            Message line = new Message();
+            line.writeVarint(LINE_FUNCTION_ID, function(frame));
+            line.writeVarint(LINE_LINE, frame.getLine());
+
+            Message location = new Message();
+            location.writeVarint(LOCATION_ID, entry.getValue());
+            location.writeMessage(LOCATION_LINE, line);
+
+            profile.writeMessage(PROFILE_LOCATION, location);
+        }
+
+        for (Map.Entry<String, Integer> entry : functions.entrySet()) {
+            String[] key = entry.getKey().split("\0", 2);
+
+            Message function = new Message();
+            function.writeVarint(FUNCTION_ID, entry.getValue());
+            function.writeVarint(FUNCTION_NAME, string(key[0]));
+            function.writeVarint(FUNCTION_SYSTEM_NAME, string(key[0]));
+            function.writeVarint(FUNCTION_FILENAME, string(key[1]));
+
+            profile.writeMessage(PROFILE_FUNCTION, function);
+        }
+
+        profile.writeVarint(PROFILE_TIME_NANOS, timeNanos);
+        profile.writeVarint(PROFILE_DURATION_NANOS, durationNanos);
+        profile.writeMessage(PROFILE_PERIOD_TYPE, valueType("wall", "nanoseconds"));
+        profile.writeVarint(PROFILE_PERIOD, period);
+
+        // all strings are known only after functions
+        for (String el : strings.keySet()) {
+            profile.writeString(PROFILE_STRING_TABLE, el);
+        }
+
+        profile.writeTo(output);
+    }
+
+    private void writeSamples(Message profile, ProfileNode node, List<Long> stack) {
+        stack.add((long) location(node.getFrame()));
+
+        if (node.getSamples() > 0) {
+            Message ids = new Message();
+            for (int i = stack.size() - 1; i >= 0; i--) { // leaf is first
+                ids.writeRawVarint(stack.get(i));
+            }
+
+            Message values = new Message();
+            values.writeRawVarint(node.getSamples());
+            values.writeRawVarint(node.getSamples() * period);
+
+            Message sample = new Message();
+            sample.writeMessage(SAMPLE_LOCATION_ID, ids);
+            sample.writeMessage(SAMPLE_VALUE, values);
+
+            profile.writeMessage(PROFILE_SAMPLE, sample);
+        }
+
+        for (ProfileNode child : node.getChildren()) {
+            writeSamples(profile, child, stack);
+        }
+
+        stack.remove(stack.size() - 1);
+    }
+
+    private Message valueType(String type, String unit) {
+        Message message = new Message();
+        message.writeVarint(VALUE_TYPE_TYPE, string(type));
+        message.writeVarint(VALUE_TYPE_UNIT, string(unit));
+        return message;
+    }
+
+    private int string(String value) {
+        Integer index = strings.get(value);
+        if (index == null) {
+            strings.put(value, index = strings.size());
+        }
+
+        return index;
+    }
+
+    private int location(ProfileFrame frame) {
+        Integer id = locations.get(frame);
+        if (id == null) {
+            locations.put(frame, id = locations.size() + 1);
+        }
+
+        return id;
+    }
+
+    private int function(ProfileFrame frame) {
+        String key = frame.getFunction() + "\0" + (frame.getFile() == null ? "" : frame.getFile());
+
+        Integer id = functions.get(key);
+        if (id == null) {
+            functions.put(key, id = functions.size() + 1);
+        }
+
+        return id;
+    }
+
+    /**
+     * Minimal protobuf message encoder.
+     */
+    protected static class Message extends ByteArrayOutputStream {
+        private final static int VARINT = 0;
+        private final static int LENGTH_DELIMITED = 2;
+
+        void writeRawVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+
+            write((int) value);
+        }
+
+        void writeTag(int field, int wireType) {
+            writeRawVarint((field << 3) | wireType);
+        }
+
+        void writeVarint(int field, long value) {
+            writeTag(field, VARINT);
+            writeRawVarint(value);
+        }
+
+        void writeBytes(int field, byte[] bytes, int length) {
+            writeTag(field, LENGTH_DELIMITED);
+            writeRawVarint(length);
+            write(bytes, 0, length);
+        }
+
+        void writeString(int field, String value) {
+            byte[] bytes;
+            try {
+                bytes = value.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+
+            writeBytes(field, bytes, bytes.length);
+        }
+
+        void writeMessage(int field, Message message) {
+            writeBytes(field, message.buf, message.count);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package php.runtime.profiler;
+
+/**
+ * One frame of a sampled php call stack: function and the place (file, line) inside it.
+ */
+public class ProfileFrame {
+    public final static String MAIN = "{main}";
+
+    private final String function;
+    private final String file;
+    private final int line;
+
+    public ProfileFrame(String function, String file, int line) {
+        this.function = function;
+        this.file = file;
+        this.line = line;
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    /**
+     * @return null if unknown
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return line from 1, or 0 if unknown
+     */
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProfileFrame)) return false;
+
+        ProfileFrame frame = (ProfileFrame) o;
+
+        if (line != frame.line) return false;
+        if (!function.equals(frame.function)) return false;
+        return file == null ? frame.file == null : file.equals(frame.file);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = function.hashCode();
+        result = 31 * result + (file != null ? file.hashCode() : 0);
+        result = 31 * result + line;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if (file == null)
+            return function;
+
+        return function + " (" + file + ":" + line + ")";
+    }
+}
@@ -0,0 +1,74 @@
+package php.runtime.profiler;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Node of the call tree of samples, the path from the root is a call stack.
+ */
+public class ProfileNode {
+    private final ProfileFrame frame;
+    private final ProfileNode parent;
+    private final Map<ProfileFrame, ProfileNode> children = new LinkedHashMap<ProfileFrame, ProfileNode>();
+
+    private long samples;
+
+    public ProfileNode(ProfileNode parent, ProfileFrame frame) {
+        this.parent = parent;
+        this.frame = frame;
+    }
+
+    public ProfileFrame getFrame() {
+        return frame;
+    }
+
+    public ProfileNode getParent() {
+        return parent;
+    }
+
+    public boolean isRoot() {
+        return parent == null;
+    }
+
+    /**
+     * @return count of samples where this node was the top of the stack
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    public void addSamples(long count) {
+        samples += count;
+    }
+
+    public Collection<ProfileNode> getChildren() {
+        return children.values();
+    }
+
+    public ProfileNode child(ProfileFrame frame) {
+        ProfileNode node = children.get(frame);
+        if (node == null) {
+            children.put(frame, node = new ProfileNode(this, frame));
+        }
+
+        return node;
+    }
+
+    /**
+     * @return count of samples of this node and all its children
+     */
+    public long getTotalSamples() {
+        long result = samples;
+        for (ProfileNode child : children.values()) {
+            result += child.getTotalSamples();
+        }
+
+        return result;
+    }
+
+    public void clear() {
+        children.clear();
+        samples = 0;
+    }
+}
@@ -0,0 +1,310 @@
+package php.runtime.profiler;
+
+import php.runtime.env.CallStackItem;
+import php.runtime.env.ConcurrentEnvironment;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.lang.Closure;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sampling profiler of php code.
+ *
+ * A background daemon thread periodically reads call stacks of the attached environments
+ * and aggregates them into a call tree by php function, file and line. Results can be exported
+ * in the collapsed-stack format (flame graphs) or as a gzipped pprof profile.
+ *
+ * Only the main call stack of an environment is visible, {@link ConcurrentEnvironment} keeps stacks per thread
+ * and cannot be sampled. Time of top-level code (outside of any function) is not counted, and functions
+ * which are compiled without access to the environment are not pushed to the call stack,
+ * so their time is attributed to the caller.
+ */
+public class SamplingProfiler {
+    public final static int DEFAULT_INTERVAL = 10;
+
+    private static SamplingProfiler defaultProfiler;
+
+    private final List<WeakReference<Environment>> environments = new CopyOnWriteArrayList<WeakReference<Environment>>();
+    private final ProfileNode root = new ProfileNode(null, null);
+
+    private volatile int interval = DEFAULT_INTERVAL;
+    private volatile Thread thread;
+
+    private long samples;
+    private long startTime;
+    private long duration;
+
+    public SamplingProfiler(int interval) {
+        setInterval(interval);
+    }
+
+    public SamplingProfiler() {
+        this(DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Process-wide profiler used by php\lang\System and the launcher.
+     */
+    public static synchronized SamplingProfiler getDefault() {
+        if (defaultProfiler == null)
+            defaultProfiler = new SamplingProfiler();
+
+        return defaultProfiler;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @param interval sampling interval in millis
+     */
+    public void setInterval(int interval) {
+        if (interval < 1)
+            throw new IllegalArgumentException("Interval must be greater than zero");
+
+        this.interval = interval;
+    }
+
+    /**
+     * @throws IllegalArgumentException for {@link ConcurrentEnvironment}, its call stacks cannot be sampled
+     */
+    public void addEnvironment(Environment env) {
+        if (env instanceof ConcurrentEnvironment)
+            throw new IllegalArgumentException("Concurrent environment cannot be profiled");
+
+        for (WeakReference<Environment> ref : environments) {
+            if (ref.get() == env)
+                return;
+        }
+
+        environments.add(new WeakReference<Environment>(env));
+    }
+
+    public void removeEnvironment(Environment env) {
+        for (WeakReference<Environment> ref : environments) {
+            Environment el = ref.get();
+            if (el == null || el == env)
+                environments.remove(ref);
+        }
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    public synchronized void start() {
+        if (thread != null)
+            return;
+
+        startTime = System.currentTimeMillis();
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Thread self = Thread.currentThread();
+
+                while (thread == self) {
+                    try {
+                        Thread.sleep(interval);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+
+                    sample();
+                }
+            }
+        }, "jphp-sampling-profiler");
+
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        Thread thread = this.thread;
+
+        if (thread != null) {
+            this.thread = null;
+            thread.interrupt();
+
+            duration += System.currentTimeMillis() - startTime;
+        }
+    }
+
+    public synchronized void reset() {
+        root.clear();
+        samples = 0;
+        duration = 0;
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return count of all taken samples
+     */
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    public ProfileNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Takes one sample of all attached environments, called by the sampling thread.
+     */
+    public void sample() {
+        List<ProfileFrame> frames = new ArrayList<ProfileFrame>();
+
+        Iterator<WeakReference<Environment>> iterator = environments.iterator();
+        while (iterator.hasNext()) {
+            WeakReference<Environment> ref = iterator.next();
+            Environment env = ref.get();
+
+            if (env == null) {
+                environments.remove(ref);
+                continue;
+            }
+
+            frames.clear();
+            if (readFrames(env, frames)) {
+                synchronized (this) {
+                    ProfileNode node = root;
+                    for (ProfileFrame frame : frames) {
+                        node = node.child(frame);
+                    }
+
+                    node.addSamples(1);
+                    samples++;
+                }
+            }
+        }
+    }
+
+    protected boolean readFrames(Environment env, List<ProfileFrame> frames) {
+        if (env instanceof ConcurrentEnvironment)
+            return false;
+
+        int top = env.getCallStackTop();
+        CallStackItem[] items = env.getCallStackUnsafe();
+
+        if (top <= 0)
+            return false;
+
+        if (top > items.length)
+            top = items.length;
+
+        String function = ProfileFrame.MAIN;
+        for (int i = 0; i < top; i++) {
+            CallStackItem item = items[i];
+            if (item == null)
+                return false;
+
+            TraceInfo trace = item.trace;
+            if (trace == null || trace == TraceInfo.UNKNOWN)
+                frames.add(new ProfileFrame(function, null, 0));
+            else
+                frames.add(new ProfileFrame(function, trace.getFileName(), trace.getStartLine() + 1));
+
+            function = functionName(item);
+        }
+
+        frames.add(new ProfileFrame(function, null, 0));
+        return true;
+    }
+
+    protected static String functionName(CallStackItem item) {
+        String function = item.function;
+        String clazz = item.clazz;
+
+        if (item.object instanceof Closure)
+            return "{closure}";
+
+        if (function == null)
+            return "<internal>";
+
+        return clazz == null ? function : clazz + "::" + function;
+    }
+
+    /**
+     * Writes stacks in the collapsed format: "frame1;frame2;frame3 count" per line,
+     * it can be rendered by flamegraph.pl, speedscope and similar tools.
+     */
+    public synchronized void writeCollapsed(Writer writer) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (ProfileNode child : root.getChildren()) {
+            writeCollapsed(writer, child, sb);
+        }
+
+        writer.flush();
+    }
+
+    private void writeCollapsed(Writer writer, ProfileNode node, StringBuilder path) throws IOException {
+        int length = path.length();
+        if (length > 0)
+            path.append(';');
+
+        path.append(node.getFrame().toString().replace(';', ':'));
+
+        if (node.getSamples() > 0) {
+            writer.write(path.toString());
+            writer.write(' ');
+            writer.write(String.valueOf(node.getSamples()));
+            writer.write('\n');
+        }
+
+        for (ProfileNode child : node.getChildren()) {
+            writeCollapsed(writer, child, path);
+        }
+
+        path.setLength(length);
+    }
+
+    public String toCollapsedString() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeCollapsed(writer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * Writes the profile in the pprof format (gzipped profile.proto).
+     */
+    public synchronized void writePprof(OutputStream output) throws IOException {
+        long durationMillis = duration + (thread == null ? 0 : System.currentTimeMillis() - startTime);
+
+        GZIPOutputStream gzip = new GZIPOutputStream(output);
+        new PprofWriter(root, interval * 1000000L, startTime * 1000000L, durationMillis * 1000000L).write(gzip);
+        gzip.finish();
+        output.flush();
+    }
+
+    /**
+     * @param format "collapsed" or "pprof"
+     */
+    public void writeTo(File file, String format) throws IOException {
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            if ("pprof".equalsIgnoreCase(format)) {
+                writePprof(output);
+            } else if ("collapsed".equalsIgnoreCase(format)) {
+                writeCollapsed(new OutputStreamWriter(output, "UTF-8"));
+            } else {
+                throw new IllegalArgumentException("Unknown profile format: " + format);
+            }
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -66,7 +66,10 @@ public class CompileMethodEntity extends MethodEntity {
         Annotation[][] annotations   = method.getParameterAnnotations();
 
         int i = 0;
+        int j = -1;
         for (Class<?> el : method.getParameterTypes()) {
+            j++;
+
             if (el == Environment.class || el == TraceInfo.class) {
                 continue;
             }
@@ -74,7 +77,7 @@ public class CompileMethodEntity extends MethodEntity {
             ParameterEntity param = new ParameterEntity(context);
             param.setName("arg" + i);
 
-            Annotation[] argAnnotations = annotations[i];
+            Annotation[] argAnnotations = annotations[j];
 
             if (ReflectionUtils.getAnnotation(argAnnotations, Reflection.Nullable.class) != null) {
                 param.setNullable(true);
@@ -269,13 +272,16 @@ public class CompileMethodEntity extends MethodEntity {
                 argumentOperations = new MemoryOperation[parameterTypes.length];
 
                 MemoryOperation op;
+                int k = 0;
                 for (int i = 0; i < argumentOperations.length; i++) {
                     op = argumentOperations[i] = MemoryOperation.get(parameterTypes[i], method.getGenericParameterTypes()[i]);
 
                     if (op != null) {
-                        if (i <= parameters.length - 1) {
-                            op.applyTypeHinting(parameters[i]);
+                        if (k <= parameters.length - 1) {
+                            op.applyTypeHinting(parameters[k]);
                         }
+
+                        k++;
                     } else {
                         if (parameterTypes[i] == Environment.class) {
                             argumentOperations[i] = new InjectMemoryOperation() {
@@ -0,0 +1,101 @@
+package php.runtime.util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded concurrent cache of compiled objects (patterns, formats), shared by all environments of a compile scope.
+ *
+ * Lookups are lock-free. When the cache is full, an arbitrary part of entries is evicted,
+ * so entries which are used all the time are compiled again at worst after a few evictions.
+ */
+public class BoundedCache {
+    protected final ConcurrentHashMap<Object, Object> entries = new ConcurrentHashMap<Object, Object>();
+
+    private volatile int maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BoundedCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize 0 - disable caching
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize < 0 ? 0 : maxSize;
+        evict();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    protected void onHit() {
+    }
+
+    protected void onMiss() {
+    }
+
+    /**
+     * Returns a cached compiled object or null, a hit or miss is counted.
+     */
+    public Object get(Object key) {
+        Object value = entries.get(key);
+
+        if (value == null) {
+            misses.incrementAndGet();
+            onMiss();
+        } else {
+            hits.incrementAndGet();
+            onHit();
+        }
+
+        return value;
+    }
+
+    public void put(Object key, Object value) {
+        if (maxSize == 0)
+            return;
+
+        entries.put(key, value);
+
+        if (entries.size() > maxSize)
+            evict();
+    }
+
+    /**
+     * Removes an eighth part of entries when the cache is overflowed.
+     */
+    protected void evict() {
+        int size = entries.size();
+        if (size <= maxSize)
+            return;
+
+        int count = size - maxSize + maxSize / 8;
+
+        Iterator<Object> iterator = entries.keySet().iterator();
+        while (count-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
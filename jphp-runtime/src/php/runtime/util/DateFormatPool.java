@@ -0,0 +1,140 @@
+package php.runtime.util;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of copies of a date format, {@link SimpleDateFormat} is not thread-safe and expensive to create,
+ * so a copy is taken from the pool for each call and returned back after it.
+ */
+public class DateFormatPool {
+    public final static int MAX_FREE = 16;
+
+    protected final DateFormat prototype;
+    protected final ConcurrentLinkedQueue<DateFormat> free = new ConcurrentLinkedQueue<DateFormat>();
+    protected final AtomicInteger freeCount = new AtomicInteger();
+
+    /**
+     * @param prototype is never used directly, the pool makes its copies
+     */
+    public DateFormatPool(DateFormat prototype) {
+        this.prototype = (DateFormat) prototype.clone();
+    }
+
+    public DateFormatPool(String pattern, Locale locale, TimeZone zone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, locale);
+        format.setTimeZone(zone);
+
+        this.prototype = format;
+    }
+
+    /**
+     * Returns a shared pool from the cache or creates it.
+     */
+    public static DateFormatPool valueOf(FormatCache cache, String pattern, Locale locale, TimeZone zone) {
+        Key key = new Key(pattern, locale, zone.getID());
+        DateFormatPool pool = (DateFormatPool) cache.get(key);
+
+        if (pool == null) {
+            pool = new DateFormatPool(pattern, locale, zone);
+            cache.put(key, pool);
+        }
+
+        return pool;
+    }
+
+    public TimeZone getTimeZone() {
+        return prototype.getTimeZone();
+    }
+
+    /**
+     * @return a new pool of the same format with the time zone
+     */
+    public DateFormatPool withTimeZone(TimeZone zone) {
+        DateFormat format = newDateFormat();
+        format.setTimeZone(zone);
+
+        return new DateFormatPool(format);
+    }
+
+    /**
+     * @return a private copy of the format which is not shared with the pool
+     */
+    public DateFormat newDateFormat() {
+        return (DateFormat) prototype.clone();
+    }
+
+    protected DateFormat acquire() {
+        DateFormat format = free.poll();
+
+        if (format == null)
+            return newDateFormat();
+
+        freeCount.decrementAndGet();
+        return format;
+    }
+
+    protected void release(DateFormat format) {
+        if (freeCount.incrementAndGet() > MAX_FREE) {
+            freeCount.decrementAndGet();
+            return;
+        }
+
+        free.offer(format);
+    }
+
+    public String format(Date date) {
+        DateFormat format = acquire();
+
+        try {
+            return format.format(date);
+        } finally {
+            release(format);
+        }
+    }
+
+    public Date parse(String source) throws ParseException {
+        DateFormat format = acquire();
+
+        try {
+            return format.parse(source);
+        } finally {
+            release(format);
+        }
+    }
+
+    protected static class Key {
+        protected final String pattern;
+        protected final Locale locale;
+        protected final String zoneId;
+
+        Key(String pattern, Locale locale, String zoneId) {
+            this.pattern = pattern;
+            this.locale = locale;
+            this.zoneId = zoneId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return pattern.equals(key.pattern) && locale.equals(key.locale) && zoneId.equals(key.zoneId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = pattern.hashCode();
+            result = 31 * result + locale.hashCode();
+            result = 31 * result + zoneId.hashCode();
+            return result;
+        }
+    }
+}
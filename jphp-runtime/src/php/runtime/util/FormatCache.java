@@ -0,0 +1,59 @@
+package php.runtime.util;
+
+import php.runtime.monitor.RuntimeMetrics;
+
+/**
+ * Bounded cache of parsed format strings of {@link PrintF}, {@link SScanF} and date formats
+ * ({@link DateFormatPool}), shared by all environments of a compile scope.
+ */
+public class FormatCache extends BoundedCache {
+    public final static int DEFAULT_MAX_SIZE = 1024;
+
+    public FormatCache(int maxSize) {
+        super(maxSize);
+    }
+
+    public FormatCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    @Override
+    protected void onHit() {
+        if (RuntimeMetrics.enabled)
+            RuntimeMetrics.FORMAT_CACHE_HITS.inc();
+    }
+
+    @Override
+    protected void onMiss() {
+        if (RuntimeMetrics.enabled)
+            RuntimeMetrics.FORMAT_CACHE_MISSES.inc();
+    }
+
+    /**
+     * Key of a parsed format string, the kind (usually the parser class) separates
+     * equal strings of different format languages.
+     */
+    public static class Key {
+        protected final Object kind;
+        protected final String format;
+
+        public Key(Object kind, String format) {
+            this.kind = kind;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return kind.equals(key.kind) && format.equals(key.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind.hashCode() + format.hashCode();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package php.runtime.util;
+
+import php.runtime.monitor.RuntimeMetrics;
+
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of compiled regular expressions, shared by all environments of a compile scope.
+ *
+ * Besides java patterns ({@link #compile}) the cache can keep compiled objects of other regex dialects,
+ * their keys must not be equal to keys of other dialects (e.g. use own key classes or prefixed strings).
+ */
+public class PatternCache extends BoundedCache {
+    public final static int DEFAULT_MAX_SIZE = 4096;
+
+    public PatternCache(int maxSize) {
+        super(maxSize);
+    }
+
+    public PatternCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    @Override
+    protected void onHit() {
+        if (RuntimeMetrics.enabled)
+            RuntimeMetrics.REGEX_CACHE_HITS.inc();
+    }
+
+    @Override
+    protected void onMiss() {
+        if (RuntimeMetrics.enabled)
+            RuntimeMetrics.REGEX_CACHE_MISSES.inc();
+    }
+
+    /**
+     * Returns a cached java pattern or compiles it.
+     *
+     * @throws java.util.regex.PatternSyntaxException
+     */
+    public Pattern compile(String regex, int flags) {
+        Key key = new Key(regex, flags);
+        Pattern pattern = (Pattern) get(key);
+
+        if (pattern == null) {
+            pattern = Pattern.compile(regex, flags);
+            put(key, pattern);
+        }
+
+        return pattern;
+    }
+
+    protected static class Key {
+        protected final String regex;
+        protected final int flags;
+        protected final int hash;
+
+        Key(String regex, int flags) {
+            this.regex = regex;
+            this.flags = flags;
+            this.hash = 31 * regex.hashCode() + flags;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return flags == key.flags && regex.equals(key.regex);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
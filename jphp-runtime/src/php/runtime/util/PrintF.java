@@ -2,26 +2,53 @@ package php.runtime.util;
 
 import php.runtime.Memory;
 
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
+/**
+ * Formatter of sprintf(), a format string is parsed to segments once and they are kept in {@link FormatCache}.
+ */
 public class PrintF {
     private static final BigInteger BIG_2_64 = BigInteger.ONE.shiftLeft(64);
     private static final BigInteger BIG_TEN = new BigInteger("10");
 
     private final String format;
     private final Locale locale;
+    private final FormatCache cache;
     protected final Memory[] args;
 
     public PrintF(Locale locale, String format, Memory[] args){
+        this(locale, null, format, args);
+    }
+
+    public PrintF(Locale locale, FormatCache cache, String format, Memory[] args){
         this.locale = locale;
+        this.cache  = cache;
         this.format = format;
         this.args   = args;
     }
 
-    private List<Segment> parse(){
+    protected Segment[] segments() {
+        if (cache == null)
+            return parse(format);
+
+        FormatCache.Key key = new FormatCache.Key(PrintF.class, format);
+        Segment[] segments = (Segment[]) cache.get(key);
+
+        if (segments == null) {
+            segments = parse(format);
+            cache.put(key, segments);
+        }
+
+        return segments;
+    }
+
+    public static Segment[] parse(String format){
         List<Segment> segments = new ArrayList<Segment>();
 
         int length = format.length();
@@ -199,11 +226,9 @@ public class PrintF {
                         case 'e': case 'E': case 'f': case 'g': case 'G':
                         case 'F':
 
-                            Locale _locale = locale;
-                            if (ch == 'F')
+                            boolean localized = ch == 'F';
+                            if (localized)
                                 ch = 'f';
-                            else
-                                _locale = null;
 
                             sb.setLength(sb.length() - 1);
                             if (sb.length() > 0)
@@ -233,7 +258,7 @@ public class PrintF {
                             index++;
 
                             segments.add(new DoubleSegment(
-                                    sb.toString(), isLeft && padChar == '0', argIndex, _locale
+                                    sb.toString(), isLeft && padChar == '0', argIndex, localized
                             ));
                             sb.setLength(0);
                             i = j;
@@ -259,16 +284,136 @@ public class PrintF {
         if (sb.length() > 0)
             segments.add(new TextSegment(sb.toString()));
 
-        return segments;
+        return segments.toArray(new Segment[segments.size()]);
     }
 
-    public String toString(){
-        StringBuilder builder = new StringBuilder();
-        for(Segment segment : parse()){
+    /**
+     * @return false if there are too few arguments
+     */
+    public boolean appendTo(StringBuilder builder) {
+        for (Segment segment : segments()) {
             if (!segment.apply(locale, builder, args))
+                return false;
+        }
+
+        return true;
+    }
+
+    public String toString(){
+        StringBuilder builder = new StringBuilder(format.length() + 16);
+        return appendTo(builder) ? builder.toString() : null;
+    }
+
+    /**
+     * Appends the number in the fixed-point notation without String.format, it is rounded half up
+     * by its shortest decimal representation as java.util.Formatter does.
+     *
+     * @param decimalPoint 0 - without the point
+     * @param groupSeparator 0 - without grouping of thousands
+     * @param signedZero keep the minus of negative numbers which are rounded to zero
+     */
+    public static void appendFixed(StringBuilder sb, double value, int precision,
+                                   char decimalPoint, char groupSeparator, boolean signedZero) {
+        boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+
+        BigDecimal decimal = new BigDecimal(Double.toString(Math.abs(value))).setScale(precision, RoundingMode.HALF_UP);
+        String digits = decimal.toPlainString();
+
+        if (negative && (signedZero || decimal.signum() != 0))
+            sb.append('-');
+
+        int point = digits.indexOf('.');
+        int length = point < 0 ? digits.length() : point;
+
+        if (groupSeparator == 0) {
+            sb.append(digits, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                if (i > 0 && (length - i) % 3 == 0)
+                    sb.append(groupSeparator);
+
+                sb.append(digits.charAt(i));
+            }
+        }
+
+        if (point >= 0) {
+            if (decimalPoint != 0)
+                sb.append(decimalPoint);
+
+            sb.append(digits, point + 1, digits.length());
+        }
+    }
+
+    /**
+     * Pads the number which is appended from the start position.
+     */
+    static void pad(StringBuilder sb, int start, int width, boolean isLeft, char pad) {
+        int length = sb.length() - start;
+        if (length >= width)
+            return;
+
+        if (isLeft) {
+            for (int i = length; i < width; i++)
+                sb.append(pad);
+        } else {
+            if (pad == '0' && length > 0 && (sb.charAt(start) == '-' || sb.charAt(start) == '+'))
+                start++;
+
+            char[] padding = new char[width - length];
+            Arrays.fill(padding, pad);
+            sb.insert(start, padding);
+        }
+    }
+
+    /**
+     * Flags of a simple java format, e.g. %+08.2f, which is applied without String.format.
+     */
+    static class Spec {
+        boolean isLeft;
+        boolean isShowSign;
+        boolean isZero;
+        int width;
+        int precision = -1;
+
+        /**
+         * @return null if the format has other flags or conversions
+         */
+        static Spec valueOf(String format, char conversion) {
+            int length = format.length();
+            if (length < 2 || format.charAt(0) != '%' || format.charAt(length - 1) != conversion)
+                return null;
+
+            Spec spec = new Spec();
+            int i = 1;
+
+            for (; i < length - 1; i++) {
+                char ch = format.charAt(i);
+
+                if (ch == '-')
+                    spec.isLeft = true;
+                else if (ch == '+')
+                    spec.isShowSign = true;
+                else if (ch == '0')
+                    spec.isZero = true;
+                else
+                    break;
+            }
+
+            if (spec.isLeft && spec.isZero)
                 return null;
+
+            for (; i < length - 1 && Character.isDigit(format.charAt(i)); i++)
+                spec.width = spec.width * 10 + format.charAt(i) - '0';
+
+            if (i < length - 1 && format.charAt(i) == '.') {
+                spec.precision = 0;
+
+                for (i++; i < length - 1 && Character.isDigit(format.charAt(i)); i++)
+                    spec.precision = spec.precision * 10 + format.charAt(i) - '0';
+            }
+
+            return i == length - 1 ? spec : null;
         }
-        return builder.toString();
     }
 
     abstract public static class Segment {
@@ -327,7 +472,7 @@ public class PrintF {
         }
     }
 
-    public class TextSegment extends Segment {
+    public static class TextSegment extends Segment {
         public TextSegment(String format) {
             super(format);
         }
@@ -445,10 +590,14 @@ public class PrintF {
 
     static class LongSegment extends Segment {
         protected int _index;
+        protected final Spec _spec;
 
         LongSegment(String format, int _index) {
             super(format);
             this._index = _index;
+
+            Spec spec = Spec.valueOf(format, 'd');
+            _spec = spec != null && spec.precision < 0 ? spec : null;
         }
 
         static Segment valueOf(String format, int index) {
@@ -512,7 +661,17 @@ public class PrintF {
                 return false;
             }
 
-            sb.append(String.format(Locale.ENGLISH, format, value));
+            if (_spec == null) {
+                sb.append(String.format(Locale.ENGLISH, format, value));
+                return true;
+            }
+
+            int start = sb.length();
+            if (_spec.isShowSign && value >= 0)
+                sb.append('+');
+
+            sb.append(value);
+            pad(sb, start, _spec.width, _spec.isLeft, _spec.isZero ? '0' : ' ');
             return true;
         }
     }
@@ -796,14 +955,15 @@ public class PrintF {
         private final String _format;
         private final boolean _isLeftZero;
         private final int _index;
-        private final Locale _locale;
+        private final boolean _localized;
+        private final Spec _spec;
 
         @Override
         public Memory.Type getType() {
             return Memory.Type.DOUBLE;
         }
 
-        DoubleSegment(String format, boolean isLeftZero, int index, Locale locale) {
+        DoubleSegment(String format, boolean isLeftZero, int index, boolean localized) {
             super(format);
             if (hasIndex(format)) {
                 _index = getIndex(format);
@@ -815,7 +975,8 @@ public class PrintF {
             }
 
             _isLeftZero = isLeftZero;
-            _locale = locale;
+            _localized = localized;
+            _spec = localized ? null : Spec.valueOf(_format, 'f');
         }
 
         @Override
@@ -827,11 +988,17 @@ public class PrintF {
             else
                 return false;
 
-            String s;
-            if (_locale == null)
-                s = String.format(Locale.ENGLISH, _format, value);
-            else
-                s = String.format(_locale, _format, value);
+            if (_spec != null && !Double.isNaN(value) && !Double.isInfinite(value)) {
+                int start = sb.length();
+                if (_spec.isShowSign && !(value < 0 || (value == 0 && 1 / value < 0)))
+                    sb.append('+');
+
+                appendFixed(sb, value, _spec.precision < 0 ? 6 : _spec.precision, '.', (char) 0, true);
+                pad(sb, start, _spec.width, _spec.isLeft, _spec.isZero || _isLeftZero ? '0' : ' ');
+                return true;
+            }
+
+            String s = String.format(_localized ? locale : Locale.ENGLISH, _format, value);
 
             if (_isLeftZero) {
                 int len = s.length();
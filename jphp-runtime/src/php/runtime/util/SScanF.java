@@ -26,7 +26,30 @@ final public class SScanF {
         sb.setLength(0);
     }
 
+    /**
+     * Returns parsed segments of the format, they are cached in {@link FormatCache} of the scope
+     * if the format is parsed without warnings.
+     */
     public static Segment[] parse(Environment env, TraceInfo trace, String format) {
+        if (env == null)
+            return parse(null, trace, format, new boolean[1]);
+
+        FormatCache cache = env.getScope().getFormatCache();
+        FormatCache.Key key = new FormatCache.Key(SScanF.class, format);
+        Segment[] segments = (Segment[]) cache.get(key);
+
+        if (segments == null) {
+            boolean[] warned = new boolean[1];
+            segments = parse(env, trace, format, warned);
+
+            if (!warned[0])
+                cache.put(key, segments);
+        }
+
+        return segments;
+    }
+
+    protected static Segment[] parse(Environment env, TraceInfo trace, String format, boolean[] warned) {
         int fmtLen = format.length();
         int fIndex = 0;
 
@@ -128,6 +151,7 @@ final public class SScanF {
                             addConstant(segmentList, sb);
 
                             if (fmtLen <= fIndex) {
+                                warned[0] = true;
                                 if (env != null)
                                     env.warning(trace, "expected ']', saw end of string");
                                 break loop;
@@ -144,6 +168,7 @@ final public class SScanF {
                             Set<Integer> set = new HashSet<Integer>();
                             while (true) {
                                 if (fIndex == fmtLen) {
+                                    warned[0] = true;
                                     if (env != null)
                                         env.warning(trace, "expected ']', saw end of string");
                                     break loop;
@@ -166,6 +191,7 @@ final public class SScanF {
                             break loop;
                         }
                         default:
+                            warned[0] = true;
                             env.warning(trace, "'%s' is a bad sscanf string", format);
 
                             // XXX:
@@ -21,6 +21,7 @@ public class SqlExtension extends Extension {
         registerClass(scope, PSqlResult.class);
         registerClass(scope, PSqlStatement.class);
         registerClass(scope, PSqlConnection.class);
+        registerClass(scope, PSqlConnectionPool.class);
         registerClass(scope, PSqlDriverManager.class);
     }
 }
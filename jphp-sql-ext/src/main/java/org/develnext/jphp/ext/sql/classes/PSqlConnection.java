@@ -1,12 +1,14 @@
 package org.develnext.jphp.ext.sql.classes;
 
 import org.develnext.jphp.ext.sql.SqlExtension;
+import org.develnext.jphp.ext.sql.pool.PooledConnection;
+import org.develnext.jphp.ext.sql.pool.StatementCache;
 import php.runtime.Memory;
 import php.runtime.annotation.Reflection.*;
 import php.runtime.env.Environment;
 import php.runtime.lang.BaseObject;
+import php.runtime.lang.ForeachIterator;
 import php.runtime.memory.ArrayMemory;
-import php.runtime.memory.LongMemory;
 import php.runtime.memory.ReferenceMemory;
 import php.runtime.reflection.ClassEntity;
 
@@ -22,8 +24,12 @@ public class PSqlConnection extends BaseObject {
     public static final int TRANSACTION_NONE = Connection.TRANSACTION_NONE;
     public static final int TRANSACTION_SERIALIZABLE = Connection.TRANSACTION_SERIALIZABLE;
 
+    protected static final int DEFAULT_BATCH_SIZE = 1000;
+
     protected Connection connection;
     protected DatabaseMetaData metaData;
+    protected StatementCache statementCache;
+    protected boolean ownStatementCache;
 
     public PSqlConnection(Environment env, Connection connection) {
         super(env);
@@ -33,6 +39,13 @@ public class PSqlConnection extends BaseObject {
         } catch (SQLException e) {
             throw new WrapSqlException(env, e);
         }
+
+        statementCache = PooledConnection.getStatementCache(connection);
+
+        if (statementCache == null) {
+            statementCache = new StatementCache(connection, StatementCache.DEFAULT_SIZE);
+            ownStatementCache = true;
+        }
     }
 
     public PSqlConnection(Environment env, ClassEntity clazz) {
@@ -79,6 +92,16 @@ public class PSqlConnection extends BaseObject {
         return connection.getCatalog();
     }
 
+    @Setter
+    public void setStatementCacheSize(int value) {
+        statementCache.setMaxSize(value);
+    }
+
+    @Getter
+    public int getStatementCacheSize() {
+        return statementCache.getMaxSize();
+    }
+
     @Signature
     public Memory getCatalogs(Environment env) throws SQLException {
         ResultSet catalogs = metaData.getCatalogs();
@@ -159,14 +182,13 @@ public class PSqlConnection extends BaseObject {
 
     @Signature
     public PSqlStatement query(Environment env, String sql, @Nullable ArrayMemory args) throws Throwable {
-        PreparedStatement statement = connection.prepareStatement(sql);
-        PSqlStatement sqlStatement = new PSqlStatement(env, statement);
+        PSqlStatement sqlStatement = new PSqlStatement(env, connection, statementCache, sql);
 
         if (args != null) {
             int index  = 0;
 
             for (ReferenceMemory arg : args) {
-                env.invokeMethod(sqlStatement, "bind", LongMemory.valueOf(index), arg.value);
+                sqlStatement.bind(env, index, arg.value);
                 index += 1;
             }
         }
@@ -174,6 +196,117 @@ public class PSqlConnection extends BaseObject {
         return sqlStatement;
     }
 
+    @Signature
+    public long bulkInsert(Environment env, String table, ArrayMemory columns, Memory rows) throws Throwable {
+        return bulkInsert(env, table, columns, rows, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Inserts rows in batches of the batch size in one transaction. If the connection is already in a transaction
+     * (autoCommit is disabled), rows are inserted in it without commit.
+     *
+     * @param rows iterable of rows, a row is a list of values in order of the columns or an array by column names
+     * @return count of inserted rows
+     */
+    @Signature
+    public long bulkInsert(Environment env, String table, ArrayMemory columns, Memory rows, int batchSize) throws Throwable {
+        if (batchSize < 1) {
+            env.exception("Argument 5 (batchSize) must be greater than zero");
+        }
+
+        ForeachIterator iterator = rows.getNewIterator(env);
+        if (iterator == null) {
+            env.exception("Argument 3 (rows) must be iterable");
+        }
+
+        String quote = metaData.getIdentifierQuoteString();
+        String[] names = new String[columns.size()];
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(quoteName(table, quote)).append(" (");
+        int i = 0;
+        for (ReferenceMemory column : columns) {
+            names[i] = column.toString();
+
+            if (i > 0) sql.append(", ");
+            sql.append(quoteName(names[i], quote));
+            i++;
+        }
+
+        sql.append(") VALUES (");
+        for (i = 0; i < names.length; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+
+        boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+
+        try {
+            PSqlStatement statement = new PSqlStatement(env, connection, statementCache, sql.toString());
+
+            long result = 0;
+            int size = 0;
+
+            while (iterator.next()) {
+                Memory row = iterator.getValue().toValue();
+
+                if (!row.isArray()) {
+                    env.exception("Row %s must be an array", iterator.getKey());
+                }
+
+                ArrayMemory values = (ArrayMemory) row;
+                boolean list = values.isList();
+
+                for (i = 0; i < names.length; i++) {
+                    statement.bind(env, i, list ? values.valueOfIndex(i) : values.valueOfIndex(names[i]));
+                }
+
+                statement.addBatch(env);
+
+                if (++size == batchSize) {
+                    result += statement.executeBatchCount(env);
+                    size = 0;
+                }
+            }
+
+            if (size > 0) {
+                result += statement.executeBatchCount(env);
+            }
+
+            if (autoCommit) {
+                connection.commit();
+            }
+
+            return result;
+        } catch (Throwable e) {
+            if (autoCommit) {
+                connection.rollback();
+            }
+
+            throw e;
+        } finally {
+            if (autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    protected static String quoteName(String name, String quote) {
+        if (quote == null || quote.trim().isEmpty()) {
+            return name;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String part : name.split("\\.")) {
+            if (sb.length() > 0) sb.append('.');
+            sb.append(quote).append(part).append(quote);
+        }
+
+        return sb.toString();
+    }
+
     @Signature
     public String identifier(String value) throws SQLException {
         String identifierQuoteString = connection.getMetaData().getIdentifierQuoteString();
@@ -183,6 +316,10 @@ public class PSqlConnection extends BaseObject {
 
     @Signature
     public void close() throws SQLException {
+        if (ownStatementCache) {
+            statementCache.close();
+        }
+
         connection.close();
     }
 
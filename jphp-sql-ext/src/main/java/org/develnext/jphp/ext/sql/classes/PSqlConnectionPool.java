@@ -0,0 +1,160 @@
+package org.develnext.jphp.ext.sql.classes;
+
+import org.develnext.jphp.ext.sql.SqlExtension;
+import org.develnext.jphp.ext.sql.pool.SqlConnectionPool;
+import php.runtime.Memory;
+import php.runtime.annotation.Reflection.Abstract;
+import php.runtime.annotation.Reflection.Name;
+import php.runtime.annotation.Reflection.Namespace;
+import php.runtime.annotation.Reflection.Signature;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.lang.BaseObject;
+import php.runtime.memory.ArrayMemory;
+import php.runtime.memory.DoubleMemory;
+import php.runtime.memory.LongMemory;
+import php.runtime.reflection.ClassEntity;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Abstract
+@Name("SqlConnectionPool")
+@Namespace(SqlExtension.NS)
+public class PSqlConnectionPool extends BaseObject {
+    private final static Map<Environment, Set<Connection>> borrowed = new WeakHashMap<Environment, Set<Connection>>();
+
+    protected SqlConnectionPool pool;
+
+    public PSqlConnectionPool(Environment env, SqlConnectionPool pool) {
+        super(env);
+        this.pool = pool;
+    }
+
+    public PSqlConnectionPool(Environment env, ClassEntity clazz) {
+        super(env, clazz);
+    }
+
+    public SqlConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Connections not closed by php code are returned to the pool when the environment finishes.
+     */
+    @Signature
+    public PSqlConnection getConnection(Environment env) throws SQLException {
+        String borrower = null;
+
+        if (pool.getLeakDetectionThreshold() > 0) {
+            TraceInfo trace = env.trace();
+            if (trace != null && trace != TraceInfo.UNKNOWN)
+                borrower = trace.getFileName() + ":" + (trace.getStartLine() + 1);
+        }
+
+        if (pool.getListener() instanceof LeakReporter)
+            ((LeakReporter) pool.getListener()).report(env);
+
+        return new PSqlConnection(env, pool.getConnection(borrower, tracker(env)));
+    }
+
+    @Signature
+    public Memory getStatistics() {
+        ArrayMemory result = new ArrayMemory();
+
+        for (Map.Entry<String, Number> entry : pool.getStatistics().entrySet()) {
+            Number value = entry.getValue();
+
+            result.refOfIndex(entry.getKey()).assign(
+                    value instanceof Double ? new DoubleMemory(value.doubleValue()) : LongMemory.valueOf(value.longValue())
+            );
+        }
+
+        return result.toConstant();
+    }
+
+    @Signature
+    public boolean isClosed() {
+        return pool.isClosed();
+    }
+
+    /**
+     * Closes the pool and removes it from SqlDriverManager.
+     */
+    @Signature
+    public void close() {
+        PSqlDriverManager.removePool(pool);
+        pool.close();
+    }
+
+    protected static Set<Connection> tracker(final Environment env) {
+        synchronized (borrowed) {
+            Set<Connection> connections = borrowed.get(env);
+
+            if (connections == null) {
+                final Set<Connection> set = connections = new HashSet<Connection>();
+                borrowed.put(env, set);
+
+                env.registerFinalizer(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (borrowed) {
+                            borrowed.remove(env);
+                        }
+
+                        List<Connection> list;
+                        synchronized (set) {
+                            list = new ArrayList<Connection>(set);
+                        }
+
+                        for (Connection connection : list) {
+                            try {
+                                connection.close();
+                            } catch (SQLException e) {
+                                // nop
+                            }
+                        }
+                    }
+                });
+            }
+
+            return connections;
+        }
+    }
+
+    /**
+     * Leaks are detected in the housekeeping thread where no environment can be used,
+     * so they are kept until an environment acquires a connection and are reported as warnings there.
+     */
+    public static class LeakReporter implements SqlConnectionPool.Listener {
+        private final static int MAX_REPORTS = 100;
+
+        private final Queue<String> reports = new ConcurrentLinkedQueue<String>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        @Override
+        public void onLeak(SqlConnectionPool pool, String borrower, long time) {
+            if (size.incrementAndGet() > MAX_REPORTS) {
+                size.decrementAndGet();
+                return;
+            }
+
+            reports.add(
+                    "SqlConnectionPool: connection acquired " + (borrower == null ? "" : "in " + borrower + " ")
+                            + "is not returned for " + time + " ms, possible leak"
+            );
+        }
+
+        public void report(Environment env) {
+            String report;
+
+            while ((report = reports.poll()) != null) {
+                size.decrementAndGet();
+                env.warning("%s", report);
+            }
+        }
+    }
+}
@@ -1,19 +1,29 @@
 package org.develnext.jphp.ext.sql.classes;
 
 import org.develnext.jphp.ext.sql.SqlExtension;
+import org.develnext.jphp.ext.sql.pool.SqlConnectionPool;
+import php.runtime.Memory;
 import php.runtime.annotation.Reflection;
+import php.runtime.annotation.Reflection.Nullable;
 import php.runtime.annotation.Reflection.Signature;
 import php.runtime.env.Environment;
 import php.runtime.lang.BaseObject;
+import php.runtime.lang.ForeachIterator;
+import php.runtime.memory.ArrayMemory;
 import php.runtime.reflection.ClassEntity;
 
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 @Reflection.Name("SqlDriverManager")
 @Reflection.Namespace(SqlExtension.NS)
 final public class PSqlDriverManager extends BaseObject {
+    private final static long HOUSEKEEPING_PERIOD = 30 * 1000;
+    private final static Map<String, SqlConnectionPool> pools = new HashMap<String, SqlConnectionPool>();
+
     public PSqlDriverManager(Environment env, ClassEntity clazz) {
         super(env, clazz);
     }
@@ -65,4 +75,98 @@ final public class PSqlDriverManager extends BaseObject {
     public static PSqlConnection getConnection(Environment env, String url, Properties properties) throws SQLException {
         return new PSqlConnection(env, DriverManager.getConnection("jdbc:" + url, properties == null ? new Properties() : properties));
     }
+
+    @Signature
+    public static PSqlConnectionPool getPool(Environment env, String url) throws SQLException {
+        return getPool(env, url, null, null);
+    }
+
+    @Signature
+    public static PSqlConnectionPool getPool(Environment env, String url, @Nullable Properties properties)
+            throws SQLException {
+        return getPool(env, url, properties, null);
+    }
+
+    /**
+     * Pools are shared by all environments, one pool per url, properties and options.
+     * Leaks are reported as warnings to the next environment acquiring a connection from the pool.
+     */
+    @Signature
+    public static PSqlConnectionPool getPool(Environment env, String url, @Nullable Properties properties,
+                                             @Nullable ArrayMemory options) throws SQLException {
+        if (properties == null)
+            properties = new Properties();
+
+        StringBuilder key = new StringBuilder(url).append('\0').append(properties);
+        if (options != null) {
+            ForeachIterator iterator = options.foreachIterator(false, false);
+            while (iterator.next()) {
+                key.append('\0').append(iterator.getKey()).append('=').append(iterator.getValue());
+            }
+        }
+
+        SqlConnectionPool pool;
+
+        synchronized (pools) {
+            pool = pools.get(key.toString());
+
+            if (pool == null) {
+                pool = new SqlConnectionPool("jdbc:" + url, properties);
+
+                if (options != null) {
+                    try {
+                        configurePool(pool, options);
+                    } catch (IllegalArgumentException e) {
+                        throw new SQLException("Invalid pool option, " + e.getMessage());
+                    }
+                }
+
+                pool.setListener(new PSqlConnectionPool.LeakReporter());
+                pool.startHousekeeping(HOUSEKEEPING_PERIOD);
+                pools.put(key.toString(), pool);
+            }
+        }
+
+        return new PSqlConnectionPool(env, pool);
+    }
+
+    protected static void configurePool(SqlConnectionPool pool, ArrayMemory options) {
+        Memory value;
+
+        if (!(value = options.valueOfIndex("maxSize")).isNull())
+            pool.setMaxSize(value.toInteger());
+
+        if (!(value = options.valueOfIndex("minSize")).isNull())
+            pool.setMinSize(value.toInteger());
+
+        if (!(value = options.valueOfIndex("idleTimeout")).isNull())
+            pool.setIdleTimeout(value.toLong());
+
+        if (!(value = options.valueOfIndex("acquireTimeout")).isNull())
+            pool.setAcquireTimeout(value.toLong());
+
+        if (!(value = options.valueOfIndex("leakDetectionThreshold")).isNull())
+            pool.setLeakDetectionThreshold(value.toLong());
+
+        if (!(value = options.valueOfIndex("validationQuery")).isNull())
+            pool.setValidationQuery(value.toString());
+
+        if (!(value = options.valueOfIndex("validationTimeout")).isNull())
+            pool.setValidationTimeout(value.toInteger());
+
+        if (!(value = options.valueOfIndex("validationInterval")).isNull())
+            pool.setValidationInterval(value.toLong());
+
+        if (!(value = options.valueOfIndex("statementCacheSize")).isNull())
+            pool.setStatementCacheSize(value.toInteger());
+
+        if (pool.getMinSize() > pool.getMaxSize())
+            throw new IllegalArgumentException("minSize must not be greater than maxSize");
+    }
+
+    static void removePool(SqlConnectionPool pool) {
+        synchronized (pools) {
+            pools.values().remove(pool);
+        }
+    }
 }
@@ -20,6 +20,8 @@ import java.sql.*;
 public class PSqlResult extends BaseObject {
     protected ResultSet resultSet;
     protected ResultSetMetaData metaData;
+    protected Columns columns;
+    protected ArrayMemory row;
 
     public PSqlResult(Environment env, ResultSet resultSet) {
         super(env);
@@ -27,95 +29,136 @@ public class PSqlResult extends BaseObject {
 
         try {
             this.metaData  = resultSet.getMetaData();
+            this.columns = new Columns(metaData);
         } catch (SQLException e) {
             throw new WrapSqlException(env, e);
         }
     }
 
+    /**
+     * @param columns metadata of the result set, shared by all rows
+     */
+    public PSqlResult(Environment env, ResultSet resultSet, Columns columns) {
+        super(env);
+        this.resultSet = resultSet;
+        this.metaData = columns.metaData;
+        this.columns = columns;
+    }
+
+    /**
+     * Detached result of one row which is already read, e.g. generated keys of a cached statement.
+     * @param row assoc array of the row
+     */
+    public PSqlResult(Environment env, ArrayMemory row, Columns columns) {
+        super(env);
+        this.row = row;
+        this.metaData = columns.metaData;
+        this.columns = columns;
+    }
+
     public PSqlResult(Environment env, ClassEntity clazz) {
         super(env, clazz);
     }
 
     @Signature
     public boolean isLast() throws SQLException {
-        return resultSet.isLast();
+        return resultSet == null || resultSet.isLast();
     }
 
     @Signature
     public boolean isFirst() throws SQLException {
-        return resultSet.isFirst();
+        return resultSet == null || resultSet.isFirst();
     }
 
     public Memory getTyped(Environment env, int index) throws SQLException {
-        index += 1;
-
-        ResultSet set = resultSet;
-        int type = metaData.getColumnType(index);
+        if (resultSet == null)
+            return row.valueOfIndex(columns.labels[index]).toImmutable();
 
-        if (set.getObject(index) == null) {
-            return Memory.NULL;
-        }
+        return getTyped(env, resultSet, columns.types[index], index + 1);
+    }
 
+    /**
+     * @param index column index from 1
+     */
+    public static Memory getTyped(Environment env, ResultSet set, int type, int index) throws SQLException {
         switch (type) {
             case Types.INTEGER:
             case Types.SMALLINT:
             case Types.TINYINT:
-            case Types.BIT:
-                return LongMemory.valueOf(set.getLong(index));
+            case Types.BIT: {
+                long value = set.getLong(index);
+                return set.wasNull() ? Memory.NULL : LongMemory.valueOf(value);
+            }
 
-            case Types.BOOLEAN:
-                return TrueMemory.valueOf(set.getBoolean(index));
+            case Types.BOOLEAN: {
+                boolean value = set.getBoolean(index);
+                return set.wasNull() ? Memory.NULL : TrueMemory.valueOf(value);
+            }
 
             case Types.FLOAT:
             case Types.DOUBLE:
-            case Types.DECIMAL:
-                return DoubleMemory.valueOf(set.getDouble(index));
+            case Types.DECIMAL: {
+                double value = set.getDouble(index);
+                return set.wasNull() ? Memory.NULL : DoubleMemory.valueOf(value);
+            }
 
             case Types.NULL:
                 return Memory.NULL;
 
             case Types.TIME:
                 Time time = set.getTime(index);
-                return ObjectMemory.valueOf(new WrapTime(env, time));
+                return time == null ? Memory.NULL : ObjectMemory.valueOf(new WrapTime(env, time));
 
             case Types.TIMESTAMP:
                 Timestamp timestamp = set.getTimestamp(index);
-                return ObjectMemory.valueOf(new WrapTime(env, timestamp));
+                return timestamp == null ? Memory.NULL : ObjectMemory.valueOf(new WrapTime(env, timestamp));
 
             case Types.DATE:
                 Date date = set.getDate(index);
-                return ObjectMemory.valueOf(new WrapTime(env, date));
-
-            case Types.VARCHAR:
-            case Types.LONGVARCHAR:
-            case Types.CHAR:
-            case Types.BIGINT:
-                return StringMemory.valueOf(set.getString(index));
+                return date == null ? Memory.NULL : ObjectMemory.valueOf(new WrapTime(env, date));
 
             case Types.NVARCHAR:
-            case Types.LONGNVARCHAR:
-                return StringMemory.valueOf(set.getNString(index));
+            case Types.LONGNVARCHAR: {
+                String value = set.getNString(index);
+                return value == null ? Memory.NULL : StringMemory.valueOf(value);
+            }
 
-            case Types.BINARY:
-                return new BinaryMemory(set.getBytes(index));
+            case Types.BINARY: {
+                byte[] value = set.getBytes(index);
+                return value == null ? Memory.NULL : new BinaryMemory(value);
+            }
 
             case Types.BLOB:
             case Types.CLOB:
             case Types.NCLOB:
                 try {
                     Blob blob = set.getBlob(index);
-                    return ObjectMemory.valueOf(new MiscStream(env, blob.getBinaryStream()));
+                    return blob == null ? Memory.NULL : ObjectMemory.valueOf(new MiscStream(env, blob.getBinaryStream()));
                 } catch (SQLException e) {
-                    return new BinaryMemory(set.getBytes(index));
+                    byte[] value = set.getBytes(index);
+                    return value == null ? Memory.NULL : new BinaryMemory(value);
                 }
 
-            default:
-                return StringMemory.valueOf(set.getString(index));
+            default: {
+                String value = set.getString(index);
+                return value == null ? Memory.NULL : StringMemory.valueOf(value);
+            }
         }
     }
 
     @Signature
     public Memory get(Environment env, Memory column) throws SQLException {
+        if (resultSet == null) {
+            String label = column.toString();
+
+            for (int i = 0; i < columns.count; i++) {
+                if (columns.labels[i].equals(label))
+                    return getTyped(env, i);
+            }
+
+            throw new SQLException("The column label " + label + " is not valid");
+        }
+
         return getTyped(env, resultSet.findColumn(column.toString()) - 1);
     }
 
@@ -126,36 +169,95 @@ public class PSqlResult extends BaseObject {
 
     @Signature
     public void delete() throws SQLException {
+        detachedCheck();
         resultSet.deleteRow();
     }
 
     @Signature
     public boolean isDeleted() throws SQLException {
-        return resultSet.rowDeleted();
+        return resultSet != null && resultSet.rowDeleted();
     }
 
     @Signature
     public void refresh() throws SQLException {
+        detachedCheck();
         resultSet.refreshRow();
     }
 
+    protected void detachedCheck() throws SQLException {
+        if (resultSet == null)
+            throw new SQLException("The result is detached from the database");
+    }
+
     @Signature
     public ArrayMemory toArray(Environment env, boolean assoc) throws SQLException {
-        ResultSetMetaData metaData = resultSet.getMetaData();
+        if (resultSet == null) {
+            ArrayMemory result = new ArrayMemory(assoc, columns.count);
+
+            for (String label : columns.labels) {
+                Memory value = row.valueOfIndex(label).toImmutable();
+
+                if (assoc) {
+                    result.putAsKeyString(label, value);
+                } else {
+                    result.add(value);
+                }
+            }
+
+            return result.toConstant();
+        }
 
-        ArrayMemory result = new ArrayMemory();
-        int count = metaData.getColumnCount();
+        return toArray(env, resultSet, columns, assoc).toConstant();
+    }
+
+    /**
+     * Builds the array of the current row, keys are shared by all rows of the result set.
+     */
+    public static ArrayMemory toArray(Environment env, ResultSet resultSet, Columns columns, boolean assoc)
+            throws SQLException {
+        int count = columns.count;
+        ArrayMemory result = new ArrayMemory(assoc, count);
 
         for (int i = 0; i < count; i++) {
-            Memory value = getTyped(env, i);
+            Memory value = getTyped(env, resultSet, columns.types[i], i + 1);
 
             if (assoc) {
-                result.putAsKeyString(metaData.getColumnLabel(i + 1), value);
+                result.putAsKeyString(columns.labels[i], value);
             } else {
                 result.add(value);
             }
         }
 
-        return result.toConstant();
+        return result;
+    }
+
+    /**
+     * Column metadata of a result set, read once for all rows.
+     */
+    public static class Columns {
+        protected final ResultSetMetaData metaData;
+        protected final int count;
+        protected final String[] labels;
+        protected final int[] types;
+
+        public Columns(ResultSetMetaData metaData) throws SQLException {
+            this.metaData = metaData;
+            this.count = metaData.getColumnCount();
+            this.labels = new String[count];
+            this.types = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                labels[i] = metaData.getColumnLabel(i + 1).intern();
+                types[i] = metaData.getColumnType(i + 1);
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public String getLabel(int index) {
+            return labels[index];
+        }
     }
 }
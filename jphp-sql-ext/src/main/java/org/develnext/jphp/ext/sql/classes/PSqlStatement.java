@@ -1,63 +1,348 @@
 package org.develnext.jphp.ext.sql.classes;
 
 import org.develnext.jphp.ext.sql.SqlExtension;
+import org.develnext.jphp.ext.sql.pool.StatementCache;
 import php.runtime.Memory;
 import php.runtime.annotation.Reflection;
 import php.runtime.annotation.Reflection.Abstract;
+import php.runtime.annotation.Reflection.Getter;
+import php.runtime.annotation.Reflection.Setter;
 import php.runtime.annotation.Reflection.Signature;
 import php.runtime.env.Environment;
 import php.runtime.ext.core.classes.stream.Stream;
 import php.runtime.ext.core.classes.time.WrapTime;
+import php.runtime.invoke.Invoker;
 import php.runtime.lang.BaseObject;
 import php.runtime.lang.ForeachIterator;
 import php.runtime.lang.spl.iterator.Iterator;
+import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.BinaryMemory;
 import php.runtime.memory.LongMemory;
 import php.runtime.memory.ObjectMemory;
+import php.runtime.memory.ReferenceMemory;
 import php.runtime.reflection.ClassEntity;
 
 import java.io.InputStream;
 import java.sql.*;
+import java.util.Arrays;
 
 @Abstract
 @Reflection.Name("SqlStatement")
 @Reflection.Namespace(SqlExtension.NS)
 public class PSqlStatement extends BaseObject implements Iterator {
+    protected final static int BIND = 0;
+    protected final static int BIND_BLOB = 1;
+    protected final static int BIND_DATE = 2;
+    protected final static int BIND_TIME = 3;
+    protected final static int BIND_TIMESTAMP = 4;
+
     protected PreparedStatement statement;
     protected boolean valid = true;
     private ResultSet resultSet;
+    private StatementCache.Entry resultEntry;
+    private PSqlResult.Columns columns;
+    private int fetchSize = -1;
+
+    protected Connection connection;
+    protected StatementCache cache;
+    protected String sql;
+    protected boolean released;
+    protected StatementCache.Entry releasedEntry;
+
+    private Memory[] bindings;
+    private int[] bindingTypes;
+
+    private ArrayMemory generatedKeys;
+    private PSqlResult.Columns generatedKeyColumns;
+    private SQLException generatedKeysError;
 
     public PSqlStatement(Environment env, PreparedStatement statement) {
         super(env);
         this.statement = statement;
     }
 
+    /**
+     * Statement from the cache, it is released back to the cache after each execution.
+     */
+    public PSqlStatement(Environment env, Connection connection, StatementCache cache, String sql) throws SQLException {
+        super(env);
+        this.connection = connection;
+        this.cache = cache;
+        this.sql = sql;
+
+        if (connection.isClosed()) {
+            throw new SQLException("Connection is closed");
+        }
+
+        this.statement = cache.take(sql);
+    }
+
     public PSqlStatement(Environment env, ClassEntity clazz) {
         super(env, clazz);
     }
 
+    /**
+     * Reclaims the released statement, if it was taken by another query, prepares a new one
+     * and binds all parameters again.
+     */
+    protected PreparedStatement statement(Environment env) throws SQLException {
+        if (released) {
+            if (connection.isClosed()) {
+                throw new SQLException("Connection is closed");
+            }
+
+            released = false;
+
+            if (cache.reclaim(sql, releasedEntry) == null) {
+                statement = cache.take(sql);
+
+                if (bindings != null) {
+                    for (int i = 0; i < bindings.length; i++) {
+                        if (bindings[i] != null) {
+                            apply(env, bindingTypes[i], i, bindings[i]);
+                        }
+                    }
+                }
+            }
+        }
+
+        return statement;
+    }
+
+    protected void release(ResultSet resultSet) {
+        if (cache != null && !released) {
+            releasedEntry = cache.release(sql, statement, resultSet);
+            released = releasedEntry != null;
+        }
+    }
+
+    /**
+     * Closes the result set and tells the cache the statement is free, even if the driver reports no closed result sets.
+     */
+    protected static void close(ResultSet resultSet, StatementCache.Entry entry) throws SQLException {
+        if (entry != null)
+            entry.finish();
+
+        resultSet.close();
+    }
+
+    /**
+     * @param value count of rows fetched from the database at once, 0 - default of the driver
+     */
+    @Setter
+    public void setFetchSize(int value) {
+        fetchSize = value;
+    }
+
+    @Getter
+    public int getFetchSize() throws SQLException {
+        return fetchSize < 0 ? statement.getFetchSize() : fetchSize;
+    }
+
+    /**
+     * The fetch size is applied only for this execution, the statement may be shared via the statement cache.
+     */
+    protected ResultSet executeQuery(Environment env) throws SQLException {
+        PreparedStatement statement = statement(env);
+        ResultSet resultSet;
+
+        if (fetchSize < 0) {
+            resultSet = statement.executeQuery();
+        } else {
+            int defaultFetchSize = statement.getFetchSize();
+            statement.setFetchSize(fetchSize);
+
+            try {
+                resultSet = statement.executeQuery();
+            } finally {
+                statement.setFetchSize(defaultFetchSize);
+            }
+        }
+
+        release(resultSet);
+        return resultSet;
+    }
+
+    /**
+     * Executes the query and calls the callback for each row until it returns false.
+     * The row array is reused for the next row if the callback does not keep it.
+     */
+    @Signature
+    public long each(Environment env, Invoker callback) throws Throwable {
+        return each(env, callback, true);
+    }
+
+    @Signature
+    public long each(Environment env, Invoker callback, boolean assoc) throws Throwable {
+        ResultSet resultSet = executeQuery(env);
+        StatementCache.Entry entry = released ? releasedEntry : null;
+
+        try {
+            PSqlResult.Columns columns = null;
+            ArrayMemory row = null;
+            ReferenceMemory[] cells = null;
+            boolean reusable = false;
+            long index = 0;
+
+            while (resultSet.next()) {
+                if (columns == null) {
+                    columns = new PSqlResult.Columns(resultSet.getMetaData());
+                    cells = new ReferenceMemory[columns.count];
+                }
+
+                if (reusable) {
+                    if (row.checkCopied() != null) {
+                        // the previous row is kept by the callback, the row got own copy of cells
+                        int i = 0;
+                        for (ReferenceMemory cell : row) {
+                            cells[i++] = cell;
+                        }
+                    }
+
+                    for (int i = 0; i < cells.length; i++) {
+                        cells[i].assign(PSqlResult.getTyped(env, resultSet, columns.types[i], i + 1));
+                    }
+                } else {
+                    row = PSqlResult.toArray(env, resultSet, columns, assoc);
+
+                    int i = 0;
+                    for (ReferenceMemory cell : row) {
+                        cells[i++] = cell;
+                    }
+
+                    reusable = i == cells.length; // false if labels are duplicated
+                }
+
+                if (callback.call(row, LongMemory.valueOf(index++)).toValue() == Memory.FALSE) {
+                    break;
+                }
+            }
+
+            return index;
+        } finally {
+            close(resultSet, entry);
+        }
+    }
+
     @Signature
     public PSqlResult fetch(Environment env) throws SQLException {
-        ResultSet resultSet = statement.executeQuery();
-        return new PSqlResult(env, resultSet);
+        return new PSqlResult(env, executeQuery(env));
     }
 
     @Signature
     public boolean execute(Environment env) throws SQLException {
-        return statement.execute();
+        PreparedStatement statement = statement(env);
+        boolean result = statement.execute();
+        captureGeneratedKeys(env, statement);
+        release(null);
+
+        return result;
     }
 
     @Signature
     public int update(Environment env) throws SQLException {
-        return statement.executeUpdate();
+        PreparedStatement statement = statement(env);
+        int result = statement.executeUpdate();
+        captureGeneratedKeys(env, statement);
+        release(null);
+
+        return result;
+    }
+
+    /**
+     * Adds the bound parameters to the batch, the statement is not released until the batch is executed.
+     */
+    @Signature
+    public void addBatch(Environment env) throws SQLException {
+        statement(env).addBatch();
+    }
+
+    @Signature
+    public void clearBatch(Environment env) throws SQLException {
+        statement(env).clearBatch();
+    }
+
+    @Signature
+    public Memory executeBatch(Environment env) throws SQLException {
+        PreparedStatement statement = statement(env);
+        int[] counts = statement.executeBatch();
+        captureGeneratedKeys(env, statement);
+        release(null);
+
+        ArrayMemory result = new ArrayMemory();
+        for (int count : counts) {
+            result.add(count);
+        }
+
+        return result.toConstant();
+    }
+
+    /**
+     * @return sum of update counts of the batch, statements without info are counted as one row
+     */
+    public long executeBatchCount(Environment env) throws SQLException {
+        PreparedStatement statement = statement(env);
+        int[] counts = statement.executeBatch();
+        captureGeneratedKeys(env, statement);
+        release(null);
+
+        long result = 0;
+        for (int count : counts) {
+            if (count >= 0) {
+                result += count;
+            } else if (count == Statement.SUCCESS_NO_INFO) {
+                result += 1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * A cached statement may be reused by another query right after the execution,
+     * so its generated keys are read before the statement is released to the cache.
+     */
+    protected void captureGeneratedKeys(Environment env, PreparedStatement statement) {
+        generatedKeys = null;
+        generatedKeyColumns = null;
+        generatedKeysError = null;
+
+        if (cache == null) {
+            return;
+        }
+
+        try {
+            ResultSet keys = statement.getGeneratedKeys();
+
+            if (keys != null) {
+                try {
+                    if (keys.next()) {
+                        generatedKeyColumns = new PSqlResult.Columns(keys.getMetaData());
+                        generatedKeys = PSqlResult.toArray(env, keys, generatedKeyColumns, true);
+                    }
+                } finally {
+                    keys.close();
+                }
+            }
+        } catch (SQLException e) {
+            generatedKeysError = e;
+        }
     }
 
     @Signature
     public Memory getLastInsertId(Environment env) throws SQLException {
-        Memory keys = getGeneratedKeys(env);
+        if (cache != null) {
+            if (generatedKeysError != null) {
+                throw generatedKeysError;
+            }
+
+            return generatedKeys == null ? Memory.NULL : new PSqlResult(env, generatedKeys, generatedKeyColumns).getTyped(env, 0);
+        }
+
+        ResultSet keys = statement(env).getGeneratedKeys();
 
-        if (keys.instanceOf(PSqlResult.class)) {
-            return keys.toObject(PSqlResult.class).getTyped(env, 0);
+        if (keys != null && keys.next()) {
+            return new PSqlResult(env, keys).getTyped(env, 0);
         }
 
         return Memory.NULL;
@@ -65,7 +350,15 @@ public class PSqlStatement extends BaseObject implements Iterator {
 
     @Signature
     public Memory getGeneratedKeys(Environment env) throws SQLException {
-        ResultSet keys = statement.getGeneratedKeys();
+        if (cache != null) {
+            if (generatedKeysError != null) {
+                throw generatedKeysError;
+            }
+
+            return generatedKeys == null ? Memory.NULL : ObjectMemory.valueOf(new PSqlResult(env, generatedKeys, generatedKeyColumns));
+        }
+
+        ResultSet keys = statement(env).getGeneratedKeys();
 
         if (keys != null && keys.next()) {
             return ObjectMemory.valueOf(new PSqlResult(env, keys));
@@ -76,36 +369,81 @@ public class PSqlStatement extends BaseObject implements Iterator {
 
     @Signature
     public void bindBlob(Environment env, int index, Memory arg) throws SQLException {
-        InputStream is = Stream.getInputStream(env, arg);
-        try {
-            statement.setBlob(index + 1, is);
-        } finally {
-            Stream.closeStream(env, is);
-        }
+        bind(env, BIND_BLOB, index, arg);
     }
 
     @Signature
     public void bindDate(Environment env, int index, WrapTime time) throws SQLException {
-        statement.setDate(index + 1, new Date(time.getDate().getTime()), time.getCalendar());
+        bind(env, BIND_DATE, index, ObjectMemory.valueOf(time));
     }
 
     @Signature
     public void bindTime(Environment env, int index, WrapTime time) throws SQLException {
-        statement.setTime(index + 1, new Time(time.getDate().getTime()), time.getCalendar());
+        bind(env, BIND_TIME, index, ObjectMemory.valueOf(time));
     }
 
     @Signature
     public void bindTimestamp(Environment env, int index, Memory value) throws SQLException {
-        if (value.instanceOf(WrapTime.class)) {
-            WrapTime time = value.toObject(WrapTime.class);
-            statement.setTimestamp(index + 1, new Timestamp(time.getDate().getTime()), time.getCalendar());
-        } else {
-            statement.setTimestamp(index + 1, new Timestamp(value.toLong()));
-        }
+        bind(env, BIND_TIMESTAMP, index, value);
     }
 
     @Signature
     public void bind(Environment env, int index, Memory value) throws SQLException {
+        bind(env, BIND, index, value);
+    }
+
+    protected void bind(Environment env, int type, int index, Memory value) throws SQLException {
+        statement(env);
+
+        if (cache != null && index >= 0) {
+            if (bindings == null || index >= bindings.length) {
+                int length = Math.max(index + 1, bindings == null ? 8 : bindings.length * 2);
+                bindings = bindings == null ? new Memory[length] : Arrays.copyOf(bindings, length);
+                bindingTypes = bindingTypes == null ? new int[length] : Arrays.copyOf(bindingTypes, length);
+            }
+
+            bindings[index] = value.toImmutable();
+            bindingTypes[index] = type;
+        }
+
+        apply(env, type, index, value);
+    }
+
+    protected void apply(Environment env, int type, int index, Memory value) throws SQLException {
+        PreparedStatement statement = this.statement;
+
+        switch (type) {
+            case BIND_BLOB:
+                InputStream is = Stream.getInputStream(env, value);
+                try {
+                    statement.setBlob(index + 1, is);
+                } finally {
+                    Stream.closeStream(env, is);
+                }
+                return;
+
+            case BIND_DATE: {
+                WrapTime time = value.toObject(WrapTime.class);
+                statement.setDate(index + 1, new Date(time.getDate().getTime()), time.getCalendar());
+                return;
+            }
+
+            case BIND_TIME: {
+                WrapTime time = value.toObject(WrapTime.class);
+                statement.setTime(index + 1, new Time(time.getDate().getTime()), time.getCalendar());
+                return;
+            }
+
+            case BIND_TIMESTAMP:
+                if (value.instanceOf(WrapTime.class)) {
+                    WrapTime time = value.toObject(WrapTime.class);
+                    statement.setTimestamp(index + 1, new Timestamp(time.getDate().getTime()), time.getCalendar());
+                } else {
+                    statement.setTimestamp(index + 1, new Timestamp(value.toLong()));
+                }
+                return;
+        }
+
         if (value.instanceOf(WrapTime.class)) {
             WrapTime time = value.toObject(WrapTime.class);
             statement.setDate(index + 1, new Date(time.getDate().getTime()), time.getCalendar());
@@ -139,7 +477,19 @@ public class PSqlStatement extends BaseObject implements Iterator {
 
     @Override
     public Memory current(Environment env, Memory... args) {
-        return resultSet == null ? Memory.NULL : ObjectMemory.valueOf(new PSqlResult(env, resultSet));
+        if (resultSet == null) {
+            return Memory.NULL;
+        }
+
+        try {
+            if (columns == null) {
+                columns = new PSqlResult.Columns(resultSet.getMetaData());
+            }
+        } catch (SQLException e) {
+            throw new WrapSqlException(env, e);
+        }
+
+        return ObjectMemory.valueOf(new PSqlResult(env, resultSet, columns));
     }
 
     @Override
@@ -158,6 +508,10 @@ public class PSqlStatement extends BaseObject implements Iterator {
                 valid = false;
             } else {
                 valid = resultSet.next();
+
+                if (!valid) {
+                    close(resultSet, resultEntry);
+                }
             }
         } catch (SQLException e) {
             throw new WrapSqlException(env, e);
@@ -169,10 +523,16 @@ public class PSqlStatement extends BaseObject implements Iterator {
     @Override
     public Memory rewind(Environment env, Memory... args) {
         try {
-            resultSet = statement.executeQuery();
+            resultSet = executeQuery(env);
+            resultEntry = released ? releasedEntry : null;
+            columns = null;
 
             if (resultSet != null) {
-                resultSet.next();
+                valid = resultSet.next();
+
+                if (!valid) {
+                    close(resultSet, resultEntry);
+                }
             }
         } catch (SQLException e) {
             throw new WrapSqlException(env, e);
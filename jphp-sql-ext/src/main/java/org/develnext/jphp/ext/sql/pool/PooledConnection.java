@@ -0,0 +1,229 @@
+package org.develnext.jphp.ext.sql.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Physical connection of {@link SqlConnectionPool}.
+ *
+ * Each borrowing gets a new proxy of the connection: close() of the proxy returns the connection to the pool,
+ * after that the proxy rejects all calls, so a stale handle cannot use a connection of another borrower.
+ */
+public class PooledConnection {
+    protected final SqlConnectionPool pool;
+    protected final Connection connection;
+    protected final long createdAt;
+
+    protected final boolean defaultAutoCommit;
+    protected final boolean defaultReadOnly;
+    protected final int defaultTransactionIsolation;
+    protected final String defaultCatalog;
+
+    protected final StatementCache statementCache;
+
+    protected long lastUsedAt;
+    protected long borrowedAt;
+    protected String borrower;
+    protected boolean leakReported;
+    protected boolean dirty;
+    protected boolean broken;
+
+    protected Handle handle;
+
+    public PooledConnection(SqlConnectionPool pool, Connection connection) throws SQLException {
+        this.pool = pool;
+        this.connection = connection;
+        this.createdAt = this.lastUsedAt = System.currentTimeMillis();
+
+        this.defaultAutoCommit = connection.getAutoCommit();
+        this.defaultReadOnly = connection.isReadOnly();
+        this.defaultTransactionIsolation = connection.getTransactionIsolation();
+        this.defaultCatalog = connection.getCatalog();
+
+        this.statementCache = new StatementCache(connection, pool.getStatementCacheSize());
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    public long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    /**
+     * Prepared statements of the physical connection, they are reused by all borrowers.
+     */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * @return description of the borrower (e.g. file and line of php code), or null
+     */
+    public String getBorrower() {
+        return borrower;
+    }
+
+    Connection borrow(String borrower, Collection<Connection> tracker) {
+        this.borrowedAt = System.currentTimeMillis();
+        this.borrower = borrower;
+        this.leakReported = false;
+
+        handle = new Handle(tracker);
+        handle.proxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handle
+        );
+
+        if (tracker != null) {
+            synchronized (tracker) {
+                tracker.add(handle.proxy);
+            }
+        }
+
+        return handle.proxy;
+    }
+
+    /**
+     * Restores the default state of the connection before it is returned to the pool.
+     */
+    void reset() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+        }
+
+        if (dirty) {
+            if (connection.getAutoCommit() != defaultAutoCommit)
+                connection.setAutoCommit(defaultAutoCommit);
+
+            if (connection.isReadOnly() != defaultReadOnly)
+                connection.setReadOnly(defaultReadOnly);
+
+            if (connection.getTransactionIsolation() != defaultTransactionIsolation)
+                connection.setTransactionIsolation(defaultTransactionIsolation);
+
+            if (defaultCatalog != null && !defaultCatalog.equals(connection.getCatalog()))
+                connection.setCatalog(defaultCatalog);
+
+            dirty = false;
+        }
+
+        connection.clearWarnings();
+    }
+
+    void closePhysical() {
+        statementCache.close();
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // nop
+        }
+    }
+
+    /**
+     * @return statement cache of the pooled physical connection, or null if the connection is not from a pool
+     */
+    public static StatementCache getStatementCache(Connection connection) {
+        if (Proxy.isProxyClass(connection.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(connection);
+
+            if (handler instanceof Handle)
+                return ((Handle) handler).getPooledConnection().statementCache;
+        }
+
+        return null;
+    }
+
+    protected class Handle implements InvocationHandler {
+        protected final Collection<Connection> tracker;
+        protected Connection proxy;
+        protected boolean closed;
+
+        Handle(Collection<Connection> tracker) {
+            this.tracker = tracker;
+        }
+
+        PooledConnection getPooledConnection() {
+            return PooledConnection.this;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if ("close".equals(name) && method.getParameterTypes().length == 0) {
+                close();
+                return null;
+            }
+
+            if ("equals".equals(name) && args != null && args.length == 1)
+                return proxy == args[0];
+
+            if ("hashCode".equals(name) && args == null)
+                return System.identityHashCode(proxy);
+
+            synchronized (this) {
+                if ("isClosed".equals(name))
+                    return closed || connection.isClosed();
+
+                if (closed) {
+                    if ("toString".equals(name))
+                        return "Closed pooled connection";
+
+                    throw new SQLException("Connection is closed");
+                }
+            }
+
+            if (name.startsWith("set") && (name.equals("setAutoCommit") || name.equals("setReadOnly")
+                    || name.equals("setTransactionIsolation") || name.equals("setCatalog"))) {
+                dirty = true;
+            }
+
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+
+                if (cause instanceof SQLException && isFatal((SQLException) cause))
+                    broken = true;
+
+                throw cause;
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed)
+                    return;
+
+                closed = true;
+            }
+
+            if (tracker != null) {
+                synchronized (tracker) {
+                    tracker.remove(proxy);
+                }
+            }
+
+            pool.release(PooledConnection.this);
+        }
+    }
+
+    /**
+     * SQL states of class 08 are connection exceptions, such connections are not returned to the pool.
+     */
+    protected static boolean isFatal(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+}
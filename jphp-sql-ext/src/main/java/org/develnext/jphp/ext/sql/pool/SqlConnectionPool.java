@@ -0,0 +1,583 @@
+package org.develnext.jphp.ext.sql.pool;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of JDBC connections.
+ *
+ * Idle connections are reused in LIFO order, a connection is validated before borrowing if it was idle
+ * longer than the validation interval. A background housekeeper closes connections idle longer than
+ * idle timeout (keeping min size), fills the pool up to min size and reports connections which are
+ * borrowed longer than the leak detection threshold.
+ */
+public class SqlConnectionPool {
+    private static Timer housekeeper;
+
+    protected final String url;
+    protected final Properties properties;
+
+    private volatile int minSize = 0;
+    private volatile int maxSize = 10;
+    private volatile long idleTimeout = 10 * 60 * 1000;
+    private volatile long acquireTimeout = 30 * 1000;
+    private volatile long leakDetectionThreshold = 0;
+    private volatile long validationInterval = 1000;
+    private volatile int validationTimeout = 5;
+    private volatile String validationQuery;
+    private volatile int statementCacheSize = StatementCache.DEFAULT_SIZE;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private final Deque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+    private final Set<PooledConnection> borrowed = new HashSet<PooledConnection>();
+
+    private int total;
+    private int waiters;
+    private boolean closed;
+
+    private long acquiredCount;
+    private long createdCount;
+    private long destroyedCount;
+    private long timeoutCount;
+    private long leakCount;
+    private long waitTime;
+    private long maxWaitTime;
+
+    private TimerTask housekeeping;
+    private volatile Listener listener;
+
+    /**
+     * @param url jdbc url, with the jdbc: prefix
+     */
+    public SqlConnectionPool(String url, Properties properties) {
+        this.url = url;
+        this.properties = properties == null ? new Properties() : properties;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        if (minSize < 0)
+            throw new IllegalArgumentException("minSize must be positive or zero");
+
+        this.minSize = minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be greater than zero");
+
+        this.maxSize = maxSize;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @param idleTimeout in millis, 0 - idle connections are not closed
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0)
+            throw new IllegalArgumentException("idleTimeout must be positive or zero");
+
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * @param acquireTimeout max time to wait for a free connection in millis
+     */
+    public void setAcquireTimeout(long acquireTimeout) {
+        if (acquireTimeout < 0)
+            throw new IllegalArgumentException("acquireTimeout must be positive or zero");
+
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * @param listener receives events of the pool, e.g. leaks, null - no listener
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public long getLeakDetectionThreshold() {
+        return leakDetectionThreshold;
+    }
+
+    /**
+     * @param leakDetectionThreshold in millis, 0 - disabled
+     */
+    public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+        if (leakDetectionThreshold < 0)
+            throw new IllegalArgumentException("leakDetectionThreshold must be positive or zero");
+
+        this.leakDetectionThreshold = leakDetectionThreshold;
+    }
+
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * @param validationInterval connections idle less than this time (millis) are not validated before borrowing
+     */
+    public void setValidationInterval(long validationInterval) {
+        if (validationInterval < 0)
+            throw new IllegalArgumentException("validationInterval must be positive or zero");
+
+        this.validationInterval = validationInterval;
+    }
+
+    public int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    /**
+     * @param validationTimeout in seconds
+     */
+    public void setValidationTimeout(int validationTimeout) {
+        if (validationTimeout < 0)
+            throw new IllegalArgumentException("validationTimeout must be positive or zero");
+
+        this.validationTimeout = validationTimeout;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    /**
+     * @param validationQuery query to check connections, if null Connection.isValid() is used
+     */
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @param statementCacheSize count of prepared statements cached per connection, 0 - disable caching
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0)
+            throw new IllegalArgumentException("statementCacheSize must be positive or zero");
+
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    /**
+     * @param borrower description of the borrower for leak reports, or null
+     * @param tracker the proxy is added to the collection and removed on close, or null
+     * @return proxy of a pooled connection, close() returns it to the pool
+     */
+    public Connection getConnection(String borrower, Collection<Connection> tracker) throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(acquireTimeout);
+
+        PooledConnection connection;
+        while (true) {
+            boolean create = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed)
+                        throw new SQLException("Connection pool is closed");
+
+                    connection = idle.pollFirst();
+                    if (connection != null)
+                        break;
+
+                    if (total < maxSize) {
+                        total++;
+                        create = true;
+                        break;
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeoutCount++;
+                        throw new SQLTimeoutException(
+                                "Cannot acquire a connection in " + acquireTimeout + " ms, pool size is " + maxSize
+                        );
+                    }
+
+                    waiters++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection");
+                    } finally {
+                        waiters--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                connection = createConnection();
+                break;
+            }
+
+            if (validate(connection))
+                break;
+
+            destroy(connection);
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                destroy(connection);
+                throw new SQLException("Connection pool is closed");
+            }
+
+            borrowed.add(connection);
+
+            long wait = System.nanoTime() - start;
+            acquiredCount++;
+            waitTime += wait;
+            if (wait > maxWaitTime)
+                maxWaitTime = wait;
+
+            return connection.borrow(borrower, tracker);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates a physical connection, the slot in total must be already reserved.
+     */
+    protected PooledConnection createConnection() throws SQLException {
+        try {
+            Connection connection = DriverManager.getConnection(url, properties);
+            PooledConnection result = new PooledConnection(this, connection);
+
+            lock.lock();
+            try {
+                createdCount++;
+            } finally {
+                lock.unlock();
+            }
+
+            return result;
+        } catch (SQLException e) {
+            freeSlot();
+            throw e;
+        } catch (RuntimeException e) {
+            freeSlot();
+            throw e;
+        }
+    }
+
+    private void freeSlot() {
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected boolean validate(PooledConnection connection) {
+        if (System.currentTimeMillis() - connection.getLastUsedAt() < validationInterval)
+            return true;
+
+        Connection raw = connection.getConnection();
+        try {
+            String query = validationQuery;
+
+            if (query == null || query.isEmpty()) {
+                try {
+                    return raw.isValid(validationTimeout);
+                } catch (AbstractMethodError e) { // old drivers
+                    return !raw.isClosed();
+                }
+            }
+
+            Statement statement = raw.createStatement();
+            try {
+                statement.setQueryTimeout(validationTimeout);
+                statement.execute(query);
+                return true;
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the physical connection and frees its slot.
+     */
+    protected void destroy(PooledConnection connection) {
+        connection.closePhysical();
+
+        lock.lock();
+        try {
+            destroyedCount++;
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(PooledConnection connection) {
+        boolean keep = !connection.broken;
+
+        if (keep) {
+            try {
+                keep = !connection.getConnection().isClosed();
+                if (keep)
+                    connection.reset();
+            } catch (SQLException e) {
+                keep = false;
+            }
+        }
+
+        lock.lock();
+        try {
+            borrowed.remove(connection);
+            connection.lastUsedAt = System.currentTimeMillis();
+            connection.borrower = null;
+
+            if (keep && !closed) {
+                idle.addFirst(connection);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        destroy(connection);
+    }
+
+    /**
+     * Closes idle connections, fills the pool up to min size and detects leaks, called by the housekeeper thread.
+     */
+    public void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<PooledConnection>();
+        List<PooledConnection> leaks = new ArrayList<PooledConnection>();
+        int missing;
+
+        lock.lock();
+        try {
+            if (closed)
+                return;
+
+            long timeout = idleTimeout;
+            if (timeout > 0) {
+                Iterator<PooledConnection> iterator = idle.descendingIterator(); // the oldest first
+                while (iterator.hasNext() && total - evicted.size() > minSize) {
+                    PooledConnection connection = iterator.next();
+                    if (now - connection.getLastUsedAt() >= timeout) {
+                        iterator.remove();
+                        evicted.add(connection);
+                    }
+                }
+            }
+
+            long threshold = leakDetectionThreshold;
+            if (threshold > 0) {
+                for (PooledConnection connection : borrowed) {
+                    if (!connection.leakReported && now - connection.getBorrowedAt() >= threshold) {
+                        connection.leakReported = true;
+                        leakCount++;
+                        leaks.add(connection);
+                    }
+                }
+            }
+
+            missing = minSize - (total - evicted.size());
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection connection : evicted) {
+            destroy(connection);
+        }
+
+        for (PooledConnection connection : leaks) {
+            onLeak(connection, now - connection.getBorrowedAt());
+        }
+
+        for (int i = 0; i < missing; i++) {
+            lock.lock();
+            try {
+                if (closed || total >= Math.min(minSize, maxSize))
+                    break;
+
+                total++;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                release(createConnection());
+            } catch (SQLException e) {
+                break;
+            } catch (RuntimeException e) { // a driver error, the slot is already freed
+                break;
+            }
+        }
+    }
+
+    /**
+     * Called when a connection is borrowed longer than the leak detection threshold,
+     * passes the leak to the listener of the pool.
+     */
+    protected void onLeak(PooledConnection connection, long time) {
+        Listener listener = this.listener;
+
+        if (listener != null)
+            listener.onLeak(this, connection.getBorrower(), time);
+    }
+
+    /**
+     * Starts periodic housekeeping in the shared daemon thread.
+     * @param period in millis
+     */
+    public void startHousekeeping(long period) {
+        synchronized (SqlConnectionPool.class) {
+            if (housekeeping != null)
+                housekeeping.cancel();
+
+            if (housekeeper == null)
+                housekeeper = new Timer("jphp-sql-pool-housekeeper", true);
+
+            housekeeping = new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        housekeep();
+                    } catch (Throwable e) {
+                        // the timer thread is shared by all pools, it dies on an exception of a task
+                    }
+                }
+            };
+
+            try {
+                housekeeper.schedule(housekeeping, 0, period);
+            } catch (IllegalStateException e) { // the timer is cancelled
+                housekeeper = new Timer("jphp-sql-pool-housekeeper", true);
+                housekeeper.schedule(housekeeping, 0, period);
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes idle connections, borrowed connections are closed when they are returned.
+     */
+    public void close() {
+        List<PooledConnection> list;
+
+        lock.lock();
+        try {
+            if (closed)
+                return;
+
+            closed = true;
+            list = new ArrayList<PooledConnection>(idle);
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        synchronized (SqlConnectionPool.class) {
+            if (housekeeping != null) {
+                housekeeping.cancel();
+                housekeeping = null;
+            }
+        }
+
+        for (PooledConnection connection : list) {
+            destroy(connection);
+        }
+    }
+
+    /**
+     * @return active, idle, total, waiters, maxSize, minSize, acquired, created, destroyed, timeouts, leaks,
+     * waitTime (total, millis), avgWaitTime and maxWaitTime (millis)
+     */
+    public Map<String, Number> getStatistics() {
+        Map<String, Number> result = new LinkedHashMap<String, Number>();
+
+        lock.lock();
+        try {
+            result.put("active", borrowed.size());
+            result.put("idle", idle.size());
+            result.put("total", total);
+            result.put("waiters", waiters);
+            result.put("minSize", minSize);
+            result.put("maxSize", maxSize);
+            result.put("acquired", acquiredCount);
+            result.put("created", createdCount);
+            result.put("destroyed", destroyedCount);
+            result.put("timeouts", timeoutCount);
+            result.put("leaks", leakCount);
+            result.put("waitTime", waitTime / 1000000.0);
+            result.put("avgWaitTime", acquiredCount == 0 ? 0.0 : waitTime / 1000000.0 / acquiredCount);
+            result.put("maxWaitTime", maxWaitTime / 1000000.0);
+        } finally {
+            lock.unlock();
+        }
+
+        return result;
+    }
+
+    public interface Listener {
+        /**
+         * @param borrower where the connection was acquired, null if unknown
+         * @param time how long the connection is borrowed in millis
+         */
+        void onLeak(SqlConnectionPool pool, String borrower, long time);
+    }
+}
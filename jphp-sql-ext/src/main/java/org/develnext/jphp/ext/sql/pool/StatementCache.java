@@ -0,0 +1,246 @@
+package org.develnext.jphp.ext.sql.pool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of prepared statements of one physical connection, keyed by sql text.
+ *
+ * A statement is taken from the cache for exclusive use and released back after execution.
+ * A statement whose result set is still open is busy: it can be reclaimed only by its last user,
+ * other users get a new statement, so results which are still read are never closed by a reuse.
+ * A busy statement displaced from the cache is kept as an orphan and closed as soon as its result set is closed
+ * or finished (see {@link Entry#finish}), orphans of abandoned result sets live as long as the connection,
+ * like statements without the cache.
+ */
+public class StatementCache {
+    public final static int DEFAULT_SIZE = 64;
+
+    protected final Connection connection;
+    protected final LinkedHashMap<String, Entry> statements;
+    protected final List<Entry> orphans = new ArrayList<Entry>();
+
+    private int maxSize;
+    private long hits;
+    private long misses;
+
+    public StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize 0 - disable caching
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize < 0 ? 0 : maxSize;
+        evict();
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return count of busy statements displaced from the cache and not closed yet
+     */
+    public synchronized int getOrphanCount() {
+        purgeOrphans();
+        return orphans.size();
+    }
+
+    /**
+     * Returns an idle cached statement with cleared parameters or prepares a new one.
+     */
+    public PreparedStatement take(String sql) throws SQLException {
+        synchronized (this) {
+            purgeOrphans();
+            Entry entry = statements.remove(sql);
+
+            if (entry != null) {
+                if (!entry.isBusy() && !entry.statement.isClosed()) {
+                    hits++;
+                    entry.statement.clearParameters();
+                    return entry.statement;
+                }
+
+                discard(entry);
+            }
+
+            misses++;
+        }
+
+        return connection.prepareStatement(sql);
+    }
+
+    /**
+     * Returns the statement back to its last user with all bound parameters,
+     * if nobody has taken it since the release.
+     *
+     * @param entry result of {@link #release}
+     * @return null if the statement was taken or evicted
+     */
+    public synchronized PreparedStatement reclaim(String sql, Entry entry) {
+        if (entry != null && statements.get(sql) == entry) {
+            statements.remove(sql);
+            return entry.statement;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param resultSet result of the last execution, which may be still read, or null
+     * @return entry to reclaim the statement, or null if caching is disabled
+     */
+    public synchronized Entry release(String sql, PreparedStatement statement, ResultSet resultSet) {
+        if (maxSize == 0)
+            return null;
+
+        purgeOrphans();
+
+        Entry entry = new Entry(statement, resultSet);
+        Entry old = statements.put(sql, entry);
+        if (old != null && old.statement != statement)
+            discard(old);
+
+        evict();
+        return entry;
+    }
+
+    public synchronized void close() {
+        for (Entry entry : statements.values()) {
+            entry.close();
+        }
+
+        statements.clear();
+
+        for (Entry entry : orphans) {
+            entry.close();
+        }
+
+        orphans.clear();
+    }
+
+    protected void evict() {
+        Iterator<Entry> iterator = statements.values().iterator();
+        int size = statements.size();
+
+        while (size > maxSize && iterator.hasNext()) {
+            discard(iterator.next());
+            iterator.remove();
+            size--;
+        }
+    }
+
+    /**
+     * Closes a statement removed from the cache, or keeps it as an orphan while its result set is read.
+     */
+    protected void discard(Entry entry) {
+        if (entry.isBusy())
+            orphans.add(entry);
+        else
+            entry.close();
+    }
+
+    /**
+     * Closes orphans whose result sets are closed.
+     */
+    protected void purgeOrphans() {
+        if (orphans.isEmpty())
+            return;
+
+        Iterator<Entry> iterator = orphans.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+
+            if (!entry.isBusy()) {
+                entry.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return statistics: size, maxSize, hits, misses, orphans
+     */
+    public synchronized Map<String, Number> getStatistics() {
+        purgeOrphans();
+
+        Map<String, Number> result = new LinkedHashMap<String, Number>();
+        result.put("size", statements.size());
+        result.put("maxSize", maxSize);
+        result.put("hits", hits);
+        result.put("misses", misses);
+        result.put("orphans", orphans.size());
+        return result;
+    }
+
+    public static class Entry {
+        protected final PreparedStatement statement;
+        protected final ResultSet resultSet;
+        private volatile boolean finished;
+
+        Entry(PreparedStatement statement, ResultSet resultSet) {
+            this.statement = statement;
+            this.resultSet = resultSet;
+        }
+
+        /**
+         * Marks the result set as read to the end or closed by its user,
+         * some drivers never report closed result sets (e.g. sqlite).
+         */
+        public void finish() {
+            finished = true;
+        }
+
+        boolean isBusy() {
+            if (resultSet == null || finished)
+                return false;
+
+            try {
+                return !resultSet.isClosed();
+            } catch (SQLException e) {
+                return true;
+            } catch (AbstractMethodError e) { // jdbc 3 driver
+                return true;
+            }
+        }
+
+        /**
+         * Busy statements are not closed, their results are still read, the cache keeps them as orphans.
+         */
+        void close() {
+            if (!isBusy())
+                closeForcibly();
+        }
+
+        void closeForcibly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // nop
+            }
+        }
+    }
+}
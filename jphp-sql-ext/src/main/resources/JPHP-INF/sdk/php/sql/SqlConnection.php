@@ -40,6 +40,13 @@ abstract class SqlConnection
      */
     public $schema;
 
+    /**
+     * Count of prepared statements cached by sql text, 0 - disable caching.
+     * Statements of pooled connections are cached per physical connection.
+     * @var int
+     */
+    public $statementCacheSize = 64;
+
     /**
      * @param string $name
      * @return string
@@ -58,6 +65,21 @@ abstract class SqlConnection
     {
     }
 
+    /**
+     * Inserts rows in batches in one transaction. If autoCommit is disabled,
+     * rows are inserted in the current transaction without commit.
+     *
+     * @param string $table
+     * @param array $columns
+     * @param array|\Traversable $rows list of values in order of columns or arrays by column names
+     * @param int $batchSize
+     * @return int count of inserted rows
+     * @throws SqlException
+     */
+    public function bulkInsert($table, array $columns, $rows, $batchSize = 1000)
+    {
+    }
+
     /**
      * Makes all changes made since the previous
      * commit/rollback permanent and releases any database locks
@@ -0,0 +1,44 @@
+<?php
+namespace php\sql;
+
+/**
+ * Class SqlConnectionPool
+ * @package php\sql
+ */
+abstract class SqlConnectionPool
+{
+    /**
+     * Borrows a connection from the pool, close() of the connection returns it back.
+     * All borrowed connections are returned when the environment is finished.
+     *
+     * @return SqlConnection
+     * @throws SqlException if a connection cannot be acquired in the acquireTimeout
+     */
+    public function getConnection()
+    {
+    }
+
+    /**
+     * Returns array with keys: active, idle, total, waiters, minSize, maxSize, acquired, created, destroyed,
+     * timeouts, leaks, waitTime, avgWaitTime, maxWaitTime (ms).
+     *
+     * @return array
+     */
+    public function getStatistics()
+    {
+    }
+
+    /**
+     * @return bool
+     */
+    public function isClosed()
+    {
+    }
+
+    /**
+     * Closes all idle connections, borrowed connections are closed when they are returned.
+     */
+    public function close()
+    {
+    }
+}
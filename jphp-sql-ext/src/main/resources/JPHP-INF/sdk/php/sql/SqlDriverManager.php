@@ -24,4 +24,24 @@ class SqlDriverManager
     public static function getConnection($url, array $options)
     {
     }
+
+    /**
+     * Returns a shared pool of connections, one pool per url, options and pool options.
+     *
+     * Pool options: maxSize (10), minSize (0), idleTimeout (ms, 600000), acquireTimeout (ms, 30000),
+     * leakDetectionThreshold (ms, 0 - disabled), validationQuery, validationTimeout (sec, 5),
+     * validationInterval (ms, 1000), statementCacheSize (64).
+     *
+     * Connections not returned longer than leakDetectionThreshold are reported as warnings
+     * by the next getConnection() of the pool.
+     *
+     * @param string $url
+     * @param array $options (optional) username, password, etc.
+     * @param array $poolOptions (optional)
+     * @return SqlConnectionPool
+     * @throws SqlException if a pool option is invalid
+     */
+    public static function getPool($url, array $options = null, array $poolOptions = null)
+    {
+    }
 }
\ No newline at end of file
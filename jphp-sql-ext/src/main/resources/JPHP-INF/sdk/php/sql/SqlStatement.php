@@ -12,6 +12,13 @@ use php\time\Time;
  */
 abstract class SqlStatement implements Iterator
 {
+    /**
+     * Count of rows fetched from the database at once for results of the statement,
+     * 0 - default of the driver. Use it to stream large results.
+     * @var int
+     */
+    public $fetchSize;
+
     /**
      * @param int $index
      * @param mixed $value
@@ -60,6 +67,19 @@ abstract class SqlStatement implements Iterator
     {
     }
 
+    /**
+     * Executes the query and calls the callback for each row, callback($row, $index),
+     * until it returns false. The row array is reused for the next row if the callback does not keep it.
+     *
+     * @param callable $callback
+     * @param bool $assoc if false, rows are lists of values
+     * @return int count of processed rows
+     * @throws SqlException
+     */
+    public function each(callable $callback, $assoc = true)
+    {
+    }
+
     /**
      * @return int
      * @throws SqlException
@@ -68,6 +88,29 @@ abstract class SqlStatement implements Iterator
     {
     }
 
+    /**
+     * Adds the bound values to the batch of the statement.
+     * @throws SqlException
+     */
+    public function addBatch()
+    {
+    }
+
+    /**
+     * @throws SqlException
+     */
+    public function clearBatch()
+    {
+    }
+
+    /**
+     * @return int[] update counts for each added set of values
+     * @throws SqlException
+     */
+    public function executeBatch()
+    {
+    }
+
     /**
      * @return mixed
      */
@@ -0,0 +1,65 @@
+--TEST--
+Batch and bulk insert test #1
+--FILE--
+<?php
+use php\sql\SqlDriverManager;
+use php\util\Flow;
+
+SqlDriverManager::install('sqlite');
+
+$conn = SqlDriverManager::getConnection('sqlite::memory:');
+$conn->query('create table person (id integer, name string)')->update();
+
+function count_persons($conn) {
+    $count = 0;
+    foreach ($conn->query('select * from person') as $row) {
+        $count++;
+    }
+    return $count;
+}
+
+$st = $conn->query('insert into person values (?, ?)');
+foreach (['leo', 'yui', 'kai'] as $i => $name) {
+    $st->bind(0, $i);
+    $st->bind(1, $name);
+    $st->addBatch();
+}
+var_dump($st->executeBatch());
+
+function rows($n) {
+    for ($i = 0; $i < $n; $i++) {
+        yield [100 + $i, "name$i"];
+    }
+}
+
+var_dump($conn->bulkInsert('person', ['id', 'name'], rows(2500), 1000));
+var_dump($conn->bulkInsert('person', ['name', 'id'], Flow::of([['id' => 5000, 'name' => 'foo']])));
+var_dump(count_persons($conn));
+
+try {
+    $conn->bulkInsert('person', ['id', 'name'], [[1, 'a'], 'invalid'], 1);
+} catch (Exception $e) {
+    echo $e->getMessage(), "\n";
+}
+
+var_dump(count_persons($conn));
+var_dump($conn->autoCommit);
+var_dump($conn->query('select * from person where id = ?', [5000])->fetch()->get('name'));
+
+?>
+--EXPECT--
+array(3) {
+  [0]=>
+  int(1)
+  [1]=>
+  int(1)
+  [2]=>
+  int(1)
+}
+int(2500)
+int(1)
+int(2504)
+Row 1 must be an array
+int(2504)
+bool(true)
+string(3) "foo"
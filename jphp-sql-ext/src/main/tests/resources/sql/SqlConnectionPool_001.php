@@ -0,0 +1,56 @@
+--TEST--
+SqlConnectionPool test #1
+--FILE--
+<?php
+use php\sql\SqlDriverManager;
+use php\sql\SqlException;
+
+SqlDriverManager::install('sqlite');
+
+$pool = SqlDriverManager::getPool('sqlite::memory:', null, ['maxSize' => 1, 'acquireTimeout' => 100]);
+
+$conn = $pool->getConnection();
+$conn->query('create table person (id integer, name string)')->update();
+$conn->query("insert into person values (1, 'leo')")->update();
+$conn->autoCommit = false;
+
+try {
+    $pool->getConnection();
+} catch (SqlException $e) {
+    echo "timeout\n";
+}
+
+$conn->close();
+
+try {
+    $conn->query('select * from person');
+} catch (SqlException $e) {
+    echo "closed\n";
+}
+
+$conn = $pool->getConnection();
+var_dump($conn->autoCommit);
+var_dump(sizeof($conn->query('select * from person')->fetch()->toArray()));
+$conn->close();
+
+$stats = $pool->getStatistics();
+var_dump($stats['active'], $stats['idle'], $stats['created'], $stats['acquired'], $stats['timeouts']);
+
+var_dump(SqlDriverManager::getPool('sqlite::memory:', null, ['maxSize' => 1, 'acquireTimeout' => 100])->getStatistics()['created']);
+
+$pool->close();
+var_dump($pool->isClosed());
+
+?>
+--EXPECT--
+timeout
+closed
+bool(true)
+int(2)
+int(0)
+int(1)
+int(1)
+int(2)
+int(1)
+int(1)
+bool(true)
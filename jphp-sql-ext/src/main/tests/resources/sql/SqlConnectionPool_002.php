@@ -0,0 +1,28 @@
+--TEST--
+SqlConnectionPool test #2, invalid options
+--FILE--
+<?php
+use php\sql\SqlDriverManager;
+use php\sql\SqlException;
+
+SqlDriverManager::install('sqlite');
+
+foreach ([['maxSize' => 0], ['minSize' => -1], ['acquireTimeout' => -1], ['minSize' => 5, 'maxSize' => 2]] as $options) {
+    try {
+        SqlDriverManager::getPool('sqlite::memory:', null, $options);
+    } catch (SqlException $e) {
+        echo $e->getMessage(), "\n";
+    }
+}
+
+$pool = SqlDriverManager::getPool('sqlite::memory:', null, ['maxSize' => 2]);
+var_dump($pool->isClosed());
+$pool->close();
+
+?>
+--EXPECT--
+java.sql.SQLException: Invalid pool option, maxSize must be greater than zero
+java.sql.SQLException: Invalid pool option, minSize must be positive or zero
+java.sql.SQLException: Invalid pool option, acquireTimeout must be positive or zero
+java.sql.SQLException: Invalid pool option, minSize must not be greater than maxSize
+bool(false)
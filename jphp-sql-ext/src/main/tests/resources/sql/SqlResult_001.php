@@ -0,0 +1,90 @@
+--TEST--
+Result rows and each() test #1
+--FILE--
+<?php
+use php\sql\SqlDriverManager;
+
+SqlDriverManager::install('sqlite');
+
+$conn = SqlDriverManager::getConnection('sqlite::memory:');
+$conn->query('create table person (id integer, name string)')->update();
+$conn->bulkInsert('person', ['id', 'name'], [[1, 'leo'], [2, 'yui'], [3, null]]);
+
+$st = $conn->query('select * from person');
+$st->fetchSize = 2;
+var_dump($st->fetchSize);
+
+$kept = [];
+var_dump($st->each(function ($row, $index) use (&$kept) {
+    if ($index != 1) {
+        $kept[] = $row;
+    }
+}));
+var_dump($kept);
+
+$names = [];
+var_dump($st->each(function ($row) use (&$names) {
+    $names[] = $row[1];
+    return sizeof($names) < 2 ? null : false;
+}, false));
+var_dump($names);
+
+$count = 0;
+foreach ($conn->query('select * from person where id = ?', [100]) as $result) {
+    $count++;
+}
+var_dump($count);
+
+foreach ($st as $i => $result) {
+    var_dump($i, $result->toArray(false));
+}
+
+?>
+--EXPECT--
+int(2)
+int(3)
+array(2) {
+  [0]=>
+  array(2) {
+    ["id"]=>
+    int(1)
+    ["name"]=>
+    string(3) "leo"
+  }
+  [1]=>
+  array(2) {
+    ["id"]=>
+    int(3)
+    ["name"]=>
+    NULL
+  }
+}
+int(2)
+array(2) {
+  [0]=>
+  string(3) "leo"
+  [1]=>
+  string(3) "yui"
+}
+int(0)
+int(0)
+array(2) {
+  [0]=>
+  int(1)
+  [1]=>
+  string(3) "leo"
+}
+int(1)
+array(2) {
+  [0]=>
+  int(2)
+  [1]=>
+  string(3) "yui"
+}
+int(2)
+array(2) {
+  [0]=>
+  int(3)
+  [1]=>
+  NULL
+}
@@ -0,0 +1,44 @@
+--TEST--
+Statement cache test #1
+--FILE--
+<?php
+use php\sql\SqlDriverManager;
+
+SqlDriverManager::install('sqlite');
+
+$conn = SqlDriverManager::getConnection('sqlite::memory:');
+$conn->query('create table person (id integer, name string)')->update();
+
+for ($i = 0; $i < 10; $i++) {
+    $conn->query('insert into person values (?, ?)', [$i, "name$i"])->update();
+}
+
+$a = $conn->query('select * from person where id = ?', [1])->fetch();
+$b = $conn->query('select * from person where id = ?', [2])->fetch();
+var_dump($a->get('name'), $b->get('name'));
+
+$insert = $conn->query('insert into person values (?, ?)', [20, 'foo']);
+$insert->update();
+$conn->query('insert into person values (?, ?)', [21, 'bar'])->update();
+$insert->bind(0, 22);
+$insert->update();
+var_dump($conn->query('select * from person where id = ?', [22])->fetch()->get('name'));
+
+$count = 0;
+foreach ($conn->query('select * from person') as $row) {
+    $count++;
+}
+var_dump($count);
+
+var_dump($conn->statementCacheSize);
+$conn->statementCacheSize = 0;
+var_dump($conn->query('select * from person where id = ?', [5])->fetch()->get('name'));
+
+?>
+--EXPECT--
+string(5) "name1"
+string(5) "name2"
+string(3) "foo"
+int(13)
+int(64)
+string(5) "name5"
@@ -0,0 +1,40 @@
+--TEST--
+Statement cache test #2, generated keys of reused statements
+--FILE--
+<?php
+use php\sql\SqlDriverManager;
+
+SqlDriverManager::install('sqlite');
+
+$conn = SqlDriverManager::getConnection('sqlite::memory:');
+$conn->query('create table person (id integer primary key autoincrement, name string)')->update();
+
+$a = $conn->query('insert into person (name) values (?)', ['foo']);
+$a->update();
+
+$b = $conn->query('insert into person (name) values (?)', ['bar']);
+$b->update();
+
+$conn->query('insert into person (name) values (?)', ['baz'])->update();
+
+var_dump($a->getLastInsertId(), $b->getLastInsertId());
+
+$keys = $a->getGeneratedKeys();
+var_dump($keys->isFirst(), $keys->isLast(), count($keys->toArray()), $keys->toArray(false));
+
+$update = $conn->query('update person set name = ? where id = ?', ['foobar', 1]);
+$update->update();
+var_dump($update->getLastInsertId());
+
+?>
+--EXPECT--
+int(1)
+int(2)
+bool(true)
+bool(true)
+int(1)
+array(1) {
+  [0]=>
+  int(1)
+}
+int(3)
@@ -17,6 +17,28 @@ public class SqlLibraryTest extends SqlJvmTestCase {
         check("sql/SqlDriverManager_002.php");
     }
 
+    @Test
+    public void testConnectionPool() {
+        check("sql/SqlConnectionPool_001.php");
+        check("sql/SqlConnectionPool_002.php");
+    }
+
+    @Test
+    public void testStatementCache() {
+        check("sql/SqlStatementCache_001.php");
+        check("sql/SqlStatementCache_002.php");
+    }
+
+    @Test
+    public void testBatch() {
+        check("sql/SqlBatch_001.php");
+    }
+
+    @Test
+    public void testResult() {
+        check("sql/SqlResult_001.php");
+    }
+
     @Test
     public void testComplex() {
         check("sql/complex_001.php");
@@ -0,0 +1,175 @@
+package sql.pool;
+
+import org.develnext.jphp.ext.sql.pool.StatementCache;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class StatementCacheTest {
+    /**
+     * Jdbc object which only tracks whether it is closed, statements return such result sets.
+     */
+    private static <T> T mock(final Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+
+                if (name.equals("close")) {
+                    closed = true;
+                } else if (name.equals("isClosed")) {
+                    return closed;
+                } else if (name.equals("executeQuery")) {
+                    return mock(ResultSet.class);
+                } else if (name.equals("prepareStatement")) {
+                    return mock(PreparedStatement.class);
+                } else if (name.equals("equals")) {
+                    return proxy == args[0];
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+
+                return null;
+            }
+        }));
+    }
+
+    @Test
+    public void testHitsAndMisses() throws SQLException {
+        StatementCache cache = new StatementCache(mock(Connection.class), 2);
+
+        PreparedStatement a = cache.take("select * from person");
+        cache.release("select * from person", a, null);
+        Assert.assertSame(a, cache.take("select * from person"));
+        cache.release("select * from person", a, null);
+
+        PreparedStatement b = cache.take("select * from person where id = ?");
+        cache.release("select * from person where id = ?", b, null);
+
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(2, cache.size());
+
+        // evicts the least recently used statement
+        PreparedStatement c = cache.take("select name from person");
+        cache.release("select name from person", c, null);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(a.isClosed());
+        Assert.assertFalse(b.isClosed());
+
+        Assert.assertNotSame(a, cache.take("select * from person"));
+        Assert.assertSame(b, cache.take("select * from person where id = ?"));
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testBusyStatements() throws SQLException {
+        StatementCache cache = new StatementCache(mock(Connection.class), 2);
+        String sql = "select * from person";
+
+        PreparedStatement a = cache.take(sql);
+        ResultSet resultSet = a.executeQuery();
+        StatementCache.Entry entry = cache.release(sql, a, resultSet);
+
+        // the result set is still read, another user gets a new statement
+        PreparedStatement b = cache.take(sql);
+        Assert.assertNotSame(a, b);
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+
+        Assert.assertNull(cache.reclaim(sql, entry));
+        Assert.assertEquals(1, cache.getOrphanCount());
+        Assert.assertFalse(a.isClosed());
+
+        // the orphan is closed once its result set is closed
+        resultSet.close();
+        Assert.assertEquals(0, cache.getOrphanCount());
+        Assert.assertTrue(a.isClosed());
+
+        cache.release(sql, b, null);
+        Assert.assertSame(b, cache.take(sql));
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testOpenResultsWhileEvicting() throws SQLException {
+        StatementCache cache = new StatementCache(mock(Connection.class), 1);
+
+        PreparedStatement a = cache.take("select * from person");
+        ResultSet first = a.executeQuery();
+        cache.release("select * from person", a, first);
+
+        PreparedStatement b = cache.take("select * from person where id = ?");
+        ResultSet second = b.executeQuery();
+        cache.release("select * from person where id = ?", b, second);
+
+        // both results are read while other statements evict them from the cache
+        for (int i = 0; i < 4; i++) {
+            String sql = "select name from person where id = " + i;
+            cache.release(sql, cache.take(sql), null);
+        }
+
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(2, cache.getOrphanCount());
+        Assert.assertFalse(a.isClosed());
+        Assert.assertFalse(b.isClosed());
+
+        first.close();
+        Assert.assertEquals(1, cache.getOrphanCount());
+        Assert.assertTrue(a.isClosed());
+        Assert.assertFalse(b.isClosed());
+
+        second.close();
+        Assert.assertEquals(0, cache.getOrphanCount());
+        Assert.assertTrue(b.isClosed());
+    }
+
+    @Test
+    public void testFinishedResults() throws SQLException {
+        StatementCache cache = new StatementCache(mock(Connection.class), 1);
+        String sql = "select * from person";
+
+        PreparedStatement a = cache.take(sql);
+        StatementCache.Entry entry = cache.release(sql, a, a.executeQuery());
+
+        String other = "select * from person where id = ?";
+        cache.release(other, cache.take(other), null);
+        Assert.assertEquals(1, cache.getOrphanCount());
+
+        // the driver does not report the closed result set, its user does
+        entry.finish();
+        Assert.assertEquals(0, cache.getOrphanCount());
+        Assert.assertTrue(a.isClosed());
+    }
+
+    @Test
+    public void testReclaim() throws SQLException {
+        StatementCache cache = new StatementCache(mock(Connection.class), 2);
+        String sql = "select * from person where id = ?";
+
+        PreparedStatement a = cache.take(sql);
+        StatementCache.Entry entry = cache.release(sql, a, null);
+        Assert.assertSame(a, cache.reclaim(sql, entry));
+
+        entry = cache.release(sql, a, null);
+        Assert.assertSame(a, cache.take(sql));
+        Assert.assertNull(cache.reclaim(sql, entry));
+    }
+}
@@ -4,6 +4,7 @@ import org.develnext.jphp.zend.ext.json.JsonExtension;
 import org.develnext.jphp.zend.ext.standard.BCMathExtension;
 import org.develnext.jphp.zend.ext.standard.CTypeExtension;
 import org.develnext.jphp.zend.ext.standard.DateExtension;
+import org.develnext.jphp.zend.ext.standard.PcreExtension;
 import org.develnext.jphp.zend.ext.standard.StandardExtension;
 import php.runtime.env.CompileScope;
 import php.runtime.ext.support.Extension;
@@ -16,6 +17,7 @@ public class ZendExtension extends Extension {
                 BCMathExtension.class.getName(),
                 CTypeExtension.class.getName(),
                 DateExtension.class.getName(),
+                PcreExtension.class.getName(),
                 JsonExtension.class.getName()
         };
     }
@@ -13,6 +13,7 @@ public class JsonConstants extends ConstantsContainer {
     public final static int JSON_PRETTY_PRINT = 128;
     public final static int JSON_UNESCAPED_SLASHES = 64;
     public final static int JSON_UNESCAPED_UNICODE = 256;
+    public final static int JSON_PARTIAL_OUTPUT_ON_ERROR = 512;
 
     public final static int JSON_ERROR_NONE = 0;
     public final static int JSON_ERROR_DEPTH = 1;
@@ -20,4 +21,5 @@ public class JsonConstants extends ConstantsContainer {
     public final static int JSON_ERROR_CTRL_CHAR = 3;
     public final static int JSON_ERROR_SYNTAX = 4;
     public final static int JSON_ERROR_UTF8 = 5;
+    public final static int JSON_ERROR_INF_OR_NAN = 7;
 }
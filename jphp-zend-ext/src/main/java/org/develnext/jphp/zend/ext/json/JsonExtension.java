@@ -1,6 +1,7 @@
 package org.develnext.jphp.zend.ext.json;
 
 import com.google.gson.GsonBuilder;
+import org.develnext.jphp.json.codec.JsonEncoder;
 import org.develnext.jphp.json.gson.MemoryDeserializer;
 import org.develnext.jphp.json.gson.MemorySerializer;
 import php.runtime.Memory;
@@ -9,11 +10,35 @@ import php.runtime.ext.support.Extension;
 import php.runtime.memory.*;
 import php.runtime.memory.helper.UndefinedMemory;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 public class JsonExtension extends Extension {
 
+    private final static int ENCODER_OPTIONS = JsonConstants.JSON_PRETTY_PRINT | JsonConstants.JSON_HEX_TAG
+            | JsonConstants.JSON_FORCE_OBJECT | JsonConstants.JSON_NUMERIC_CHECK
+            | JsonConstants.JSON_PARTIAL_OUTPUT_ON_ERROR;
+
+    private final static ConcurrentHashMap<Integer, JsonEncoder> encoders = new ConcurrentHashMap<Integer, JsonEncoder>();
+
+    /**
+     * @deprecated json_encode uses {@link #getEncoder(int)} instead of gson
+     */
+    @Deprecated
     public final static GsonBuilder DEFAULT_GSON_BUILDER;
+
+    /**
+     * @deprecated json_decode uses {@link org.develnext.jphp.json.codec.JsonDecoder} instead of gson
+     */
+    @Deprecated
     public final static GsonBuilder DEFAULT_GSON_BUILDER_FOR_DECODE;
 
+    static {
+        DEFAULT_GSON_BUILDER = createGsonBuilder(new MemorySerializer());
+        DEFAULT_GSON_BUILDER.disableHtmlEscaping();
+
+        DEFAULT_GSON_BUILDER_FOR_DECODE = createGsonBuilderForDecode(new MemoryDeserializer());
+    }
+
     @Override
     public String getName() {
         return "json";
@@ -42,6 +67,32 @@ public class JsonExtension extends Extension {
         registerFunctions(new JsonFunctions());
     }
 
+    /**
+     * Returns a shared encoder for json_encode options, encoders are frozen and reused by all calls.
+     */
+    public static JsonEncoder getEncoder(int options) {
+        options &= ENCODER_OPTIONS;
+
+        JsonEncoder encoder = encoders.get(options);
+        if (encoder == null) {
+            encoder = new JsonEncoder();
+            encoder.setPrettyPrint((options & JsonConstants.JSON_PRETTY_PRINT) == JsonConstants.JSON_PRETTY_PRINT);
+            encoder.setHtmlSafe((options & JsonConstants.JSON_HEX_TAG) == JsonConstants.JSON_HEX_TAG);
+            encoder.setForceObject((options & JsonConstants.JSON_FORCE_OBJECT) == JsonConstants.JSON_FORCE_OBJECT);
+            encoder.setNumericCheck((options & JsonConstants.JSON_NUMERIC_CHECK) == JsonConstants.JSON_NUMERIC_CHECK);
+            encoder.setPartialOutputOnError(
+                    (options & JsonConstants.JSON_PARTIAL_OUTPUT_ON_ERROR) == JsonConstants.JSON_PARTIAL_OUTPUT_ON_ERROR
+            );
+            encoder.freeze();
+
+            JsonEncoder old = encoders.putIfAbsent(options, encoder);
+            if (old != null)
+                encoder = old;
+        }
+
+        return encoder;
+    }
+
     public static GsonBuilder createGsonBuilder(MemorySerializer memorySerializer) {
         GsonBuilder builder = new GsonBuilder();
         builder.registerTypeAdapter(Memory.class, memorySerializer);
@@ -67,11 +118,4 @@ public class JsonExtension extends Extension {
         builder.registerTypeAdapter(Memory.class, memoryDeserializer);
         return builder;
     }
-
-    static {
-        DEFAULT_GSON_BUILDER = createGsonBuilder(new MemorySerializer());
-        DEFAULT_GSON_BUILDER.disableHtmlEscaping();
-
-        DEFAULT_GSON_BUILDER_FOR_DECODE  = createGsonBuilderForDecode(new MemoryDeserializer());
-    }
 }
@@ -1,42 +1,30 @@
 package org.develnext.jphp.zend.ext.json;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSyntaxException;
-import org.develnext.jphp.json.gson.MemoryDeserializer;
-import org.develnext.jphp.json.gson.MemorySerializer;
+import org.develnext.jphp.json.codec.JsonDecodeException;
+import org.develnext.jphp.json.codec.JsonDecoder;
+import org.develnext.jphp.json.codec.JsonEncodeException;
 import php.runtime.Memory;
 import php.runtime.env.Environment;
 import php.runtime.ext.support.compile.FunctionsContainer;
 import php.runtime.memory.StringMemory;
 
-import static php.runtime.annotation.Runtime.Immutable;
-
 public class JsonFunctions extends FunctionsContainer {
 
     public static Memory json_decode(Environment env, String json, boolean assoc, int depth) {
-        MemoryDeserializer memoryDeserializer = new MemoryDeserializer();
-        memoryDeserializer.setEnv(env);
-        GsonBuilder gsonBuilder = JsonExtension.createGsonBuilderForDecode(memoryDeserializer);
-
-        memoryDeserializer.setAssoc(assoc);
-        memoryDeserializer.setMaxDepth(depth);
+        JsonDecoder decoder = new JsonDecoder();
+        decoder.setEnv(env);
+        decoder.setAssoc(assoc);
+        decoder.setMaxDepth(depth);
 
-        Gson gson = gsonBuilder.create();
         try {
             env.setUserValue(JsonFunctions.class.getName() + "#error", null);
-            Memory r = gson.fromJson(json, Memory.class);
-            if (r == null)
-                return Memory.NULL;
-            else
-                return r;
-        } catch (MemoryDeserializer.MaxDepthException e) {
+            return decoder.decode(json);
+        } catch (JsonDecodeException.MaxDepthException e) {
             env.setUserValue(JsonFunctions.class.getName() + "#error", JsonConstants.JSON_ERROR_DEPTH);
-        } catch (JsonSyntaxException e) {
-            env.setUserValue(JsonFunctions.class.getName() + "#error", JsonConstants.JSON_ERROR_SYNTAX);
-        } catch (JsonParseException e) {
+        } catch (JsonDecodeException.StateMismatchException e) {
             env.setUserValue(JsonFunctions.class.getName() + "#error", JsonConstants.JSON_ERROR_STATE_MISMATCH);
+        } catch (JsonDecodeException e) {
+            env.setUserValue(JsonFunctions.class.getName() + "#error", JsonConstants.JSON_ERROR_SYNTAX);
         }
 
         return Memory.NULL;
@@ -62,6 +50,7 @@ public class JsonFunctions extends FunctionsContainer {
             case JsonConstants.JSON_ERROR_SYNTAX: return new StringMemory("Syntax error, malformed JSON");
             case JsonConstants.JSON_ERROR_UTF8: return new StringMemory("Malformed UTF-8 characters, possibly incorrectly encoded");
             case JsonConstants.JSON_ERROR_CTRL_CHAR: return new StringMemory("Unexpected control character found");
+            case JsonConstants.JSON_ERROR_INF_OR_NAN: return new StringMemory("Inf and NaN cannot be JSON encoded");
             default:
                 return Memory.NULL;
         }
@@ -71,38 +60,24 @@ public class JsonFunctions extends FunctionsContainer {
         return json_decode(env, json, false);
     }
 
-    @Immutable
-    public static String json_encode(Memory memory, int options) {
-        GsonBuilder builder;
-        if (options != 0){
-            MemorySerializer serializer = new MemorySerializer();
-            builder = JsonExtension.createGsonBuilder(serializer);
-
-            if ((options & JsonConstants.JSON_PRETTY_PRINT) == JsonConstants.JSON_PRETTY_PRINT){
-                builder.setPrettyPrinting();
-            }
-
-            if ((options & JsonConstants.JSON_HEX_TAG) != JsonConstants.JSON_HEX_TAG){
-                builder.disableHtmlEscaping();
-            }
+    public static Memory json_encode(Environment env, Memory memory, int options) {
+        StringBuilder sb = new StringBuilder();
 
-            if ((options & JsonConstants.JSON_FORCE_OBJECT) == JsonConstants.JSON_FORCE_OBJECT){
-                serializer.setForceObject(true);
-            }
-
-            if ((options & JsonConstants.JSON_NUMERIC_CHECK) == JsonConstants.JSON_NUMERIC_CHECK){
-                serializer.setNumericCheck(true);
+        try {
+            if (JsonExtension.getEncoder(options).encode(memory, sb)) {
+                env.setUserValue(JsonFunctions.class.getName() + "#error", null);
+            } else {
+                env.setUserValue(JsonFunctions.class.getName() + "#error", JsonConstants.JSON_ERROR_INF_OR_NAN);
             }
-        } else {
-            builder = JsonExtension.DEFAULT_GSON_BUILDER;
+        } catch (JsonEncodeException.InfOrNanException e) {
+            env.setUserValue(JsonFunctions.class.getName() + "#error", JsonConstants.JSON_ERROR_INF_OR_NAN);
+            return Memory.FALSE;
         }
 
-        Gson gson = builder.create();
-        return gson.toJson(memory);
+        return new StringMemory(sb.toString());
     }
 
-    @Immutable
-    public static String json_encode(Memory memory) {
-        return json_encode(memory, 0);
+    public static Memory json_encode(Environment env, Memory memory) {
+        return json_encode(env, memory, 0);
     }
 }
@@ -5,4 +5,13 @@ import php.runtime.ext.support.compile.ConstantsContainer;
 public class ArrayConstants extends ConstantsContainer {
     public int CASE_LOWER = 0;
     public int CASE_UPPER = 1;
+
+    public final static int SORT_REGULAR = 0;
+    public final static int SORT_NUMERIC = 1;
+    public final static int SORT_STRING = 2;
+    public final static int SORT_DESC = 3;
+    public final static int SORT_ASC = 4;
+    public final static int SORT_LOCALE_STRING = 5;
+    public final static int SORT_NATURAL = 6;
+    public final static int SORT_FLAG_CASE = 8;
 }
@@ -12,7 +12,9 @@ import php.runtime.lang.ForeachIterator;
 import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.LongMemory;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class ArrayFunctions extends FunctionsContainer {
@@ -211,6 +213,186 @@ public class ArrayFunctions extends FunctionsContainer {
         }
     }
 
+    public static boolean sort(Environment env, TraceInfo trace, @Runtime.Reference Memory array, int flags) {
+        if (expectingReference(env, trace, array) && expecting(env, trace, 1, array, Memory.Type.ARRAY)) {
+            array.assign(new ArraySorter(array.toValue(ArrayMemory.class), false).sortValues(flags, false));
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public static boolean sort(Environment env, TraceInfo trace, @Runtime.Reference Memory array) {
+        return sort(env, trace, array, ArrayConstants.SORT_REGULAR);
+    }
+
+    public static boolean rsort(Environment env, TraceInfo trace, @Runtime.Reference Memory array, int flags) {
+        if (expectingReference(env, trace, array) && expecting(env, trace, 1, array, Memory.Type.ARRAY)) {
+            array.assign(new ArraySorter(array.toValue(ArrayMemory.class), false).sortValues(flags, true));
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public static boolean rsort(Environment env, TraceInfo trace, @Runtime.Reference Memory array) {
+        return rsort(env, trace, array, ArrayConstants.SORT_REGULAR);
+    }
+
+    protected static boolean _asort(Environment env, TraceInfo trace, Memory array, int flags,
+                                    boolean byKeys, boolean reverse) {
+        if (expectingReference(env, trace, array) && expecting(env, trace, 1, array, Memory.Type.ARRAY)) {
+            ArraySorter sorter = new ArraySorter(array.toValue(ArrayMemory.class), true);
+            int[] order = byKeys ? sorter.orderByKeys(flags, reverse) : sorter.order(flags, reverse);
+
+            array.assign(sorter.toArray(order));
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public static boolean asort(Environment env, TraceInfo trace, @Runtime.Reference Memory array, int flags) {
+        return _asort(env, trace, array, flags, false, false);
+    }
+
+    public static boolean asort(Environment env, TraceInfo trace, @Runtime.Reference Memory array) {
+        return _asort(env, trace, array, ArrayConstants.SORT_REGULAR, false, false);
+    }
+
+    public static boolean arsort(Environment env, TraceInfo trace, @Runtime.Reference Memory array, int flags) {
+        return _asort(env, trace, array, flags, false, true);
+    }
+
+    public static boolean arsort(Environment env, TraceInfo trace, @Runtime.Reference Memory array) {
+        return _asort(env, trace, array, ArrayConstants.SORT_REGULAR, false, true);
+    }
+
+    public static boolean ksort(Environment env, TraceInfo trace, @Runtime.Reference Memory array, int flags) {
+        return _asort(env, trace, array, flags, true, false);
+    }
+
+    public static boolean ksort(Environment env, TraceInfo trace, @Runtime.Reference Memory array) {
+        return _asort(env, trace, array, ArrayConstants.SORT_REGULAR, true, false);
+    }
+
+    public static boolean krsort(Environment env, TraceInfo trace, @Runtime.Reference Memory array, int flags) {
+        return _asort(env, trace, array, flags, true, true);
+    }
+
+    public static boolean krsort(Environment env, TraceInfo trace, @Runtime.Reference Memory array) {
+        return _asort(env, trace, array, ArrayConstants.SORT_REGULAR, true, true);
+    }
+
+    protected static boolean _usort(Environment env, TraceInfo trace, Memory array, Memory callback,
+                                    boolean keepKeys, boolean byKeys) {
+        if (expectingReference(env, trace, array) && expecting(env, trace, 1, array, Memory.Type.ARRAY)) {
+            Invoker invoker = expectingCallback(env, trace, 2, callback);
+            if (invoker == null)
+                return false;
+
+            ArraySorter sorter = new ArraySorter(array.toValue(ArrayMemory.class), keepKeys);
+            int[] order = sorter.order(invoker, byKeys);
+
+            array.assign(keepKeys ? sorter.toArray(order) : sorter.toList(order));
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public static boolean usort(Environment env, TraceInfo trace, @Runtime.Reference Memory array, Memory callback) {
+        return _usort(env, trace, array, callback, false, false);
+    }
+
+    public static boolean uasort(Environment env, TraceInfo trace, @Runtime.Reference Memory array, Memory callback) {
+        return _usort(env, trace, array, callback, true, false);
+    }
+
+    public static boolean uksort(Environment env, TraceInfo trace, @Runtime.Reference Memory array, Memory callback) {
+        return _usort(env, trace, array, callback, true, true);
+    }
+
+    public static boolean array_multisort(Environment env, TraceInfo trace, @Runtime.Reference Memory array,
+                                          @Runtime.Reference Memory... args) {
+        if (!expectingReference(env, trace, array) || !expecting(env, trace, 1, array, Memory.Type.ARRAY))
+            return false;
+
+        List<Memory> arrays = new ArrayList<Memory>();
+        List<Integer> orders = new ArrayList<Integer>();
+        List<Integer> flags = new ArrayList<Integer>();
+
+        arrays.add(array);
+        orders.add(ArrayConstants.SORT_ASC);
+        flags.add(ArrayConstants.SORT_REGULAR);
+
+        boolean hasOrder = false, hasFlags = false;
+        for (int i = 0; i < args.length; i++) {
+            Memory arg = args[i].toValue();
+
+            if (arg.isArray()) {
+                arrays.add(args[i]);
+                orders.add(ArrayConstants.SORT_ASC);
+                flags.add(ArrayConstants.SORT_REGULAR);
+                hasOrder = hasFlags = false;
+            } else if (arg.type == Memory.Type.INT) {
+                int value = arg.toInteger();
+                int last = arrays.size() - 1;
+
+                if (!hasOrder && (value == ArrayConstants.SORT_ASC || value == ArrayConstants.SORT_DESC)) {
+                    orders.set(last, value);
+                    hasOrder = true;
+                } else if (!hasFlags && value != ArrayConstants.SORT_ASC && value != ArrayConstants.SORT_DESC) {
+                    flags.set(last, value);
+                    hasFlags = true;
+                } else {
+                    env.warning(trace, "Argument #%s is expected to be an array or sorting flag that has not already been specified", i + 2);
+                    return false;
+                }
+            } else {
+                env.warning(trace, "Argument #%s is expected to be an array or a sort flag", i + 2);
+                return false;
+            }
+        }
+
+        int count = arrays.size();
+        int size = array.toValue(ArrayMemory.class).size();
+
+        final ArraySorter[] sorters = new ArraySorter[count];
+        final ArraySorter.IndexComparator[] comparators = new ArraySorter.IndexComparator[count];
+
+        for (int i = 0; i < count; i++) {
+            ArrayMemory value = arrays.get(i).toValue(ArrayMemory.class);
+            if (value.size() != size) {
+                env.warning(trace, "Array sizes are inconsistent");
+                return false;
+            }
+
+            sorters[i] = new ArraySorter(value, true);
+            comparators[i] = sorters[i].comparator(flags.get(i), orders.get(i) == ArrayConstants.SORT_DESC);
+        }
+
+        int[] order = sorters[0].sort(new ArraySorter.IndexComparator() {
+            @Override
+            public int compare(int a, int b) {
+                for (ArraySorter.IndexComparator comparator : comparators) {
+                    int result = comparator.compare(a, b);
+                    if (result != 0)
+                        return result;
+                }
+
+                return 0;
+            }
+        });
+
+        for (int i = 0; i < count; i++) {
+            if (arrays.get(i).isReference())
+                arrays.get(i).assign(sorters[i].toArrayWithStringKeys(order));
+        }
+
+        return true;
+    }
+
     public static Memory array_map(Environment env, TraceInfo trace, Memory callback, Memory _array, Memory... arrays)
             throws Throwable {
         Invoker invoker = expectingCallback(env, trace, 1, callback);
@@ -757,6 +939,318 @@ public class ArrayFunctions extends FunctionsContainer {
             return Memory.NULL;
     }
 
+    @Runtime.Immutable(ignoreRefs = true)
+    public static Memory array_search(Environment env, TraceInfo trace, Memory needle, @Runtime.Reference Memory array,
+                                      boolean strict) {
+        if (expecting(env, trace, 2, array, Memory.Type.ARRAY)) {
+            ForeachIterator iterator = array.getNewIterator(env, false, false);
+            while (iterator.next()) {
+                if (strict ? needle.identical(iterator.getValue()) : needle.equal(iterator.getValue()))
+                    return iterator.getMemoryKey();
+            }
+            return Memory.FALSE;
+        } else
+            return Memory.FALSE;
+    }
+
+    @Runtime.Immutable(ignoreRefs = true)
+    public static Memory array_search(Environment env, TraceInfo trace, Memory needle, @Runtime.Reference Memory array) {
+        return array_search(env, trace, needle, array, false);
+    }
+
+    /**
+     * @return a hashable key of the value for array_unique(), or null if the value can be compared only by ==
+     */
+    private static Object _uniqueKey(Memory value, int flags) {
+        value = value.toValue();
+
+        switch (flags & ~ArrayConstants.SORT_FLAG_CASE) {
+            case ArrayConstants.SORT_NUMERIC:
+                return _numberKey(value.toNumeric());
+            case ArrayConstants.SORT_REGULAR: {
+                Memory number = value.isString() ? ArraySorter.toNumeric(value.toString()) : value;
+
+                if (number == null)
+                    return value.toString();
+
+                if (number.isNumber())
+                    return _numberKey(number);
+
+                return null;
+            }
+            default:
+                return value.toString();
+        }
+    }
+
+    /**
+     * @return Long for integral numbers, so big integers are not merged by double rounding, otherwise Double
+     */
+    private static Object _numberKey(Memory number) {
+        if (number.getRealType() == Memory.Type.INT)
+            return number.toLong();
+
+        double value = number.toDouble();
+        if (value == Math.rint(value) && Math.abs(value) < 0x1p63)
+            return (long) value; // -0.0 and 1.0 are the same keys as 0 and 1
+
+        return value;
+    }
+
+    public static Memory array_unique(Environment env, TraceInfo trace, @Runtime.Reference Memory input, int flags) {
+        if (!expecting(env, trace, 1, input, Memory.Type.ARRAY))
+            return Memory.NULL;
+
+        ArrayMemory array = input.toValue(ArrayMemory.class);
+        ArrayMemory result = new ArrayMemory(!array.isList(), array.size());
+
+        Set<Object> used = new HashSet<Object>(array.size() < 12 ? 16 : (int) (array.size() / 0.75f) + 1);
+        List<Memory> others = null;
+
+        ForeachIterator iterator = array.foreachIterator(false, false);
+        loop:
+        while (iterator.next()) {
+            Memory value = iterator.getValue();
+            Object key = _uniqueKey(value, flags);
+
+            if (key == null) {
+                if (others == null)
+                    others = new ArrayList<Memory>();
+
+                for (Memory other : others) {
+                    if (other.equal(value))
+                        continue loop;
+                }
+
+                others.add(value);
+            } else if (!used.add(key)) {
+                continue;
+            }
+
+            result.put(iterator.getKey(), value.toImmutable());
+        }
+
+        return result.toConstant();
+    }
+
+    public static Memory array_unique(Environment env, TraceInfo trace, @Runtime.Reference Memory input) {
+        return array_unique(env, trace, input, ArrayConstants.SORT_STRING);
+    }
+
+    /**
+     * @return string values of the array, as they are compared by array_diff() and array_intersect()
+     */
+    private static Set<String> _valueSet(ArrayMemory array) {
+        Set<String> result = new HashSet<String>(array.size() < 12 ? 16 : (int) (array.size() / 0.75f) + 1);
+
+        ForeachIterator iterator = array.foreachIterator(false, false);
+        while (iterator.next()) {
+            result.add(iterator.getValue().toString());
+        }
+
+        return result;
+    }
+
+    private static boolean _hasKey(ArrayMemory array, Object key) {
+        // lists contain only int keys
+        return !(key instanceof String && array.isList()) && array.containsKey(key);
+    }
+
+    private static ArrayMemory[] _expectingArrays(Environment env, TraceInfo trace, Memory array, Memory... arrays) {
+        if (!expecting(env, trace, 1, array, Memory.Type.ARRAY))
+            return null;
+
+        ArrayMemory[] result = new ArrayMemory[arrays.length];
+        for (int i = 0; i < arrays.length; i++) {
+            if (!expecting(env, trace, i + 2, arrays[i], Memory.Type.ARRAY))
+                return null;
+
+            result[i] = arrays[i].toValue(ArrayMemory.class);
+        }
+
+        return result;
+    }
+
+    private static Memory _array_diff(Environment env, TraceInfo trace, boolean intersect, boolean byKeys,
+                                      Memory array, Memory... arrays) {
+        ArrayMemory[] others = _expectingArrays(env, trace, array, arrays);
+        if (others == null)
+            return Memory.NULL;
+
+        List<Set<String>> sets = null;
+        if (!byKeys) {
+            sets = new ArrayList<Set<String>>(others.length);
+            for (ArrayMemory other : others) {
+                sets.add(_valueSet(other));
+            }
+        }
+
+        ArrayMemory source = array.toValue(ArrayMemory.class);
+        ArrayMemory result = new ArrayMemory();
+
+        ForeachIterator iterator = source.foreachIterator(false, false);
+        while (iterator.next()) {
+            Memory value = iterator.getValue();
+            String string = byKeys ? null : value.toString();
+
+            boolean matched = intersect;
+            for (int i = 0; i < others.length; i++) {
+                boolean contains = byKeys
+                        ? _hasKey(others[i], ArrayMemory.toKey(iterator.getMemoryKey()))
+                        : sets.get(i).contains(string);
+
+                if (intersect ? !contains : contains) {
+                    matched = !intersect;
+                    break;
+                }
+            }
+
+            if (matched == intersect)
+                result.put(iterator.getKey(), value.toImmutable());
+        }
+
+        return result.toConstant();
+    }
+
+    public static Memory array_diff(Environment env, TraceInfo trace, Memory array, Memory... arrays) {
+        return _array_diff(env, trace, false, false, array, arrays);
+    }
+
+    public static Memory array_diff_key(Environment env, TraceInfo trace, Memory array, Memory... arrays) {
+        return _array_diff(env, trace, false, true, array, arrays);
+    }
+
+    public static Memory array_intersect(Environment env, TraceInfo trace, Memory array, Memory... arrays) {
+        return _array_diff(env, trace, true, false, array, arrays);
+    }
+
+    public static Memory array_intersect_key(Environment env, TraceInfo trace, Memory array, Memory... arrays) {
+        return _array_diff(env, trace, true, true, array, arrays);
+    }
+
+    /**
+     * @return [from, to) positions of elements for array_slice() and array_splice()
+     */
+    private static int[] _sliceBounds(int size, long offset, Memory length) {
+        long from = offset < 0 ? Math.max(0, size + offset) : Math.min(offset, size);
+        long to;
+
+        if (length.isNull()) {
+            to = size;
+        } else {
+            long count = length.toLong();
+            to = count < 0 ? size + count : from + count;
+        }
+
+        to = Math.max(from, Math.min(to, size));
+        return new int[]{(int) from, (int) to};
+    }
+
+    @Runtime.Immutable(ignoreRefs = true)
+    public static Memory array_slice(Environment env, TraceInfo trace, @Runtime.Reference Memory input, long offset,
+                                     Memory length, boolean preserveKeys) {
+        if (!expecting(env, trace, 1, input, Memory.Type.ARRAY))
+            return Memory.NULL;
+
+        ArrayMemory array = input.toValue(ArrayMemory.class);
+        int[] bounds = _sliceBounds(array.size(), offset, length);
+
+        // the whole list is shared until it is changed (copy-on-write)
+        if (bounds[0] == 0 && bounds[1] == array.size() && (array.isList() || preserveKeys))
+            return array.toImmutable();
+
+        ArrayMemory result = new ArrayMemory(preserveKeys && !array.isList(), bounds[1] - bounds[0]);
+
+        ForeachIterator iterator = array.foreachIterator(false, false);
+        int i = 0;
+        while (i < bounds[1] && iterator.next()) {
+            if (i++ < bounds[0])
+                continue;
+
+            Memory value = iterator.getValue().toImmutable();
+            Object key = iterator.getKey();
+
+            if (preserveKeys || key instanceof String)
+                result.put(key, value);
+            else
+                result.add(value);
+        }
+
+        return result.toConstant();
+    }
+
+    @Runtime.Immutable(ignoreRefs = true)
+    public static Memory array_slice(Environment env, TraceInfo trace, @Runtime.Reference Memory input, long offset,
+                                     Memory length) {
+        return array_slice(env, trace, input, offset, length, false);
+    }
+
+    @Runtime.Immutable(ignoreRefs = true)
+    public static Memory array_slice(Environment env, TraceInfo trace, @Runtime.Reference Memory input, long offset) {
+        return array_slice(env, trace, input, offset, Memory.NULL, false);
+    }
+
+    public static Memory array_splice(Environment env, TraceInfo trace, @Runtime.Reference Memory input, long offset,
+                                      Memory length, Memory replacement) {
+        if (!expectingReference(env, trace, input) || !expecting(env, trace, 1, input, Memory.Type.ARRAY))
+            return Memory.NULL;
+
+        ArrayMemory array = input.toValue(ArrayMemory.class);
+        int[] bounds = _sliceBounds(array.size(), offset, length);
+
+        Memory[] inserted;
+        replacement = replacement.toValue();
+        if (replacement.isArray())
+            inserted = replacement.toValue(ArrayMemory.class).values(true);
+        else if (replacement.isNull())
+            inserted = new Memory[0];
+        else
+            inserted = new Memory[]{replacement.toImmutable()};
+
+        ArrayMemory removed = new ArrayMemory(false, bounds[1] - bounds[0]);
+        ArrayMemory result = new ArrayMemory(false, array.size() - (bounds[1] - bounds[0]) + inserted.length);
+
+        ForeachIterator iterator = array.foreachIterator(false, false);
+        int i = 0;
+        while (iterator.next()) {
+            if (i == bounds[0]) {
+                for (Memory value : inserted) {
+                    result.add(value);
+                }
+            }
+
+            Memory value = iterator.getValue();
+            Object key = iterator.getKey();
+            ArrayMemory target = i >= bounds[0] && i < bounds[1] ? removed : result;
+
+            value = value.isReference() ? value : value.toImmutable();
+            if (key instanceof String)
+                target.put(key, value);
+            else
+                target.add(value);
+
+            i++;
+        }
+
+        if (bounds[0] == i) {
+            for (Memory value : inserted) {
+                result.add(value);
+            }
+        }
+
+        input.assign(result);
+        return removed.toConstant();
+    }
+
+    public static Memory array_splice(Environment env, TraceInfo trace, @Runtime.Reference Memory input, long offset,
+                                      Memory length) {
+        return array_splice(env, trace, input, offset, length, Memory.NULL);
+    }
+
+    public static Memory array_splice(Environment env, TraceInfo trace, @Runtime.Reference Memory input, long offset) {
+        return array_splice(env, trace, input, offset, Memory.NULL, Memory.NULL);
+    }
+
     private static Memory _range_double(Environment env, TraceInfo trace, double low, double high, double step) {
         ArrayMemory result = new ArrayMemory();
         double value;
@@ -0,0 +1,468 @@
+package org.develnext.jphp.zend.ext.standard;
+
+import php.runtime.Memory;
+import php.runtime.invoke.Invoker;
+import php.runtime.lang.ForeachIterator;
+import php.runtime.memory.ArrayMemory;
+import php.runtime.memory.DoubleMemory;
+import php.runtime.memory.LongMemory;
+import php.runtime.memory.StringMemory;
+
+import java.util.Arrays;
+
+import static org.develnext.jphp.zend.ext.standard.ArrayConstants.*;
+
+/**
+ * Sorting of arrays for sort(), usort(), ksort(), array_multisort() etc.
+ *
+ * Elements are sorted by a stable merge sort of their indexes, so keys are kept for equal elements
+ * and inconsistent user comparators do not break sorting. Lists of ints or floats are sorted by primitive keys
+ * and strings are classified as numeric or not only once per element.
+ */
+public class ArraySorter {
+    protected final int size;
+    protected final Memory[] keys;
+    protected final Memory[] values;
+
+    public ArraySorter(ArrayMemory array, boolean withKeys) {
+        size = array.size();
+        keys = withKeys ? new Memory[size] : null;
+        values = new Memory[size];
+
+        ForeachIterator iterator = array.foreachIterator(false, false);
+        int i = 0;
+        while (iterator.next()) {
+            if (withKeys)
+                keys[i] = iterator.getMemoryKey();
+
+            Memory value = iterator.getValue();
+            values[i++] = value.isReference() ? value : value.toImmutable();
+        }
+    }
+
+    /**
+     * @return a list of values in the order
+     */
+    public ArrayMemory toList(int[] order) {
+        ArrayMemory result = new ArrayMemory(false, size);
+        for (int index : order) {
+            result.add(values[index]);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return an array with the same keys in the order
+     */
+    public ArrayMemory toArray(int[] order) {
+        ArrayMemory result = new ArrayMemory(true, size);
+        for (int index : order) {
+            result.put(ArrayMemory.toKey(keys[index]), values[index]);
+        }
+
+        return result;
+    }
+
+    /**
+     * As array_multisort(), string keys are kept and int keys are renumbered.
+     */
+    public ArrayMemory toArrayWithStringKeys(int[] order) {
+        ArrayMemory result = new ArrayMemory(false, size);
+        for (int index : order) {
+            Memory key = keys[index];
+
+            if (key.isString())
+                result.put(key.toString(), values[index]);
+            else
+                result.add(values[index]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Sorts values without keys, lists of ints and floats are sorted as primitives.
+     */
+    public ArrayMemory sortValues(int flags, boolean reverse) {
+        Memory.Type type = commonType(values, flags);
+
+        if (type == Memory.Type.INT) {
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = values[i].toLong();
+            }
+
+            Arrays.sort(sorted);
+
+            ArrayMemory result = new ArrayMemory(false, size);
+            for (int i = 0; i < size; i++) {
+                result.add(LongMemory.valueOf(sorted[reverse ? size - i - 1 : i]));
+            }
+
+            return result;
+        }
+
+        return toList(order(values, flags, reverse));
+    }
+
+    public int[] order(int flags, boolean reverse) {
+        return order(values, flags, reverse);
+    }
+
+    public int[] orderByKeys(int flags, boolean reverse) {
+        return order(keys, flags, reverse);
+    }
+
+    /**
+     * @param byKeys the invoker is called with keys instead of values
+     */
+    public int[] order(final Invoker invoker, boolean byKeys) {
+        final Memory[] items = byKeys ? keys : values;
+        final Memory[] args = new Memory[2];
+
+        return sort(new IndexComparator() {
+            @Override
+            public int compare(int a, int b) {
+                args[0] = items[a];
+                args[1] = items[b];
+
+                long result = invoker.callNoThrow(args).toLong();
+                return result < 0 ? -1 : (result > 0 ? 1 : 0);
+            }
+        });
+    }
+
+    /**
+     * @return comparator of element indexes by values
+     */
+    public IndexComparator comparator(int flags, boolean reverse) {
+        return reverse(comparator(values, flags), reverse);
+    }
+
+    protected int[] order(Memory[] items, int flags, boolean reverse) {
+        return sort(reverse(comparator(items, flags), reverse));
+    }
+
+    public int[] sort(IndexComparator comparator) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+
+        sort(order, new int[size], 0, size, comparator);
+        return order;
+    }
+
+    protected static IndexComparator reverse(final IndexComparator comparator, boolean reverse) {
+        if (!reverse)
+            return comparator;
+
+        return new IndexComparator() {
+            @Override
+            public int compare(int a, int b) {
+                return comparator.compare(b, a);
+            }
+        };
+    }
+
+    /**
+     * @return INT or DOUBLE if all values can be compared as primitives, otherwise null
+     */
+    protected static Memory.Type commonType(Memory[] items, int flags) {
+        int type = flags & ~SORT_FLAG_CASE;
+        if (type != SORT_REGULAR && type != SORT_NUMERIC)
+            return null;
+
+        boolean allLong = true;
+        for (Memory item : items) {
+            switch (item.type) {
+                case INT:
+                    break;
+                case DOUBLE:
+                    allLong = false;
+                    break;
+                default:
+                    return type == SORT_NUMERIC ? Memory.Type.DOUBLE : null;
+            }
+        }
+
+        return allLong ? Memory.Type.INT : Memory.Type.DOUBLE;
+    }
+
+    /**
+     * Returns a comparator of indexes, values are converted to primitive keys or classified only once.
+     */
+    protected static IndexComparator comparator(final Memory[] items, int flags) {
+        Memory.Type common = commonType(items, flags);
+
+        if (common == Memory.Type.INT) {
+            final long[] longs = new long[items.length];
+            for (int i = 0; i < items.length; i++) {
+                longs[i] = items[i].toLong();
+            }
+
+            return new IndexComparator() {
+                @Override
+                public int compare(int a, int b) {
+                    long x = longs[a], y = longs[b];
+                    return x < y ? -1 : (x == y ? 0 : 1);
+                }
+            };
+        }
+
+        if (common == Memory.Type.DOUBLE) {
+            final double[] doubles = new double[items.length];
+            for (int i = 0; i < items.length; i++) {
+                doubles[i] = items[i].isString() ? items[i].toNumeric().toDouble() : items[i].toDouble();
+            }
+
+            return new IndexComparator() {
+                @Override
+                public int compare(int a, int b) {
+                    double x = doubles[a], y = doubles[b];
+                    return x < y ? -1 : (x == y ? 0 : 1);
+                }
+            };
+        }
+
+        final boolean ignoreCase = (flags & SORT_FLAG_CASE) == SORT_FLAG_CASE;
+
+        switch (flags & ~SORT_FLAG_CASE) {
+            case SORT_STRING:
+            case SORT_LOCALE_STRING:
+            case SORT_NATURAL: {
+                final String[] strings = new String[items.length];
+                for (int i = 0; i < items.length; i++) {
+                    strings[i] = items[i].toString();
+                }
+
+                if ((flags & ~SORT_FLAG_CASE) == SORT_NATURAL) {
+                    return new IndexComparator() {
+                        @Override
+                        public int compare(int a, int b) {
+                            return naturalCompare(strings[a], strings[b], ignoreCase);
+                        }
+                    };
+                }
+
+                return new IndexComparator() {
+                    @Override
+                    public int compare(int a, int b) {
+                        return ignoreCase
+                                ? strings[a].compareToIgnoreCase(strings[b])
+                                : strings[a].compareTo(strings[b]);
+                    }
+                };
+            }
+            default: {
+                final Memory[] numbers = new Memory[items.length];
+                final Memory[] plain = new Memory[items.length];
+
+                for (int i = 0; i < items.length; i++) {
+                    plain[i] = items[i].toValue();
+
+                    if (plain[i].isString())
+                        numbers[i] = toNumeric(plain[i].toString());
+                }
+
+                return new IndexComparator() {
+                    @Override
+                    public int compare(int a, int b) {
+                        Memory x = plain[a], y = plain[b];
+
+                        if (x.isString() && y.isString()) {
+                            if (numbers[a] != null && numbers[b] != null)
+                                return numbers[a].compareTo(numbers[b]);
+
+                            int result = x.toString().compareTo(y.toString());
+                            return result < 0 ? -1 : (result > 0 ? 1 : 0);
+                        }
+
+                        return x.compareTo(y);
+                    }
+                };
+            }
+        }
+    }
+
+    /**
+     * @return number if the whole string is numeric (with leading and trailing whitespaces), otherwise null
+     */
+    protected static Memory toNumeric(String value) {
+        int length = value.length();
+        int start = 0, end = length;
+
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+
+        int i = start;
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+            i++;
+
+        int digits = 0;
+        boolean real = false;
+
+        while (i < end && Character.isDigit(value.charAt(i))) {
+            i++;
+            digits++;
+        }
+
+        if (i < end && value.charAt(i) == '.') {
+            real = true;
+            i++;
+
+            while (i < end && Character.isDigit(value.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+
+        if (digits == 0)
+            return null;
+
+        if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            real = true;
+            i++;
+
+            if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+                i++;
+
+            int exponent = i;
+            while (i < end && Character.isDigit(value.charAt(i))) {
+                i++;
+            }
+
+            if (exponent == i)
+                return null;
+        }
+
+        if (i != end)
+            return null;
+
+        String number = value.substring(start, end);
+        if (!real) {
+            Memory result = StringMemory.toLong(number.charAt(0) == '+' ? number.substring(1) : number);
+            if (result != null)
+                return result;
+        }
+
+        return new DoubleMemory(Double.parseDouble(number));
+    }
+
+    /**
+     * Natural order comparison as strnatcmp(), numbers in strings are compared by their values.
+     */
+    public static int naturalCompare(String a, String b, boolean ignoreCase) {
+        int i = 0, j = 0;
+        int lengthA = a.length(), lengthB = b.length();
+
+        while (i < lengthA && j < lengthB) {
+            char x = a.charAt(i), y = b.charAt(j);
+
+            if (Character.isDigit(x) && Character.isDigit(y)) {
+                int startA = i, startB = j;
+
+                while (startA < lengthA - 1 && a.charAt(startA) == '0' && Character.isDigit(a.charAt(startA + 1))) {
+                    startA++;
+                }
+
+                while (startB < lengthB - 1 && b.charAt(startB) == '0' && Character.isDigit(b.charAt(startB + 1))) {
+                    startB++;
+                }
+
+                i = startA;
+                j = startB;
+
+                while (i < lengthA && Character.isDigit(a.charAt(i))) {
+                    i++;
+                }
+
+                while (j < lengthB && Character.isDigit(b.charAt(j))) {
+                    j++;
+                }
+
+                int digitsA = i - startA, digitsB = j - startB;
+                if (digitsA != digitsB)
+                    return digitsA < digitsB ? -1 : 1;
+
+                for (int k = 0; k < digitsA; k++) {
+                    char dx = a.charAt(startA + k), dy = b.charAt(startB + k);
+
+                    if (dx != dy)
+                        return dx < dy ? -1 : 1;
+                }
+
+                continue;
+            }
+
+            if (ignoreCase) {
+                x = Character.toLowerCase(x);
+                y = Character.toLowerCase(y);
+            }
+
+            if (x != y)
+                return x < y ? -1 : 1;
+
+            i++;
+            j++;
+        }
+
+        if (i < lengthA)
+            return 1;
+
+        if (j < lengthB)
+            return -1;
+
+        return 0;
+    }
+
+    protected static void sort(int[] order, int[] tmp, int from, int to, IndexComparator comparator) {
+        if (to - from < 12) {
+            for (int i = from + 1; i < to; i++) {
+                int value = order[i];
+                int j = i - 1;
+
+                while (j >= from && comparator.compare(order[j], value) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+
+                order[j + 1] = value;
+            }
+
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sort(order, tmp, from, middle, comparator);
+        sort(order, tmp, middle, to, comparator);
+
+        if (comparator.compare(order[middle - 1], order[middle]) <= 0)
+            return;
+
+        System.arraycopy(order, from, tmp, from, to - from);
+
+        int i = from, j = middle, k = from;
+        while (i < middle && j < to) {
+            order[k++] = comparator.compare(tmp[j], tmp[i]) < 0 ? tmp[j++] : tmp[i++];
+        }
+
+        while (i < middle) {
+            order[k++] = tmp[i++];
+        }
+
+        while (j < to) {
+            order[k++] = tmp[j++];
+        }
+    }
+
+    public interface IndexComparator {
+        int compare(int a, int b);
+    }
+}
@@ -4,14 +4,21 @@ import java.util.TimeZone;
 import java.util.Date;
 
 import php.runtime.Memory;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.exceptions.support.ErrorType;
+import php.runtime.ext.core.classes.time.WrapTimeZone;
 import php.runtime.ext.support.compile.FunctionsContainer;
 import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.DoubleMemory;
+import php.runtime.memory.LongMemory;
 import php.runtime.memory.StringMemory;
 
 public class DateFunctions extends FunctionsContainer {
     public static final int MSEC_IN_MIN = 60 * 1000;
 
+    protected static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
     public static Memory microtime(boolean getAsFloat){
         double now = System.currentTimeMillis() / 1000.0;
         int s = (int)now;
@@ -53,4 +60,108 @@ public class DateFunctions extends FunctionsContainer {
     public static Memory gettimeofday(){
         return gettimeofday(false);
     }
+
+    public static long time() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    protected static TimeZone getTimeZone(Environment env) {
+        return WrapTimeZone.getTimeZone(env, Memory.NULL);
+    }
+
+    protected static String date(Environment env, String format, long timestamp, TimeZone zone) {
+        return PhpDateFormat.valueOf(env.getScope().getFormatCache(), format).format(timestamp * 1000, zone);
+    }
+
+    public static String date(Environment env, String format) {
+        return date(env, format, time());
+    }
+
+    public static String date(Environment env, String format, long timestamp) {
+        return date(env, format, timestamp, getTimeZone(env));
+    }
+
+    public static String gmdate(Environment env, String format) {
+        return gmdate(env, format, time());
+    }
+
+    public static String gmdate(Environment env, String format, long timestamp) {
+        return date(env, format, timestamp, UTC);
+    }
+
+    /**
+     * @param args hour, minute, second, month, day, year, missing values are taken from the current time
+     */
+    protected static long mktime(Memory[] args, TimeZone zone) {
+        PhpDateFormat.Fields now = new PhpDateFormat.Fields(System.currentTimeMillis(), zone);
+        int count = args == null ? 0 : args.length;
+
+        long hour = count > 0 ? args[0].toLong() : now.hour;
+        long minute = count > 1 ? args[1].toLong() : now.minute;
+        long second = count > 2 ? args[2].toLong() : now.second;
+        long month = count > 3 ? args[3].toLong() : now.month;
+        long day = count > 4 ? args[4].toLong() : now.day;
+        long year = count > 5 ? args[5].toLong() : now.year;
+
+        if (year >= 0 && year < 70)
+            year += 2000;
+        else if (year >= 70 && year <= 100)
+            year += 1900;
+
+        long local = PhpDateFormat.toEpochDay(year, month, day) * PhpDateFormat.MILLIS_IN_DAY
+                + (hour * 3600 + minute * 60 + second) * 1000;
+
+        return PhpDateFormat.floorDiv(PhpDateFormat.toMillis(local, zone), 1000);
+    }
+
+    public static long mktime(Environment env, Memory... args) {
+        return mktime(args, getTimeZone(env));
+    }
+
+    public static long gmmktime(Memory... args) {
+        return mktime(args, UTC);
+    }
+
+    public static boolean checkdate(long month, long day, long year) {
+        return year >= 1 && year <= 32767
+                && month >= 1 && month <= 12
+                && day >= 1 && day <= PhpDateFormat.daysInMonth(year, (int) month);
+    }
+
+    public static Memory strtotime(Environment env, String time) {
+        return strtotime(env, time, time());
+    }
+
+    public static Memory strtotime(Environment env, String time, long now) {
+        Long result = StrToTime.parse(time, now * 1000, getTimeZone(env));
+
+        return result == null ? Memory.FALSE : LongMemory.valueOf(result);
+    }
+
+    public static String date_default_timezone_get(Environment env) {
+        return getTimeZone(env).getID();
+    }
+
+    public static boolean date_default_timezone_set(Environment env, TraceInfo trace, String timezoneId) {
+        TimeZone zone = TimeZone.getTimeZone(timezoneId);
+
+        if (!zone.getID().equals(timezoneId)) {
+            zone = null;
+
+            for (String id : TimeZone.getAvailableIDs()) {
+                if (id.equalsIgnoreCase(timezoneId)) {
+                    zone = TimeZone.getTimeZone(id);
+                    break;
+                }
+            }
+
+            if (zone == null) {
+                env.error(trace, ErrorType.E_NOTICE, "date_default_timezone_set(): Timezone ID '%s' is invalid", timezoneId);
+                return false;
+            }
+        }
+
+        WrapTimeZone.setDefaultTimeZone(env, zone);
+        return true;
+    }
 }
@@ -8,6 +8,11 @@ public class FileConstants extends ConstantsContainer {
     public final static int LOCK_EX = 2;
     public final static int FILE_IGNORE_NEW_LINES = 2;
     public final static int FILE_SKIP_EMPTY_LINES = 4;
+    public final static int FILE_LAZY = 1024;
+
+    public final static int SEEK_SET = 0;
+    public final static int SEEK_CUR = 1;
+    public final static int SEEK_END = 2;
 
     public final static int PATHINFO_DIRNAME = 1;
     public final static int PATHINFO_BASENAME = 2;
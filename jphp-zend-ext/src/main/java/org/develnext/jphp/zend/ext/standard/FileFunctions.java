@@ -4,15 +4,20 @@ import php.runtime.Memory;
 import php.runtime.common.Constants;
 import php.runtime.env.Environment;
 import php.runtime.env.TraceInfo;
+import php.runtime.ext.core.classes.stream.FileStream;
 import php.runtime.ext.core.classes.stream.Stream;
 import php.runtime.ext.core.classes.stream.WrapIOException;
+import php.runtime.ext.core.classes.util.WrapFlow;
 import php.runtime.ext.support.compile.FunctionsContainer;
 import php.runtime.invoke.ObjectInvokeHelper;
+import php.runtime.lang.ForeachIterator;
 import php.runtime.memory.ArrayMemory;
 import php.runtime.memory.BinaryMemory;
 import php.runtime.memory.LongMemory;
+import php.runtime.memory.ObjectMemory;
 import php.runtime.memory.StringMemory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -23,6 +28,7 @@ import static php.runtime.annotation.Runtime.Immutable;
 import static org.develnext.jphp.zend.ext.standard.FileConstants.*;
 
 public class FileFunctions extends FunctionsContainer {
+    private final static int BUFFER_SIZE = 8192;
 
     @Immutable
     public static String basename(String path, String suffix){
@@ -133,6 +139,10 @@ public class FileFunctions extends FunctionsContainer {
         return file(env, trace, path, 0, Memory.NULL);
     }
 
+    /**
+     * Lines are read by a buffered stream, with FILE_LAZY the result is a lazy Flow of lines
+     * that closes the stream at the end.
+     */
     public static Memory file(Environment env, TraceInfo trace, String path, int flags, Memory context) throws Throwable {
         Stream stream = null;
         try {
@@ -142,39 +152,37 @@ public class FileFunctions extends FunctionsContainer {
                 return Memory.FALSE;
             }
             stream.setContext(env, context);
-            Memory value = env.invokeMethod(trace, stream, "readFully");
 
-            byte[] bytes = value.getBinaryBytes();
+            if (stream instanceof FileStream)
+                ((FileStream) stream).setBufferSize(BUFFER_SIZE);
+
+            boolean ignoreNewLines = (flags & FILE_IGNORE_NEW_LINES) == FILE_IGNORE_NEW_LINES;
+            boolean skipEmptyLines = (flags & FILE_SKIP_EMPTY_LINES) == FILE_SKIP_EMPTY_LINES;
+
+            if ((flags & FILE_LAZY) == FILE_LAZY) {
+                Memory result = new ObjectMemory(WrapFlow.lines(env, stream, !ignoreNewLines, skipEmptyLines, true));
+                stream = null;
+                return result;
+            }
+
             ArrayMemory result = new ArrayMemory();
 
-            int prev = 0;
-            boolean ignoreNewLines = (flags & FileConstants.FILE_IGNORE_NEW_LINES) == FileConstants.FILE_IGNORE_NEW_LINES;
-            int i;
-            for(i = 0; i < bytes.length; i++){
-                byte ch = bytes[i];
-                if (ch == '\n') {
-                    if (prev == i && (flags & FileConstants.FILE_SKIP_EMPTY_LINES) == FileConstants.FILE_SKIP_EMPTY_LINES){
-                        prev += 1;
-                        continue;
-                    }
+            byte[] line;
+            while ((line = stream.readLineBytes(env, -1)) != null) {
+                int len = ignoreNewLines ? _lineLength(line) : line.length;
 
-                    byte[] chunk = ignoreNewLines ? Arrays.copyOfRange(bytes, prev, i - 1) : Arrays.copyOfRange(bytes, prev, i);
-                    prev = i + 1;
+                if (len == 0 && skipEmptyLines)
+                    continue;
 
-                    result.add(new BinaryMemory(chunk));
-                }
-            }
-            if (prev != i){
-                byte[] chunk = Arrays.copyOfRange(bytes, prev, i);
-                result.add(new BinaryMemory(chunk));
+                result.add(new BinaryMemory(len == line.length ? line : Arrays.copyOf(line, len)));
             }
 
             return result.toConstant();
         } catch (WrapIOException e){
-            if (stream == null && (flags & FileConstants.FILE_USE_INCLUDE_PATH) == FileConstants.FILE_USE_INCLUDE_PATH){
+            if (stream == null && (flags & FILE_USE_INCLUDE_PATH) == FILE_USE_INCLUDE_PATH){
                 path = env.findInIncludePaths(path);
                 if (path != null)
-                    return file(env, trace, path, flags ^ FileConstants.FILE_USE_INCLUDE_PATH, context);
+                    return file(env, trace, path, flags ^ FILE_USE_INCLUDE_PATH, context);
             }
             env.warning(trace, "file(): " + e.getMessage());
             return Memory.FALSE;
@@ -184,6 +192,523 @@ public class FileFunctions extends FunctionsContainer {
         }
     }
 
+    /**
+     * @return length of the line without the line break
+     */
+    private static int _lineLength(byte[] line) {
+        int len = line.length;
+        if (len > 0 && line[len - 1] == '\n') {
+            len--;
+
+            if (len > 0 && line[len - 1] == '\r')
+                len--;
+        }
+
+        return len;
+    }
+
+    private static Stream _stream(Environment env, TraceInfo trace, Memory handle, String function) {
+        if (handle.instanceOf(Stream.class))
+            return handle.toObject(Stream.class);
+
+        env.warning(trace, "%s(): supplied argument is not a valid stream resource", function);
+        return null;
+    }
+
+    public static Memory fopen(Environment env, TraceInfo trace, String path, String mode, boolean useIncludePath,
+                               Memory context) throws Throwable {
+        if (mode.startsWith("r") && !path.contains("://") && !new File(path).exists()) {
+            if (useIncludePath) {
+                String found = env.findInIncludePaths(path);
+                if (found != null)
+                    return fopen(env, trace, found, mode, false, context);
+            }
+
+            env.warning(trace, "fopen(%s): failed to open stream: No such file or directory", path);
+            return Memory.FALSE;
+        }
+
+        Stream stream;
+        try {
+            stream = Stream.create(env, path, mode.replace("b", "").replace("t", ""));
+        } catch (WrapIOException e) {
+            if (useIncludePath) {
+                String found = env.findInIncludePaths(path);
+                if (found != null)
+                    return fopen(env, trace, found, mode, false, context);
+            }
+
+            env.warning(trace, "fopen(%s): failed to open stream: %s", path, e.getMessage(env));
+            return Memory.FALSE;
+        } catch (IOException e) {
+            env.warning(trace, "fopen(%s): failed to open stream: %s", path, e.getMessage());
+            return Memory.FALSE;
+        }
+
+        stream.setContext(env, context);
+
+        if (stream instanceof FileStream)
+            ((FileStream) stream).setBufferSize(BUFFER_SIZE);
+
+        return new ObjectMemory(stream);
+    }
+
+    public static Memory fopen(Environment env, TraceInfo trace, String path, String mode, boolean useIncludePath)
+            throws Throwable {
+        return fopen(env, trace, path, mode, useIncludePath, Memory.NULL);
+    }
+
+    public static Memory fopen(Environment env, TraceInfo trace, String path, String mode) throws Throwable {
+        return fopen(env, trace, path, mode, false, Memory.NULL);
+    }
+
+    public static boolean fclose(Environment env, TraceInfo trace, Memory handle) {
+        Stream stream = _stream(env, trace, handle, "fclose");
+        if (stream == null)
+            return false;
+
+        try {
+            stream.close(env);
+            return true;
+        } catch (IOException e) {
+            env.warning(trace, "fclose(): %s", e.getMessage());
+            return false;
+        }
+    }
+
+    public static boolean feof(Environment env, TraceInfo trace, Memory handle) {
+        Stream stream = _stream(env, trace, handle, "feof");
+        return stream == null || stream.eof(env).toBoolean();
+    }
+
+    public static Memory fgets(Environment env, TraceInfo trace, Memory handle, int length) {
+        Stream stream = _stream(env, trace, handle, "fgets");
+        if (stream == null)
+            return Memory.FALSE;
+
+        if (length <= 0) {
+            env.warning(trace, "fgets(): Length parameter must be greater than 0");
+            return Memory.FALSE;
+        }
+
+        return _fgets(env, trace, stream, length - 1);
+    }
+
+    public static Memory fgets(Environment env, TraceInfo trace, Memory handle) {
+        Stream stream = _stream(env, trace, handle, "fgets");
+        if (stream == null)
+            return Memory.FALSE;
+
+        return _fgets(env, trace, stream, -1);
+    }
+
+    private static Memory _fgets(Environment env, TraceInfo trace, Stream stream, int limit) {
+        try {
+            byte[] line = stream.readLineBytes(env, limit);
+            return line == null ? Memory.FALSE : new BinaryMemory(line);
+        } catch (WrapIOException e) {
+            env.warning(trace, "fgets(): %s", e.getMessage(env));
+            return Memory.FALSE;
+        } catch (IOException e) {
+            env.warning(trace, "fgets(): %s", e.getMessage());
+            return Memory.FALSE;
+        }
+    }
+
+    public static Memory fpassthru(Environment env, TraceInfo trace, Memory handle) {
+        Stream stream = _stream(env, trace, handle, "fpassthru");
+        if (stream == null)
+            return Memory.FALSE;
+
+        try {
+            return LongMemory.valueOf(stream.transferToOutput(env));
+        } catch (WrapIOException e) {
+            env.warning(trace, "fpassthru(): %s", e.getMessage(env));
+            return Memory.FALSE;
+        } catch (IOException e) {
+            env.warning(trace, "fpassthru(): %s", e.getMessage());
+            return Memory.FALSE;
+        }
+    }
+
+    public static Memory fgetc(Environment env, TraceInfo trace, Memory handle) {
+        Memory result = fread(env, trace, handle, 1);
+        return result.isString() && result.toString().isEmpty() ? Memory.FALSE : result;
+    }
+
+    public static Memory fread(Environment env, TraceInfo trace, Memory handle, int length) {
+        Stream stream = _stream(env, trace, handle, "fread");
+        if (stream == null)
+            return Memory.FALSE;
+
+        if (length <= 0) {
+            env.warning(trace, "fread(): Length parameter must be greater than 0");
+            return Memory.FALSE;
+        }
+
+        try {
+            Memory result = stream.read(env, LongMemory.valueOf(length));
+            return result.isNull() ? Memory.CONST_EMPTY_STRING : result;
+        } catch (WrapIOException e) {
+            env.warning(trace, "fread(): %s", e.getMessage(env));
+            return Memory.FALSE;
+        } catch (IOException e) {
+            env.warning(trace, "fread(): %s", e.getMessage());
+            return Memory.FALSE;
+        }
+    }
+
+    public static Memory fwrite(Environment env, TraceInfo trace, Memory handle, Memory data, int length) {
+        Stream stream = _stream(env, trace, handle, "fwrite");
+        if (stream == null)
+            return Memory.FALSE;
+
+        if (length <= 0)
+            return Memory.CONST_INT_0;
+
+        return _fwrite(env, trace, stream, data, Math.min(length, data.getBinaryBytes().length));
+    }
+
+    public static Memory fwrite(Environment env, TraceInfo trace, Memory handle, Memory data) {
+        Stream stream = _stream(env, trace, handle, "fwrite");
+        if (stream == null)
+            return Memory.FALSE;
+
+        return _fwrite(env, trace, stream, data, -1);
+    }
+
+    public static Memory fputs(Environment env, TraceInfo trace, Memory handle, Memory data, int length) {
+        return fwrite(env, trace, handle, data, length);
+    }
+
+    public static Memory fputs(Environment env, TraceInfo trace, Memory handle, Memory data) {
+        return fwrite(env, trace, handle, data);
+    }
+
+    private static Memory _fwrite(Environment env, TraceInfo trace, Stream stream, Memory data, int length) {
+        try {
+            if (length == 0 || (length < 0 && data.getBinaryBytes().length == 0))
+                return Memory.CONST_INT_0;
+
+            Memory result = stream.write(env, data, length < 0 ? Memory.NULL : LongMemory.valueOf(length));
+
+            // writes are not buffered as in php, only reads
+            if (stream instanceof FileStream)
+                ((FileStream) stream).flush(env);
+
+            return result;
+        } catch (WrapIOException e) {
+            env.warning(trace, "fwrite(): %s", e.getMessage(env));
+            return Memory.FALSE;
+        } catch (IOException e) {
+            env.warning(trace, "fwrite(): %s", e.getMessage());
+            return Memory.FALSE;
+        }
+    }
+
+    public static boolean fflush(Environment env, TraceInfo trace, Memory handle) {
+        Stream stream = _stream(env, trace, handle, "fflush");
+        if (stream == null)
+            return false;
+
+        try {
+            if (stream instanceof FileStream)
+                ((FileStream) stream).flush(env);
+
+            return true;
+        } catch (IOException e) {
+            env.warning(trace, "fflush(): %s", e.getMessage());
+            return false;
+        }
+    }
+
+    public static Memory ftell(Environment env, TraceInfo trace, Memory handle) {
+        Stream stream = _stream(env, trace, handle, "ftell");
+        if (stream == null)
+            return Memory.FALSE;
+
+        return stream.getPosition(env);
+    }
+
+    public static int fseek(Environment env, TraceInfo trace, Memory handle, long offset, int whence) {
+        Stream stream = _stream(env, trace, handle, "fseek");
+        if (stream == null)
+            return -1;
+
+        try {
+            long position = offset;
+
+            switch (whence) {
+                case SEEK_CUR:
+                    position += stream.getPosition(env).toLong();
+                    break;
+                case SEEK_END:
+                    if (!(stream instanceof FileStream))
+                        return -1;
+
+                    position += ((FileStream) stream).length(env).toLong();
+                    break;
+            }
+
+            if (position < 0)
+                return -1;
+
+            stream.seek(env, LongMemory.valueOf(position));
+            return 0;
+        } catch (WrapIOException e) {
+            return -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public static int fseek(Environment env, TraceInfo trace, Memory handle, long offset) {
+        return fseek(env, trace, handle, offset, SEEK_SET);
+    }
+
+    public static boolean rewind(Environment env, TraceInfo trace, Memory handle) {
+        return fseek(env, trace, handle, 0, SEEK_SET) == 0;
+    }
+
+    public static boolean ftruncate(Environment env, TraceInfo trace, Memory handle, long size) {
+        Stream stream = _stream(env, trace, handle, "ftruncate");
+        if (!(stream instanceof FileStream))
+            return false;
+
+        try {
+            ((FileStream) stream).truncate(env, LongMemory.valueOf(size));
+            return true;
+        } catch (WrapIOException e) {
+            env.warning(trace, "ftruncate(): %s", e.getMessage(env));
+            return false;
+        } catch (IOException e) {
+            env.warning(trace, "ftruncate(): %s", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return the byte of a single character argument, -1 for empty string if it is allowed, otherwise -2
+     */
+    private static int _csvChar(Environment env, TraceInfo trace, String function, String name, String value,
+                                boolean allowEmpty) {
+        if (value.length() == 1 && value.charAt(0) < 0x80)
+            return value.charAt(0);
+
+        if (value.isEmpty() && allowEmpty)
+            return -1;
+
+        env.warning(trace, "%s(): %s must be a single character", function, name);
+        return -2;
+    }
+
+    public static Memory fgetcsv(Environment env, TraceInfo trace, Memory handle, int length, String delimiter,
+                                 String enclosure, String escape) {
+        Stream stream = _stream(env, trace, handle, "fgetcsv");
+        if (stream == null)
+            return Memory.FALSE;
+
+        int delimiterChar = _csvChar(env, trace, "fgetcsv", "delimiter", delimiter, false);
+        int enclosureChar = _csvChar(env, trace, "fgetcsv", "enclosure", enclosure, false);
+        int escapeChar = _csvChar(env, trace, "fgetcsv", "escape", escape, true);
+
+        if (delimiterChar < 0 || enclosureChar < 0 || escapeChar == -2)
+            return Memory.FALSE;
+
+        if (length < 0) {
+            env.warning(trace, "fgetcsv(): Length parameter may not be negative");
+            return Memory.FALSE;
+        }
+
+        try {
+            return _fgetcsv(env, stream, length == 0 ? -1 : length, (byte) delimiterChar, (byte) enclosureChar, escapeChar);
+        } catch (WrapIOException e) {
+            env.warning(trace, "fgetcsv(): %s", e.getMessage(env));
+            return Memory.FALSE;
+        } catch (IOException e) {
+            env.warning(trace, "fgetcsv(): %s", e.getMessage());
+            return Memory.FALSE;
+        }
+    }
+
+    public static Memory fgetcsv(Environment env, TraceInfo trace, Memory handle, int length, String delimiter,
+                                 String enclosure) {
+        return fgetcsv(env, trace, handle, length, delimiter, enclosure, "\\");
+    }
+
+    public static Memory fgetcsv(Environment env, TraceInfo trace, Memory handle, int length, String delimiter) {
+        return fgetcsv(env, trace, handle, length, delimiter, "\"", "\\");
+    }
+
+    public static Memory fgetcsv(Environment env, TraceInfo trace, Memory handle, int length) {
+        return fgetcsv(env, trace, handle, length, ",", "\"", "\\");
+    }
+
+    public static Memory fgetcsv(Environment env, TraceInfo trace, Memory handle) {
+        return fgetcsv(env, trace, handle, 0, ",", "\"", "\\");
+    }
+
+    /**
+     * Parses one record in one pass, a quoted field may continue on the next lines.
+     */
+    private static Memory _fgetcsv(Environment env, Stream stream, int limit, byte delimiter, byte enclosure,
+                                   int escape) throws IOException {
+        byte[] line = stream.readLineBytes(env, limit);
+        if (line == null)
+            return Memory.FALSE;
+
+        int len = _lineLength(line);
+
+        ArrayMemory result = new ArrayMemory();
+        if (len == 0) {
+            result.add(Memory.NULL);
+            return result.toConstant();
+        }
+
+        ByteArrayOutputStream field = new ByteArrayOutputStream(64);
+        int i = 0;
+
+        while (true) {
+            field.reset();
+
+            int start = i;
+            while (start < len && line[start] != delimiter && (line[start] == ' ' || line[start] == '\t')) {
+                start++;
+            }
+
+            if (start < len && line[start] == enclosure) {
+                i = start + 1;
+
+                while (true) {
+                    if (i >= len) {
+                        field.write(line, len, line.length - len);
+
+                        line = stream.readLineBytes(env, -1);
+                        if (line == null) {
+                            line = new byte[0];
+                            len = i = 0;
+                            break;
+                        }
+
+                        len = _lineLength(line);
+                        i = 0;
+                        continue;
+                    }
+
+                    byte ch = line[i];
+                    if (ch == escape && escape != enclosure && i + 1 < len) {
+                        field.write(ch);
+                        field.write(line[i + 1]);
+                        i += 2;
+                    } else if (ch == enclosure) {
+                        if (i + 1 < len && line[i + 1] == enclosure) {
+                            field.write(ch);
+                            i += 2;
+                        } else {
+                            i++;
+                            break;
+                        }
+                    } else {
+                        field.write(ch);
+                        i++;
+                    }
+                }
+            }
+
+            while (i < len && line[i] != delimiter) {
+                field.write(line[i]);
+                i++;
+            }
+
+            result.add(new BinaryMemory(field.toByteArray()));
+
+            if (i >= len)
+                break;
+
+            i++;
+        }
+
+        return result.toConstant();
+    }
+
+    public static Memory fputcsv(Environment env, TraceInfo trace, Memory handle, Memory fields, String delimiter,
+                                 String enclosure, String escape, String eol) {
+        Stream stream = _stream(env, trace, handle, "fputcsv");
+        if (stream == null || !expecting(env, trace, 2, fields, Memory.Type.ARRAY))
+            return Memory.FALSE;
+
+        int delimiterChar = _csvChar(env, trace, "fputcsv", "delimiter", delimiter, false);
+        int enclosureChar = _csvChar(env, trace, "fputcsv", "enclosure", enclosure, false);
+        int escapeChar = _csvChar(env, trace, "fputcsv", "escape", escape, true);
+
+        if (delimiterChar < 0 || enclosureChar < 0 || escapeChar == -2)
+            return Memory.FALSE;
+
+        StringBuilder sb = new StringBuilder();
+        ForeachIterator iterator = fields.getNewIterator(env, false, false);
+
+        boolean first = true;
+        while (iterator.next()) {
+            if (!first)
+                sb.append((char) delimiterChar);
+
+            first = false;
+            String value = iterator.getValue().toString();
+
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char ch = value.charAt(i);
+                quote = ch == delimiterChar || ch == enclosureChar || ch == escapeChar
+                        || ch == '\n' || ch == '\r' || ch == '\t' || ch == ' ';
+            }
+
+            if (!quote) {
+                sb.append(value);
+                continue;
+            }
+
+            sb.append((char) enclosureChar);
+
+            boolean escaped = false;
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+
+                if (ch == escapeChar) {
+                    escaped = true;
+                } else if (!escaped && ch == enclosureChar) {
+                    sb.append(ch);
+                } else {
+                    escaped = false;
+                }
+
+                sb.append(ch);
+            }
+
+            sb.append((char) enclosureChar);
+        }
+
+        sb.append(eol);
+        return _fwrite(env, trace, stream, new StringMemory(sb.toString()), -1);
+    }
+
+    public static Memory fputcsv(Environment env, TraceInfo trace, Memory handle, Memory fields, String delimiter,
+                                 String enclosure, String escape) {
+        return fputcsv(env, trace, handle, fields, delimiter, enclosure, escape, "\n");
+    }
+
+    public static Memory fputcsv(Environment env, TraceInfo trace, Memory handle, Memory fields, String delimiter,
+                                 String enclosure) {
+        return fputcsv(env, trace, handle, fields, delimiter, enclosure, "\\", "\n");
+    }
+
+    public static Memory fputcsv(Environment env, TraceInfo trace, Memory handle, Memory fields, String delimiter) {
+        return fputcsv(env, trace, handle, fields, delimiter, "\"", "\\", "\n");
+    }
+
+    public static Memory fputcsv(Environment env, TraceInfo trace, Memory handle, Memory fields) {
+        return fputcsv(env, trace, handle, fields, ",", "\"", "\\", "\n");
+    }
+
     public static Memory file_get_contents(Environment env, TraceInfo trace, String path, boolean useIncludePaths,
                                            Memory context, Memory offset, Memory maxLength) throws Throwable {
         Stream stream = null;
@@ -478,35 +1003,33 @@ public class FileFunctions extends FunctionsContainer {
             file = new File(path);
         }
 
+        if (!stream.isNull() && !stream.instanceOf(Stream.CLASS_NAME)){
+            env.warning(trace, "readfile(): Argument 3 must be stream, %s given", stream.getRealType().toString());
+            return Memory.FALSE;
+        }
+
         try {
             RandomAccessFile accessFile = new RandomAccessFile(file, "r");
             try {
-                if (!stream.isNull()){
-                    if (!stream.instanceOf(Stream.CLASS_NAME)){
-                        env.warning(trace, "readfile(): Argument 3 must be stream, %s given", stream.getRealType().toString());
-                        return Memory.FALSE;
-                    }
+                if (stream.isNull())
+                    return LongMemory.valueOf(env.echo(accessFile.getChannel(), 0, accessFile.length()));
 
-                    byte[] buff = new byte[4096];
-                    int len = 0;
-                    int read = 0;
-                    while ((len = accessFile.read(buff)) != -1){
-                        read += len;
-                        ObjectInvokeHelper.invokeMethod(
-                                stream, "write", env, trace, new BinaryMemory(buff), LongMemory.valueOf(len)
-                        );
-                    }
-                    return LongMemory.valueOf(read);
-                } else {
-                    byte[] buff = new byte[4096];
-                    int len = 0;
-                    int read = 0;
-                    while ((len = accessFile.read(buff)) != -1){
-                        read += len;
-                        env.echo(buff, len);
-                    }
-                    return LongMemory.valueOf(read);
+                if (stream.instanceOf(FileStream.class)) {
+                    return LongMemory.valueOf(
+                            stream.toObject(FileStream.class).write(accessFile.getChannel(), 0, accessFile.length())
+                    );
+                }
+
+                byte[] buff = new byte[BUFFER_SIZE];
+                int len = 0;
+                int read = 0;
+                while ((len = accessFile.read(buff)) != -1){
+                    read += len;
+                    ObjectInvokeHelper.invokeMethod(
+                            stream, "write", env, trace, new BinaryMemory(Arrays.copyOf(buff, len)), LongMemory.valueOf(len)
+                    );
                 }
+                return LongMemory.valueOf(read);
             } finally {
                 accessFile.close();
             }
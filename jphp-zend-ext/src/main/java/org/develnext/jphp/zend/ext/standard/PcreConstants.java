@@ -0,0 +1,23 @@
+package org.develnext.jphp.zend.ext.standard;
+
+import php.runtime.ext.support.compile.ConstantsContainer;
+
+public class PcreConstants extends ConstantsContainer {
+    public final static int PREG_PATTERN_ORDER = 1;
+    public final static int PREG_SET_ORDER = 2;
+    public final static int PREG_OFFSET_CAPTURE = 256;
+    public final static int PREG_UNMATCHED_AS_NULL = 512;
+
+    public final static int PREG_SPLIT_NO_EMPTY = 1;
+    public final static int PREG_SPLIT_DELIM_CAPTURE = 2;
+    public final static int PREG_SPLIT_OFFSET_CAPTURE = 4;
+
+    public final static int PREG_GREP_INVERT = 1;
+
+    public final static int PREG_NO_ERROR = 0;
+    public final static int PREG_INTERNAL_ERROR = 1;
+    public final static int PREG_BACKTRACK_LIMIT_ERROR = 2;
+    public final static int PREG_RECURSION_LIMIT_ERROR = 3;
+    public final static int PREG_BAD_UTF8_ERROR = 4;
+    public final static int PREG_BAD_UTF8_OFFSET_ERROR = 5;
+}
@@ -0,0 +1,27 @@
+package org.develnext.jphp.zend.ext.standard;
+
+import php.runtime.env.CompileScope;
+import php.runtime.ext.support.Extension;
+
+public class PcreExtension extends Extension {
+    @Override
+    public String getName() {
+        return "pcre";
+    }
+
+    @Override
+    public String getVersion() {
+        return "~";
+    }
+
+    @Override
+    public Status getStatus() {
+        return Status.ZEND_LEGACY;
+    }
+
+    @Override
+    public void onRegister(CompileScope scope) {
+        registerConstants(new PcreConstants());
+        registerFunctions(new PcreFunctions());
+    }
+}
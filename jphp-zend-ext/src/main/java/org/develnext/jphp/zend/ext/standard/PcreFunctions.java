@@ -0,0 +1,557 @@
+package org.develnext.jphp.zend.ext.standard;
+
+import php.runtime.Memory;
+import php.runtime.annotation.Runtime;
+import php.runtime.env.Environment;
+import php.runtime.env.TraceInfo;
+import php.runtime.ext.support.compile.FunctionsContainer;
+import php.runtime.invoke.Invoker;
+import php.runtime.lang.ForeachIterator;
+import php.runtime.memory.ArrayMemory;
+import php.runtime.memory.LongMemory;
+import php.runtime.memory.StringMemory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import static org.develnext.jphp.zend.ext.standard.PcreConstants.*;
+
+/**
+ * pcre extension
+ * documentation: http://php.net/manual/en/book.pcre.php
+ *
+ *  Notice: patterns are compiled once per compile scope, see {@link PcrePattern#valueOf}
+ *  Notice: offsets are offsets of chars, not bytes
+ */
+public class PcreFunctions extends FunctionsContainer {
+    private final static String ERROR_KEY = PcreFunctions.class.getName() + "#error";
+
+    protected static PcrePattern pattern(Environment env, TraceInfo trace, String source) {
+        try {
+            return PcrePattern.valueOf(env, source);
+        } catch (PcrePattern.PcreException e) {
+            env.warning(trace, e.getMessage());
+            return null;
+        }
+    }
+
+    protected static void setError(Environment env, int error) {
+        if (error == PREG_NO_ERROR) {
+            if (env.getUserValue(ERROR_KEY, Integer.class) != null)
+                env.setUserValue(ERROR_KEY, null);
+        } else {
+            env.setUserValue(ERROR_KEY, error);
+        }
+    }
+
+    public static int preg_last_error(Environment env) {
+        Integer error = env.getUserValue(ERROR_KEY, Integer.class);
+        return error == null ? PREG_NO_ERROR : error;
+    }
+
+    protected static Memory group(Matcher matcher, int group, boolean offsetCapture, boolean unmatchedAsNull) {
+        String value = matcher.group(group);
+        Memory result = value == null
+                ? (unmatchedAsNull ? Memory.NULL : Memory.CONST_EMPTY_STRING)
+                : new StringMemory(value);
+
+        if (offsetCapture) {
+            ArrayMemory pair = new ArrayMemory();
+            pair.add(result);
+            pair.add(value == null ? -1 : matcher.start(group));
+            return pair;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return last matched group, trailing unmatched groups are not included in php arrays
+     */
+    protected static int lastGroup(Matcher matcher) {
+        int count = matcher.groupCount();
+        while (count > 0 && matcher.start(count) == -1) {
+            count--;
+        }
+
+        return count;
+    }
+
+    protected static void putGroup(ArrayMemory array, PcrePattern pattern, int group, Memory value) {
+        String name = pattern.getGroupName(group);
+        if (name != null)
+            array.put(name, value.toImmutable());
+
+        array.put(LongMemory.valueOf(group), value);
+    }
+
+    protected static ArrayMemory groups(PcrePattern pattern, Matcher matcher, int flags) {
+        boolean offsetCapture = (flags & PREG_OFFSET_CAPTURE) != 0;
+        boolean unmatchedAsNull = (flags & PREG_UNMATCHED_AS_NULL) != 0;
+        int count = unmatchedAsNull ? matcher.groupCount() : lastGroup(matcher);
+
+        ArrayMemory result = new ArrayMemory();
+        for (int i = 0; i <= count; i++) {
+            Memory value = group(matcher, i, offsetCapture, unmatchedAsNull);
+
+            if (pattern.hasNames())
+                putGroup(result, pattern, i, value);
+            else
+                result.add(value);
+        }
+
+        return result;
+    }
+
+    public static Memory preg_match(Environment env, TraceInfo trace, String pattern, String subject,
+                                    @Runtime.Reference Memory matches, int flags, int offset) {
+        PcrePattern regex = pattern(env, trace, pattern);
+        if (regex == null)
+            return Memory.FALSE;
+
+        if (offset < 0)
+            offset = Math.max(0, subject.length() + offset);
+
+        if (offset > subject.length()) {
+            setError(env, PREG_INTERNAL_ERROR);
+            return Memory.FALSE;
+        }
+
+        try {
+            Matcher matcher = regex.matcher(subject);
+            boolean found = matcher.find(offset);
+
+            if (matches != null)
+                matches.assign(found ? groups(regex, matcher, flags) : new ArrayMemory());
+
+            setError(env, PREG_NO_ERROR);
+            return found ? Memory.CONST_INT_1 : Memory.CONST_INT_0;
+        } catch (StackOverflowError e) {
+            setError(env, PREG_RECURSION_LIMIT_ERROR);
+            return Memory.FALSE;
+        }
+    }
+
+    public static Memory preg_match(Environment env, TraceInfo trace, String pattern, String subject,
+                                    @Runtime.Reference Memory matches, int flags) {
+        return preg_match(env, trace, pattern, subject, matches, flags, 0);
+    }
+
+    public static Memory preg_match(Environment env, TraceInfo trace, String pattern, String subject,
+                                    @Runtime.Reference Memory matches) {
+        return preg_match(env, trace, pattern, subject, matches, 0, 0);
+    }
+
+    public static Memory preg_match(Environment env, TraceInfo trace, String pattern, String subject) {
+        return preg_match(env, trace, pattern, subject, null, 0, 0);
+    }
+
+    public static Memory preg_match_all(Environment env, TraceInfo trace, String pattern, String subject,
+                                        @Runtime.Reference Memory matches, int flags, int offset) {
+        PcrePattern regex = pattern(env, trace, pattern);
+        if (regex == null)
+            return Memory.FALSE;
+
+        boolean setOrder = (flags & PREG_SET_ORDER) != 0;
+        if (setOrder && (flags & PREG_PATTERN_ORDER) != 0) {
+            env.warning(trace, "Invalid flags specified");
+            return Memory.NULL;
+        }
+
+        if (offset < 0)
+            offset = Math.max(0, subject.length() + offset);
+
+        if (offset > subject.length()) {
+            setError(env, PREG_INTERNAL_ERROR);
+            return Memory.FALSE;
+        }
+
+        boolean offsetCapture = (flags & PREG_OFFSET_CAPTURE) != 0;
+        boolean unmatchedAsNull = (flags & PREG_UNMATCHED_AS_NULL) != 0;
+        int groupCount = regex.getGroupCount();
+
+        ArrayMemory[] columns = null;
+        ArrayMemory result = new ArrayMemory();
+
+        if (!setOrder) {
+            columns = new ArrayMemory[groupCount + 1];
+            for (int i = 0; i <= groupCount; i++) {
+                columns[i] = new ArrayMemory();
+            }
+        }
+
+        int count = 0;
+        try {
+            Matcher matcher = regex.matcher(subject);
+            if (offset > 0)
+                matcher.region(offset, subject.length());
+
+            matcher.useTransparentBounds(true).useAnchoringBounds(false);
+
+            while (matcher.find()) {
+                count++;
+
+                if (setOrder) {
+                    result.add(groups(regex, matcher, flags));
+                } else {
+                    for (int i = 0; i <= groupCount; i++) {
+                        columns[i].add(group(matcher, i, offsetCapture, unmatchedAsNull));
+                    }
+                }
+            }
+        } catch (StackOverflowError e) {
+            setError(env, PREG_RECURSION_LIMIT_ERROR);
+            return Memory.FALSE;
+        }
+
+        if (!setOrder) {
+            for (int i = 0; i <= groupCount; i++) {
+                if (regex.hasNames())
+                    putGroup(result, regex, i, columns[i]);
+                else
+                    result.add(columns[i]);
+            }
+        }
+
+        if (matches != null)
+            matches.assign(result);
+
+        setError(env, PREG_NO_ERROR);
+        return LongMemory.valueOf(count);
+    }
+
+    public static Memory preg_match_all(Environment env, TraceInfo trace, String pattern, String subject,
+                                        @Runtime.Reference Memory matches, int flags) {
+        return preg_match_all(env, trace, pattern, subject, matches, flags, 0);
+    }
+
+    public static Memory preg_match_all(Environment env, TraceInfo trace, String pattern, String subject,
+                                        @Runtime.Reference Memory matches) {
+        return preg_match_all(env, trace, pattern, subject, matches, PREG_PATTERN_ORDER, 0);
+    }
+
+    public static Memory preg_match_all(Environment env, TraceInfo trace, String pattern, String subject) {
+        return preg_match_all(env, trace, pattern, subject, null, PREG_PATTERN_ORDER, 0);
+    }
+
+    /**
+     * Parses $n, ${n} and \n references of a replacement, references are stored as Integer parts.
+     */
+    protected static Object[] parseReplacement(String replacement) {
+        if (replacement.indexOf('$') == -1 && replacement.indexOf('\\') == -1)
+            return new Object[]{replacement};
+
+        List<Object> parts = new ArrayList<Object>();
+        StringBuilder sb = new StringBuilder();
+        int length = replacement.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = replacement.charAt(i);
+            char next = i + 1 < length ? replacement.charAt(i + 1) : 0;
+
+            if (c == '\\' && next == '\\') {
+                sb.append('\\');
+                i++;
+                continue;
+            }
+
+            if (c == '$' || c == '\\') {
+                boolean braces = c == '$' && next == '{';
+                int start = braces ? i + 2 : i + 1;
+                int end = start;
+
+                while (end < length && end < start + 2 && Character.isDigit(replacement.charAt(end))) {
+                    end++;
+                }
+
+                if (end > start && (!braces || (end < length && replacement.charAt(end) == '}'))) {
+                    if (sb.length() > 0) {
+                        parts.add(sb.toString());
+                        sb.setLength(0);
+                    }
+
+                    parts.add(Integer.valueOf(replacement.substring(start, end)));
+                    i = braces ? end : end - 1;
+                    continue;
+                }
+            }
+
+            sb.append(c);
+        }
+
+        if (sb.length() > 0)
+            parts.add(sb.toString());
+
+        return parts.toArray();
+    }
+
+    protected static void appendReplacement(StringBuilder sb, Matcher matcher, Object[] replacement) {
+        for (Object part : replacement) {
+            if (part instanceof Integer) {
+                int group = (Integer) part;
+
+                if (group <= matcher.groupCount() && matcher.start(group) != -1)
+                    sb.append(matcher.group(group));
+            } else {
+                sb.append((String) part);
+            }
+        }
+    }
+
+    /**
+     * @param replacement parsed replacement or null when invoker is used
+     * @return null if a callback failed
+     */
+    protected static String replace(PcrePattern pattern, String subject, Object[] replacement, Invoker invoker,
+                                    int limit, int[] count) throws Throwable {
+        Matcher matcher = pattern.matcher(subject);
+        if (!matcher.find())
+            return subject;
+
+        StringBuilder sb = new StringBuilder(subject.length() + 16);
+        int last = 0;
+
+        do {
+            sb.append(subject, last, matcher.start());
+
+            if (invoker == null)
+                appendReplacement(sb, matcher, replacement);
+            else
+                sb.append(invoker.call(groups(pattern, matcher, 0)).toString());
+
+            last = matcher.end();
+            count[0]++;
+        } while ((limit < 0 || --limit > 0) && matcher.find());
+
+        sb.append(subject, last, subject.length());
+        return sb.toString();
+    }
+
+    protected static Memory replaceSubject(Environment env, TraceInfo trace, Memory pattern, Memory replacement,
+                                           Invoker invoker, String subject, int limit, int[] count) throws Throwable {
+        if (pattern.isArray()) {
+            ForeachIterator replacements = replacement != null && replacement.isArray()
+                    ? replacement.getNewIterator(env, false, false)
+                    : null;
+
+            ForeachIterator iterator = pattern.getNewIterator(env, false, false);
+            while (iterator.next()) {
+                PcrePattern regex = pattern(env, trace, iterator.getValue().toString());
+                if (regex == null)
+                    return Memory.NULL;
+
+                String value;
+                if (invoker != null)
+                    value = null;
+                else if (replacements == null)
+                    value = replacement.toString();
+                else
+                    value = replacements.next() ? replacements.getValue().toString() : "";
+
+                subject = replace(regex, subject, value == null ? null : parseReplacement(value), invoker, limit, count);
+            }
+
+            return new StringMemory(subject);
+        } else {
+            if (replacement != null && replacement.isArray()) {
+                env.warning(trace, "Parameter mismatch, pattern is a string while replacement is an array");
+                return Memory.FALSE;
+            }
+
+            PcrePattern regex = pattern(env, trace, pattern.toString());
+            if (regex == null)
+                return Memory.NULL;
+
+            Object[] parsed = invoker == null ? parseReplacement(replacement.toString()) : null;
+            return new StringMemory(replace(regex, subject, parsed, invoker, limit, count));
+        }
+    }
+
+    protected static Memory replace(Environment env, TraceInfo trace, Memory pattern, Memory replacement,
+                                    Invoker invoker, Memory subject, int limit, Memory count) throws Throwable {
+        int[] counter = new int[1];
+        Memory result;
+
+        try {
+            if (subject.isArray()) {
+                ArrayMemory array = new ArrayMemory();
+                ForeachIterator iterator = subject.getNewIterator(env, false, false);
+
+                while (iterator.next()) {
+                    Memory value = replaceSubject(env, trace, pattern, replacement, invoker,
+                            iterator.getValue().toString(), limit, counter);
+
+                    if (value.isNull())
+                        continue;
+
+                    array.put(iterator.getKey(), value);
+                }
+
+                result = array.toConstant();
+            } else {
+                result = replaceSubject(env, trace, pattern, replacement, invoker, subject.toString(), limit, counter);
+            }
+        } catch (StackOverflowError e) {
+            setError(env, PREG_RECURSION_LIMIT_ERROR);
+            return Memory.NULL;
+        }
+
+        if (count != null)
+            count.assign(counter[0]);
+
+        setError(env, PREG_NO_ERROR);
+        return result;
+    }
+
+    public static Memory preg_replace(Environment env, TraceInfo trace, Memory pattern, Memory replacement,
+                                      Memory subject, int limit, @Runtime.Reference Memory count) throws Throwable {
+        return replace(env, trace, pattern, replacement, null, subject, limit, count);
+    }
+
+    public static Memory preg_replace(Environment env, TraceInfo trace, Memory pattern, Memory replacement,
+                                      Memory subject, int limit) throws Throwable {
+        return replace(env, trace, pattern, replacement, null, subject, limit, null);
+    }
+
+    public static Memory preg_replace(Environment env, TraceInfo trace, Memory pattern, Memory replacement,
+                                      Memory subject) throws Throwable {
+        return replace(env, trace, pattern, replacement, null, subject, -1, null);
+    }
+
+    public static Memory preg_replace_callback(Environment env, TraceInfo trace, Memory pattern, Memory callback,
+                                               Memory subject, int limit, @Runtime.Reference Memory count)
+            throws Throwable {
+        Invoker invoker = expectingCallback(env, trace, 2, callback);
+        if (invoker == null)
+            return Memory.NULL;
+
+        return replace(env, trace, pattern, null, invoker, subject, limit, count);
+    }
+
+    public static Memory preg_replace_callback(Environment env, TraceInfo trace, Memory pattern, Memory callback,
+                                               Memory subject, int limit) throws Throwable {
+        return preg_replace_callback(env, trace, pattern, callback, subject, limit, null);
+    }
+
+    public static Memory preg_replace_callback(Environment env, TraceInfo trace, Memory pattern, Memory callback,
+                                               Memory subject) throws Throwable {
+        return preg_replace_callback(env, trace, pattern, callback, subject, -1, null);
+    }
+
+    protected static void addPiece(ArrayMemory result, String subject, int start, int end, boolean offsetCapture) {
+        StringMemory value = new StringMemory(subject.substring(start, end));
+
+        if (offsetCapture) {
+            ArrayMemory pair = new ArrayMemory();
+            pair.add(value);
+            pair.add(start);
+            result.add(pair);
+        } else {
+            result.add(value);
+        }
+    }
+
+    public static Memory preg_split(Environment env, TraceInfo trace, String pattern, String subject, int limit,
+                                    int flags) {
+        PcrePattern regex = pattern(env, trace, pattern);
+        if (regex == null)
+            return Memory.FALSE;
+
+        boolean noEmpty = (flags & PREG_SPLIT_NO_EMPTY) != 0;
+        boolean delimCapture = (flags & PREG_SPLIT_DELIM_CAPTURE) != 0;
+        boolean offsetCapture = (flags & PREG_SPLIT_OFFSET_CAPTURE) != 0;
+
+        if (limit == 0)
+            limit = -1;
+
+        ArrayMemory result = new ArrayMemory();
+        int last = 0;
+
+        try {
+            Matcher matcher = regex.matcher(subject);
+
+            while ((limit < 0 || limit > 1) && matcher.find()) {
+                if (!noEmpty || matcher.start() > last) {
+                    addPiece(result, subject, last, matcher.start(), offsetCapture);
+
+                    if (limit > 0)
+                        limit--;
+                }
+
+                if (delimCapture) {
+                    int count = lastGroup(matcher);
+                    for (int i = 1; i <= count; i++) {
+                        int start = matcher.start(i);
+
+                        if (!noEmpty || matcher.end(i) > start)
+                            addPiece(result, subject, start == -1 ? 0 : start, start == -1 ? 0 : matcher.end(i), offsetCapture);
+                    }
+                }
+
+                last = matcher.end();
+            }
+        } catch (StackOverflowError e) {
+            setError(env, PREG_RECURSION_LIMIT_ERROR);
+            return Memory.FALSE;
+        }
+
+        if (!noEmpty || last < subject.length())
+            addPiece(result, subject, last, subject.length(), offsetCapture);
+
+        setError(env, PREG_NO_ERROR);
+        return result.toConstant();
+    }
+
+    public static Memory preg_split(Environment env, TraceInfo trace, String pattern, String subject, int limit) {
+        return preg_split(env, trace, pattern, subject, limit, 0);
+    }
+
+    public static Memory preg_split(Environment env, TraceInfo trace, String pattern, String subject) {
+        return preg_split(env, trace, pattern, subject, -1, 0);
+    }
+
+    @Runtime.Immutable
+    public static String preg_quote(String value, String delimiter) {
+        return PcrePattern.quote(value, delimiter);
+    }
+
+    @Runtime.Immutable
+    public static String preg_quote(String value) {
+        return PcrePattern.quote(value, null);
+    }
+
+    public static Memory preg_grep(Environment env, TraceInfo trace, String pattern, Memory input, int flags) {
+        if (!expecting(env, trace, 2, input, Memory.Type.ARRAY))
+            return Memory.NULL;
+
+        PcrePattern regex = pattern(env, trace, pattern);
+        if (regex == null)
+            return Memory.FALSE;
+
+        boolean invert = (flags & PREG_GREP_INVERT) != 0;
+        ArrayMemory result = new ArrayMemory();
+
+        try {
+            Matcher matcher = regex.matcher("");
+            ForeachIterator iterator = input.getNewIterator(env, false, false);
+
+            while (iterator.next()) {
+                Memory value = iterator.getValue();
+
+                if (matcher.reset(value.toString()).find() != invert)
+                    result.put(iterator.getKey(), value.toImmutable());
+            }
+        } catch (StackOverflowError e) {
+            setError(env, PREG_RECURSION_LIMIT_ERROR);
+            return Memory.FALSE;
+        }
+
+        setError(env, PREG_NO_ERROR);
+        return result.toConstant();
+    }
+
+    public static Memory preg_grep(Environment env, TraceInfo trace, String pattern, Memory input) {
+        return preg_grep(env, trace, pattern, input, 0);
+    }
+}
@@ -0,0 +1,736 @@
+package org.develnext.jphp.zend.ext.standard;
+
+import php.runtime.env.Environment;
+import php.runtime.util.PatternCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Perl compatible regular expression with delimiters and modifiers, translated to java.util.regex.
+ *
+ * Named groups are translated to plain groups, names are kept in {@link #groupNames}, so php names
+ * with underscores work and back references by name are translated to numbers.
+ * Recursion, conditional subpatterns, branch reset and verbs are not supported.
+ */
+public class PcrePattern {
+    private final static Pattern QUANTIFIER = Pattern.compile("\\{\\d+(,\\d*)?\\}");
+    private final static Map<String, String> POSIX_CLASSES = new HashMap<String, String>();
+
+    static {
+        POSIX_CLASSES.put("alnum", "Alnum");
+        POSIX_CLASSES.put("alpha", "Alpha");
+        POSIX_CLASSES.put("ascii", "ASCII");
+        POSIX_CLASSES.put("blank", "Blank");
+        POSIX_CLASSES.put("cntrl", "Cntrl");
+        POSIX_CLASSES.put("digit", "Digit");
+        POSIX_CLASSES.put("graph", "Graph");
+        POSIX_CLASSES.put("lower", "Lower");
+        POSIX_CLASSES.put("print", "Print");
+        POSIX_CLASSES.put("punct", "Punct");
+        POSIX_CLASSES.put("space", "Space");
+        POSIX_CLASSES.put("upper", "Upper");
+        POSIX_CLASSES.put("xdigit", "XDigit");
+    }
+
+    protected final String source;
+    protected final Pattern pattern;
+    protected final String[] groupNames;
+    protected final boolean hasNames;
+
+    protected PcrePattern(String source, Pattern pattern, String[] groupNames) {
+        this.source = source;
+        this.pattern = pattern;
+        this.groupNames = groupNames;
+
+        boolean hasNames = false;
+        for (String name : groupNames) {
+            if (name != null) {
+                hasNames = true;
+                break;
+            }
+        }
+
+        this.hasNames = hasNames;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public Matcher matcher(CharSequence input) {
+        return pattern.matcher(input);
+    }
+
+    /**
+     * @return count of groups without the whole match
+     */
+    public int getGroupCount() {
+        return groupNames.length - 1;
+    }
+
+    /**
+     * @return name of the group or null
+     */
+    public String getGroupName(int group) {
+        return groupNames[group];
+    }
+
+    public boolean hasNames() {
+        return hasNames;
+    }
+
+    /**
+     * Returns the pattern from the pattern cache of the scope or compiles it.
+     */
+    public static PcrePattern valueOf(Environment env, String source) throws PcreException {
+        PatternCache cache = env.getScope().getPatternCache();
+
+        PcrePattern result = (PcrePattern) cache.get(source);
+        if (result == null) {
+            result = compile(source);
+            cache.put(source, result);
+        }
+
+        return result;
+    }
+
+    public static PcrePattern compile(String source) throws PcreException {
+        int length = source.length();
+        int i = 0;
+
+        while (i < length && Character.isWhitespace(source.charAt(i))) {
+            i++;
+        }
+
+        if (i == length)
+            throw new PcreException("Empty regular expression");
+
+        char start = source.charAt(i);
+        if (Character.isLetterOrDigit(start) || start == '\\')
+            throw new PcreException("Delimiter must not be alphanumeric or backslash");
+
+        char end = start;
+        switch (start) {
+            case '(': end = ')'; break;
+            case '[': end = ']'; break;
+            case '{': end = '}'; break;
+            case '<': end = '>'; break;
+        }
+
+        int endIndex = -1;
+        int nesting = 1;
+        for (int j = i + 1; j < length; j++) {
+            char c = source.charAt(j);
+
+            if (c == '\\') {
+                j++;
+            } else if (c == end && --nesting == 0) {
+                endIndex = j;
+                break;
+            } else if (c == start && start != end) {
+                nesting++;
+            }
+        }
+
+        if (endIndex == -1) {
+            if (start == end)
+                throw new PcreException("No ending delimiter '" + end + "' found");
+            else
+                throw new PcreException("No ending matching delimiter '" + end + "' found");
+        }
+
+        int flags = Pattern.UNIX_LINES;
+        boolean ungreedy = false, anchored = false, dollarEndOnly = false, dupNames = false;
+
+        for (int j = endIndex + 1; j < length; j++) {
+            char c = source.charAt(j);
+
+            switch (c) {
+                case 'i': flags |= Pattern.CASE_INSENSITIVE; break;
+                case 'm': flags |= Pattern.MULTILINE; break;
+                case 's': flags |= Pattern.DOTALL; break;
+                case 'x': flags |= Pattern.COMMENTS; break;
+                case 'u': flags |= Pattern.UNICODE_CASE; break;
+                case 'U': ungreedy = true; break;
+                case 'A': anchored = true; break;
+                case 'D': dollarEndOnly = true; break;
+                case 'J': dupNames = true; break;
+                case 'S':
+                case 'X':
+                case '\n':
+                case '\r':
+                case ' ':
+                    break;
+                default:
+                    throw new PcreException("Unknown modifier '" + c + "'");
+            }
+        }
+
+        Translator translator = new Translator(source.substring(i + 1, endIndex), flags, ungreedy,
+                dollarEndOnly && (flags & Pattern.MULTILINE) == 0, dupNames);
+
+        String regex = translator.translate();
+        if (anchored)
+            regex = "\\G(?:" + regex + ")";
+
+        try {
+            return new PcrePattern(source, Pattern.compile(regex, flags), translator.names.toArray(new String[0]));
+        } catch (PatternSyntaxException e) {
+            throw new PcreException("Compilation failed: " + e.getDescription() + " at offset " + e.getIndex());
+        }
+    }
+
+    /**
+     * Escapes regex special chars and the delimiter, as preg_quote().
+     */
+    public static String quote(String value, String delimiter) {
+        char delimiterChar = delimiter == null || delimiter.isEmpty() ? 0 : delimiter.charAt(0);
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '.': case '\\': case '+': case '*': case '?':
+                case '[': case '^': case ']': case '$': case '(':
+                case ')': case '{': case '}': case '=': case '!':
+                case '>': case '<': case '|': case ':': case '-':
+                case '#':
+                    sb.append('\\').append(c);
+                    break;
+                case '\0':
+                    sb.append("\\000");
+                    break;
+                default:
+                    if (c == delimiterChar)
+                        sb.append('\\');
+
+                    sb.append(c);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    public static class PcreException extends Exception {
+        public PcreException(String message) {
+            super(message);
+        }
+    }
+
+    protected static class Translator {
+        protected final String regex;
+        protected final int length;
+        protected final boolean extended;
+        protected final boolean ungreedy;
+        protected final boolean dollarEndOnly;
+        protected final boolean dupNames;
+
+        protected final StringBuilder out;
+        protected final List<String> names = new ArrayList<String>();
+        protected final List<String[]> namedReferences = new ArrayList<String[]>();
+
+        protected int i;
+
+        Translator(String regex, int flags, boolean ungreedy, boolean dollarEndOnly, boolean dupNames) {
+            this.regex = regex;
+            this.length = regex.length();
+            this.extended = (flags & Pattern.COMMENTS) != 0;
+            this.ungreedy = ungreedy;
+            this.dollarEndOnly = dollarEndOnly;
+            this.dupNames = dupNames;
+            this.out = new StringBuilder(length + 16);
+
+            names.add(null); // whole match
+        }
+
+        protected char at(int index) {
+            return index < length ? regex.charAt(index) : 0;
+        }
+
+        String translate() throws PcreException {
+            while (i < length) {
+                char c = regex.charAt(i);
+
+                switch (c) {
+                    case '\\':
+                        escape(false);
+                        break;
+                    case '[':
+                        charClass();
+                        break;
+                    case '(':
+                        group();
+                        break;
+                    case '*':
+                    case '+':
+                    case '?':
+                        out.append(c);
+                        i++;
+                        quantified();
+                        break;
+                    case '{': {
+                        Matcher matcher = QUANTIFIER.matcher(regex).region(i, length);
+                        if (matcher.lookingAt()) {
+                            out.append(regex, i, matcher.end());
+                            i = matcher.end();
+                            quantified();
+                        } else {
+                            out.append("\\{");
+                            i++;
+                        }
+                        break;
+                    }
+                    case '$':
+                        out.append(dollarEndOnly ? "\\z" : "$");
+                        i++;
+                        break;
+                    case '#':
+                        if (extended) {
+                            int end = regex.indexOf('\n', i);
+                            end = end == -1 ? length : end;
+                            out.append(regex, i, end);
+                            i = end;
+                        } else {
+                            out.append(c);
+                            i++;
+                        }
+                        break;
+                    default:
+                        out.append(c);
+                        i++;
+                }
+            }
+
+            return resolveReferences();
+        }
+
+        /**
+         * Makes quantifiers lazy and lazy quantifiers greedy in the ungreedy mode,
+         * possessive quantifiers are kept as is.
+         */
+        protected void quantified() {
+            char c = at(i);
+            if (c == '+') {
+                out.append(c);
+                i++;
+                return;
+            }
+
+            if (!ungreedy)
+                return;
+
+            if (c == '?') {
+                i++;
+            } else {
+                out.append('?');
+            }
+        }
+
+        protected void escape(boolean inClass) throws PcreException {
+            char c = at(i + 1);
+            if (i + 1 >= length)
+                throw new PcreException("\\ at end of pattern");
+
+            switch (c) {
+                case 'Q': {
+                    int end = regex.indexOf("\\E", i + 2);
+                    String quoted = regex.substring(i + 2, end == -1 ? length : end);
+                    out.append(inClass ? quoteInClass(quoted) : Pattern.quote(quoted));
+                    i = end == -1 ? length : end + 2;
+                    return;
+                }
+                case 'E':
+                    i += 2;
+                    return;
+                case 'b':
+                    out.append(inClass ? "\\x08" : "\\b");
+                    i += 2;
+                    return;
+                case 'p':
+                case 'P':
+                    if (at(i + 2) == '{') {
+                        property(c == 'P');
+                        return;
+                    }
+                    break;
+                case 'x':
+                case 'o':
+                case 'N':
+                    if (at(i + 2) == '{') {
+                        codePoint(c);
+                        return;
+                    }
+                    break;
+                case '0': {
+                    int j = i + 2;
+                    while (j < i + 4 && at(j) >= '0' && at(j) <= '7') {
+                        j++;
+                    }
+
+                    out.append("\\0").append(j == i + 2 ? "0" : regex.substring(i + 2, j));
+                    i = j;
+                    return;
+                }
+                case 'g':
+                    if (!inClass) {
+                        reference(i + 2, true);
+                        return;
+                    }
+                    break;
+                case 'k':
+                    if (!inClass) {
+                        char open = at(i + 2);
+                        char close = open == '<' ? '>' : open == '{' ? '}' : open == '\'' ? '\'' : 0;
+                        int end = close == 0 ? -1 : regex.indexOf(close, i + 3);
+
+                        if (end == -1)
+                            throw new PcreException("\\k is not followed by a braced, angle-bracketed, or quoted name");
+
+                        namedReference(regex.substring(i + 3, end));
+                        i = end + 1;
+                        return;
+                    }
+                    break;
+            }
+
+            out.append('\\').append(c);
+            i += 2;
+        }
+
+        /**
+         * \p{Lu}, \p{^Lu}, \P{Greek}, scripts are prefixed with Is in java
+         */
+        protected void property(boolean negative) throws PcreException {
+            int end = regex.indexOf('}', i + 3);
+            if (end == -1)
+                throw new PcreException("malformed \\P or \\p sequence");
+
+            String name = regex.substring(i + 3, end);
+            if (name.startsWith("^")) {
+                negative = !negative;
+                name = name.substring(1);
+            }
+
+            if ("L&".equals(name))
+                name = "LC";
+
+            String property = null;
+            for (String javaName : new String[]{name, "Is" + name}) {
+                try {
+                    Pattern.compile("\\p{" + javaName + "}");
+                    property = javaName;
+                    break;
+                } catch (PatternSyntaxException e) {
+                    // try the next form
+                }
+            }
+
+            if (property == null)
+                throw new PcreException("unknown property name after \\P or \\p");
+
+            out.append(negative ? "\\P{" : "\\p{").append(property).append('}');
+            i = end + 1;
+        }
+
+        /**
+         * \x{hh..}, \o{oo..} and \N{U+hh..} as \x{hh..}
+         */
+        protected void codePoint(char kind) throws PcreException {
+            int end = regex.indexOf('}', i + 3);
+            String value = end == -1 ? "" : regex.substring(i + 3, end);
+            int radix = kind == 'o' ? 8 : 16;
+
+            if (kind == 'N') {
+                if (!value.startsWith("U+"))
+                    throw new PcreException("\\N{name} is not supported");
+
+                value = value.substring(2);
+            }
+
+            int code;
+            try {
+                code = Integer.parseInt(value, radix);
+            } catch (NumberFormatException e) {
+                code = -1;
+            }
+
+            if (code < 0)
+                throw new PcreException(kind == 'o'
+                        ? "non-octal character in \\o{} (closing brace missing?)"
+                        : "non-hex character in \\x{} (closing brace missing?)");
+
+            if (code > Character.MAX_CODE_POINT)
+                throw new PcreException("character code point value in \\x{} or \\o{} is too large");
+
+            out.append("\\x{").append(Integer.toHexString(code)).append('}');
+            i = end + 1;
+        }
+
+        /**
+         * \g{N}, \g{-N}, \gN, \g-N and \g{name}
+         */
+        protected void reference(int start, boolean braces) throws PcreException {
+            String ref;
+
+            if (at(start) == '{') {
+                int end = regex.indexOf('}', start);
+                if (end == -1)
+                    throw new PcreException("\\g is not followed by a braced, angle-bracketed, or quoted name/number");
+
+                ref = regex.substring(start + 1, end);
+                i = end + 1;
+            } else {
+                int end = start;
+                if (at(end) == '-' || at(end) == '+')
+                    end++;
+
+                while (at(end) >= '0' && at(end) <= '9') {
+                    end++;
+                }
+
+                ref = regex.substring(start, end);
+                i = end;
+            }
+
+            if (ref.isEmpty())
+                throw new PcreException("a numbered reference must not be zero");
+
+            char first = ref.charAt(0);
+            if (first == '-' || first == '+' || Character.isDigit(first)) {
+                int number;
+                try {
+                    number = Integer.parseInt(first == '+' ? ref.substring(1) : ref);
+                } catch (NumberFormatException e) {
+                    throw new PcreException("reference to non-existent subpattern");
+                }
+
+                if (number < 0)
+                    number = names.size() + number;
+
+                if (number <= 0)
+                    throw new PcreException("reference to non-existent subpattern");
+
+                out.append("(?:\\").append(number).append(')');
+            } else {
+                namedReference(ref);
+            }
+        }
+
+        /**
+         * Names can be defined after a reference, they are resolved at the end.
+         */
+        protected void namedReference(String name) {
+            out.append("(?:\\");
+            namedReferences.add(new String[]{name, String.valueOf(out.length())});
+            out.append(')');
+        }
+
+        protected String resolveReferences() throws PcreException {
+            for (int k = namedReferences.size() - 1; k >= 0; k--) {
+                String[] ref = namedReferences.get(k);
+                int index = names.indexOf(ref[0]);
+
+                if (index == -1)
+                    throw new PcreException("reference to non-existent subpattern");
+
+                out.insert(Integer.parseInt(ref[1]), index);
+            }
+
+            return out.toString();
+        }
+
+        protected void group() throws PcreException {
+            if (at(i + 1) == '*')
+                throw new PcreException("(*VERB) is not supported");
+
+            if (at(i + 1) != '?') {
+                names.add(null);
+                out.append('(');
+                i++;
+                return;
+            }
+
+            char c = at(i + 2);
+            switch (c) {
+                case '#': {
+                    int end = regex.indexOf(')', i);
+                    if (end == -1)
+                        throw new PcreException("missing ) after comment");
+
+                    i = end + 1;
+                    return;
+                }
+                case 'P': {
+                    char next = at(i + 3);
+
+                    if (next == '<') {
+                        namedGroup(i + 4, '>');
+                    } else if (next == '=') {
+                        int end = regex.indexOf(')', i);
+                        if (end == -1)
+                            throw new PcreException("missing )");
+
+                        namedReference(regex.substring(i + 4, end));
+                        i = end + 1;
+                    } else {
+                        throw new PcreException("recursion is not supported");
+                    }
+                    return;
+                }
+                case '<':
+                    if (at(i + 3) != '=' && at(i + 3) != '!') {
+                        namedGroup(i + 3, '>');
+                        return;
+                    }
+                    break;
+                case '\'':
+                    namedGroup(i + 3, '\'');
+                    return;
+                case '|':
+                    throw new PcreException("branch reset is not supported");
+                case '(':
+                    throw new PcreException("conditional subpatterns are not supported");
+                case 'R':
+                case '&':
+                case '+':
+                case '0': case '1': case '2': case '3': case '4':
+                case '5': case '6': case '7': case '8': case '9':
+                    throw new PcreException("recursion is not supported");
+                case '-':
+                    if (Character.isDigit(at(i + 3)))
+                        throw new PcreException("recursion is not supported");
+                    break;
+            }
+
+            out.append("(?");
+            i += 2;
+        }
+
+        protected void namedGroup(int start, char close) throws PcreException {
+            int end = regex.indexOf(close, start);
+            if (end == -1)
+                throw new PcreException("syntax error in subpattern name (missing terminator)");
+
+            String name = regex.substring(start, end);
+
+            if (name.isEmpty() || Character.isDigit(name.charAt(0)))
+                throw new PcreException("group name must start with a non-digit");
+
+            for (int k = 0; k < name.length(); k++) {
+                char c = name.charAt(k);
+                if (!(Character.isLetterOrDigit(c) || c == '_'))
+                    throw new PcreException("syntax error in subpattern name");
+            }
+
+            if (!dupNames && names.contains(name))
+                throw new PcreException("two named subpatterns have the same name");
+
+            names.add(name);
+            out.append('(');
+            i = end + 1;
+        }
+
+        protected void charClass() throws PcreException {
+            out.append('[');
+            i++;
+
+            if (at(i) == '^') {
+                out.append('^');
+                i++;
+            }
+
+            if (at(i) == ']') {
+                out.append("\\]");
+                i++;
+            }
+
+            while (i < length) {
+                char c = regex.charAt(i);
+
+                switch (c) {
+                    case ']':
+                        out.append(']');
+                        i++;
+                        return;
+                    case '\\':
+                        escape(true);
+                        break;
+                    case '[':
+                        if (at(i + 1) == ':') {
+                            int end = regex.indexOf(":]", i + 2);
+                            if (end != -1) {
+                                posixClass(regex.substring(i + 2, end));
+                                i = end + 2;
+                                break;
+                            }
+                        }
+
+                        out.append("\\[");
+                        i++;
+                        break;
+                    case '&':
+                    case '#':
+                        out.append('\\').append(c);
+                        i++;
+                        break;
+                    case ' ':
+                    case '\t':
+                    case '\n':
+                    case '\r':
+                        if (extended)
+                            out.append('\\');
+
+                        out.append(c);
+                        i++;
+                        break;
+                    default:
+                        out.append(c);
+                        i++;
+                }
+            }
+
+            throw new PcreException("missing terminating ] for character class");
+        }
+
+        protected void posixClass(String name) throws PcreException {
+            boolean negative = name.startsWith("^");
+            if (negative)
+                name = name.substring(1);
+
+            if ("word".equals(name)) {
+                out.append(negative ? "\\W" : "\\w");
+                return;
+            }
+
+            String javaName = POSIX_CLASSES.get(name);
+            if (javaName == null)
+                throw new PcreException("unknown POSIX class name");
+
+            out.append(negative ? "\\P{" : "\\p{").append(javaName).append('}');
+        }
+
+        protected static String quoteInClass(String value) {
+            StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < value.length(); k++) {
+                char c = value.charAt(k);
+                if (!Character.isLetterOrDigit(c))
+                    sb.append('\\');
+
+                sb.append(c);
+            }
+
+            return sb.toString();
+        }
+    }
+}
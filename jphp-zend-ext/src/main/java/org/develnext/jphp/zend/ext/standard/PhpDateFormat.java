@@ -0,0 +1,414 @@
+package org.develnext.jphp.zend.ext.standard;
+
+import php.runtime.util.FormatCache;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Compiled format of date(), it is immutable and can be used by several threads.
+ *
+ * Fields of a date are calculated from the timestamp and the offset of the time zone
+ * by the proleptic gregorian calendar as php does, without java.util.Calendar.
+ */
+public class PhpDateFormat {
+    public final static long MILLIS_IN_DAY = 24 * 60 * 60 * 1000L;
+
+    protected final static String[] DAYS = {
+            "Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday"
+    };
+
+    protected final static String[] MONTHS = {
+            "January", "February", "March", "April", "May", "June",
+            "July", "August", "September", "October", "November", "December"
+    };
+
+    protected final static PhpDateFormat ISO_8601 = compile("Y-m-d\\TH:i:sP");
+    protected final static PhpDateFormat RFC_2822 = compile("D, d M Y H:i:s O");
+
+    protected final String format;
+
+    /**
+     * Format characters, 0 - a literal of {@link #literals} with the same index.
+     */
+    protected final char[] codes;
+    protected final String[] literals;
+
+    protected PhpDateFormat(String format, char[] codes, String[] literals) {
+        this.format = format;
+        this.codes = codes;
+        this.literals = literals;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public static PhpDateFormat compile(String format) {
+        int length = format.length();
+
+        char[] codes = new char[length];
+        String[] literals = new String[length];
+        int count = 0;
+
+        StringBuilder literal = new StringBuilder();
+
+        for (int i = 0; i < length; i++) {
+            char ch = format.charAt(i);
+
+            if (ch == '\\') {
+                if (i + 1 < length)
+                    literal.append(format.charAt(++i));
+
+                continue;
+            }
+
+            if (isCode(ch)) {
+                if (literal.length() > 0) {
+                    literals[count++] = literal.toString();
+                    literal.setLength(0);
+                }
+
+                codes[count++] = ch;
+            } else
+                literal.append(ch);
+        }
+
+        if (literal.length() > 0)
+            literals[count++] = literal.toString();
+
+        char[] resultCodes = new char[count];
+        String[] resultLiterals = new String[count];
+
+        System.arraycopy(codes, 0, resultCodes, 0, count);
+        System.arraycopy(literals, 0, resultLiterals, 0, count);
+
+        return new PhpDateFormat(format, resultCodes, resultLiterals);
+    }
+
+    /**
+     * Returns a compiled format from the cache or compiles it.
+     */
+    public static PhpDateFormat valueOf(FormatCache cache, String format) {
+        FormatCache.Key key = new FormatCache.Key(PhpDateFormat.class, format);
+        PhpDateFormat result = (PhpDateFormat) cache.get(key);
+
+        if (result == null) {
+            result = compile(format);
+            cache.put(key, result);
+        }
+
+        return result;
+    }
+
+    protected static boolean isCode(char ch) {
+        switch (ch) {
+            case 'd': case 'D': case 'j': case 'l': case 'N': case 'S': case 'w': case 'z':
+            case 'W':
+            case 'F': case 'm': case 'M': case 'n': case 't':
+            case 'L': case 'o': case 'Y': case 'y':
+            case 'a': case 'A': case 'B': case 'g': case 'G': case 'h': case 'H': case 'i': case 's': case 'u': case 'v':
+            case 'e': case 'I': case 'O': case 'P': case 'p': case 'T': case 'Z':
+            case 'c': case 'r': case 'U':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public String format(long millis, TimeZone zone) {
+        StringBuilder sb = new StringBuilder(format.length() * 2 + 8);
+        format(sb, millis, zone);
+        return sb.toString();
+    }
+
+    public void format(StringBuilder sb, long millis, TimeZone zone) {
+        format(sb, new Fields(millis, zone));
+    }
+
+    protected void format(StringBuilder sb, Fields f) {
+        for (int i = 0; i < codes.length; i++) {
+            char code = codes[i];
+
+            switch (code) {
+                case 0: sb.append(literals[i]); break;
+
+                case 'd': pad(sb, f.day, 2); break;
+                case 'D': sb.append(DAYS[f.dayOfWeek], 0, 3); break;
+                case 'j': sb.append(f.day); break;
+                case 'l': sb.append(DAYS[f.dayOfWeek]); break;
+                case 'N': sb.append(f.dayOfWeek == 0 ? 7 : f.dayOfWeek); break;
+                case 'S': sb.append(suffix(f.day)); break;
+                case 'w': sb.append(f.dayOfWeek); break;
+                case 'z': sb.append(f.dayOfYear); break;
+
+                case 'W': pad(sb, f.isoWeek(), 2); break;
+
+                case 'F': sb.append(MONTHS[f.month - 1]); break;
+                case 'm': pad(sb, f.month, 2); break;
+                case 'M': sb.append(MONTHS[f.month - 1], 0, 3); break;
+                case 'n': sb.append(f.month); break;
+                case 't': sb.append(daysInMonth(f.year, f.month)); break;
+
+                case 'L': sb.append(isLeapYear(f.year) ? '1' : '0'); break;
+                case 'o': sb.append(f.isoYear()); break;
+                case 'Y': year(sb, f.year); break;
+                case 'y': pad(sb, (int) floorMod(f.year, 100), 2); break;
+
+                case 'a': sb.append(f.hour < 12 ? "am" : "pm"); break;
+                case 'A': sb.append(f.hour < 12 ? "AM" : "PM"); break;
+                case 'B': pad(sb, f.swatch(), 3); break;
+                case 'g': sb.append(f.hour % 12 == 0 ? 12 : f.hour % 12); break;
+                case 'G': sb.append(f.hour); break;
+                case 'h': pad(sb, f.hour % 12 == 0 ? 12 : f.hour % 12, 2); break;
+                case 'H': pad(sb, f.hour, 2); break;
+                case 'i': pad(sb, f.minute, 2); break;
+                case 's': pad(sb, f.second, 2); break;
+                case 'u': pad(sb, f.millisecond * 1000, 6); break;
+                case 'v': pad(sb, f.millisecond, 3); break;
+
+                case 'e': sb.append(f.zone.getID()); break;
+                case 'I': sb.append(f.zone.inDaylightTime(new Date(f.millis)) ? '1' : '0'); break;
+                case 'O': offset(sb, f.offset, false); break;
+                case 'P': offset(sb, f.offset, true); break;
+                case 'p':
+                    if (f.offset == 0)
+                        sb.append('Z');
+                    else
+                        offset(sb, f.offset, true);
+                    break;
+                case 'T': sb.append(abbreviation(f)); break;
+                case 'Z': sb.append(f.offset / 1000); break;
+
+                case 'c': ISO_8601.format(sb, f); break;
+                case 'r': RFC_2822.format(sb, f); break;
+                case 'U': sb.append(floorDiv(f.millis, 1000)); break;
+            }
+        }
+    }
+
+    protected static void pad(StringBuilder sb, int value, int width) {
+        if (value < 0) {
+            sb.append('-');
+            value = -value;
+        }
+
+        int digits = 1;
+        for (int i = value; i >= 10; i /= 10)
+            digits++;
+
+        for (; digits < width; digits++)
+            sb.append('0');
+
+        sb.append(value);
+    }
+
+    protected static void year(StringBuilder sb, long year) {
+        if (year < 0) {
+            sb.append('-');
+            year = -year;
+        }
+
+        if (year < 1000)
+            sb.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+
+        sb.append(year);
+    }
+
+    protected static void offset(StringBuilder sb, int offset, boolean colon) {
+        int minutes = offset / 60000;
+
+        sb.append(minutes < 0 ? '-' : '+');
+        minutes = Math.abs(minutes);
+
+        pad(sb, minutes / 60, 2);
+        if (colon)
+            sb.append(':');
+        pad(sb, minutes % 60, 2);
+    }
+
+    protected static String suffix(int day) {
+        if (day >= 11 && day <= 13)
+            return "th";
+
+        switch (day % 10) {
+            case 1: return "st";
+            case 2: return "nd";
+            case 3: return "rd";
+            default: return "th";
+        }
+    }
+
+    /**
+     * Abbreviation of the zone or its offset (e.g. +03) if the zone has no abbreviation.
+     */
+    protected static String abbreviation(Fields f) {
+        String name = f.zone.getDisplayName(f.zone.inDaylightTime(new Date(f.millis)), TimeZone.SHORT, Locale.US);
+
+        if (name.startsWith("GMT") && name.length() > 3) {
+            StringBuilder sb = new StringBuilder(5);
+            offset(sb, f.offset, false);
+
+            if (sb.charAt(3) == '0' && sb.charAt(4) == '0')
+                sb.setLength(3);
+
+            return sb.toString();
+        }
+
+        return name;
+    }
+
+    public static long floorDiv(long x, long y) {
+        long r = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0))
+            r--;
+
+        return r;
+    }
+
+    public static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    public static boolean isLeapYear(long year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    public static int daysInMonth(long year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return count of days from 1970-01-01, the month may be out of 1..12 and the day out of the month
+     */
+    public static long toEpochDay(long year, long month, long day) {
+        year += floorDiv(month - 1, 12);
+        month = floorMod(month - 1, 12) + 1;
+
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+
+        return era * 146097 + doe - 719468 + day - 1;
+    }
+
+    /**
+     * Converts local time of the zone to the timestamp in millis.
+     *
+     * Local time repeated by a fall-back transition gets the earlier offset, local time skipped
+     * by a gap is moved forward by the gap, as php does.
+     */
+    public static long toMillis(long localMillis, TimeZone zone) {
+        long guess = localMillis - zone.getRawOffset();
+        int earlier = zone.getOffset(guess - MILLIS_IN_DAY);
+
+        long millis = localMillis - earlier;
+        if (zone.getOffset(millis) == earlier)
+            return millis;
+
+        int later = zone.getOffset(guess + MILLIS_IN_DAY);
+        if (later != earlier && zone.getOffset(localMillis - later) == later)
+            return localMillis - later;
+
+        return millis; // in a gap
+    }
+
+    /**
+     * Local fields of a timestamp.
+     */
+    public static class Fields {
+        public final long millis;
+        public final TimeZone zone;
+        public final int offset;
+
+        public final long year;
+        public final int month;
+        public final int day;
+        public final int dayOfWeek;
+        public final int dayOfYear;
+
+        public final int hour;
+        public final int minute;
+        public final int second;
+        public final int millisecond;
+
+        protected final long epochDay;
+
+        public Fields(long millis, TimeZone zone) {
+            this.millis = millis;
+            this.zone = zone;
+            this.offset = zone.getOffset(millis);
+
+            long local = millis + offset;
+            epochDay = floorDiv(local, MILLIS_IN_DAY);
+
+            int time = (int) floorMod(local, MILLIS_IN_DAY);
+            hour = time / 3600000;
+            minute = time / 60000 % 60;
+            second = time / 1000 % 60;
+            millisecond = time % 1000;
+
+            long z = epochDay + 719468;
+            long era = floorDiv(z, 146097);
+            long doe = z - era * 146097;
+            long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+            long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+            long mp = (5 * doy + 2) / 153;
+
+            day = (int) (doy - (153 * mp + 2) / 5 + 1);
+            month = (int) (mp < 10 ? mp + 3 : mp - 9);
+            year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+            dayOfWeek = (int) floorMod(epochDay + 4, 7);
+            dayOfYear = (int) (epochDay - toEpochDay(year, 1, 1));
+        }
+
+        protected static int weeksInYear(long year) {
+            int jan1 = (int) floorMod(toEpochDay(year, 1, 1) + 4, 7);
+            return jan1 == 4 || (jan1 == 3 && isLeapYear(year)) ? 53 : 52;
+        }
+
+        public int isoWeek() {
+            int isoDay = dayOfWeek == 0 ? 7 : dayOfWeek;
+            int week = (dayOfYear + 1 - isoDay + 10) / 7;
+
+            if (week < 1)
+                return weeksInYear(year - 1);
+
+            if (week > weeksInYear(year))
+                return 1;
+
+            return week;
+        }
+
+        public long isoYear() {
+            int week = isoWeek();
+
+            if (week >= 52 && month == 1)
+                return year - 1;
+
+            if (week == 1 && month == 12)
+                return year + 1;
+
+            return year;
+        }
+
+        /**
+         * @return Swatch Internet time (UTC+1)
+         */
+        public int swatch() {
+            long seconds = floorMod(floorDiv(millis, 1000) + 3600, 86400);
+            return (int) (seconds * 10 / 864);
+        }
+    }
+}
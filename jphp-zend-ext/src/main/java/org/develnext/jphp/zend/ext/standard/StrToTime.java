@@ -0,0 +1,714 @@
+package org.develnext.jphp.zend.ext.standard;
+
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import static org.develnext.jphp.zend.ext.standard.PhpDateFormat.*;
+
+/**
+ * Parser of strtotime(), supports the common subset of php formats:
+ *
+ *  - @timestamp, now, today, midnight, noon, tomorrow, yesterday
+ *  - dates: 2020-01-31, 2020/01/31, 01/31/2020, 31-01-2020, 31.01.2020, 31 January 2020, January 31, 2020
+ *  - times: 10:30, 10:30:15.5, 10:30pm, 10pm, ISO 8601 (2020-01-31T10:30:00+03:00)
+ *  - zones: UTC, GMT, Z, +03:00, +0300
+ *  - relative: +1 day, -2 weeks 3 hours, 1 month ago, next month, last year, next monday, monday,
+ *    first/last day of (next month)
+ */
+public class StrToTime {
+    protected final static String[] UNITS = {
+            "sec", "secs", "second", "seconds",
+            "min", "mins", "minute", "minutes",
+            "hour", "hours",
+            "day", "days",
+            "week", "weeks",
+            "fortnight", "fortnights",
+            "month", "months",
+            "year", "years"
+    };
+
+    /**
+     * The year is not specified in a date, the current year is used.
+     */
+    protected final static long NO_YEAR = Long.MIN_VALUE;
+
+    protected final String str;
+    protected int pos;
+
+    protected boolean haveDate;
+    protected long year, month, day;
+
+    protected boolean haveTime;
+    protected int hour, minute, second;
+    protected boolean meridianPm;
+
+    protected boolean haveZone;
+    protected int zoneOffset;
+
+    protected long relYear, relMonth, relDay, relHour, relMinute, relSecond;
+
+    protected int weekday = -1;
+    protected int weekdayBehavior;
+
+    /**
+     * 1 - first day of, 2 - last day of
+     */
+    protected int dayOf;
+
+    protected StrToTime(String str) {
+        this.str = str.trim().toLowerCase();
+    }
+
+    /**
+     * @param now in millis
+     * @return timestamp in seconds or null if the string cannot be parsed
+     */
+    public static Long parse(String str, long now, TimeZone zone) {
+        StrToTime parser = new StrToTime(str);
+
+        if (!parser.parse())
+            return null;
+
+        return parser.toTimestamp(now, zone);
+    }
+
+    protected boolean parse() {
+        if (str.isEmpty())
+            return false;
+
+        while (skipSpaces()) {
+            char ch = str.charAt(pos);
+            boolean ok;
+
+            if (ch == '@')
+                ok = timestamp();
+            else if (isDigit(ch))
+                ok = number();
+            else if (ch == '+' || ch == '-')
+                ok = signed();
+            else if (isLetter(ch))
+                ok = word();
+            else
+                ok = false;
+
+            if (!ok)
+                return false;
+        }
+
+        return true;
+    }
+
+    protected long toTimestamp(long now, TimeZone zone) {
+        Fields current = new Fields(now, haveZone ? new SimpleTimeZone(zoneOffset, "") : zone);
+
+        long y = haveDate && year != NO_YEAR ? year : current.year;
+        long m = haveDate ? month : current.month;
+        long d = haveDate ? day : current.day;
+
+        long seconds;
+        if (haveTime)
+            seconds = hour * 3600L + minute * 60L + second;
+        else if (haveDate)
+            seconds = 0;
+        else
+            seconds = current.hour * 3600L + current.minute * 60L + current.second;
+
+        y += relYear;
+        m += relMonth;
+
+        y += floorDiv(m - 1, 12);
+        m = floorMod(m - 1, 12) + 1;
+
+        if (dayOf == 1)
+            d = 1;
+        else if (dayOf == 2)
+            d = daysInMonth(y, (int) m);
+
+        long epochDay = toEpochDay(y, m, d + relDay);
+
+        if (weekday != -1) {
+            int dayOfWeek = (int) floorMod(epochDay + 4, 7);
+
+            if (weekdayBehavior > 0) {
+                int diff = (int) floorMod(weekday - dayOfWeek, 7);
+                epochDay += diff == 0 ? 7 : diff;
+            } else if (weekdayBehavior < 0) {
+                int diff = (int) floorMod(dayOfWeek - weekday, 7);
+                epochDay -= diff == 0 ? 7 : diff;
+            } else
+                epochDay += floorMod(weekday - dayOfWeek, 7);
+        }
+
+        seconds += relHour * 3600 + relMinute * 60 + relSecond;
+
+        long local = epochDay * MILLIS_IN_DAY + seconds * 1000;
+        long millis = haveZone ? local - zoneOffset : toMillis(local, zone);
+
+        return floorDiv(millis, 1000);
+    }
+
+    protected void setTime(int hour, int minute, int second) {
+        this.haveTime = true;
+        this.hour = hour;
+        this.minute = minute;
+        this.second = second;
+    }
+
+    protected boolean setDate(long year, long month, long day) {
+        if (month < 1 || month > 12 || day < 1 || day > 31)
+            return false;
+
+        this.haveDate = true;
+        this.year = year;
+        this.month = month;
+        this.day = day;
+
+        return true;
+    }
+
+    protected static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    protected static boolean isLetter(char ch) {
+        return ch >= 'a' && ch <= 'z';
+    }
+
+    protected char charAt(int index) {
+        return index < str.length() ? str.charAt(index) : '\0';
+    }
+
+    /**
+     * @return false if the end of string is reached
+     */
+    protected boolean skipSpaces() {
+        while (pos < str.length()) {
+            char ch = str.charAt(pos);
+
+            if (ch != ' ' && ch != '\t' && ch != ',')
+                return true;
+
+            pos++;
+        }
+
+        return false;
+    }
+
+    protected int digits() {
+        int start = pos;
+        while (isDigit(charAt(pos)))
+            pos++;
+
+        return pos - start;
+    }
+
+    /**
+     * Reads a number of min..max digits or returns -1.
+     */
+    protected long readNumber(int min, int max) {
+        int start = pos;
+        int count = digits();
+
+        if (count < min || count > max) {
+            pos = start;
+            return -1;
+        }
+
+        return Long.parseLong(str.substring(start, pos));
+    }
+
+    protected String readWord() {
+        int start = pos;
+        while (isLetter(charAt(pos)))
+            pos++;
+
+        return str.substring(start, pos);
+    }
+
+    /**
+     * Reads the next word after spaces without moving the position.
+     */
+    protected String peekWord() {
+        int start = pos;
+
+        skipSpaces();
+        String word = readWord();
+
+        pos = start;
+        return word;
+    }
+
+    protected static long fullYear(long year, int digits) {
+        if (digits <= 2)
+            return year < 70 ? year + 2000 : year + 1900;
+
+        return year;
+    }
+
+    protected static int monthOf(String word) {
+        if (word.length() < 3)
+            return 0;
+
+        for (int i = 0; i < MONTHS.length; i++) {
+            String name = MONTHS[i].toLowerCase();
+
+            if (name.equals(word) || (word.length() == 3 && name.startsWith(word)))
+                return i + 1;
+        }
+
+        return "sept".equals(word) ? 9 : 0;
+    }
+
+    protected static int weekdayOf(String word) {
+        if (word.length() < 3)
+            return -1;
+
+        for (int i = 0; i < DAYS.length; i++) {
+            String name = DAYS[i].toLowerCase();
+
+            if (name.equals(word) || (word.length() == 3 && name.startsWith(word)))
+                return i;
+        }
+
+        if ("tues".equals(word))
+            return 2;
+
+        if ("wednes".equals(word))
+            return 3;
+
+        if ("thur".equals(word) || "thurs".equals(word))
+            return 4;
+
+        return -1;
+    }
+
+    protected static boolean isUnit(String word) {
+        for (String unit : UNITS) {
+            if (unit.equals(word))
+                return true;
+        }
+
+        return false;
+    }
+
+    protected void addRelative(String unit, long amount) {
+        char ch = unit.charAt(0);
+
+        if (unit.startsWith("mi"))
+            relMinute += amount;
+        else if (unit.startsWith("mo"))
+            relMonth += amount;
+        else if (ch == 's')
+            relSecond += amount;
+        else if (ch == 'h')
+            relHour += amount;
+        else if (ch == 'd')
+            relDay += amount;
+        else if (ch == 'w')
+            relDay += amount * 7;
+        else if (ch == 'f')
+            relDay += amount * 14;
+        else if (ch == 'y')
+            relYear += amount;
+    }
+
+    protected boolean timestamp() {
+        pos++;
+
+        boolean negative = charAt(pos) == '-';
+        if (negative || charAt(pos) == '+')
+            pos++;
+
+        long value = readNumber(1, 18);
+        if (value == -1)
+            return false;
+
+        Fields fields = new Fields((negative ? -value : value) * 1000, new SimpleTimeZone(0, "UTC"));
+
+        setDate(fields.year, fields.month, fields.day);
+        setTime(fields.hour, fields.minute, fields.second);
+        haveZone = true;
+        zoneOffset = 0;
+
+        return true;
+    }
+
+    protected boolean number() {
+        int start = pos;
+        int count = digits();
+        char next = charAt(pos);
+
+        pos = start;
+
+        if (next == ':')
+            return time();
+
+        if (count == 4 && (next == '-' || next == '/'))
+            return isoDate();
+
+        if (count <= 2 && next == '/')
+            return americanDate();
+
+        if (count <= 2 && (next == '-' || next == '.'))
+            return europeanDate(next);
+
+        long value = readNumber(1, 9);
+        if (value == -1)
+            return false;
+
+        String suffix = readWord();
+
+        if (suffix.equals("st") || suffix.equals("nd") || suffix.equals("rd") || suffix.equals("th"))
+            return textDate(value);
+
+        if (suffix.length() > 0)
+            pos -= suffix.length();
+
+        String word = peekWord();
+
+        if (isUnit(word)) {
+            skipSpaces();
+            addRelative(readWord(), value);
+            return true;
+        }
+
+        if (monthOf(word) > 0)
+            return textDate(value);
+
+        if (value <= 12 && meridian()) {
+            setTime(applyMeridian((int) value), 0, 0);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Reads am/pm (a.m./p.m.) after the time.
+     */
+    protected boolean meridian() {
+        int start = pos;
+        skipSpaces();
+
+        char ch = charAt(pos);
+        if (ch == 'a' || ch == 'p') {
+            int next = charAt(pos + 1) == '.' ? pos + 2 : pos + 1;
+
+            if (charAt(next) == 'm' && !isLetter(charAt(next + 1))) {
+                meridianPm = ch == 'p';
+                pos = charAt(next + 1) == '.' ? next + 2 : next + 1;
+                return true;
+            }
+        }
+
+        pos = start;
+        return false;
+    }
+
+    protected int applyMeridian(int hour) {
+        if (hour == 12)
+            return meridianPm ? 12 : 0;
+
+        return meridianPm ? hour + 12 : hour;
+    }
+
+    protected boolean time() {
+        long h = readNumber(1, 2);
+        if (h == -1 || charAt(pos) != ':')
+            return false;
+
+        pos++;
+        long m = readNumber(2, 2);
+        if (m == -1)
+            return false;
+
+        long s = 0;
+        if (charAt(pos) == ':') {
+            pos++;
+            s = readNumber(2, 2);
+            if (s == -1)
+                return false;
+
+            if ((charAt(pos) == '.' || charAt(pos) == ',') && isDigit(charAt(pos + 1))) {
+                pos++;
+                digits();
+            }
+        }
+
+        if (meridian()) {
+            if (h < 1 || h > 12)
+                return false;
+
+            h = applyMeridian((int) h);
+        }
+
+        if (h > 24 || m > 59 || s > 60)
+            return false;
+
+        setTime((int) h, (int) m, (int) s);
+        return true;
+    }
+
+    /**
+     * Skips the separator T of ISO 8601 between a date and a time.
+     */
+    protected void skipTimeSeparator() {
+        if (charAt(pos) == 't' && isDigit(charAt(pos + 1)))
+            pos++;
+    }
+
+    protected boolean isoDate() {
+        long y = readNumber(4, 4);
+        char separator = charAt(pos++);
+
+        long m = readNumber(1, 2);
+        if (m == -1 || charAt(pos++) != separator)
+            return false;
+
+        long d = readNumber(1, 2);
+        if (d == -1)
+            return false;
+
+        skipTimeSeparator();
+        return setDate(y, m, d);
+    }
+
+    protected boolean americanDate() {
+        long m = readNumber(1, 2);
+        pos++;
+
+        long d = readNumber(1, 2);
+        if (d == -1)
+            return false;
+
+        long y = NO_YEAR;
+        if (charAt(pos) == '/') {
+            pos++;
+
+            int start = pos;
+            y = readNumber(2, 4);
+            if (y == -1)
+                return false;
+
+            y = fullYear(y, pos - start);
+        }
+
+        return setDate(y, m, d);
+    }
+
+    protected boolean europeanDate(char separator) {
+        long d = readNumber(1, 2);
+        pos++;
+
+        long m = readNumber(1, 2);
+        if (m == -1 || charAt(pos) != separator)
+            return false;
+
+        pos++;
+
+        int start = pos;
+        long y = readNumber(separator == '.' ? 2 : 4, 4);
+        if (y == -1)
+            return false;
+
+        y = fullYear(y, pos - start);
+        return setDate(y, m, d);
+    }
+
+    /**
+     * 31 January [2020]
+     */
+    protected boolean textDate(long d) {
+        skipSpaces();
+
+        int m = monthOf(readWord());
+        if (m == 0)
+            return false;
+
+        return setDate(textYear(), m, d);
+    }
+
+    /**
+     * Reads an optional year after a text date, or returns the current year.
+     */
+    protected long textYear() {
+        int start = pos;
+        skipSpaces();
+
+        int yearStart = pos;
+        long y = readNumber(4, 4);
+
+        if (y == -1 || charAt(pos) == ':') {
+            pos = start;
+            return NO_YEAR;
+        }
+
+        pos = yearStart + 4;
+        return y;
+    }
+
+    protected boolean signed() {
+        int sign = charAt(pos) == '-' ? -1 : 1;
+        pos++;
+
+        int start = pos;
+        int count = digits();
+        if (count == 0)
+            return false;
+
+        long value = Long.parseLong(str.substring(start, pos));
+        String word = peekWord();
+
+        if (isUnit(word)) {
+            skipSpaces();
+            addRelative(readWord(), sign * value);
+            return true;
+        }
+
+        int offset;
+
+        if (charAt(pos) == ':') {
+            if (count > 2)
+                return false;
+
+            pos++;
+            long minutes = readNumber(2, 2);
+            if (minutes == -1)
+                return false;
+
+            offset = (int) (value * 60 + minutes);
+        } else if (count <= 2)
+            offset = (int) (value * 60);
+        else if (count == 4)
+            offset = (int) (value / 100 * 60 + value % 100);
+        else
+            return false;
+
+        haveZone = true;
+        zoneOffset = sign * offset * 60000;
+        return true;
+    }
+
+    protected boolean word() {
+        String word = readWord();
+
+        if (word.equals("now"))
+            return true;
+
+        if (word.equals("today") || word.equals("midnight")) {
+            setTime(0, 0, 0);
+            return true;
+        }
+
+        if (word.equals("noon")) {
+            setTime(12, 0, 0);
+            return true;
+        }
+
+        if (word.equals("tomorrow") || word.equals("yesterday")) {
+            relDay += word.equals("tomorrow") ? 1 : -1;
+            setTime(0, 0, 0);
+            return true;
+        }
+
+        if (word.equals("ago")) {
+            relYear = -relYear;
+            relMonth = -relMonth;
+            relDay = -relDay;
+            relHour = -relHour;
+            relMinute = -relMinute;
+            relSecond = -relSecond;
+            return true;
+        }
+
+        if (word.equals("utc") || word.equals("gmt") || word.equals("z")) {
+            haveZone = true;
+            zoneOffset = 0;
+            return true;
+        }
+
+        if (word.equals("first"))
+            return dayOf(1);
+
+        if (word.equals("next") || word.equals("last") || word.equals("previous") || word.equals("this")) {
+            int amount = word.equals("next") ? 1 : word.equals("this") ? 0 : -1;
+
+            if (amount == -1 && word.equals("last") && peekWord().equals("day")) {
+                int start = pos;
+                if (dayOf(2))
+                    return true;
+
+                pos = start;
+            }
+
+            skipSpaces();
+            String next = readWord();
+
+            int day = weekdayOf(next);
+            if (day != -1) {
+                weekday = day;
+                weekdayBehavior = amount;
+                setTime(0, 0, 0);
+                return true;
+            }
+
+            if (isUnit(next)) {
+                addRelative(next, amount);
+                return true;
+            }
+
+            return false;
+        }
+
+        int m = monthOf(word);
+        if (m > 0) {
+            skipSpaces();
+
+            int start = pos;
+            long d = readNumber(1, 2);
+
+            if (d == -1) {
+                // January 2020
+                long y = readNumber(4, 4);
+                if (y == -1)
+                    return false;
+
+                return setDate(y, m, 1);
+            }
+
+            String suffix = readWord();
+            if (!suffix.isEmpty() && !suffix.equals("st") && !suffix.equals("nd") && !suffix.equals("rd") && !suffix.equals("th")) {
+                pos = start;
+                return false;
+            }
+
+            return setDate(textYear(), m, d);
+        }
+
+        int day = weekdayOf(word);
+        if (day != -1) {
+            weekday = day;
+            weekdayBehavior = 0;
+            setTime(0, 0, 0);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * first/last day of
+     */
+    protected boolean dayOf(int value) {
+        skipSpaces();
+        if (!readWord().equals("day"))
+            return false;
+
+        skipSpaces();
+        if (!readWord().equals("of"))
+            return false;
+
+        dayOf = value;
+        return true;
+    }
+}
@@ -173,7 +173,7 @@ public class StringFunctions extends FunctionsContainer {
 
 
     public static Memory sprintf(Environment env, TraceInfo trace, String format, Memory... args){
-        PrintF printF = new PrintF(env.getLocale(), format, args);
+        PrintF printF = new PrintF(env.getLocale(), env.getScope().getFormatCache(), format, args);
         String result = printF.toString();
         if (result == null){
             env.warning(trace, "Too few arguments");
@@ -1488,6 +1488,12 @@ public class StringFunctions extends FunctionsContainer {
 
     @Runtime.Immutable
     public static String number_format(double number, int decimals, char decPoint, char thousandsSep){
+        if (!Double.isNaN(number) && !Double.isInfinite(number)) {
+            StringBuilder sb = new StringBuilder(24);
+            PrintF.appendFixed(sb, number, decimals < 0 ? 0 : decimals, decPoint, thousandsSep, false);
+            return sb.toString();
+        }
+
         String pattern;
         if (decimals > 0) {
             StringBuilder patternBuilder = new StringBuilder(6 + decimals);
@@ -0,0 +1,33 @@
+package array;
+
+import org.develnext.jphp.zend.ZendJvmTestCase;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ArraySetTest extends ZendJvmTestCase {
+
+    @Test
+    public void testUnique() {
+        check("ext/array/unique_001.php");
+    }
+
+    @Test
+    public void testDiff() {
+        check("ext/array/diff_001.php");
+    }
+
+    @Test
+    public void testSearch() {
+        check("ext/array/search_001.php");
+    }
+
+    @Test
+    public void testSlice() {
+        check("ext/array/slice_001.php");
+    }
+}
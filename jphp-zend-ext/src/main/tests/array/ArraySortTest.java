@@ -0,0 +1,33 @@
+package array;
+
+import org.develnext.jphp.zend.ZendJvmTestCase;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ArraySortTest extends ZendJvmTestCase {
+
+    @Test
+    public void testSort() {
+        check("ext/array/sort_001.php");
+    }
+
+    @Test
+    public void testAsort() {
+        check("ext/array/asort_001.php");
+    }
+
+    @Test
+    public void testUsort() {
+        check("ext/array/usort_001.php");
+    }
+
+    @Test
+    public void testMultisort() {
+        check("ext/array/multisort_001.php");
+    }
+}
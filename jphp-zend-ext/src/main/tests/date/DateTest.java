@@ -0,0 +1,28 @@
+package date;
+
+import org.develnext.jphp.zend.ZendJvmTestCase;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class DateTest extends ZendJvmTestCase {
+
+    @Test
+    public void testDate(){
+        check("ext/date/date_001.php");
+    }
+
+    @Test
+    public void testMktime(){
+        check("ext/date/mktime_001.php");
+    }
+
+    @Test
+    public void testStrtotime(){
+        check("ext/date/strtotime_001.php");
+    }
+}
@@ -15,4 +15,24 @@ public class FileTest extends ZendJvmTestCase {
     public void testDirname() {
         check("ext/file/dirname_001.php");
     }
+
+    @Test
+    public void testFile() {
+        check("ext/file/file_001.php");
+    }
+
+    @Test
+    public void testFopen() {
+        check("ext/file/fopen_001.php");
+    }
+
+    @Test
+    public void testFgetcsv() {
+        check("ext/file/fgetcsv_001.php");
+    }
+
+    @Test
+    public void testReadfile() {
+        check("ext/file/readfile_001.php");
+    }
 }
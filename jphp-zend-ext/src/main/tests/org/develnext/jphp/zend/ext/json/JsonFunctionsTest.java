@@ -27,52 +27,52 @@ public class JsonFunctionsTest extends JvmCompilerCase {
 
     @Test
     public void testScalarJsonEncode() {
-        assertEquals("null", JsonFunctions.json_encode(Memory.NULL));
-        assertEquals("null", JsonFunctions.json_encode(Memory.UNDEFINED));
+        assertEquals("null", JsonFunctions.json_encode(env, Memory.NULL).toString());
+        assertEquals("null", JsonFunctions.json_encode(env, Memory.UNDEFINED).toString());
 
-        assertEquals("true", JsonFunctions.json_encode(Memory.TRUE));
-        assertEquals("false", JsonFunctions.json_encode(Memory.FALSE));
+        assertEquals("true", JsonFunctions.json_encode(env, Memory.TRUE).toString());
+        assertEquals("false", JsonFunctions.json_encode(env, Memory.FALSE).toString());
 
-        assertEquals("100500", JsonFunctions.json_encode(LongMemory.valueOf(100500)));
-        assertEquals("100.5", JsonFunctions.json_encode(DoubleMemory.valueOf(100.500)));
+        assertEquals("100500", JsonFunctions.json_encode(env, LongMemory.valueOf(100500)).toString());
+        assertEquals("100.5", JsonFunctions.json_encode(env, DoubleMemory.valueOf(100.500)).toString());
 
-        assertEquals("\"\"", JsonFunctions.json_encode(StringMemory.valueOf("")));
-        assertEquals("\"OK\"", JsonFunctions.json_encode(StringMemory.valueOf("OK")));
-        assertEquals("\"OK\"", JsonFunctions.json_encode(new StringBuilderMemory("OK")));
-        assertEquals("\"OK\"", JsonFunctions.json_encode(new BinaryMemory("OK")));
+        assertEquals("\"\"", JsonFunctions.json_encode(env, StringMemory.valueOf("")).toString());
+        assertEquals("\"OK\"", JsonFunctions.json_encode(env, StringMemory.valueOf("OK")).toString());
+        assertEquals("\"OK\"", JsonFunctions.json_encode(env, new StringBuilderMemory("OK")).toString());
+        assertEquals("\"OK\"", JsonFunctions.json_encode(env, new BinaryMemory("OK")).toString());
 
-        assertEquals("true", JsonFunctions.json_encode(new ReferenceMemory(Memory.TRUE)));
+        assertEquals("true", JsonFunctions.json_encode(env, new ReferenceMemory(Memory.TRUE)).toString());
     }
 
     @Test
     public void testArrayJsonEncode() {
         // simple
-        assertEquals("[1,2,3,4]", JsonFunctions.json_encode(new ArrayMemory(1,2,3,4)));
-        assertEquals("[1,\"foo\",3.5,true]", JsonFunctions.json_encode(new ArrayMemory(1,"foo",3.5,true)));
+        assertEquals("[1,2,3,4]", JsonFunctions.json_encode(env, new ArrayMemory(1,2,3,4)).toString());
+        assertEquals("[1,\"foo\",3.5,true]", JsonFunctions.json_encode(env, new ArrayMemory(1,"foo",3.5,true)).toString());
 
         // nested
-        assertEquals("[[1,2],[3,4],5]", JsonFunctions.json_encode(new ArrayMemory(
+        assertEquals("[[1,2],[3,4],5]", JsonFunctions.json_encode(env, new ArrayMemory(
                 new ArrayMemory(1,2), new ArrayMemory(3,4), 5
-        )));
+        )).toString());
     }
 
     @Test
     public void testObjectJsonEncode() {
-        assertEquals("{\"0\":100,\"1\":500}", JsonFunctions.json_encode(
+        assertEquals("{\"0\":100,\"1\":500}", JsonFunctions.json_encode(env, 
                 new ArrayMemory(100,500), JsonConstants.JSON_FORCE_OBJECT
-        ));
+        ).toString());
 
         ArrayMemory array = new ArrayMemory(100, 500);
         array.put("x", new LongMemory(100500));
 
-        assertEquals("{\"0\":100,\"1\":500,\"x\":100500}", JsonFunctions.json_encode(array));
+        assertEquals("{\"0\":100,\"1\":500,\"x\":100500}", JsonFunctions.json_encode(env, array).toString());
 
         StdClass stdClass = new StdClass(env);
         stdClass.getProperties().put("x", new LongMemory(100));
         stdClass.getProperties().put("y", new LongMemory(500));
         stdClass.getProperties().put("\0*\0z", new LongMemory(100500));
 
-        assertEquals("{\"x\":100,\"y\":500}", JsonFunctions.json_encode(new ObjectMemory(stdClass)));
+        assertEquals("{\"x\":100,\"y\":500}", JsonFunctions.json_encode(env, new ObjectMemory(stdClass)).toString());
     }
 
     @Test
@@ -126,6 +126,62 @@ public class JsonFunctionsTest extends JvmCompilerCase {
         assertEquals(JsonConstants.JSON_ERROR_SYNTAX, JsonFunctions.json_last_error(env));
     }
 
+    @Test
+    public void testOptionsJsonEncode() {
+        ArrayMemory array = new ArrayMemory();
+        array.put("x", new ArrayMemory(1, 2));
+        array.put("y", Memory.NULL);
+        array.put("z", StringMemory.valueOf("<a href='#'>&</a>"));
+
+        assertEquals("{\n  \"x\": [\n    1,\n    2\n  ],\n  \"z\": \"<a href='#'>&</a>\"\n}",
+                JsonFunctions.json_encode(env, array, JsonConstants.JSON_PRETTY_PRINT).toString());
+
+        assertEquals("{\"x\":[1,2],\"z\":\"\\u003ca href\\u003d\\u0027#\\u0027\\u003e\\u0026\\u003c/a\\u003e\"}",
+                JsonFunctions.json_encode(env, array, JsonConstants.JSON_HEX_TAG).toString());
+
+        assertEquals("[1,\"2x\",-3]", JsonFunctions.json_encode(env, 
+                new ArrayMemory(StringMemory.valueOf("1"), StringMemory.valueOf("2x"), StringMemory.valueOf("-3")),
+                JsonConstants.JSON_NUMERIC_CHECK
+        ).toString());
+    }
+
+    @Test
+    public void testErrorJsonEncode() {
+        ArrayMemory array = new ArrayMemory(1, Double.NaN, Double.POSITIVE_INFINITY);
+
+        assertEquals(Memory.FALSE, JsonFunctions.json_encode(env, array));
+        assertEquals(JsonConstants.JSON_ERROR_INF_OR_NAN, JsonFunctions.json_last_error(env));
+
+        assertEquals("[1,0,0]", JsonFunctions.json_encode(env, array, JsonConstants.JSON_PARTIAL_OUTPUT_ON_ERROR).toString());
+        assertEquals(JsonConstants.JSON_ERROR_INF_OR_NAN, JsonFunctions.json_last_error(env));
+
+        assertEquals("[1]", JsonFunctions.json_encode(env, new ArrayMemory(1)).toString());
+        assertEquals(JsonConstants.JSON_ERROR_NONE, JsonFunctions.json_last_error(env));
+    }
+
+    @Test
+    public void testStateMismatchJsonDecode() {
+        assertEquals(Memory.NULL, JsonFunctions.json_decode(env, "[1}"));
+        assertEquals(JsonConstants.JSON_ERROR_STATE_MISMATCH, JsonFunctions.json_last_error(env));
+
+        assertEquals(Memory.NULL, JsonFunctions.json_decode(env, "{\"x\":1]"));
+        assertEquals(JsonConstants.JSON_ERROR_STATE_MISMATCH, JsonFunctions.json_last_error(env));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFrozenEncoder() {
+        JsonExtension.getEncoder(JsonConstants.JSON_PRETTY_PRINT).setPrettyPrint(false);
+    }
+
+    @Test
+    public void testDepthJsonDecode() {
+        assertEquals(Memory.NULL, JsonFunctions.json_decode(env, "[[[1]]]", false, 2));
+        assertEquals(JsonConstants.JSON_ERROR_DEPTH, JsonFunctions.json_last_error(env));
+
+        assertTrue(JsonFunctions.json_decode(env, "[[1]]", false, 2).isArray());
+        assertEquals(JsonConstants.JSON_ERROR_NONE, JsonFunctions.json_last_error(env));
+    }
+
     @Test
     public void testJsonSerializableJsonEncode() {
         check("json/json_serializable.php");
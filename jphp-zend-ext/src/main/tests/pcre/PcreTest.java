@@ -0,0 +1,44 @@
+package pcre;
+
+import org.develnext.jphp.zend.ZendJvmTestCase;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.MethodSorters;
+
+@RunWith(JUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PcreTest extends ZendJvmTestCase {
+
+    @Test
+    public void testPregMatch() {
+        check("ext/pcre/preg_match_001.php");
+        check("ext/pcre/preg_match_002.php");
+    }
+
+    @Test
+    public void testPregMatchAll() {
+        check("ext/pcre/preg_match_all_001.php");
+    }
+
+    @Test
+    public void testPregReplace() {
+        check("ext/pcre/preg_replace_001.php");
+    }
+
+    @Test
+    public void testPregSplit() {
+        check("ext/pcre/preg_split_001.php");
+    }
+
+    @Test
+    public void testPregQuote() {
+        check("ext/pcre/preg_quote_001.php");
+    }
+
+    @Test
+    public void testErrors() {
+        check("ext/pcre/preg_error_001.php");
+    }
+}
@@ -0,0 +1,59 @@
+--TEST--
+asort(), arsort(), ksort(), krsort() - keys are kept
+--FILE--
+<?php
+$fruits = array('d' => 'lemon', 'a' => 'orange', 'b' => 'banana', 'c' => 'apple');
+
+asort($fruits);
+foreach ($fruits as $key => $val) echo "$key = $val\n";
+
+arsort($fruits);
+foreach ($fruits as $key => $val) echo "$key = $val\n";
+
+ksort($fruits);
+foreach ($fruits as $key => $val) echo "$key = $val\n";
+
+krsort($fruits);
+foreach ($fruits as $key => $val) echo "$key = $val\n";
+
+$stable = array('x' => 1, 'y' => 0, 'z' => 1, 'w' => 0);
+asort($stable);
+echo implode(',', array_keys($stable)), "\n";
+
+$mixed = array(10 => 'a', 'b' => 'b', 2 => 'c', 1 => 'd');
+ksort($mixed, SORT_STRING);
+echo implode(',', array_keys($mixed)), "\n";
+
+$ints = array(10 => 'a', 9 => 'b', 100 => 'c');
+ksort($ints);
+var_dump($ints);
+$ints[] = 'd';
+echo implode(',', array_keys($ints)), "\n";
+--EXPECT--
+c = apple
+b = banana
+d = lemon
+a = orange
+a = orange
+d = lemon
+b = banana
+c = apple
+a = orange
+b = banana
+c = apple
+d = lemon
+d = lemon
+c = apple
+b = banana
+a = orange
+y,w,x,z
+1,10,2,b
+array(3) {
+  [9]=>
+  string(1) "b"
+  [10]=>
+  string(1) "a"
+  [100]=>
+  string(1) "c"
+}
+9,10,100,101
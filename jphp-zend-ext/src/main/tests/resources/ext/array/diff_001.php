@@ -0,0 +1,59 @@
+--TEST--
+array_diff(), array_intersect() and their key variants
+--FILE--
+<?php
+$array1 = array('a' => 'green', 'red', 'blue', 'red');
+$array2 = array('b' => 'green', 'yellow', 'red');
+var_dump(array_diff($array1, $array2));
+var_dump(array_intersect($array1, $array2));
+
+var_dump(array_diff(array(1, '2', 3.0, 4), array('1', 2), array(3)));
+var_dump(array_intersect(array(1, 2, 3, 4), array(4, 3, 2), array('2', 4)));
+
+$keys1 = array('blue' => 1, 'red' => 2, 'green' => 3, 'purple' => 4, 5 => 'five');
+$keys2 = array('green' => 5, 'blue' => 6, 'yellow' => 7, 'cyan' => 8, '5' => 0);
+var_dump(array_diff_key($keys1, $keys2));
+var_dump(array_intersect_key($keys1, $keys2));
+
+var_dump(array_intersect_key(array('a' => 1, 0 => 2), array(1, 2)));
+--EXPECT--
+array(1) {
+  [1]=>
+  string(4) "blue"
+}
+array(3) {
+  ["a"]=>
+  string(5) "green"
+  [0]=>
+  string(3) "red"
+  [2]=>
+  string(3) "red"
+}
+array(1) {
+  [3]=>
+  int(4)
+}
+array(2) {
+  [1]=>
+  int(2)
+  [3]=>
+  int(4)
+}
+array(2) {
+  ["red"]=>
+  int(2)
+  ["purple"]=>
+  int(4)
+}
+array(3) {
+  ["blue"]=>
+  int(1)
+  ["green"]=>
+  int(3)
+  [5]=>
+  string(4) "five"
+}
+array(1) {
+  [0]=>
+  int(2)
+}
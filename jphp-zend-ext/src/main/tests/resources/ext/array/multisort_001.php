@@ -0,0 +1,37 @@
+--TEST--
+array_multisort() - basic
+--FILE--
+<?php
+$ar1 = array(10, 100, 100, 0);
+$ar2 = array(1, 3, 2, 4);
+array_multisort($ar1, $ar2);
+echo implode(',', $ar1), "\n";
+echo implode(',', $ar2), "\n";
+
+$data = array(3, 1, 2);
+$names = array('x' => 'c', 'y' => 'a', 5 => 'b');
+array_multisort($data, SORT_DESC, $names);
+var_dump($names);
+
+$volume = array(67, 86, 85, 98, 86, 67);
+$edition = array(2, 1, 6, 2, 6, 7);
+array_multisort($volume, SORT_DESC, SORT_NUMERIC, $edition, SORT_ASC);
+echo implode(',', $volume), "\n";
+echo implode(',', $edition), "\n";
+
+$short = array(1, 2);
+var_dump(@array_multisort($ar1, $short));
+--EXPECT--
+0,10,100,100
+4,1,2,3
+array(3) {
+  ["x"]=>
+  string(1) "c"
+  [0]=>
+  string(1) "b"
+  ["y"]=>
+  string(1) "a"
+}
+98,86,86,85,67,67
+2,1,6,6,2,7
+bool(false)
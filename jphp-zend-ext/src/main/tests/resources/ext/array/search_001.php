@@ -0,0 +1,17 @@
+--TEST--
+array_search() - basic
+--FILE--
+<?php
+$array = array(0 => 'blue', 1 => 'red', 2 => 'green', 'x' => '1');
+
+var_dump(array_search('green', $array));
+var_dump(array_search('red', $array));
+var_dump(array_search(1, $array));
+var_dump(array_search(1, $array, true));
+var_dump(array_search('black', $array));
+--EXPECT--
+int(2)
+int(1)
+string(1) "x"
+bool(false)
+bool(false)
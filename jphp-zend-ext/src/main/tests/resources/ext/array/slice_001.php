@@ -0,0 +1,74 @@
+--TEST--
+array_slice(), array_splice() - basic
+--FILE--
+<?php
+$input = array('a', 'b', 'c', 'd', 'e');
+
+echo implode(',', array_slice($input, 2)), "\n";
+echo implode(',', array_slice($input, -2, 1)), "\n";
+echo implode(',', array_slice($input, 0, 3)), "\n";
+echo implode(',', array_slice($input, 1, -1)), "\n";
+var_dump(array_slice($input, 2, -1, true));
+var_dump(array_slice(array(5 => 'x', 'k' => 'y', 7 => 'z'), 0, 2));
+
+$copy = array_slice($input, 0);
+$copy[] = 'f';
+echo count($input), ' ', count($copy), "\n";
+
+$input = array('red', 'green', 'blue', 'yellow');
+var_dump(array_splice($input, 2));
+echo implode(',', $input), "\n";
+
+$input = array('red', 'green', 'blue', 'yellow');
+array_splice($input, 1, -1);
+echo implode(',', $input), "\n";
+
+$input = array('red', 'green', 'blue', 'yellow');
+array_splice($input, 1, count($input), 'orange');
+echo implode(',', $input), "\n";
+
+$input = array('red', 'green', 'blue', 'yellow');
+array_splice($input, -1, 1, array('black', 'maroon'));
+echo implode(',', $input), "\n";
+
+$input = array('red', 'k' => 'green', 'blue');
+array_splice($input, 3, 0, 'purple');
+var_dump($input);
+--EXPECT--
+c,d,e
+d
+a,b,c
+b,c,d
+array(2) {
+  [2]=>
+  string(1) "c"
+  [3]=>
+  string(1) "d"
+}
+array(2) {
+  [0]=>
+  string(1) "x"
+  ["k"]=>
+  string(1) "y"
+}
+5 6
+array(2) {
+  [0]=>
+  string(4) "blue"
+  [1]=>
+  string(6) "yellow"
+}
+red,green
+red,yellow
+red,orange
+red,green,blue,black,maroon
+array(4) {
+  [0]=>
+  string(3) "red"
+  ["k"]=>
+  string(5) "green"
+  [1]=>
+  string(4) "blue"
+  [2]=>
+  string(6) "purple"
+}
@@ -0,0 +1,63 @@
+--TEST--
+sort(), rsort() - basic
+--FILE--
+<?php
+$a = array(3, 1, 2, 10, -5);
+sort($a);
+echo implode(',', $a), "\n";
+
+rsort($a);
+echo implode(',', $a), "\n";
+
+$b = array('b' => 2.5, 'a' => 1, 'c' => -0.5);
+sort($b);
+var_dump($b);
+
+$c = array('10', '9', '2', 'apple', 'Banana');
+sort($c);
+echo implode(',', $c), "\n";
+
+sort($c, SORT_STRING);
+echo implode(',', $c), "\n";
+
+sort($c, SORT_STRING | SORT_FLAG_CASE);
+echo implode(',', $c), "\n";
+
+$d = array('img12.png', 'img10.png', 'IMG2.png', 'img1.png');
+sort($d, SORT_NATURAL | SORT_FLAG_CASE);
+echo implode(',', $d), "\n";
+
+$e = array('3', 2, '1.5', 10);
+sort($e, SORT_NUMERIC);
+var_dump($e);
+
+$empty = array();
+var_dump(sort($empty), $empty);
+--EXPECT--
+-5,1,2,3,10
+10,3,2,1,-5
+array(3) {
+  [0]=>
+  float(-0.5)
+  [1]=>
+  int(1)
+  [2]=>
+  float(2.5)
+}
+2,9,10,Banana,apple
+10,2,9,Banana,apple
+10,2,9,apple,Banana
+img1.png,IMG2.png,img10.png,img12.png
+array(4) {
+  [0]=>
+  string(3) "1.5"
+  [1]=>
+  int(2)
+  [2]=>
+  string(1) "3"
+  [3]=>
+  int(10)
+}
+bool(true)
+array(0) {
+}
@@ -0,0 +1,55 @@
+--TEST--
+array_unique() - basic
+--FILE--
+<?php
+$input = array('a' => 'green', 'red', 'b' => 'green', 'blue', 'red');
+var_dump(array_unique($input));
+
+$ids = array(4, '4', '3', 4, 3, '3', 4.0);
+var_dump(array_unique($ids));
+
+var_dump(array_unique(array('1e1', '10', 10, 'x'), SORT_REGULAR));
+var_dump(array_unique(array('1.0', ' 1', 1), SORT_NUMERIC));
+var_dump(array_unique(array(9007199254740993, 9007199254740992, '9007199254740993', 1.5, '1.5'), SORT_REGULAR));
+var_dump(array_unique(array(9007199254740993, '9007199254740992', -0.0, 0), SORT_NUMERIC));
+--EXPECT--
+array(3) {
+  ["a"]=>
+  string(5) "green"
+  [0]=>
+  string(3) "red"
+  [1]=>
+  string(4) "blue"
+}
+array(2) {
+  [0]=>
+  int(4)
+  [2]=>
+  string(1) "3"
+}
+array(2) {
+  [0]=>
+  string(3) "1e1"
+  [3]=>
+  string(1) "x"
+}
+array(1) {
+  [0]=>
+  string(3) "1.0"
+}
+array(3) {
+  [0]=>
+  int(9007199254740993)
+  [1]=>
+  int(9007199254740992)
+  [3]=>
+  float(1.5)
+}
+array(3) {
+  [0]=>
+  int(9007199254740993)
+  [1]=>
+  string(16) "9007199254740992"
+  [2]=>
+  float(-0)
+}
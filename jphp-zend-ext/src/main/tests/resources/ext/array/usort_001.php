@@ -0,0 +1,39 @@
+--TEST--
+usort(), uasort(), uksort() - user comparators
+--FILE--
+<?php
+function cmp($a, $b) {
+    if ($a == $b) return 0;
+    return ($a < $b) ? -1 : 1;
+}
+
+$a = array(3, 2, 5, 6, 1);
+usort($a, 'cmp');
+echo implode(',', $a), "\n";
+
+$people = array('bob' => 42, 'alice' => 30, 'carol' => 30, 'dave' => 25);
+uasort($people, function ($x, $y) { return $x - $y; });
+foreach ($people as $name => $age) echo "$name: $age\n";
+
+uksort($people, function ($x, $y) { return strcmp($y, $x); });
+echo implode(',', array_keys($people)), "\n";
+
+$words = array('ccc', 'a', 'bb');
+usort($words, function ($x, $y) { return strlen($x) > strlen($y); });
+echo implode(',', $words), "\n";
+
+$refs = array(2, 1);
+$x = 3;
+$refs[] =& $x;
+usort($refs, 'cmp');
+$x = 30;
+echo implode(',', $refs), "\n";
+--EXPECT--
+1,2,3,5,6
+dave: 25
+alice: 30
+carol: 30
+bob: 42
+dave,carol,bob,alice
+a,bb,ccc
+1,2,30
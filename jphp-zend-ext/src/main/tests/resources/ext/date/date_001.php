@@ -0,0 +1,40 @@
+--TEST--
+date() and gmdate() format characters
+--FILE--
+<?php
+var_dump(date_default_timezone_set('Europe/Moscow'));
+var_dump(date_default_timezone_get());
+
+$ts = 1700000000;
+echo date('Y-m-d H:i:s', $ts), "\n";
+echo date('D, d M Y', $ts), "\n";
+echo date('l jS \of F Y h:i:s A', $ts), "\n";
+echo date('N w z W t L o y n j G g a', $ts), "\n";
+echo date('c', $ts), "\n";
+echo date('r', $ts), "\n";
+echo date('O P Z U e', $ts), "\n";
+echo gmdate('Y-m-d H:i:s T', $ts), "\n";
+echo gmdate('D, d M Y', 0), "\n";
+echo gmdate('Y-m-d W o', 1104537600), "\n";
+echo gmdate('[\Y\-\m] Y', 86400 * 365), "\n";
+
+var_dump(date_default_timezone_set('Unknown/Zone'));
+var_dump(date_default_timezone_get());
+?>
+--EXPECTF--
+bool(true)
+string(13) "Europe/Moscow"
+2023-11-15 01:13:20
+Wed, 15 Nov 2023
+Wednesday 15th of November 2023 01:13:20 AM
+3 3 318 46 30 0 2023 23 11 15 1 1 am
+2023-11-15T01:13:20+03:00
+Wed, 15 Nov 2023 01:13:20 +0300
++0300 +03:00 10800 1700000000 Europe/Moscow
+2023-11-14 22:13:20 UTC
+Thu, 01 Jan 1970
+2005-01-01 53 2004
+[Y-m] 1971
+Notice: date_default_timezone_set(): Timezone ID 'Unknown/Zone' is invalid in %s on line 18 at pos %d
+bool(false)
+string(13) "Europe/Moscow"
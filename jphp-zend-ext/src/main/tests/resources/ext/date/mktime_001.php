@@ -0,0 +1,51 @@
+--TEST--
+mktime(), gmmktime() and checkdate()
+--FILE--
+<?php
+date_default_timezone_set('UTC');
+
+var_dump(mktime(0, 0, 0, 1, 1, 2000));
+var_dump(mktime(12, 30, 15, 2, 29, 2024));
+var_dump(mktime(0, 0, 0, 13, 1, 2023) === mktime(0, 0, 0, 1, 1, 2024));
+var_dump(mktime(0, 0, 0, 3, 0, 2024) === mktime(0, 0, 0, 2, 29, 2024));
+var_dump(mktime(0, 0, 0, 1, 1, 70));
+var_dump(mktime(0, 0, 0, 1, 1, 10) === mktime(0, 0, 0, 1, 1, 2010));
+var_dump(gmmktime(0, 0, 0, 1, 1, 1970));
+
+date_default_timezone_set('Europe/Moscow');
+var_dump(mktime(3, 0, 0, 1, 1, 1970));
+echo date('Y-m-d H:i:s', mktime(10, 0, 0, 7, 1, 2020)), "\n";
+var_dump(abs(mktime() - time()) < 2);
+
+date_default_timezone_set('America/New_York');
+echo date('Y-m-d H:i:s P', mktime(1, 30, 0, 11, 3, 2024)), "\n";
+echo date('Y-m-d H:i:s P', mktime(3, 0, 0, 11, 3, 2024)), "\n";
+echo date('Y-m-d H:i:s P', mktime(2, 30, 0, 3, 10, 2024)), "\n";
+echo date('Y-m-d H:i:s P', mktime(3, 30, 0, 3, 10, 2024)), "\n";
+
+var_dump(checkdate(2, 29, 2024));
+var_dump(checkdate(2, 29, 2023));
+var_dump(checkdate(4, 31, 2023));
+var_dump(checkdate(13, 1, 2023));
+var_dump(checkdate(12, 31, 0));
+?>
+--EXPECT--
+int(946684800)
+int(1709209815)
+bool(true)
+bool(true)
+int(0)
+bool(true)
+int(0)
+int(0)
+2020-07-01 10:00:00
+bool(true)
+2024-11-03 01:30:00 -04:00
+2024-11-03 03:00:00 -05:00
+2024-03-10 03:30:00 -04:00
+2024-03-10 03:30:00 -04:00
+bool(true)
+bool(false)
+bool(false)
+bool(false)
+bool(false)
@@ -0,0 +1,86 @@
+--TEST--
+strtotime() absolute and relative formats
+--FILE--
+<?php
+date_default_timezone_set('UTC');
+
+$now = 1700000000; // Tue, 14 Nov 2023 22:13:20 UTC
+$formats = [
+    'now', 'today', 'midnight', 'noon', 'tomorrow', 'yesterday', '@86400',
+    '2020-01-31', '2020/01/31 10:30', '2020-01-31T10:30:00Z', '2020-01-31T10:30:00+03:00',
+    '2020-01-31 10:30:15.25 +0200', '01/31/2020', '31-01-2020', '31.01.2020', '31.01.20',
+    '31 January 2020', '1st feb 2021', 'January 31, 2020', 'Jan 31', 'March 2021',
+    '10:30', '10:30pm', '12am', '5 pm', 'tomorrow 10:00', '10:00 tomorrow',
+    '+1 day', '-2 weeks', '+1 week 2 days 4 hours 2 seconds', '3 days ago', '1 month',
+    'next month', 'last year', 'next monday', 'last friday', 'tuesday', 'this tuesday',
+    'first day of next month', 'last day of february 2024',
+    '2020-01-31 +1 month', 'Wed, 15 Nov 2023 01:13:20 +0300', 'next week',
+];
+
+foreach ($formats as $format) {
+    $time = strtotime($format, $now);
+    echo str_pad($format, 35), ' => ', $time === false ? 'false' : gmdate('Y-m-d H:i:s D', $time), "\n";
+}
+
+foreach (['', 'garbage', '2020-13-01', '25:00', 'next', '+1 parsec'] as $format) {
+    var_dump(strtotime($format, $now));
+}
+
+date_default_timezone_set('America/New_York');
+echo date('Y-m-d H:i:s T', strtotime('2021-03-14 01:30 +1 hour', $now)), "\n";
+echo date('Y-m-d H:i:s T', strtotime('2021-11-07 12:00', $now)), "\n";
+var_dump(abs(strtotime('now') - time()) < 2);
+?>
+--EXPECT--
+now                                 => 2023-11-14 22:13:20 Tue
+today                               => 2023-11-14 00:00:00 Tue
+midnight                            => 2023-11-14 00:00:00 Tue
+noon                                => 2023-11-14 12:00:00 Tue
+tomorrow                            => 2023-11-15 00:00:00 Wed
+yesterday                           => 2023-11-13 00:00:00 Mon
+@86400                              => 1970-01-02 00:00:00 Fri
+2020-01-31                          => 2020-01-31 00:00:00 Fri
+2020/01/31 10:30                    => 2020-01-31 10:30:00 Fri
+2020-01-31T10:30:00Z                => 2020-01-31 10:30:00 Fri
+2020-01-31T10:30:00+03:00           => 2020-01-31 07:30:00 Fri
+2020-01-31 10:30:15.25 +0200        => 2020-01-31 08:30:15 Fri
+01/31/2020                          => 2020-01-31 00:00:00 Fri
+31-01-2020                          => 2020-01-31 00:00:00 Fri
+31.01.2020                          => 2020-01-31 00:00:00 Fri
+31.01.20                            => 2020-01-31 00:00:00 Fri
+31 January 2020                     => 2020-01-31 00:00:00 Fri
+1st feb 2021                        => 2021-02-01 00:00:00 Mon
+January 31, 2020                    => 2020-01-31 00:00:00 Fri
+Jan 31                              => 2023-01-31 00:00:00 Tue
+March 2021                          => 2021-03-01 00:00:00 Mon
+10:30                               => 2023-11-14 10:30:00 Tue
+10:30pm                             => 2023-11-14 22:30:00 Tue
+12am                                => 2023-11-14 00:00:00 Tue
+5 pm                                => 2023-11-14 17:00:00 Tue
+tomorrow 10:00                      => 2023-11-15 10:00:00 Wed
+10:00 tomorrow                      => 2023-11-15 00:00:00 Wed
++1 day                              => 2023-11-15 22:13:20 Wed
+-2 weeks                            => 2023-10-31 22:13:20 Tue
++1 week 2 days 4 hours 2 seconds    => 2023-11-24 02:13:22 Fri
+3 days ago                          => 2023-11-11 22:13:20 Sat
+1 month                             => 2023-12-14 22:13:20 Thu
+next month                          => 2023-12-14 22:13:20 Thu
+last year                           => 2022-11-14 22:13:20 Mon
+next monday                         => 2023-11-20 00:00:00 Mon
+last friday                         => 2023-11-10 00:00:00 Fri
+tuesday                             => 2023-11-14 00:00:00 Tue
+this tuesday                        => 2023-11-14 00:00:00 Tue
+first day of next month             => 2023-12-01 22:13:20 Fri
+last day of february 2024           => 2024-02-29 00:00:00 Thu
+2020-01-31 +1 month                 => 2020-03-02 00:00:00 Mon
+Wed, 15 Nov 2023 01:13:20 +0300     => 2023-11-14 22:13:20 Tue
+next week                           => 2023-11-21 22:13:20 Tue
+bool(false)
+bool(false)
+bool(false)
+bool(false)
+bool(false)
+bool(false)
+2021-03-14 03:30:00 EDT
+2021-11-07 12:00:00 EST
+bool(true)
@@ -0,0 +1,86 @@
+--TEST--
+fgetcsv(), fputcsv()
+--FILE--
+<?php
+$path = tempnam(sys_get_temp_dir(), 'jphp');
+
+$h = fopen($path, 'w');
+var_dump(fputcsv($h, array('id', 'name', 'comment')));
+fputcsv($h, array(1, 'Smith, John', 'said "hi"'));
+fputcsv($h, array(2, 'multi', "first\nsecond"));
+fputcsv($h, array(3, '', 'a\\"b'));
+fputcsv($h, array('x', 'y'), ';', "'");
+fwrite($h, "\n");
+fwrite($h, "  \"padded\" tail,plain  ,\"unterminated");
+fclose($h);
+
+$h = fopen($path, 'r');
+while (($row = fgetcsv($h)) !== false) {
+    var_dump($row);
+}
+fclose($h);
+
+$h = fopen($path, 'r');
+for ($i = 0; $i < 4; $i++) fgets($h);
+fgets($h);
+var_dump(fgetcsv($h, 0, ';', "'"));
+fclose($h);
+
+unlink($path);
+--EXPECT--
+int(16)
+array(3) {
+  [0]=>
+  string(2) "id"
+  [1]=>
+  string(4) "name"
+  [2]=>
+  string(7) "comment"
+}
+array(3) {
+  [0]=>
+  string(1) "1"
+  [1]=>
+  string(11) "Smith, John"
+  [2]=>
+  string(9) "said "hi""
+}
+array(3) {
+  [0]=>
+  string(1) "2"
+  [1]=>
+  string(5) "multi"
+  [2]=>
+  string(12) "first
+second"
+}
+array(3) {
+  [0]=>
+  string(1) "3"
+  [1]=>
+  string(0) ""
+  [2]=>
+  string(4) "a\"b"
+}
+array(1) {
+  [0]=>
+  string(3) "x;y"
+}
+array(1) {
+  [0]=>
+  NULL
+}
+array(3) {
+  [0]=>
+  string(11) "padded tail"
+  [1]=>
+  string(7) "plain  "
+  [2]=>
+  string(12) "unterminated"
+}
+array(2) {
+  [0]=>
+  string(1) "x"
+  [1]=>
+  string(1) "y"
+}
@@ -0,0 +1,41 @@
+--TEST--
+file() - eager and lazy
+--FILE--
+<?php
+$path = tempnam(sys_get_temp_dir(), 'jphp');
+file_put_contents($path, "a\nb\r\n\nlast");
+
+var_dump(array_map('bin2hex', file($path)));
+var_dump(file($path, FILE_IGNORE_NEW_LINES | FILE_SKIP_EMPTY_LINES));
+
+$lines = file($path, FILE_LAZY | FILE_IGNORE_NEW_LINES);
+var_dump($lines instanceof Traversable);
+foreach ($lines as $i => $line) {
+    echo "$i: [$line]\n";
+}
+
+unlink($path);
+--EXPECT--
+array(4) {
+  [0]=>
+  string(4) "610a"
+  [1]=>
+  string(6) "620d0a"
+  [2]=>
+  string(2) "0a"
+  [3]=>
+  string(8) "6c617374"
+}
+array(3) {
+  [0]=>
+  string(1) "a"
+  [1]=>
+  string(1) "b"
+  [2]=>
+  string(4) "last"
+}
+bool(true)
+0: [a]
+1: [b]
+2: []
+3: [last]
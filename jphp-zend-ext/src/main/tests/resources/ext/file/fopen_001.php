@@ -0,0 +1,68 @@
+--TEST--
+fopen(), fgets(), fwrite() and other stream functions
+--FILE--
+<?php
+$path = tempnam(sys_get_temp_dir(), 'jphp');
+
+$h = fopen($path, 'wb');
+var_dump(is_resource($h));
+var_dump(fwrite($h, "line 1\n"));
+var_dump(fputs($h, "line 2\r\nline 3", 9));
+var_dump(fwrite($h, "ignored", 0));
+var_dump(fclose($h));
+
+$h = fopen($path, 'r');
+var_dump(fgets($h));
+var_dump(fgets($h, 4));
+var_dump(bin2hex(fgets($h)));
+var_dump(ftell($h));
+var_dump(feof($h));
+var_dump(fgets($h));
+var_dump(feof($h), fgets($h));
+
+var_dump(rewind($h), fgetc($h), fread($h, 5));
+var_dump(fseek($h, -2, SEEK_END), fread($h, 100), fread($h, 100));
+var_dump(fseek($h, 2), fseek($h, 2, SEEK_CUR), fgets($h));
+fclose($h);
+
+$h = fopen($path, 'a+');
+fwrite($h, "\nline 4");
+rewind($h);
+$lines = array();
+while (($line = fgets($h)) !== false) {
+    $lines[] = $line;
+}
+fclose($h);
+var_dump(count($lines), $lines[3]);
+
+var_dump(@fopen($path . '.missing', 'r'));
+unlink($path);
+--EXPECT--
+bool(true)
+int(7)
+int(9)
+int(0)
+bool(true)
+string(7) "line 1
+"
+string(3) "lin"
+string(10) "6520320d0a"
+int(15)
+bool(false)
+string(1) "l"
+bool(true)
+bool(false)
+bool(true)
+string(1) "l"
+string(5) "ine 1"
+int(0)
+string(2) "
+l"
+string(0) ""
+int(0)
+int(0)
+string(3) " 1
+"
+int(4)
+string(6) "line 4"
+bool(false)
@@ -0,0 +1,58 @@
+--TEST--
+readfile() and fpassthru()
+--FILE--
+<?php
+$path = tempnam(sys_get_temp_dir(), 'jphp');
+file_put_contents($path, str_repeat("0123456789", 1000) . "end\n");
+
+ob_start();
+$count = readfile($path);
+$content = ob_get_clean();
+var_dump($count, strlen($content), $content === file_get_contents($path));
+
+echo "before:";
+var_dump(readfile($path . '.none'));
+
+$h = fopen($path, 'r');
+fread($h, 9995);
+var_dump(fpassthru($h));
+var_dump(fpassthru($h), feof($h));
+fclose($h);
+
+$h = fopen($path, 'rb');
+fgets($h, 10000);
+ob_start();
+echo "[";
+var_dump(fpassthru($h));
+echo "]";
+echo strtoupper(ob_get_clean()), "\n";
+fclose($h);
+
+$copy = tempnam(sys_get_temp_dir(), 'jphp');
+$h = fopen($copy, 'w');
+fwrite($h, "head:");
+var_dump(readfile($path, false, $h), ftell($h));
+fwrite($h, ":tail");
+fclose($h);
+var_dump(filesize($copy), substr(file_get_contents($copy), -14));
+
+unlink($path);
+unlink($copy);
+--EXPECTF--
+int(10004)
+int(10004)
+bool(true)
+before:Warning: readfile(): File not found - %s in %s on line 11 at pos %d
+bool(false)
+56789end
+int(9)
+int(0)
+bool(true)
+[9END
+INT(5)
+]
+int(10004)
+int(10009)
+int(10014)
+string(14) "56789end
+:tail"
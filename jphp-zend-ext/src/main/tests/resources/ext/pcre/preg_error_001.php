@@ -0,0 +1,21 @@
+--TEST--
+preg_* compilation errors
+--FILE--
+<?php
+var_dump(preg_match('/abc', 'abc'));
+var_dump(preg_match('/a/k', 'abc'));
+var_dump(preg_match('abc', 'abc'));
+var_dump(preg_match('', 'abc'));
+var_dump(preg_replace('/(/', 'x', 'abc'));
+
+--EXPECTF--
+Warning: No ending delimiter '/' found in %s on line 2 at pos %d
+bool(false)
+Warning: Unknown modifier 'k' in %s on line 3 at pos %d
+bool(false)
+Warning: Delimiter must not be alphanumeric or backslash in %s on line 4 at pos %d
+bool(false)
+Warning: Empty regular expression in %s on line 5 at pos %d
+bool(false)
+Warning: Compilation failed: Unclosed group at offset 1 in %s on line 6 at pos %d
+NULL
@@ -0,0 +1,113 @@
+--TEST--
+preg_match() groups, named groups and flags
+--FILE--
+<?php
+var_dump(preg_match('/(\d+)-(?P<word>\w+)(x)?/', 'abc 12-foo bar', $m));
+var_dump($m);
+
+var_dump(preg_match('/(?<y>\d{4})-(?<m>\d\d)/', '2014-05', $m));
+var_dump($m);
+
+var_dump(preg_match('{a(b)}i', 'xAB', $m));
+var_dump($m);
+
+var_dump(preg_match('/(a)(b)?(c)/', 'ac', $m, PREG_OFFSET_CAPTURE));
+var_dump($m);
+
+var_dump(preg_match('/a/', 'abab', $m, PREG_OFFSET_CAPTURE, 1));
+var_dump($m);
+
+var_dump(preg_match('/^[[:alpha:]_]+$/', 'ab_c'));
+var_dump(preg_match('/(\w)\g{1}/', 'xaab', $m));
+var_dump($m);
+var_dump(preg_match('/a{/', 'a{'));
+var_dump(preg_match('/x/', 'abc', $m));
+var_dump($m);
+var_dump(preg_last_error() === PREG_NO_ERROR);
+
+--EXPECT--
+int(1)
+array(4) {
+  [0]=>
+  string(6) "12-foo"
+  [1]=>
+  string(2) "12"
+  ["word"]=>
+  string(3) "foo"
+  [2]=>
+  string(3) "foo"
+}
+int(1)
+array(5) {
+  [0]=>
+  string(7) "2014-05"
+  ["y"]=>
+  string(4) "2014"
+  [1]=>
+  string(4) "2014"
+  ["m"]=>
+  string(2) "05"
+  [2]=>
+  string(2) "05"
+}
+int(1)
+array(2) {
+  [0]=>
+  string(2) "AB"
+  [1]=>
+  string(1) "B"
+}
+int(1)
+array(4) {
+  [0]=>
+  array(2) {
+    [0]=>
+    string(2) "ac"
+    [1]=>
+    int(0)
+  }
+  [1]=>
+  array(2) {
+    [0]=>
+    string(1) "a"
+    [1]=>
+    int(0)
+  }
+  [2]=>
+  array(2) {
+    [0]=>
+    string(0) ""
+    [1]=>
+    int(-1)
+  }
+  [3]=>
+  array(2) {
+    [0]=>
+    string(1) "c"
+    [1]=>
+    int(1)
+  }
+}
+int(1)
+array(1) {
+  [0]=>
+  array(2) {
+    [0]=>
+    string(1) "a"
+    [1]=>
+    int(2)
+  }
+}
+int(1)
+int(1)
+array(2) {
+  [0]=>
+  string(2) "aa"
+  [1]=>
+  string(1) "a"
+}
+int(1)
+int(0)
+array(0) {
+}
+bool(true)
@@ -0,0 +1,42 @@
+--TEST--
+preg_match() unicode properties and code points in braces
+--FILE--
+<?php
+var_dump(preg_match('/^\p{Lu}/u', 'Ёлка'));
+var_dump(preg_match('/^\p{Lu}/u', 'ёлка'));
+var_dump(preg_match('/^\P{Lu}+$/u', 'ёлка'));
+var_dump(preg_match('/^\p{^Lu}+$/u', 'ёлка'));
+var_dump(preg_match('/^[\p{Ll}\d]+$/u', 'ёлка2'));
+var_dump(preg_match('/\p{Cyrillic}+/u', 'tree ёлка', $m));
+var_dump($m[0] === 'ёлка');
+var_dump(preg_match('/^\p{L&}$/u', 'ж'));
+var_dump(preg_match('/\pL\pN/u', 'a1'));
+
+var_dump(preg_match('/\x{e9}/u', 'café'));
+var_dump(preg_match('/^[\x{430}-\x{44f}]+$/u', 'ёлка'));
+var_dump(preg_match('/^[\x{430}-\x{44f}\x{451}]+$/u', 'ёлка'));
+var_dump(preg_match('/\o{351}/u', 'café'));
+var_dump(preg_match('/\x41\x{42}/', 'AB'));
+
+var_dump(preg_match('/\p{Foo}/u', 'a'));
+var_dump(preg_match('/\x{zz}/u', 'a'));
+
+--EXPECTF--
+int(1)
+int(0)
+int(1)
+int(1)
+int(1)
+int(1)
+bool(true)
+int(1)
+int(1)
+int(1)
+int(0)
+int(1)
+int(1)
+int(1)
+Warning: unknown property name after \P or \p in %s on line 18 at pos %d
+bool(false)
+Warning: non-hex character in \x{} (closing brace missing?) in %s on line 19 at pos %d
+bool(false)
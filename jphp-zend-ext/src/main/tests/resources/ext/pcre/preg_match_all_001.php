@@ -0,0 +1,115 @@
+--TEST--
+preg_match_all() orders
+--FILE--
+<?php
+var_dump(preg_match_all('/(a)(b)?/', 'ab a ab', $m));
+var_dump($m);
+
+var_dump(preg_match_all('/(a)(b)?/', 'ab a', $m, PREG_SET_ORDER | PREG_OFFSET_CAPTURE));
+var_dump($m);
+
+var_dump(preg_match_all('/(?<num>\d)/', 'a1b2', $m));
+var_dump($m);
+
+var_dump(preg_match_all('/\d/', 'abc'));
+
+--EXPECT--
+int(3)
+array(3) {
+  [0]=>
+  array(3) {
+    [0]=>
+    string(2) "ab"
+    [1]=>
+    string(1) "a"
+    [2]=>
+    string(2) "ab"
+  }
+  [1]=>
+  array(3) {
+    [0]=>
+    string(1) "a"
+    [1]=>
+    string(1) "a"
+    [2]=>
+    string(1) "a"
+  }
+  [2]=>
+  array(3) {
+    [0]=>
+    string(1) "b"
+    [1]=>
+    string(0) ""
+    [2]=>
+    string(1) "b"
+  }
+}
+int(2)
+array(2) {
+  [0]=>
+  array(3) {
+    [0]=>
+    array(2) {
+      [0]=>
+      string(2) "ab"
+      [1]=>
+      int(0)
+    }
+    [1]=>
+    array(2) {
+      [0]=>
+      string(1) "a"
+      [1]=>
+      int(0)
+    }
+    [2]=>
+    array(2) {
+      [0]=>
+      string(1) "b"
+      [1]=>
+      int(1)
+    }
+  }
+  [1]=>
+  array(2) {
+    [0]=>
+    array(2) {
+      [0]=>
+      string(1) "a"
+      [1]=>
+      int(3)
+    }
+    [1]=>
+    array(2) {
+      [0]=>
+      string(1) "a"
+      [1]=>
+      int(3)
+    }
+  }
+}
+int(2)
+array(3) {
+  [0]=>
+  array(2) {
+    [0]=>
+    string(1) "1"
+    [1]=>
+    string(1) "2"
+  }
+  ["num"]=>
+  array(2) {
+    [0]=>
+    string(1) "1"
+    [1]=>
+    string(1) "2"
+  }
+  [1]=>
+  array(2) {
+    [0]=>
+    string(1) "1"
+    [1]=>
+    string(1) "2"
+  }
+}
+int(0)
@@ -0,0 +1,23 @@
+--TEST--
+preg_quote() and preg_grep()
+--FILE--
+<?php
+var_dump(preg_quote("Hello.world?(x)/", '/'));
+var_dump(preg_quote("1+1=2#"));
+
+var_dump(preg_grep('/^\d+$/', array(1 => '12', 2 => 'x', 3 => '7')));
+var_dump(preg_grep('/^\d+$/', array(1 => '12', 2 => 'x'), PREG_GREP_INVERT));
+
+--EXPECT--
+string(21) "Hello\.world\?\(x\)\/"
+string(9) "1\+1\=2\#"
+array(2) {
+  [1]=>
+  string(2) "12"
+  [3]=>
+  string(1) "7"
+}
+array(1) {
+  [2]=>
+  string(1) "x"
+}
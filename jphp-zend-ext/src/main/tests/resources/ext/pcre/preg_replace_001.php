@@ -0,0 +1,41 @@
+--TEST--
+preg_replace() and preg_replace_callback()
+--FILE--
+<?php
+var_dump(preg_replace('/(\w+) (\w+)/', '$2 ${1}x \\1', 'hello world'));
+var_dump(preg_replace(array('/a/', '/b/'), array('b', 'c'), 'ab', -1, $count), $count);
+var_dump(preg_replace('/o/', '0', array('x' => 'foo', 'y' => 'bar'), 1));
+var_dump(preg_replace('/x*/', '-', 'abc'));
+var_dump(preg_replace('/a.*c/U', 'X', 'abcabc'));
+var_dump(preg_replace('/a.*+c/U', 'X', 'abcabc'));
+var_dump(preg_replace('/\d++/U', 'X', 'a123b'));
+var_dump(preg_replace('/\d{2}+/U', 'X', 'a123b'));
+var_dump(preg_replace('/é/iu', 'e', 'É'));
+
+var_dump(preg_replace_callback('/\d+/', function($m){ return $m[0] * 2; }, array('a' => '1 2', 'b' => '10')));
+var_dump(preg_replace_callback('/(?<k>\w+)=(\w+)/', function($m){ return $m['k'] . ':' . strtoupper($m[2]); }, 'a=b, c=d', 1, $count), $count);
+
+--EXPECT--
+string(18) "world hellox hello"
+string(2) "cc"
+int(3)
+array(2) {
+  ["x"]=>
+  string(3) "f0o"
+  ["y"]=>
+  string(3) "bar"
+}
+string(7) "-a-b-c-"
+string(2) "XX"
+string(6) "abcabc"
+string(3) "aXb"
+string(4) "aX3b"
+string(1) "e"
+array(2) {
+  ["a"]=>
+  string(3) "2 4"
+  ["b"]=>
+  string(2) "20"
+}
+string(8) "a:B, c=d"
+int(1)
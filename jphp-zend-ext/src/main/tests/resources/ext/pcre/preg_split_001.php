@@ -0,0 +1,54 @@
+--TEST--
+preg_split() flags
+--FILE--
+<?php
+var_dump(preg_split('//', 'abc', -1, PREG_SPLIT_NO_EMPTY));
+var_dump(preg_split('/(-)/', 'a-b--c', 3, PREG_SPLIT_DELIM_CAPTURE));
+var_dump(preg_split('/[\s,]+/', "hypertext language, programming"));
+var_dump(preg_split('/ /', 'a b', -1, PREG_SPLIT_OFFSET_CAPTURE));
+
+--EXPECT--
+array(3) {
+  [0]=>
+  string(1) "a"
+  [1]=>
+  string(1) "b"
+  [2]=>
+  string(1) "c"
+}
+array(5) {
+  [0]=>
+  string(1) "a"
+  [1]=>
+  string(1) "-"
+  [2]=>
+  string(1) "b"
+  [3]=>
+  string(1) "-"
+  [4]=>
+  string(2) "-c"
+}
+array(3) {
+  [0]=>
+  string(9) "hypertext"
+  [1]=>
+  string(8) "language"
+  [2]=>
+  string(11) "programming"
+}
+array(2) {
+  [0]=>
+  array(2) {
+    [0]=>
+    string(1) "a"
+    [1]=>
+    int(0)
+  }
+  [1]=>
+  array(2) {
+    [0]=>
+    string(1) "b"
+    [1]=>
+    int(2)
+  }
+}
@@ -0,0 +1,24 @@
+--TEST--
+number_format()
+--FILE--
+<?php
+var_dump(number_format(1234567.891));
+var_dump(number_format(1234567.891, 2));
+var_dump(number_format(1234567.891, 2, ',', ' '));
+var_dump(number_format(0.125, 2));
+var_dump(number_format(1.005, 2));
+var_dump(number_format(-0.01));
+var_dump(number_format(-1234.567, 1));
+var_dump(number_format(999.999, 2));
+var_dump(number_format(100, 3, '.', ''));
+?>
+--EXPECT--
+string(9) "1,234,568"
+string(12) "1,234,567.89"
+string(12) "1 234 567,89"
+string(4) "0.13"
+string(4) "1.01"
+string(1) "0"
+string(8) "-1,234.6"
+string(8) "1,000.00"
+string(7) "100.000"
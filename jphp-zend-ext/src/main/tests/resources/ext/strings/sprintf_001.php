@@ -0,0 +1,29 @@
+--TEST--
+sprintf() with the same format in a loop
+--FILE--
+<?php
+$rows = [[1, 12.5, 'a'], [22, -0.125, 'bb'], [333, 1234.5678, 'ccc']];
+
+for ($i = 0; $i < 2; $i++) {
+    foreach ($rows as $row) {
+        echo sprintf("[%05d] [%-6s] [%08.2f] [%+.1f] [%'*6s]", $row[0], $row[2], $row[1], $row[1], $row[2]), "\n";
+    }
+}
+
+printf("%s=%d%%\n", 'rate', 42);
+echo vsprintf("%2\$s %1\$04d %3\$.1f\n", [7, 'x', 12345.678]);
+var_dump(sprintf("%d %d", 1));
+echo sprintf("%.2f|%.2f|%.2f|%5.1f|%-7.3f|", 1.005, -0.001, 2.675, 9.96, 3.14159), "\n";
+?>
+--EXPECTF--
+[00001] [a     ] [00012.50] [+12.5] [*****a]
+[00022] [bb    ] [-0000.13] [-0.1] [****bb]
+[00333] [ccc   ] [01234.57] [+1234.6] [***ccc]
+[00001] [a     ] [00012.50] [+12.5] [*****a]
+[00022] [bb    ] [-0000.13] [-0.1] [****bb]
+[00333] [ccc   ] [01234.57] [+1234.6] [***ccc]
+rate=42%%
+x 0007 12345.7
+Warning: Too few arguments in %s on line 12 at pos %d
+NULL
+1.01|-0.00|2.68| 10.0|3.142  |
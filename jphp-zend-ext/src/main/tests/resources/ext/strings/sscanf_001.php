@@ -0,0 +1,27 @@
+--TEST--
+sscanf() with the same format in a loop
+--FILE--
+<?php
+foreach (["age: 25 name: Bob", "age: 31 name: Alice"] as $line) {
+    var_dump(sscanf($line, "age: %d name: %s"));
+}
+
+$n = sscanf("12 apples", "%d %s", $count, $what);
+var_dump($n, $count, $what);
+?>
+--EXPECT--
+array(2) {
+  [0]=>
+  int(25)
+  [1]=>
+  string(3) "Bob"
+}
+array(2) {
+  [0]=>
+  int(31)
+  [1]=>
+  string(5) "Alice"
+}
+int(2)
+int(12)
+string(6) "apples"
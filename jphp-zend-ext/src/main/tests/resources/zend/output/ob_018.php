@@ -0,0 +1,26 @@
+--TEST--
+output buffering - nested buffers with large and multibyte output
+--FILE--
+<?php
+ob_start();
+    ob_start();
+    for ($i = 0; $i < 3000; $i++) {
+        echo "ab";
+        echo "ы€";
+    }
+    ob_end_flush();
+
+    $content = ob_get_contents();
+    ob_start();
+    echo "tail";
+    ob_end_flush();
+$all = ob_get_clean();
+
+var_dump(strlen($content));
+var_dump(strlen($all));
+var_dump($all === str_repeat("abы€", 3000) . "tail");
+?>
+--EXPECT--
+int(21000)
+int(21004)
+bool(true)
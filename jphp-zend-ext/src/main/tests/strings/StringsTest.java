@@ -52,4 +52,19 @@ public class StringsTest extends ZendJvmTestCase {
     public void testSha1File(){
         check("ext/strings/sha1_file_001.php");
     }
+
+    @Test
+    public void testSprintf(){
+        check("ext/strings/sprintf_001.php");
+    }
+
+    @Test
+    public void testSscanf(){
+        check("ext/strings/sscanf_001.php");
+    }
+
+    @Test
+    public void testNumberFormat(){
+        check("ext/strings/number_format_001.php");
+    }
 }
@@ -29,6 +29,7 @@ public class OutputTest extends ZendJvmTestCase {
         check("zend/output/ob_014.php");
         check("zend/output/ob_015.php");
         check("zend/output/ob_017.php");
+        check("zend/output/ob_018.php");
     }
 
     @Test